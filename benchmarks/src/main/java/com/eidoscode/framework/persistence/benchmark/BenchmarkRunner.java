@@ -0,0 +1,44 @@
+package com.eidoscode.framework.persistence.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the allocation profiler, so the results carry the
+ * allocation rate besides the throughput. It takes the same arguments of the
+ * JMH command line, like a regular expression of the benchmarks to run:
+ * 
+ * <pre>
+ * java -jar target/benchmarks.jar ReadBenchmark -p startPosition=0
+ * </pre>
+ * 
+ * @author eantonini
+ * @since 1.6
+ * @version 1.0
+ */
+public final class BenchmarkRunner {
+
+  private BenchmarkRunner() {
+  }
+
+  /**
+   * Runs the benchmarks.
+   * 
+   * @param args
+   *          JMH command line arguments.
+   * @throws RunnerException
+   *           If a benchmark fails.
+   * @throws CommandLineOptionException
+   *           If the arguments are invalid.
+   */
+  public static void main(String[] args) throws RunnerException,
+      CommandLineOptionException {
+    new Runner(new OptionsBuilder().parent(new CommandLineOptions(args))
+        .addProfiler(GCProfiler.class).build()).run();
+  }
+
+}
@@ -0,0 +1,94 @@
+package com.eidoscode.framework.persistence.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Embedded in-memory database shared by all the threads of a benchmark. It is
+ * created and filled with {@link #rows} people before the benchmark runs and
+ * dropped after it.
+ * 
+ * @author eantonini
+ * @since 1.6
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+public class Database {
+
+  /**
+   * Name of the persistence unit.
+   */
+  public static final String PERSISTENCE_UNIT = "benchmark";
+
+  /**
+   * Amount of people on the table before the benchmark runs.
+   */
+  @Param({ "10000" })
+  public int rows;
+
+  private EntityManagerFactory entityManagerFactory;
+  private List<Long> keys;
+
+  /**
+   * Creates the database and fills it.
+   */
+  @Setup(Level.Trial)
+  public void create() {
+    entityManagerFactory = Persistence
+        .createEntityManagerFactory(PERSISTENCE_UNIT);
+    EntityManager entityManager = entityManagerFactory.createEntityManager();
+    try {
+      List<Person> people = new ArrayList<Person>(rows);
+      for (int i = 0; i < rows; i++) {
+        people.add(Person.create(i));
+      }
+      entityManager.getTransaction().begin();
+      new PersonDAO(entityManager).save(people, true);
+      entityManager.getTransaction().commit();
+      keys = new ArrayList<Long>(rows);
+      for (Person person : people) {
+        keys.add(person.getId());
+      }
+    } finally {
+      entityManager.close();
+    }
+  }
+
+  /**
+   * Drops the database.
+   */
+  @TearDown(Level.Trial)
+  public void drop() {
+    entityManagerFactory.close();
+  }
+
+  /**
+   * Creates a new {@link EntityManager}.
+   * 
+   * @return {@link EntityManager}.
+   */
+  public EntityManager createEntityManager() {
+    return entityManagerFactory.createEntityManager();
+  }
+
+  /**
+   * Brings the keys of the people created before the benchmark.
+   * 
+   * @return Keys, in insertion order.
+   */
+  public List<Long> getKeys() {
+    return keys;
+  }
+
+}
@@ -0,0 +1,100 @@
+package com.eidoscode.framework.persistence.benchmark;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.NamedQuery;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Version;
+
+import com.eidoscode.framework.persistence.model.impl.AuditedModelImpl;
+
+/**
+ * Entity used by the benchmarks. Its key comes from a sequence, so the inserts
+ * can be batched by the provider.
+ * 
+ * @author eantonini
+ * @since 1.6
+ * @version 1.0
+ */
+@Entity
+@SequenceGenerator(name = "PERSON_SEQUENCE", sequenceName = "PERSON_SEQUENCE", allocationSize = 50)
+@NamedQuery(name = "Person.countAll", query = "SELECT COUNT(a) FROM Person a")
+public class Person extends AuditedModelImpl<Long> {
+
+  private static final long serialVersionUID = 8126543210987654321L;
+
+  @Id
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "PERSON_SEQUENCE")
+  private Long id;
+
+  @Version
+  private int version;
+
+  private String name;
+
+  private String email;
+
+  private int age;
+
+  /**
+   * Creates a person with generated values.
+   * 
+   * @param index
+   *          Index used to fill the attributes.
+   * @return New {@link Person}, not persisted.
+   */
+  public static Person create(int index) {
+    Person person = new Person();
+    person.setName("Person " + index);
+    person.setEmail("person" + index + "@eidoscode.com");
+    person.setAge(18 + index % 60);
+    return person;
+  }
+
+  @Override
+  public Long getId() {
+    return id;
+  }
+
+  @Override
+  public void setId(Long id) {
+    this.id = id;
+  }
+
+  @Override
+  public int getVersion() {
+    return version;
+  }
+
+  @Override
+  public void setVersion(int version) {
+    this.version = version;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public void setName(String name) {
+    this.name = name;
+  }
+
+  public String getEmail() {
+    return email;
+  }
+
+  public void setEmail(String email) {
+    this.email = email;
+  }
+
+  public int getAge() {
+    return age;
+  }
+
+  public void setAge(int age) {
+    this.age = age;
+  }
+
+}
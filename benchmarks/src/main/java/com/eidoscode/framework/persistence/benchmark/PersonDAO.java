@@ -0,0 +1,34 @@
+package com.eidoscode.framework.persistence.benchmark;
+
+import javax.persistence.EntityManager;
+
+import com.eidoscode.framework.persistence.dao.impl.DataAccessObjectImpl;
+
+/**
+ * Data Access Object of {@link Person} bound to the {@link EntityManager} of a
+ * benchmark thread, since there is no container to inject it.
+ * 
+ * @author eantonini
+ * @since 1.6
+ * @version 1.0
+ */
+public class PersonDAO extends DataAccessObjectImpl<Long, Person> {
+
+  private final EntityManager entityManager;
+
+  /**
+   * Main constructor.
+   * 
+   * @param entityManager
+   *          {@link EntityManager} used by the Data Access Object.
+   */
+  public PersonDAO(EntityManager entityManager) {
+    this.entityManager = entityManager;
+  }
+
+  @Override
+  public EntityManager getEntityManager() {
+    return entityManager;
+  }
+
+}
@@ -0,0 +1,118 @@
+package com.eidoscode.framework.persistence.benchmark;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the reads of the Data Access Object: <code>findByKey</code> of
+ * a random person, <code>findAllPaginate</code> of a page at a shallow or deep
+ * offset and <code>countAll</code>.
+ * 
+ * @author eantonini
+ * @since 1.6
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReadBenchmark {
+
+  /**
+   * Size of the pages brought by {@link #findAllPaginate(Page)}.
+   */
+  public static final int PAGE_SIZE = 50;
+
+  private final Random random = new Random(42);
+  private Session session;
+  private List<Long> keys;
+
+  /**
+   * Prepares the thread.
+   * 
+   * @param database
+   *          Shared {@link Database}.
+   * @param threadSession
+   *          {@link Session} of the thread.
+   */
+  @Setup(Level.Trial)
+  public void prepare(Database database, Session threadSession) {
+    this.session = threadSession;
+    this.keys = database.getKeys();
+  }
+
+  /**
+   * Finds a random person by its key.
+   * 
+   * @return Found person.
+   */
+  @Benchmark
+  public Person findByKey() {
+    session.begin();
+    Person person = session.getDAO().findByKey(
+        keys.get(random.nextInt(keys.size())));
+    session.commit();
+    return person;
+  }
+
+  /**
+   * Brings the page at {@link Page#startPosition}.
+   * 
+   * @param page
+   *          Offset of the page.
+   * @return People of the page.
+   */
+  @Benchmark
+  public List<Person> findAllPaginate(Page page) {
+    session.begin();
+    List<Person> people = session.getDAO().findAllPaginate(
+        page.startPosition, PAGE_SIZE);
+    session.commit();
+    return people;
+  }
+
+  /**
+   * Counts all the people.
+   * 
+   * @return Amount of people.
+   */
+  @Benchmark
+  public Long countAll() {
+    session.begin();
+    Long count = session.getDAO().countAll();
+    session.commit();
+    return count;
+  }
+
+  /**
+   * Offset of the pages brought by {@link ReadBenchmark#findAllPaginate(Page)}.
+   */
+  @State(Scope.Benchmark)
+  public static class Page {
+
+    /**
+     * Position of the first person of the page: the first page, the middle of
+     * the table and the last page.
+     */
+    @Param({ "0", "5000", "9950" })
+    public int startPosition;
+
+  }
+
+}
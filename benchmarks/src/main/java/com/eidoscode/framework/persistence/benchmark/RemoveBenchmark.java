@@ -0,0 +1,84 @@
+package com.eidoscode.framework.persistence.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of <code>removeById</code> of a collection of keys. The removed
+ * people are saved again before each call, out of the measured time. Since
+ * that setup runs on every call, the benchmark only fits calls that take
+ * longer than a millisecond, which is the case of any statement sent to the
+ * database.
+ * 
+ * @author eantonini
+ * @since 1.6
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RemoveBenchmark {
+
+  /**
+   * Amount of keys removed by each call.
+   */
+  @Param({ "1", "10", "100", "1000" })
+  public int batchSize;
+
+  private Session session;
+  private List<Long> keys;
+  private int created;
+
+  /**
+   * Saves the people removed by the next call.
+   * 
+   * @param threadSession
+   *          {@link Session} of the thread.
+   */
+  @Setup(Level.Invocation)
+  public void prepare(Session threadSession) {
+    this.session = threadSession;
+    List<Person> people = new ArrayList<Person>(batchSize);
+    for (int i = 0; i < batchSize; i++) {
+      people.add(Person.create(created++));
+    }
+    session.begin();
+    session.getDAO().save(people, true);
+    session.commit();
+    keys = new ArrayList<Long>(batchSize);
+    for (Person person : people) {
+      keys.add(person.getId());
+    }
+  }
+
+  /**
+   * Removes {@link #batchSize} people by their keys.
+   * 
+   * @return Amount of removed people by statement.
+   */
+  @Benchmark
+  public int[] removeById() {
+    session.begin();
+    int[] removed = session.getDAO().removeById(keys, true);
+    session.commit();
+    return removed;
+  }
+
+}
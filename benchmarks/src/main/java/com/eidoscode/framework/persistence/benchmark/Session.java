@@ -0,0 +1,85 @@
+package com.eidoscode.framework.persistence.benchmark;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * {@link EntityManager} and {@link PersonDAO} of a benchmark thread. Each
+ * benchmark call runs on its own transaction and the persistence context is
+ * cleared after it, so no call is served by the entities loaded by the
+ * previous one.
+ * 
+ * @author eantonini
+ * @since 1.6
+ * @version 1.0
+ */
+@State(Scope.Thread)
+public class Session {
+
+  private EntityManager entityManager;
+  private PersonDAO dao;
+
+  /**
+   * Opens the {@link EntityManager} of the thread.
+   * 
+   * @param database
+   *          Shared {@link Database}.
+   */
+  @Setup(Level.Trial)
+  public void open(Database database) {
+    entityManager = database.createEntityManager();
+    dao = new PersonDAO(entityManager);
+  }
+
+  /**
+   * Closes the {@link EntityManager} of the thread.
+   */
+  @TearDown(Level.Trial)
+  public void close() {
+    EntityTransaction transaction = entityManager.getTransaction();
+    if (transaction.isActive()) {
+      transaction.rollback();
+    }
+    entityManager.close();
+  }
+
+  /**
+   * Starts the transaction of a call.
+   */
+  public void begin() {
+    entityManager.getTransaction().begin();
+  }
+
+  /**
+   * Commits the transaction of a call and clears the persistence context.
+   */
+  public void commit() {
+    entityManager.getTransaction().commit();
+    entityManager.clear();
+  }
+
+  /**
+   * Brings the {@link EntityManager} of the thread.
+   * 
+   * @return {@link EntityManager}.
+   */
+  public EntityManager getEntityManager() {
+    return entityManager;
+  }
+
+  /**
+   * Brings the Data Access Object of the thread.
+   * 
+   * @return {@link PersonDAO}.
+   */
+  public PersonDAO getDAO() {
+    return dao;
+  }
+
+}
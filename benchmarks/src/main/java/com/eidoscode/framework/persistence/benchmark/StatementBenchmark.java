@@ -0,0 +1,91 @@
+package com.eidoscode.framework.persistence.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.eidoscode.framework.persistence.util.QueryUtils;
+
+/**
+ * Compares the ways to run the statements of the built-in operations: the JPQL
+ * concatenated on every call, as the Data Access Object did before 1.6, the
+ * same text built once, and the named query declared by the entity and
+ * compiled when the persistence unit starts.
+ * 
+ * @author eantonini
+ * @since 1.6
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatementBenchmark {
+
+  private static final String COUNT_ALL = "SELECT COUNT(a) FROM Person a";
+
+  private Session session;
+  private String entityName;
+
+  /**
+   * Prepares the thread.
+   * 
+   * @param threadSession
+   *          {@link Session} of the thread.
+   */
+  @Setup(Level.Trial)
+  public void prepare(Session threadSession) {
+    this.session = threadSession;
+    this.entityName = QueryUtils.getEntityName(Person.class);
+  }
+
+  /**
+   * Counts with a statement concatenated on the call.
+   * 
+   * @return Amount of people.
+   */
+  @Benchmark
+  public Object concatenated() {
+    EntityManager entityManager = session.getEntityManager();
+    StringBuilder jpql = new StringBuilder("SELECT COUNT(a) FROM ").append(
+        entityName).append(" a");
+    return entityManager.createQuery(jpql.toString()).getSingleResult();
+  }
+
+  /**
+   * Counts with a statement built once.
+   * 
+   * @return Amount of people.
+   */
+  @Benchmark
+  public Object prebuilt() {
+    return session.getEntityManager().createQuery(COUNT_ALL)
+        .getSingleResult();
+  }
+
+  /**
+   * Counts with the named query of the entity.
+   * 
+   * @return Amount of people.
+   */
+  @Benchmark
+  public Object named() {
+    return session.getEntityManager().createNamedQuery("Person.countAll")
+        .getSingleResult();
+  }
+
+}
@@ -0,0 +1,141 @@
+package com.eidoscode.framework.persistence.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the writes of the Data Access Object: <code>save</code> of a
+ * single entity and of a collection, and <code>merge</code> of a detached
+ * entity. The saved people are removed after each iteration, so the table
+ * keeps its size.<br/>
+ * The throughput is measured in calls; a call of
+ * {@link #saveCollection(Batch)} saves {@link Batch#batchSize} people.
+ * 
+ * @author eantonini
+ * @since 1.6
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WriteBenchmark {
+
+  private final Random random = new Random(42);
+  private Session session;
+  private Person detached;
+  private int created;
+
+  /**
+   * Prepares the thread.
+   * 
+   * @param database
+   *          Shared {@link Database}.
+   * @param threadSession
+   *          {@link Session} of the thread.
+   */
+  @Setup(Level.Iteration)
+  public void prepare(Database database, Session threadSession) {
+    this.session = threadSession;
+    List<Long> keys = database.getKeys();
+    detached = session.getDAO().findByKey(
+        keys.get(random.nextInt(keys.size())));
+    session.getEntityManager().clear();
+  }
+
+  /**
+   * Removes the people saved on the iteration.
+   * 
+   * @param database
+   *          Shared {@link Database}.
+   */
+  @TearDown(Level.Iteration)
+  public void cleanUp(Database database) {
+    List<Long> keys = database.getKeys();
+    session.begin();
+    session.getEntityManager()
+        .createQuery("DELETE FROM Person a WHERE a.id > :lastKey")
+        .setParameter("lastKey", keys.get(keys.size() - 1)).executeUpdate();
+    session.commit();
+  }
+
+  /**
+   * Saves a single person.
+   * 
+   * @return Saved person.
+   */
+  @Benchmark
+  public Person save() {
+    session.begin();
+    Person person = session.getDAO().save(Person.create(created++), false);
+    session.commit();
+    return person;
+  }
+
+  /**
+   * Saves {@link Batch#batchSize} people in a single call.
+   * 
+   * @param batch
+   *          Size of the collection.
+   * @return Saved people.
+   */
+  @Benchmark
+  public List<Person> saveCollection(Batch batch) {
+    List<Person> people = new ArrayList<Person>(batch.batchSize);
+    for (int i = 0; i < batch.batchSize; i++) {
+      people.add(Person.create(created++));
+    }
+    session.begin();
+    List<Person> saved = session.getDAO().save(people, true);
+    session.commit();
+    return saved;
+  }
+
+  /**
+   * Merges a detached person with a changed attribute.
+   * 
+   * @return Merged person.
+   */
+  @Benchmark
+  public Person merge() {
+    detached.setName("Person " + created++);
+    session.begin();
+    detached = session.getDAO().merge(detached, false);
+    session.commit();
+    return detached;
+  }
+
+  /**
+   * Size of the collections saved by
+   * {@link WriteBenchmark#saveCollection(Batch)}.
+   */
+  @State(Scope.Benchmark)
+  public static class Batch {
+
+    /**
+     * Amount of people saved by each call.
+     */
+    @Param({ "1", "10", "100", "1000" })
+    public int batchSize;
+
+  }
+
+}
@@ -0,0 +1,45 @@
+package com.eidoscode.framework.persistence.bo;
+
+import java.io.Serializable;
+
+import com.eidoscode.framework.persistence.dao.AuditedDataAccessObject;
+import com.eidoscode.framework.persistence.dao.ChangePage;
+import com.eidoscode.framework.persistence.dao.ChangeWatermark;
+import com.eidoscode.framework.persistence.model.AuditedModel;
+
+/**
+ * Interface of the Business Object of an audited entity. Besides the main
+ * methods of a {@link BusinessObject}, it brings the changes of the entity by
+ * the date of its last change.
+ * 
+ * @author eantonini
+ * @since 1.6
+ * @version 1.0
+ * @param <Key>
+ *          Type of the Key of the Entity (Must implements the interface
+ *          {@link Serializable}).
+ * @param <Bean>
+ *          The Bean (Must implements the interface {@link AuditedModel} ).
+ * @param <DAO>
+ *          The Data Access Object Interface (Must implements the interface
+ *          {@link AuditedDataAccessObject}).
+ */
+public interface AuditedBusinessObject<Key extends Serializable, Bean extends AuditedModel<Key>, DAO extends AuditedDataAccessObject<Key, Bean>>
+    extends BusinessObject<Key, Bean, DAO> {
+
+  /**
+   * Brings the changes of an audited entity made after a watermark, sorted by
+   * the date of the last change and by the key. The watermark of the page is
+   * stored by the consumer and handed back to read the next changes.
+   * 
+   * @since 1.6
+   * @param watermark
+   *          Watermark of the previous page, or <code>null</code> to start from
+   *          the oldest change.
+   * @param maxResult
+   *          maximum number of results to retrieve.
+   * @return {@link ChangePage} with the changed entities.
+   */
+  ChangePage<Bean> findModifiedSince(ChangeWatermark watermark, int maxResult);
+
+}
@@ -2,11 +2,21 @@ package com.eidoscode.framework.persistence.bo;
 
 import java.io.Serializable;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
 
 import javax.persistence.EntityManager;
 
+import com.eidoscode.framework.persistence.dao.CountMode;
 import com.eidoscode.framework.persistence.dao.DataAccessObject;
+import com.eidoscode.framework.persistence.dao.FetchPlan;
+import com.eidoscode.framework.persistence.dao.EntityProcessor;
+import com.eidoscode.framework.persistence.dao.KeyRangeResult;
+import com.eidoscode.framework.persistence.dao.PartitionResult;
+import com.eidoscode.framework.persistence.dao.ProcessingProgress;
+import com.eidoscode.framework.persistence.dao.ReadOnlyScope;
 import com.eidoscode.framework.persistence.model.Model;
 
 /**
@@ -76,6 +86,96 @@ public interface BusinessObject<Key extends Serializable, Bean extends Model<Key
    */
   public <E extends Collection<Bean>> E save(E beans, boolean flush);
 
+  /**
+   * Writes an entity without loading it first. See
+   * {@link DataAccessObject#upsert(Model, boolean)}.
+   * 
+   * @since 1.6
+   * @param bean
+   *          desired entity.
+   * @param flush
+   *          If <code>true</code> the method {@link EntityManager#flush()} will
+   *          be called.
+   * @return entity stored.
+   */
+  Bean upsert(Bean bean, boolean flush);
+
+  /**
+   * Writes a list of entities without loading them first. See
+   * {@link DataAccessObject#upsert(Collection, boolean)}.
+   * 
+   * @since 1.6
+   * @param beans
+   *          desired entities.
+   * @param flush
+   *          If <code>true</code> the method {@link EntityManager#flush()} will
+   *          be called.
+   * @return entities stored.
+   */
+  <E extends Collection<Bean>> E upsert(E beans, boolean flush);
+
+  /**
+   * Updates all the entities that match a condition with a single statement.
+   * See {@link DataAccessObject#update(Map, String, Map, boolean)}.
+   * 
+   * @since 1.6
+   * @param assignments
+   *          New values by attribute name.
+   * @param condition
+   *          JPQL condition of the entities to be updated, using the alias
+   *          <code>a</code>.
+   * @param parameters
+   *          Values of the named parameters of the condition.
+   * @param touch
+   *          If <code>true</code> the version and the date of the last change
+   *          are updated too.
+   * @return amount of updated entities.
+   */
+  int update(Map<String, ?> assignments, String condition,
+      Map<String, ?> parameters, boolean touch);
+
+  /**
+   * Saves a collection of entities in parallel. The collection is split into
+   * partitions and each partition is saved by a worker thread with its own
+   * {@link EntityManager} and transaction.
+   * 
+   * @since 1.6
+   * @param beans
+   *          desired entities.
+   * @param partitionSize
+   *          Amount of entities of each partition.
+   * @param parallelism
+   *          Maximum amount of partitions saved at the same time.
+   * @return {@link List} with the result of each partition, so the failed ones
+   *         can be retried.
+   */
+  List<PartitionResult<Bean>> saveParallel(Collection<Bean> beans,
+      int partitionSize, int parallelism);
+
+  /**
+   * Processes all the entities of the table in parallel. The range between the
+   * lowest and the highest keys is split into partitions, and each partition
+   * is processed by a worker thread with its own {@link EntityManager}, in
+   * sorted batches with their own transactions, so the changes done by the
+   * processor on the managed entities are committed batch by batch.<br/>
+   * It needs an integral key, such as a {@link Long}.
+   * 
+   * @since 1.6
+   * @param processor
+   *          Processor of each entity. It must be thread safe.
+   * @param partitionCount
+   *          Amount of key ranges.
+   * @param parallelism
+   *          Maximum amount of ranges processed at the same time.
+   * @param progress
+   *          Progress updated as the batches are committed, or
+   *          <code>null</code>.
+   * @return {@link List} with the result of each range, so the failed ones can
+   *         be resumed.
+   */
+  List<KeyRangeResult<Key>> forEachParallel(EntityProcessor<Bean> processor,
+      int partitionCount, int parallelism, ProcessingProgress progress);
+
   /**
    * Removes a desired entity.
    * 
@@ -127,9 +227,9 @@ public interface BusinessObject<Key extends Serializable, Bean extends Model<Key
    * @param flush
    *          If <code>true</code> the method
    *          {@link #flushEntityManager(boolean)} will be called.
-   * @return entities stored.
+   * @return amount of entities removed by each chunk.
    */
-  public void removeById(Collection<Key> keys);
+  public int[] removeById(Collection<Key> keys);
 
   /**
    * Removes all entities by an ID.
@@ -140,9 +240,9 @@ public interface BusinessObject<Key extends Serializable, Bean extends Model<Key
    * @param flush
    *          If <code>true</code> the method
    *          {@link #flushEntityManager(boolean)} will be called.
-   * @return entities stored.
+   * @return amount of entities removed by each chunk.
    */
-  public void removeById(Collection<Key> keys, boolean flush);
+  public int[] removeById(Collection<Key> keys, boolean flush);
 
   /**
    * Brings all the entities.
@@ -152,6 +252,45 @@ public interface BusinessObject<Key extends Serializable, Bean extends Model<Key
    */
   List<Bean> findAll();
 
+  /**
+   * Brings all the entities, optionally on the read-only mode.
+   * 
+   * @since 1.6
+   * @param readOnly
+   *          If <code>true</code> the entities are brought as in a
+   *          {@link ReadOnlyScope}, so they are not tracked for changes.
+   * @return {@link List} with the entities.
+   */
+  List<Bean> findAll(boolean readOnly);
+
+  /**
+   * Brings all the entities, fetching the associations of a plan.
+   * 
+   * @since 1.6
+   * @param fetchPlan
+   *          Associations loaded together with the entities.
+   * @return {@link List} with the entities.
+   */
+  List<Bean> findAll(FetchPlan fetchPlan);
+
+  /**
+   * Brings an {@link Iterator} over all the entities, fetched in chunks.
+   * 
+   * @since 1.6
+   * @return {@link Iterator} over the entities.
+   */
+  Iterator<Bean> iterateAll();
+
+  /**
+   * Brings an {@link Iterator} over all the entities, fetched in chunks.
+   * 
+   * @since 1.6
+   * @param fetchSize
+   *          Amount of entities fetched on each round trip.
+   * @return {@link Iterator} over the entities.
+   */
+  Iterator<Bean> iterateAll(int fetchSize);
+
   /**
    * Count all the entities.
    * 
@@ -160,6 +299,17 @@ public interface BusinessObject<Key extends Serializable, Bean extends Model<Key
    */
   Long countAll();
 
+  /**
+   * Count all the entities.
+   * 
+   * @since 1.6
+   * @param mode
+   *          Defines if the amount is counted on the database, brought from the
+   *          cache or estimated from the statistics of the database.
+   * @return the amount of entities.
+   */
+  Long countAll(CountMode mode);
+
   /**
    * Brings an entity by its key.
    * 
@@ -170,4 +320,59 @@ public interface BusinessObject<Key extends Serializable, Bean extends Model<Key
    */
   Bean findByKey(Key id);
 
+  /**
+   * Brings an entity by its key, optionally on the read-only mode.
+   * 
+   * @since 1.6
+   * @param id
+   *          Entity key.
+   * @param readOnly
+   *          If <code>true</code> the entity is brought as in a
+   *          {@link ReadOnlyScope}, so it is not tracked for changes.
+   * @return Entity.
+   */
+  Bean findByKey(Key id, boolean readOnly);
+
+  /**
+   * Brings an entity by its key, fetching the associations of a plan.
+   * 
+   * @since 1.6
+   * @param id
+   *          Entity key.
+   * @param fetchPlan
+   *          Associations loaded together with the entity.
+   * @return Entity.
+   */
+  Bean findByKey(Key id, FetchPlan fetchPlan);
+
+  /**
+   * Brings an entity by its key asynchronously. The entity is found with its
+   * own {@link EntityManager}, so it is brought detached.
+   * 
+   * @since 1.6
+   * @param id
+   *          Entity key.
+   * @return {@link Future} of the entity.
+   */
+  Future<Bean> findByKeyAsync(Key id);
+
+  /**
+   * Count all the entities asynchronously.
+   * 
+   * @since 1.6
+   * @return {@link Future} of the amount of entities.
+   */
+  Future<Long> countAllAsync();
+
+  /**
+   * Brings the entities of a collection of keys.
+   * 
+   * @since 1.6
+   * @param ids
+   *          Entity keys.
+   * @return {@link Map} with the found entities by their key, on the same order
+   *         of the given keys. The keys that were not found are not present.
+   */
+  Map<Key, Bean> findByKeys(Collection<Key> ids);
+
 }
\ No newline at end of file
@@ -0,0 +1,59 @@
+package com.eidoscode.framework.persistence.bo.impl;
+
+import java.io.Serializable;
+
+import com.eidoscode.framework.persistence.bo.AuditedBusinessObject;
+import com.eidoscode.framework.persistence.dao.AuditedDataAccessObject;
+import com.eidoscode.framework.persistence.dao.ChangePage;
+import com.eidoscode.framework.persistence.dao.ChangeWatermark;
+import com.eidoscode.framework.persistence.metrics.Operation;
+import com.eidoscode.framework.persistence.metrics.OperationTimer;
+import com.eidoscode.framework.persistence.model.AuditedModel;
+
+/**
+ * Business Object class of an audited entity. Besides the generic methods to
+ * find, save, remove a bean, it brings the changes of the entity by the date
+ * of its last change.
+ * 
+ * @author eantonini
+ * @since 1.6
+ * @version 1.0
+ * @param <Key>
+ *          Type of the Key of the Entity (Must implements the interface
+ *          {@link Serializable}).
+ * @param <Bean>
+ *          The Bean (Must implements the interface {@link AuditedModel} ).
+ * @param <DAO>
+ *          The Data Access Object Interface (Must implements the interface
+ *          {@link AuditedDataAccessObject}).
+ */
+public abstract class AuditedBusinessObjectImpl<Key extends Serializable, Bean extends AuditedModel<Key>, DAO extends AuditedDataAccessObject<Key, Bean>>
+    extends BusinessObjectImpl<Key, Bean, DAO> implements
+    AuditedBusinessObject<Key, Bean, DAO> {
+
+  /**
+   * Brings the changes of an audited entity made after a watermark. See
+   * {@link AuditedDataAccessObject#findModifiedSince(ChangeWatermark, int)}.
+   * 
+   * @since 1.6
+   * @param watermark
+   *          Watermark of the previous page, or <code>null</code> to start from
+   *          the oldest change.
+   * @param maxResult
+   *          maximum number of results to retrieve.
+   * @return {@link ChangePage} with the changed entities.
+   */
+  @Override
+  public ChangePage<Bean> findModifiedSince(ChangeWatermark watermark,
+      int maxResult) {
+    OperationTimer timer = startTimer(Operation.FIND_MODIFIED_SINCE,
+        watermark, maxResult);
+    try {
+      ChangePage<Bean> page = getDAO().findModifiedSince(watermark, maxResult);
+      return timer.success(page, page.getResults().size());
+    } finally {
+      timer.stop();
+    }
+  }
+
+}
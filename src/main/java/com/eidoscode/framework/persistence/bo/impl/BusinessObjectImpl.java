@@ -2,21 +2,48 @@ package com.eidoscode.framework.persistence.bo.impl;
 
 import java.io.Serializable;
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
 
+import javax.annotation.PreDestroy;
 import javax.ejb.TransactionAttribute;
 import javax.ejb.TransactionAttributeType;
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
 import javax.persistence.EntityManager;
 
 import org.apache.log4j.Logger;
 
 import com.eidoscode.framework.persistence.bo.BusinessObject;
+import com.eidoscode.framework.persistence.dao.CountMode;
 import com.eidoscode.framework.persistence.dao.DataAccessObject;
+import com.eidoscode.framework.persistence.dao.FetchPlan;
+import com.eidoscode.framework.persistence.dao.EntityProcessor;
+import com.eidoscode.framework.persistence.dao.KeyRangeResult;
+import com.eidoscode.framework.persistence.dao.PartitionResult;
+import com.eidoscode.framework.persistence.dao.ProcessingProgress;
+import com.eidoscode.framework.persistence.dao.ReadOnlyScope;
+import com.eidoscode.framework.persistence.metrics.Operation;
+import com.eidoscode.framework.persistence.metrics.OperationTimer;
+import com.eidoscode.framework.persistence.metrics.PersistenceMetrics;
+import com.eidoscode.framework.persistence.metrics.SlowOperationLog;
 import com.eidoscode.framework.persistence.model.Model;
+import com.eidoscode.framework.persistence.util.Loggers;
+import com.eidoscode.framework.persistence.util.QueryUtils;
+import com.eidoscode.generics.utils.GenericsUtils;
 
 /**
  * Business Object class that defines the generic method to find, save, remove a
- * bean.
+ * bean.<br/>
+ * The methods of a subclass may be made read-only by default with the
+ * {@link com.eidoscode.framework.persistence.dao.ReadOnly} annotation, once the
+ * {@link ReadOnlyInterceptor} is bound to it.
  * 
  * @author eantonini
  * @version 1.3
@@ -34,7 +61,40 @@ import com.eidoscode.framework.persistence.model.Model;
 public abstract class BusinessObjectImpl<Key extends Serializable, Bean extends Model<Key>, DAO extends DataAccessObject<Key, Bean>>
     implements BusinessObject<Key, Bean, DAO> {
 
+  /**
+   * Default amount of buffered entities that starts a flush of the
+   * {@link WriteBehindBuffer}. This will be used on the method
+   * {@link #getWriteBehindMaximumSize()}.
+   */
+  public static final int DEFAULT_WRITE_BEHIND_MAXIMUM_SIZE = 1000;
+
+  /**
+   * Default time, in milliseconds, between two flushes of the
+   * {@link WriteBehindBuffer}. This will be used on the method
+   * {@link #getWriteBehindFlushInterval()}.
+   */
+  public static final long DEFAULT_WRITE_BEHIND_FLUSH_INTERVAL = 1000L;
+
+  /**
+   * Default amount of entities written by each transaction of a flush of the
+   * {@link WriteBehindBuffer}. This will be used on the method
+   * {@link #getWriteBehindBatchSize()}.
+   */
+  public static final int DEFAULT_WRITE_BEHIND_BATCH_SIZE = 100;
+
+  /**
+   * JNDI name of the scheduler supplied by the container to flush the
+   * {@link WriteBehindBuffer}. This will be used on the method
+   * {@link #getWriteBehindScheduler()}.
+   */
+  public static final String DEFAULT_WRITE_BEHIND_SCHEDULER_NAME = "java:comp/DefaultManagedScheduledExecutorService";
+
+  private static final ConcurrentMap<Class<?>, Class<?>> ENTITY_CLASSES = new ConcurrentHashMap<Class<?>, Class<?>>();
+
   private final Logger logger;
+  private volatile PersistenceMetrics metrics;
+  private volatile SlowOperationLog slowOperationLog;
+  private volatile WriteBehindBuffer<Key, Bean> writeBehindBuffer;
 
   /**
    * Main constructor.
@@ -42,13 +102,152 @@ public abstract class BusinessObjectImpl<Key extends Serializable, Bean extends
    * @since 1.0
    */
   public BusinessObjectImpl() {
-    logger = Logger.getLogger(getClass());
+    logger = Loggers.getLogger(getClass());
   }
 
   public Logger getLogger() {
     return logger;
   }
 
+  /**
+   * Brings the name of the entity of the Business Object, used to label its
+   * measures. The main implementation collects it, once by class, from the
+   * generic declaration of the class and, if it can't, uses the name of the
+   * class.
+   * 
+   * @since 1.6
+   * @return Entity name.
+   */
+  protected String getEntityName() {
+    return QueryUtils.getEntityName(getMeasuredClass());
+  }
+
+  /**
+   * Brings the class that identifies the measures of the Business Object: the
+   * class of the entity, collected once by class from the generic declaration
+   * of the class, or the class itself if it can't.
+   * 
+   * @since 1.6
+   * @return Measured class.
+   */
+  private Class<?> getMeasuredClass() {
+    Class<?> measuredClass = ENTITY_CLASSES.get(getClass());
+    if (measuredClass == null) {
+      measuredClass = GenericsUtils.getSuperClassGenericType(getClass(),
+          BusinessObjectImpl.class, 1);
+      if (measuredClass == null) {
+        measuredClass = getClass();
+      }
+      ENTITY_CLASSES.putIfAbsent(getClass(), measuredClass);
+    }
+    return measuredClass;
+  }
+
+  /**
+   * Brings the measures of the operations of the entity, shared by all its
+   * Business Objects and published over JMX as
+   * <code>com.eidoscode.framework.persistence:type=BusinessObject,name=&lt;entity class&gt;</code>
+   * . The time spent by the hooks, such as {@link #beforeSave(Model)}, is
+   * measured too. They outlive the instances, since they are shared, so the
+   * application must call {@link PersistenceMetrics#unregisterAll()} when it is
+   * undeployed.
+   * 
+   * @since 1.6
+   * @return {@link PersistenceMetrics} of the entity.
+   */
+  public PersistenceMetrics getMetrics() {
+    PersistenceMetrics entityMetrics = this.metrics;
+    if (entityMetrics == null) {
+      entityMetrics = PersistenceMetrics.forEntity(
+          PersistenceMetrics.BUSINESS_OBJECT, getEntityName(),
+          getMeasuredClass());
+      this.metrics = entityMetrics;
+    }
+    return entityMetrics;
+  }
+
+  /**
+   * Return the time, in milliseconds, above which a call is written on the
+   * {@link SlowOperationLog} of the entity, with its parameters. If it is
+   * {@link SlowOperationLog#DISABLED} the slow calls are not logged.
+   * 
+   * @since 1.6
+   * @return Slow operation threshold.
+   */
+  protected long getSlowOperationThreshold() {
+    return SlowOperationLog.DISABLED;
+  }
+
+  /**
+   * Return the maximum amount of slow calls logged on each interval given by
+   * {@link #getSlowOperationLogInterval()}. The others are only counted.
+   * 
+   * @since 1.6
+   * @return Maximum amount of entries by interval.
+   */
+  protected int getSlowOperationLogLimit() {
+    return SlowOperationLog.DEFAULT_MAXIMUM_ENTRIES;
+  }
+
+  /**
+   * Return the interval, in milliseconds, of the rate limit of the slow
+   * operation log.
+   * 
+   * @since 1.6
+   * @return Rate limit interval.
+   */
+  protected long getSlowOperationLogInterval() {
+    return SlowOperationLog.DEFAULT_INTERVAL;
+  }
+
+  /**
+   * Return how often a slow call is logged with the stack of its caller: one of
+   * each returned amount of entries. If it is <code>0</code> the stack is never
+   * logged.
+   * 
+   * @since 1.6
+   * @return Stack sampling.
+   */
+  protected int getSlowOperationStackSampling() {
+    return SlowOperationLog.DEFAULT_STACK_SAMPLING;
+  }
+
+  /**
+   * Brings the log of the slow calls of the entity, shared by all its
+   * Business Objects.
+   * 
+   * @since 1.6
+   * @return {@link SlowOperationLog} of the entity or <code>null</code> if it
+   *         is disabled.
+   */
+  protected SlowOperationLog getSlowOperationLog() {
+    SlowOperationLog log = this.slowOperationLog;
+    if (log == null) {
+      log = SlowOperationLog.forEntity(PersistenceMetrics.BUSINESS_OBJECT,
+          getEntityName(), getMeasuredClass(), getSlowOperationThreshold(),
+          getSlowOperationLogLimit(), getSlowOperationLogInterval(),
+          getSlowOperationStackSampling());
+      this.slowOperationLog = log;
+    }
+    return log;
+  }
+
+  /**
+   * Starts to measure a call of an operation. The timer must be stopped on a
+   * finally block.
+   * 
+   * @since 1.6
+   * @param operation
+   *          Called {@link Operation}.
+   * @param parameters
+   *          Parameters of the call, logged if it is slow.
+   * @return {@link OperationTimer} of the call.
+   */
+  protected OperationTimer startTimer(Operation operation,
+      Object... parameters) {
+    return getMetrics().start(operation, getSlowOperationLog(), parameters);
+  }
+
   /**
    * The purpose of this method is to bring the DAO instance.
    * 
@@ -57,6 +256,164 @@ public abstract class BusinessObjectImpl<Key extends Serializable, Bean extends
    */
   protected abstract DAO getDAO();
 
+  /**
+   * Informs if the saves of the existing entities are written behind. If it is
+   * <code>true</code>, {@link #save(Model, boolean)} without flush only buffers
+   * the entity on the {@link WriteBehindBuffer} of the class, and the repeated
+   * saves of a key are coalesced until the buffer is flushed, on its own
+   * transactions. It fits the entities whose last value is the only one that
+   * matters, like counters, since the buffered writes are lost if the process
+   * stops abruptly.
+   * 
+   * @since 1.6
+   * @return <code>true</code> if the saves are written behind.
+   */
+  protected boolean isWriteBehind() {
+    return false;
+  }
+
+  /**
+   * Return the amount of buffered entities that starts a flush of the
+   * {@link WriteBehindBuffer}.
+   * 
+   * @since 1.6
+   * @return Maximum size of the buffer.
+   */
+  protected int getWriteBehindMaximumSize() {
+    return DEFAULT_WRITE_BEHIND_MAXIMUM_SIZE;
+  }
+
+  /**
+   * Return the time, in milliseconds, between two flushes of the
+   * {@link WriteBehindBuffer}.
+   * 
+   * @since 1.6
+   * @return Flush interval.
+   */
+  protected long getWriteBehindFlushInterval() {
+    return DEFAULT_WRITE_BEHIND_FLUSH_INTERVAL;
+  }
+
+  /**
+   * Return the amount of entities written by each transaction of a flush of
+   * the {@link WriteBehindBuffer}.
+   * 
+   * @since 1.6
+   * @return Batch size.
+   */
+  protected int getWriteBehindBatchSize() {
+    return DEFAULT_WRITE_BEHIND_BATCH_SIZE;
+  }
+
+  /**
+   * Brings the scheduler, supplied by the container, that flushes the
+   * {@link WriteBehindBuffer} on an interval. By default it is the managed
+   * scheduled executor of the container, found by
+   * {@link #DEFAULT_WRITE_BEHIND_SCHEDULER_NAME}. If there is none, the buffer
+   * is flushed only when it is full, by the caller that fills it, and when the
+   * instances are destroyed. It is called once by class, when the buffer is
+   * created.
+   * 
+   * @since 1.6
+   * @return Scheduler of the flushes or <code>null</code> if there is none.
+   */
+  protected ScheduledExecutorService getWriteBehindScheduler() {
+    try {
+      return (ScheduledExecutorService) new InitialContext()
+          .lookup(DEFAULT_WRITE_BEHIND_SCHEDULER_NAME);
+    } catch (NamingException e) {
+      logger.debug("There is no scheduler to flush the saves of "
+          + getEntityName() + " written behind.", e);
+      return null;
+    }
+  }
+
+  /**
+   * Brings the buffer of the saves written behind, shared by all the instances
+   * of the class. It is flushed by the Data Access Object brought by
+   * {@link #getDAO()} on the instance that creates it, and released by
+   * {@link #releaseWriteBehind()}.
+   * 
+   * @since 1.6
+   * @return {@link WriteBehindBuffer} of the class or <code>null</code> if the
+   *         saves are not written behind.
+   */
+  protected WriteBehindBuffer<Key, Bean> getWriteBehindBuffer() {
+    if (!isWriteBehind()) {
+      return null;
+    }
+    WriteBehindBuffer<Key, Bean> buffer = this.writeBehindBuffer;
+    if (buffer == null) {
+      synchronized (this) {
+        buffer = this.writeBehindBuffer;
+        if (buffer == null) {
+          buffer = WriteBehindBuffer.acquire(getClass(), getEntityName(),
+              getDAO(), getWriteBehindScheduler(),
+              getWriteBehindMaximumSize(), getWriteBehindFlushInterval(),
+              getWriteBehindBatchSize());
+          this.writeBehindBuffer = buffer;
+        }
+      }
+    }
+    return buffer;
+  }
+
+  /**
+   * Writes the saves buffered by the {@link WriteBehindBuffer} of the class,
+   * if the saves are written behind.
+   * 
+   * @since 1.6
+   */
+  public void flushWriteBehind() {
+    WriteBehindBuffer<Key, Bean> buffer = getWriteBehindBuffer();
+    if (buffer != null) {
+      buffer.flush();
+    }
+  }
+
+  /**
+   * Writes the saves buffered by the {@link WriteBehindBuffer} of the class
+   * and releases it, when the instance is destroyed. The buffer stops being
+   * flushed on an interval and is unpublished when it is released by the last
+   * instance of the class.
+   * 
+   * @since 1.6
+   */
+  @PreDestroy
+  public void releaseWriteBehind() {
+    WriteBehindBuffer<Key, Bean> buffer;
+    synchronized (this) {
+      buffer = this.writeBehindBuffer;
+      this.writeBehindBuffer = null;
+    }
+    if (buffer != null) {
+      buffer.release();
+    }
+  }
+
+  private Bean findWrittenBehind(Key id) {
+    WriteBehindBuffer<Key, Bean> buffer = getWriteBehindBuffer();
+    return buffer == null ? null : buffer.get(id);
+  }
+
+  private void discardWrittenBehind(Key id) {
+    WriteBehindBuffer<Key, Bean> buffer = getWriteBehindBuffer();
+    if (buffer != null && id != null) {
+      buffer.discard(id);
+    }
+  }
+
+  private void discardWrittenBehind(Collection<Bean> beans) {
+    WriteBehindBuffer<Key, Bean> buffer = getWriteBehindBuffer();
+    if (buffer != null && beans != null) {
+      for (Bean bean : beans) {
+        if (bean.getId() != null) {
+          buffer.discard(bean.getId());
+        }
+      }
+    }
+  }
+
   /**
    * Brings all the entities.
    * 
@@ -65,7 +422,76 @@ public abstract class BusinessObjectImpl<Key extends Serializable, Bean extends
    */
   @Override
   public List<Bean> findAll() {
-    return getDAO().findAll();
+    OperationTimer timer = startTimer(Operation.FIND_ALL);
+    try {
+      List<Bean> beans = getDAO().findAll();
+      return timer.success(beans, beans.size());
+    } finally {
+      timer.stop();
+    }
+  }
+
+  /**
+   * Brings all the entities, optionally on the read-only mode.
+   * 
+   * @since 1.6
+   * @param readOnly
+   *          If <code>true</code> the entities are brought as in a
+   *          {@link ReadOnlyScope}, so they are not tracked for changes.
+   * @return {@link List} with the entities.
+   */
+  @Override
+  public List<Bean> findAll(boolean readOnly) {
+    OperationTimer timer = startTimer(Operation.FIND_ALL, readOnly);
+    try {
+      List<Bean> beans = getDAO().findAll(readOnly);
+      return timer.success(beans, beans.size());
+    } finally {
+      timer.stop();
+    }
+  }
+
+  /**
+   * Brings all the entities, fetching the associations of a plan.
+   * 
+   * @since 1.6
+   * @param fetchPlan
+   *          Associations loaded together with the entities.
+   * @return {@link List} with the entities.
+   */
+  @Override
+  public List<Bean> findAll(FetchPlan fetchPlan) {
+    OperationTimer timer = startTimer(Operation.FIND_ALL, fetchPlan);
+    try {
+      List<Bean> beans = getDAO().findAll(fetchPlan);
+      return timer.success(beans, beans.size());
+    } finally {
+      timer.stop();
+    }
+  }
+
+  /**
+   * Brings an {@link Iterator} over all the entities, fetched in chunks.
+   * 
+   * @since 1.6
+   * @return {@link Iterator} over the entities.
+   */
+  @Override
+  public Iterator<Bean> iterateAll() {
+    return getDAO().iterateAll();
+  }
+
+  /**
+   * Brings an {@link Iterator} over all the entities, fetched in chunks.
+   * 
+   * @since 1.6
+   * @param fetchSize
+   *          Amount of entities fetched on each round trip.
+   * @return {@link Iterator} over the entities.
+   */
+  @Override
+  public Iterator<Bean> iterateAll(int fetchSize) {
+    return getDAO().iterateAll(fetchSize);
   }
 
   /**
@@ -76,7 +502,31 @@ public abstract class BusinessObjectImpl<Key extends Serializable, Bean extends
    */
   @Override
   public Long countAll() {
-    return getDAO().countAll();
+    OperationTimer timer = startTimer(Operation.COUNT_ALL);
+    try {
+      return timer.success(getDAO().countAll(), 1);
+    } finally {
+      timer.stop();
+    }
+  }
+
+  /**
+   * Count all the entities.
+   * 
+   * @since 1.6
+   * @param mode
+   *          Defines if the amount is counted on the database, brought from the
+   *          cache or estimated from the statistics of the database.
+   * @return the amount of entities.
+   */
+  @Override
+  public Long countAll(CountMode mode) {
+    OperationTimer timer = startTimer(Operation.COUNT_ALL, mode);
+    try {
+      return timer.success(getDAO().countAll(mode), 1);
+    } finally {
+      timer.stop();
+    }
   }
 
   /**
@@ -89,11 +539,122 @@ public abstract class BusinessObjectImpl<Key extends Serializable, Bean extends
    */
   @Override
   public Bean findByKey(Key id) {
-    Bean retValue = null;
-    if (id != null) {
-      retValue = getDAO().findByKey(id);
+    OperationTimer timer = startTimer(Operation.FIND_BY_KEY, id);
+    try {
+      Bean retValue = null;
+      if (id != null) {
+        retValue = findWrittenBehind(id);
+      }
+      if (retValue == null && id != null) {
+        retValue = getDAO().findByKey(id);
+      }
+      return timer.success(retValue, retValue == null ? 0 : 1);
+    } finally {
+      timer.stop();
+    }
+  }
+
+  /**
+   * Brings an entity by its key, optionally on the read-only mode.
+   * 
+   * @since 1.6
+   * @param id
+   *          Entity key.
+   * @param readOnly
+   *          If <code>true</code> the entity is brought as in a
+   *          {@link ReadOnlyScope}, so it is not tracked for changes.
+   * @return Entity.
+   */
+  @Override
+  public Bean findByKey(Key id, boolean readOnly) {
+    OperationTimer timer = startTimer(Operation.FIND_BY_KEY, id, readOnly);
+    try {
+      Bean retValue = null;
+      if (id != null) {
+        retValue = findWrittenBehind(id);
+      }
+      if (retValue == null && id != null) {
+        retValue = getDAO().findByKey(id, readOnly);
+      }
+      return timer.success(retValue, retValue == null ? 0 : 1);
+    } finally {
+      timer.stop();
+    }
+  }
+
+  /**
+   * Brings an entity by its key, fetching the associations of a plan.
+   * 
+   * @since 1.6
+   * @param id
+   *          Entity key.
+   * @param fetchPlan
+   *          Associations loaded together with the entity.
+   * @return Entity.
+   */
+  @Override
+  public Bean findByKey(Key id, FetchPlan fetchPlan) {
+    OperationTimer timer = startTimer(Operation.FIND_BY_KEY, id, fetchPlan);
+    try {
+      Bean retValue = null;
+      if (id != null) {
+        retValue = findWrittenBehind(id);
+      }
+      if (retValue == null && id != null) {
+        retValue = getDAO().findByKey(id, fetchPlan);
+      }
+      return timer.success(retValue, retValue == null ? 0 : 1);
+    } finally {
+      timer.stop();
+    }
+  }
+
+  /**
+   * Brings an entity by its key asynchronously. The entity is found with its
+   * own {@link EntityManager}, so it is brought detached.
+   * 
+   * @since 1.6
+   * @param id
+   *          Entity key.
+   * @return {@link Future} of the entity.
+   */
+  @Override
+  public Future<Bean> findByKeyAsync(Key id) {
+    return getDAO().findByKeyAsync(id);
+  }
+
+  /**
+   * Count all the entities asynchronously.
+   * 
+   * @since 1.6
+   * @return {@link Future} of the amount of entities.
+   */
+  @Override
+  public Future<Long> countAllAsync() {
+    return getDAO().countAllAsync();
+  }
+
+  /**
+   * Brings the entities of a collection of keys.
+   * 
+   * @since 1.6
+   * @param ids
+   *          Entity keys.
+   * @return {@link Map} with the found entities by their key, on the same order
+   *         of the given keys. The keys that were not found are not present.
+   */
+  @Override
+  public Map<Key, Bean> findByKeys(Collection<Key> ids) {
+    OperationTimer timer = startTimer(Operation.FIND_BY_KEYS, ids);
+    try {
+      if (ids == null || ids.isEmpty()) {
+        return timer.success(Collections.<Key, Bean> emptyMap(), 0);
+      }
+      Map<Key, Bean> found = getDAO().findByKeys(ids);
+      return timer.success(found, found.size());
+    } finally {
+      timer.stop();
     }
-    return retValue;
   }
 
   /**
@@ -171,13 +732,24 @@ public abstract class BusinessObjectImpl<Key extends Serializable, Bean extends
   @Override
   @TransactionAttribute(TransactionAttributeType.REQUIRED)
   public Bean save(Bean bean, boolean flush) {
-    if (bean == null) {
-      throw new NullPointerException("The bean parameter is mandatory.");
+    OperationTimer timer = startTimer(Operation.SAVE, bean);
+    try {
+      if (bean == null) {
+        throw new NullPointerException("The bean parameter is mandatory.");
+      }
+      beforeSave(bean);
+      WriteBehindBuffer<Key, Bean> buffer = getWriteBehindBuffer();
+      if (buffer != null && bean.getId() != null && !flush) {
+        buffer.put(bean);
+      } else {
+        discardWrittenBehind(bean.getId());
+        bean = getDAO().save(bean, flush);
+      }
+      afterSave(bean);
+      return timer.success(bean, 1);
+    } finally {
+      timer.stop();
     }
-    beforeSave(bean);
-    bean = getDAO().save(bean, flush);
-    afterSave(bean);
-    return bean;
   }
 
   /**
@@ -212,7 +784,182 @@ public abstract class BusinessObjectImpl<Key extends Serializable, Bean extends
   @Override
   @TransactionAttribute(TransactionAttributeType.REQUIRED)
   public <E extends Collection<Bean>> E save(E beans, boolean flush) {
-    return getDAO().save(beans, flush);
+    OperationTimer timer = startTimer(Operation.SAVE, beans);
+    try {
+      discardWrittenBehind(beans);
+      E saved = getDAO().save(beans, flush);
+      return timer.success(saved, saved == null ? 0 : saved.size());
+    } finally {
+      timer.stop();
+    }
+  }
+
+  /**
+   * Writes an entity without loading it first. See
+   * {@link DataAccessObject#upsert(Model, boolean)}. The hooks
+   * {@link #beforeSave(Model)} and {@link #afterSave(Model)} are called as on
+   * {@link #save(Model, boolean)}.
+   * 
+   * @since 1.6
+   * @param bean
+   *          desired entity.
+   * @param flush
+   *          If <code>true</code> the method {@link EntityManager#flush()} will
+   *          be called.
+   * @return entity stored.
+   */
+  @Override
+  @TransactionAttribute(TransactionAttributeType.REQUIRED)
+  public Bean upsert(Bean bean, boolean flush) {
+    OperationTimer timer = startTimer(Operation.UPSERT, bean);
+    try {
+      if (bean == null) {
+        throw new NullPointerException("The bean parameter is mandatory.");
+      }
+      beforeSave(bean);
+      discardWrittenBehind(bean.getId());
+      bean = getDAO().upsert(bean, flush);
+      afterSave(bean);
+      return timer.success(bean, 1);
+    } finally {
+      timer.stop();
+    }
+  }
+
+  /**
+   * Writes a list of entities without loading them first. See
+   * {@link DataAccessObject#upsert(Collection, boolean)}.
+   * 
+   * @since 1.6
+   * @param beans
+   *          desired entities.
+   * @param flush
+   *          If <code>true</code> the method {@link EntityManager#flush()} will
+   *          be called.
+   * @return entities stored.
+   */
+  @Override
+  @TransactionAttribute(TransactionAttributeType.REQUIRED)
+  public <E extends Collection<Bean>> E upsert(E beans, boolean flush) {
+    OperationTimer timer = startTimer(Operation.UPSERT, beans);
+    try {
+      if (beans == null) {
+        throw new NullPointerException("The bean parameter is mandatory.");
+      }
+      discardWrittenBehind(beans);
+      return timer.success(getDAO().upsert(beans, flush), beans.size());
+    } finally {
+      timer.stop();
+    }
+  }
+
+  /**
+   * Updates all the entities that match a condition with a single statement.
+   * See {@link DataAccessObject#update(Map, String, Map, boolean)}. The saves
+   * written behind are flushed first, since the updated keys are unknown and a
+   * later flush would overwrite the update.
+   * 
+   * @since 1.6
+   * @param assignments
+   *          New values by attribute name.
+   * @param condition
+   *          JPQL condition of the entities to be updated, using the alias
+   *          <code>a</code>.
+   * @param parameters
+   *          Values of the named parameters of the condition.
+   * @param touch
+   *          If <code>true</code> the version and the date of the last change
+   *          are updated too.
+   * @return amount of updated entities.
+   */
+  @Override
+  @TransactionAttribute(TransactionAttributeType.REQUIRED)
+  public int update(Map<String, ?> assignments, String condition,
+      Map<String, ?> parameters, boolean touch) {
+    OperationTimer timer = startTimer(Operation.UPDATE, assignments,
+        condition, parameters);
+    try {
+      flushWriteBehind();
+      int updated = getDAO().update(assignments, condition, parameters, touch);
+      return timer.success(updated, updated);
+    } finally {
+      timer.stop();
+    }
+  }
+
+  /**
+   * Saves a collection of entities in parallel. The collection is split into
+   * partitions and each partition is saved by a worker thread with its own
+   * {@link EntityManager} and transaction.
+   * 
+   * @since 1.6
+   * @param beans
+   *          desired entities.
+   * @param partitionSize
+   *          Amount of entities of each partition.
+   * @param parallelism
+   *          Maximum amount of partitions saved at the same time.
+   * @return {@link List} with the result of each partition, so the failed ones
+   *         can be retried.
+   */
+  @Override
+  public List<PartitionResult<Bean>> saveParallel(Collection<Bean> beans,
+      int partitionSize, int parallelism) {
+    if (beans == null) {
+      throw new NullPointerException("The bean parameter is mandatory.");
+    }
+    OperationTimer timer = startTimer(Operation.SAVE_PARALLEL, beans,
+        partitionSize, parallelism);
+    try {
+      discardWrittenBehind(beans);
+      List<PartitionResult<Bean>> results = getDAO().saveParallel(beans,
+          partitionSize, parallelism);
+      long rows = 0;
+      for (PartitionResult<Bean> result : results) {
+        rows += result.getRowCount();
+      }
+      return timer.success(results, rows);
+    } finally {
+      timer.stop();
+    }
+  }
+
+  /**
+   * Processes all the entities of the table in parallel, replacing a
+   * {@link #findAll()} followed by a loop on a single thread. See
+   * {@link DataAccessObject#forEachParallel(EntityProcessor, int, int, ProcessingProgress)}
+   * .
+   * 
+   * @since 1.6
+   * @param processor
+   *          Processor of each entity. It must be thread safe.
+   * @param partitionCount
+   *          Amount of key ranges.
+   * @param parallelism
+   *          Maximum amount of ranges processed at the same time.
+   * @param progress
+   *          Progress updated as the batches are committed, or
+   *          <code>null</code>.
+   * @return {@link List} with the result of each range, so the failed ones can
+   *         be resumed.
+   */
+  @Override
+  public List<KeyRangeResult<Key>> forEachParallel(
+      EntityProcessor<Bean> processor, int partitionCount, int parallelism,
+      ProcessingProgress progress) {
+    OperationTimer timer = startTimer(Operation.FOR_EACH_PARALLEL,
+        partitionCount, parallelism);
+    try {
+      List<KeyRangeResult<Key>> results = getDAO().forEachParallel(processor,
+          partitionCount, parallelism, progress);
+      long processed = 0;
+      for (KeyRangeResult<Key> result : results) {
+        processed += result.getProcessed();
+      }
+      return timer.success(results, processed);
+    } finally {
+      timer.stop();
+    }
   }
 
   /**
@@ -242,13 +989,19 @@ public abstract class BusinessObjectImpl<Key extends Serializable, Bean extends
 
   @TransactionAttribute(TransactionAttributeType.REQUIRED)
   public Bean merge(Bean bean, boolean flush) {
-    if (bean == null) {
-      throw new NullPointerException("The bean parameter is mandatory.");
+    OperationTimer timer = startTimer(Operation.MERGE, bean);
+    try {
+      if (bean == null) {
+        throw new NullPointerException("The bean parameter is mandatory.");
+      }
+      beforeSave(bean);
+      discardWrittenBehind(bean.getId());
+      bean = getDAO().merge(bean, flush);
+      afterSave(bean);
+      return timer.success(bean, 1);
+    } finally {
+      timer.stop();
     }
-    beforeSave(bean);
-    bean = getDAO().merge(bean, flush);
-    afterSave(bean);
-    return bean;
   }
 
   /**
@@ -280,7 +1033,14 @@ public abstract class BusinessObjectImpl<Key extends Serializable, Bean extends
    */
   @TransactionAttribute(TransactionAttributeType.REQUIRED)
   public <E extends Collection<Bean>> E merge(E beans, boolean flush) {
-    return getDAO().merge(beans, flush);
+    OperationTimer timer = startTimer(Operation.MERGE, beans);
+    try {
+      discardWrittenBehind(beans);
+      E merged = getDAO().merge(beans, flush);
+      return timer.success(merged, merged == null ? 0 : merged.size());
+    } finally {
+      timer.stop();
+    }
   }
 
   /**
@@ -308,12 +1068,19 @@ public abstract class BusinessObjectImpl<Key extends Serializable, Bean extends
   @Override
   @TransactionAttribute(TransactionAttributeType.REQUIRED)
   public void remove(Bean bean, boolean flush) {
-    if (bean == null) {
-      throw new NullPointerException("The bean parameter is mandatory.");
+    OperationTimer timer = startTimer(Operation.REMOVE, bean);
+    try {
+      if (bean == null) {
+        throw new NullPointerException("The bean parameter is mandatory.");
+      }
+      beforeRemove(bean);
+      discardWrittenBehind(bean.getId());
+      getDAO().remove(bean, flush);
+      afterRemove(bean);
+      timer.success(1);
+    } finally {
+      timer.stop();
     }
-    beforeRemove(bean);
-    getDAO().remove(bean, flush);
-    afterRemove(bean);
   }
 
   /**
@@ -329,7 +1096,10 @@ public abstract class BusinessObjectImpl<Key extends Serializable, Bean extends
   }
 
   /**
-   * Removes a desired entity by an id.
+   * Removes a desired entity by an id.<br/>
+   * The entity is loaded once, to know if it exists and to be handed to the
+   * {@link #beforeRemove(Model)} and {@link #afterRemove(Model)} hooks. It is
+   * removed as a managed entity, so it is not loaded again.
    * 
    * @since 1.0
    * @param key
@@ -341,13 +1111,18 @@ public abstract class BusinessObjectImpl<Key extends Serializable, Bean extends
   @Override
   @TransactionAttribute(TransactionAttributeType.REQUIRED)
   public boolean removeById(Key key, boolean flush) {
-    boolean returnValue = false;
-    Bean entity = findByKey(key);
-    if (entity != null) {
-      remove(entity, flush);
-      returnValue = true;
+    OperationTimer timer = startTimer(Operation.REMOVE_BY_ID, key);
+    try {
+      boolean returnValue = false;
+      Bean entity = findByKey(key);
+      if (entity != null) {
+        remove(entity, flush);
+        returnValue = true;
+      }
+      return timer.success(returnValue, returnValue ? 1 : 0);
+    } finally {
+      timer.stop();
     }
-    return returnValue;
   }
 
   /**
@@ -359,11 +1134,11 @@ public abstract class BusinessObjectImpl<Key extends Serializable, Bean extends
    * @param flush
    *          If <code>true</code> the method
    *          {@link #flushEntityManager(boolean)} will be called.
-   * @return entities stored.
+   * @return amount of entities removed by each chunk.
    */
   @Override
-  public void removeById(Collection<Key> keys) {
-    removeById(keys, false);
+  public int[] removeById(Collection<Key> keys) {
+    return removeById(keys, false);
   }
 
   /**
@@ -375,11 +1150,26 @@ public abstract class BusinessObjectImpl<Key extends Serializable, Bean extends
    * @param flush
    *          If <code>true</code> the method
    *          {@link #flushEntityManager(boolean)} will be called.
-   * @return entities stored.
+   * @return amount of entities removed by each chunk.
    */
   @Override
-  public void removeById(Collection<Key> keys, boolean flush) {
-    this.getDAO().removeById(keys, flush);
+  public int[] removeById(Collection<Key> keys, boolean flush) {
+    OperationTimer timer = startTimer(Operation.REMOVE_BY_ID, keys);
+    try {
+      if (keys != null) {
+        for (Key key : keys) {
+          discardWrittenBehind(key);
+        }
+      }
+      int[] removed = this.getDAO().removeById(keys, flush);
+      int total = 0;
+      for (int chunkRemoved : removed) {
+        total += chunkRemoved;
+      }
+      return timer.success(removed, total);
+    } finally {
+      timer.stop();
+    }
   }
 
 }
@@ -0,0 +1,50 @@
+package com.eidoscode.framework.persistence.bo.impl;
+
+import javax.interceptor.AroundInvoke;
+import javax.interceptor.InvocationContext;
+
+import com.eidoscode.framework.persistence.dao.ReadOnly;
+import com.eidoscode.framework.persistence.dao.ReadOnlyScope;
+
+/**
+ * Interceptor that runs the Business Object methods annotated with
+ * {@link ReadOnly} inside a {@link ReadOnlyScope}. It must be bound to the
+ * Business Object, for instance with
+ * <code>&#64;Interceptors(ReadOnlyInterceptor.class)</code> on its class.
+ * 
+ * @author eantonini
+ * @since 1.6
+ * @version 1.0
+ */
+public class ReadOnlyInterceptor {
+
+  /**
+   * Runs the intercepted method on the read-only mode defined by its
+   * {@link ReadOnly} annotation or, if it has none, by the annotation of its
+   * class.
+   * 
+   * @since 1.6
+   * @param context
+   *          Invocation context.
+   * @return Value returned by the method.
+   * @throws Exception
+   *           Exception thrown by the method.
+   */
+  @AroundInvoke
+  public Object aroundInvoke(InvocationContext context) throws Exception {
+    ReadOnly readOnly = context.getMethod().getAnnotation(ReadOnly.class);
+    if (readOnly == null) {
+      readOnly = context.getTarget().getClass().getAnnotation(ReadOnly.class);
+    }
+    if (readOnly == null) {
+      return context.proceed();
+    }
+    boolean previous = ReadOnlyScope.enter(readOnly.value());
+    try {
+      return context.proceed();
+    } finally {
+      ReadOnlyScope.exit(previous);
+    }
+  }
+
+}
@@ -0,0 +1,493 @@
+package com.eidoscode.framework.persistence.bo.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.persistence.PersistenceException;
+
+import org.apache.log4j.Logger;
+
+import com.eidoscode.framework.persistence.dao.DataAccessObject;
+import com.eidoscode.framework.persistence.dao.PartitionResult;
+import com.eidoscode.framework.persistence.metrics.PersistenceMetrics;
+import com.eidoscode.framework.persistence.model.Model;
+
+/**
+ * Buffer of the saves of the existing entities of a Business Object class,
+ * written behind the callers. Only the last saved value of each key is kept,
+ * so the repeated saves of an entity are coalesced into a single write. The
+ * buffer keeps a serialized copy of each saved entity, so the caller may go on
+ * changing its instance. The buffer is flushed on an interval, by the
+ * scheduler supplied by the container, and whenever it reaches its maximum
+ * size. It is written by
+ * {@link DataAccessObject#saveParallel(java.util.Collection, int, int)} with a
+ * single partition at a time, on the flushing thread and on transactions of
+ * its own. Without a scheduler there is no interval flush, and
+ * the caller that fills the buffer flushes it.<br/>
+ * The entities being flushed are still brought by {@link #get(Object)} until
+ * their batch is committed. A save discarded by {@link #discard(Object)}
+ * before its batch starts is never written, and a discard of a save whose
+ * batch is being written waits for that batch, so a direct write that follows
+ * the discard is never overwritten by the flush.<br/>
+ * The writes are not durable until they are flushed: the buffered ones are
+ * lost if the process stops abruptly, and a failed flush is logged and
+ * discarded, since a failure such as an optimistic lock would repeat on every
+ * retry. The buffers are flushed whenever {@link #flush()} is called and
+ * when they are released.<br/>
+ * There is a single instance by Business Object class, shared by the
+ * instances that acquired it, and published on the platform MBean server as a
+ * {@link WriteBehindBufferMXBean} named by the class. When the last instance
+ * releases it, like on the <code>PreDestroy</code> of the Business Object, it
+ * is flushed, its interval flush is cancelled and it is unpublished, so
+ * nothing keeps the classes of an undeployed application.
+ * 
+ * @author eantonini
+ * @since 1.6
+ * @version 1.0
+ * @param <Key>
+ *          Type of the key of the entity.
+ * @param <Bean>
+ *          The entity.
+ */
+public final class WriteBehindBuffer<Key extends Serializable, Bean extends Model<Key>>
+    implements WriteBehindBufferMXBean {
+
+  private static final Logger LOGGER = Logger
+      .getLogger(WriteBehindBuffer.class);
+
+  private static final Map<Class<?>, WriteBehindBuffer<?, ?>> BUFFERS = new HashMap<Class<?>, WriteBehindBuffer<?, ?>>();
+
+  private final Class<?> businessObjectClass;
+  private final String entityName;
+  private final DataAccessObject<Key, Bean> dataAccessObject;
+  private final int maximumSize;
+  private final int batchSize;
+  private final Object lock = new Object();
+  private final ReentrantLock flushLock = new ReentrantLock();
+  private final AtomicLong bufferedWrites = new AtomicLong();
+  private final AtomicLong coalescedWrites = new AtomicLong();
+  private final AtomicLong flushedWrites = new AtomicLong();
+  private final AtomicLong failedWrites = new AtomicLong();
+  private final AtomicLong flushes = new AtomicLong();
+  private LinkedHashMap<Key, Bean> pending = new LinkedHashMap<Key, Bean>();
+  private final Map<Key, Bean> flushing = new LinkedHashMap<Key, Bean>();
+  private final Set<Key> writing = new HashSet<Key>();
+  private boolean flushScheduled;
+  private ScheduledExecutorService scheduler;
+  private ScheduledFuture<?> intervalFlush;
+  private int users;
+
+  private WriteBehindBuffer(Class<?> businessObjectClass, String entityName,
+      DataAccessObject<Key, Bean> dataAccessObject, int maximumSize,
+      int batchSize) {
+    if (maximumSize <= 0 || batchSize <= 0) {
+      throw new IllegalArgumentException(
+          "The maximum size and the batch size must be greater than zero.");
+    }
+    this.businessObjectClass = businessObjectClass;
+    this.entityName = entityName;
+    this.dataAccessObject = dataAccessObject;
+    this.maximumSize = maximumSize;
+    this.batchSize = batchSize;
+  }
+
+  /**
+   * Acquires the buffer of a Business Object class, which must be released by
+   * {@link #release()}. The settings are used only when the buffer is
+   * created.
+   * 
+   * @since 1.6
+   * @param businessObjectClass
+   *          Class of the Business Object.
+   * @param entityName
+   *          Name of the entity.
+   * @param dataAccessObject
+   *          Data Access Object that writes the buffered entities. It is called
+   *          from the flushing thread, so its
+   *          <code>getParallelEntityManagerFactory()</code> must bring a
+   *          resource local factory.
+   * @param scheduler
+   *          Scheduler of the interval flushes, supplied by the container, or
+   *          <code>null</code> if there is none.
+   * @param maximumSize
+   *          Amount of buffered entities that starts a flush.
+   * @param flushInterval
+   *          Time, in milliseconds, between two flushes.
+   * @param batchSize
+   *          Amount of entities written by each transaction of a flush.
+   * @return {@link WriteBehindBuffer} of the class.
+   */
+  @SuppressWarnings("unchecked")
+  public static <Key extends Serializable, Bean extends Model<Key>> WriteBehindBuffer<Key, Bean> acquire(
+      Class<?> businessObjectClass, String entityName,
+      DataAccessObject<Key, Bean> dataAccessObject,
+      ScheduledExecutorService scheduler, int maximumSize, long flushInterval,
+      int batchSize) {
+    synchronized (BUFFERS) {
+      WriteBehindBuffer<Key, Bean> buffer = (WriteBehindBuffer<Key, Bean>) BUFFERS
+          .get(businessObjectClass);
+      if (buffer == null) {
+        buffer = new WriteBehindBuffer<Key, Bean>(businessObjectClass,
+            entityName, dataAccessObject, maximumSize, batchSize);
+        buffer.start(scheduler, flushInterval);
+        BUFFERS.put(businessObjectClass, buffer);
+      }
+      buffer.users++;
+      return buffer;
+    }
+  }
+
+  /**
+   * Flushes the buffers of all the Business Object classes.
+   * 
+   * @since 1.6
+   */
+  public static void flushAll() {
+    List<WriteBehindBuffer<?, ?>> buffers;
+    synchronized (BUFFERS) {
+      buffers = new ArrayList<WriteBehindBuffer<?, ?>>(BUFFERS.values());
+    }
+    for (WriteBehindBuffer<?, ?> buffer : buffers) {
+      buffer.flush();
+    }
+  }
+
+  /**
+   * Releases the buffer acquired by {@link #acquire}, flushing it. When it is
+   * released by all the instances that acquired it, its interval flush is
+   * cancelled and it is unpublished.
+   * 
+   * @since 1.6
+   */
+  public void release() {
+    flush();
+    synchronized (BUFFERS) {
+      if (--users > 0) {
+        return;
+      }
+      BUFFERS.remove(businessObjectClass);
+      if (intervalFlush != null) {
+        intervalFlush.cancel(false);
+      }
+      unregister();
+    }
+  }
+
+  private void start(ScheduledExecutorService scheduler, long flushInterval) {
+    this.scheduler = scheduler;
+    if (scheduler != null) {
+      intervalFlush = scheduler.scheduleWithFixedDelay(new FlushTask(),
+          flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+    }
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = getObjectName();
+      if (server.isRegistered(name)) {
+        server.unregisterMBean(name);
+      }
+      server.registerMBean(this, name);
+    } catch (JMException e) {
+      LOGGER.warn("Unable to publish the write-behind buffer of " + entityName
+          + ".", e);
+    } catch (SecurityException e) {
+      LOGGER.warn("Unable to publish the write-behind buffer of " + entityName
+          + ".", e);
+    }
+  }
+
+  private void unregister() {
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = getObjectName();
+      if (server.isRegistered(name)) {
+        server.unregisterMBean(name);
+      }
+    } catch (JMException e) {
+      LOGGER.warn("Unable to unpublish the write-behind buffer of "
+          + entityName + ".", e);
+    } catch (SecurityException e) {
+      LOGGER.warn("Unable to unpublish the write-behind buffer of "
+          + entityName + ".", e);
+    }
+  }
+
+  private ObjectName getObjectName() throws JMException {
+    return new ObjectName(PersistenceMetrics.DOMAIN
+        + ":type=WriteBehindBuffer,name=" + businessObjectClass.getName());
+  }
+
+  /**
+   * Buffers a copy of the save of an existing entity, replacing the buffered
+   * save of the same key, if there is one.
+   * 
+   * @since 1.6
+   * @param bean
+   *          Entity to be saved. Its key is mandatory.
+   */
+  public void put(Bean bean) {
+    Key key = bean.getId();
+    if (key == null) {
+      throw new IllegalArgumentException(
+          "Only the entities with a key can be written behind.");
+    }
+    Bean copy = copy(bean);
+    boolean full;
+    synchronized (lock) {
+      if (pending.put(key, copy) != null) {
+        coalescedWrites.incrementAndGet();
+      }
+      bufferedWrites.incrementAndGet();
+      full = pending.size() >= maximumSize && !flushScheduled;
+      if (full) {
+        flushScheduled = true;
+      }
+    }
+    if (full) {
+      if (scheduler == null) {
+        flush();
+      } else {
+        scheduler.execute(new FlushTask());
+      }
+    }
+  }
+
+  /**
+   * Brings a copy of the buffered entity of a key, including the entities
+   * being flushed.
+   * 
+   * @since 1.6
+   * @param key
+   *          Key of the entity.
+   * @return Buffered entity or <code>null</code> if there is none.
+   */
+  public Bean get(Key key) {
+    Bean bean;
+    synchronized (lock) {
+      bean = pending.get(key);
+      if (bean == null) {
+        bean = flushing.get(key);
+      }
+    }
+    return bean == null ? null : copy(bean);
+  }
+
+  /**
+   * Discards the buffered save of a key, because the entity is being written
+   * or removed directly. If the save is being written by a flush, it waits for
+   * the flush to commit it.
+   * 
+   * @since 1.6
+   * @param key
+   *          Key of the entity.
+   */
+  public void discard(Key key) {
+    synchronized (lock) {
+      pending.remove(key);
+      flushing.remove(key);
+      while (writing.contains(key)) {
+        try {
+          lock.wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new PersistenceException("Interrupted while waiting for the "
+              + entityName + " " + key + " written behind.", e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Writes all the buffered entities and waits for it. If another flush is
+   * running, it waits for that flush before starting.
+   * 
+   * @since 1.6
+   */
+  public void flush() {
+    flushLock.lock();
+    try {
+      synchronized (lock) {
+        flushScheduled = false;
+        if (pending.isEmpty()) {
+          return;
+        }
+        flushing.putAll(pending);
+        pending = new LinkedHashMap<Key, Bean>();
+      }
+      flushes.incrementAndGet();
+      List<Bean> batch;
+      while (!(batch = startBatch()).isEmpty()) {
+        try {
+          writeBatch(batch);
+        } finally {
+          finishBatch(batch);
+        }
+      }
+    } finally {
+      flushLock.unlock();
+    }
+  }
+
+  /**
+   * Takes the next batch of the entities being flushed, which are not
+   * discarded anymore without waiting for the batch.
+   */
+  private List<Bean> startBatch() {
+    List<Bean> batch = new ArrayList<Bean>(batchSize);
+    synchronized (lock) {
+      Iterator<Map.Entry<Key, Bean>> entries = flushing.entrySet().iterator();
+      while (entries.hasNext() && batch.size() < batchSize) {
+        Map.Entry<Key, Bean> entry = entries.next();
+        if (writing.add(entry.getKey())) {
+          batch.add(entry.getValue());
+        }
+      }
+    }
+    return batch;
+  }
+
+  private void writeBatch(List<Bean> batch) {
+    try {
+      for (PartitionResult<Bean> result : dataAccessObject.saveParallel(batch,
+          batchSize, 1)) {
+        if (result.getFailure() == null) {
+          flushedWrites.addAndGet(result.getBeans().size());
+        } else {
+          failedWrites.addAndGet(result.getBeans().size());
+          LOGGER.error("Discarded " + result.getBeans().size() + " "
+              + entityName + " written behind: " + result.getBeans(),
+              result.getFailure());
+        }
+      }
+    } catch (RuntimeException e) {
+      failedWrites.addAndGet(batch.size());
+      LOGGER.error("Discarded " + batch.size() + " " + entityName
+          + " written behind: " + batch, e);
+    }
+  }
+
+  private void finishBatch(List<Bean> batch) {
+    synchronized (lock) {
+      for (Bean bean : batch) {
+        writing.remove(bean.getId());
+        flushing.remove(bean.getId());
+      }
+      lock.notifyAll();
+    }
+  }
+
+  /**
+   * Copies an entity through serialization, so the buffered value is not
+   * shared with the callers.
+   */
+  @SuppressWarnings("unchecked")
+  private Bean copy(Bean bean) {
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      ObjectOutputStream output = new ObjectOutputStream(bytes);
+      output.writeObject(bean);
+      output.close();
+      final ClassLoader loader = bean.getClass().getClassLoader();
+      ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(
+          bytes.toByteArray())) {
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass description)
+            throws IOException, ClassNotFoundException {
+          try {
+            return Class.forName(description.getName(), false, loader);
+          } catch (ClassNotFoundException e) {
+            return super.resolveClass(description);
+          }
+        }
+      };
+      try {
+        return (Bean) input.readObject();
+      } finally {
+        input.close();
+      }
+    } catch (IOException e) {
+      throw new PersistenceException("Unable to copy the " + entityName
+          + " written behind.", e);
+    } catch (ClassNotFoundException e) {
+      throw new PersistenceException("Unable to copy the " + entityName
+          + " written behind.", e);
+    }
+  }
+
+  @Override
+  public String getEntityName() {
+    return entityName;
+  }
+
+  @Override
+  public int getPendingWrites() {
+    synchronized (lock) {
+      return pending.size();
+    }
+  }
+
+  @Override
+  public long getBufferedWrites() {
+    return bufferedWrites.get();
+  }
+
+  @Override
+  public long getCoalescedWrites() {
+    return coalescedWrites.get();
+  }
+
+  @Override
+  public long getFlushedWrites() {
+    return flushedWrites.get();
+  }
+
+  @Override
+  public long getFailedWrites() {
+    return failedWrites.get();
+  }
+
+  @Override
+  public long getFlushes() {
+    return flushes.get();
+  }
+
+  /**
+   * Flush run by the flush thread.
+   * 
+   * @since 1.6
+   */
+  private class FlushTask implements Runnable {
+
+    @Override
+    public void run() {
+      try {
+        flush();
+      } catch (RuntimeException e) {
+        LOGGER.error("Unable to flush the " + entityName + " written behind.",
+            e);
+      }
+    }
+  }
+
+}
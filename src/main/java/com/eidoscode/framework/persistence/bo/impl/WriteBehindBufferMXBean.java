@@ -0,0 +1,64 @@
+package com.eidoscode.framework.persistence.bo.impl;
+
+/**
+ * Management interface of the {@link WriteBehindBuffer} of a Business Object
+ * class. It is registered on the platform MBean server with the name
+ * <code>com.eidoscode.framework.persistence:type=WriteBehindBuffer,name=&lt;entity&gt;</code>.
+ * 
+ * @author eantonini
+ * @since 1.6
+ * @version 1.0
+ */
+public interface WriteBehindBufferMXBean {
+
+  /**
+   * @since 1.6
+   * @return Name of the entity.
+   */
+  String getEntityName();
+
+  /**
+   * @since 1.6
+   * @return Amount of entities waiting for the next flush.
+   */
+  int getPendingWrites();
+
+  /**
+   * @since 1.6
+   * @return Amount of saves buffered.
+   */
+  long getBufferedWrites();
+
+  /**
+   * @since 1.6
+   * @return Amount of saves replaced by a later save of the same key before
+   *         being written.
+   */
+  long getCoalescedWrites();
+
+  /**
+   * @since 1.6
+   * @return Amount of entities written by the flushes.
+   */
+  long getFlushedWrites();
+
+  /**
+   * @since 1.6
+   * @return Amount of entities discarded by failed flushes.
+   */
+  long getFailedWrites();
+
+  /**
+   * @since 1.6
+   * @return Amount of flushes that wrote entities.
+   */
+  long getFlushes();
+
+  /**
+   * Writes all the buffered entities.
+   * 
+   * @since 1.6
+   */
+  void flush();
+
+}
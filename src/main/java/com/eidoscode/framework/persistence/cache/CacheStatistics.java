@@ -0,0 +1,137 @@
+package com.eidoscode.framework.persistence.cache;
+
+import java.io.Serializable;
+
+/**
+ * Snapshot of the statistics of a cache.
+ * 
+ * @author eantonini
+ * @since 1.6
+ * @version 1.0
+ */
+public class CacheStatistics implements Serializable {
+
+  /**
+   * Serial version.
+   */
+  private static final long serialVersionUID = -1894402734766384570L;
+
+  private final long hits;
+  private final long misses;
+  private final long evictions;
+  private final long rejections;
+  private final long size;
+
+  /**
+   * Main constructor.
+   * 
+   * @since 1.6
+   * @param hits
+   *          Amount of lookups that found an entry.
+   * @param misses
+   *          Amount of lookups that did not find an entry.
+   * @param evictions
+   *          Amount of entries evicted to keep the cache bounded, or expired.
+   * @param size
+   *          Current amount of entries.
+   */
+  public CacheStatistics(long hits, long misses, long evictions, long size) {
+    this(hits, misses, evictions, 0, size);
+  }
+
+  /**
+   * Constructor to caches that may reject new entries.
+   * 
+   * @since 1.6
+   * @param hits
+   *          Amount of lookups that found an entry.
+   * @param misses
+   *          Amount of lookups that did not find an entry.
+   * @param evictions
+   *          Amount of entries evicted to keep the cache bounded, or expired.
+   * @param rejections
+   *          Amount of new entries that were not stored to keep the cache
+   *          bounded.
+   * @param size
+   *          Current amount of entries.
+   */
+  public CacheStatistics(long hits, long misses, long evictions,
+      long rejections, long size) {
+    this.hits = hits;
+    this.misses = misses;
+    this.evictions = evictions;
+    this.rejections = rejections;
+    this.size = size;
+  }
+
+  /**
+   * Brings the amount of lookups that found an entry.
+   * 
+   * @since 1.6
+   * @return Amount of hits.
+   */
+  public long getHits() {
+    return hits;
+  }
+
+  /**
+   * Brings the amount of lookups that did not find an entry.
+   * 
+   * @since 1.6
+   * @return Amount of misses.
+   */
+  public long getMisses() {
+    return misses;
+  }
+
+  /**
+   * Brings the amount of entries evicted to keep the cache bounded, or
+   * expired.
+   * 
+   * @since 1.6
+   * @return Amount of evictions.
+   */
+  public long getEvictions() {
+    return evictions;
+  }
+
+  /**
+   * Brings the amount of new entries that were not stored because an entry
+   * accessed more often would have been evicted.
+   * 
+   * @since 1.6
+   * @return Amount of rejections.
+   */
+  public long getRejections() {
+    return rejections;
+  }
+
+  /**
+   * Brings the current amount of entries.
+   * 
+   * @since 1.6
+   * @return Amount of entries.
+   */
+  public long getSize() {
+    return size;
+  }
+
+  /**
+   * Brings the ratio of lookups that found an entry.
+   * 
+   * @since 1.6
+   * @return Hit ratio, from 0 to 1.
+   */
+  public double getHitRatio() {
+    long lookups = hits + misses;
+    return lookups == 0 ? 0 : (double) hits / lookups;
+  }
+
+  @Override
+  public String toString() {
+    return "CacheStatistics [hits=" + hits + ", misses=" + misses
+        + ", evictions=" + evictions + ", rejections=" + rejections
+        + ", size=" + size + "]";
+  }
+
+}
@@ -0,0 +1,104 @@
+package com.eidoscode.framework.persistence.cache;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cached amount of records of an entity. There is a single instance by entity,
+ * shared by all the Data Access Object instances of that entity, so the writes
+ * done by any of them keep the amount up to date.<br/>
+ * The writes of a transaction that is rolled back, or the writes done outside
+ * the Data Access Objects, make the amount drift. That's why it has a time to
+ * live, after that the amount must be counted again.
+ * 
+ * @author eantonini
+ * @since 1.6
+ * @version 1.0
+ */
+public final class CountCache {
+
+  private static final ConcurrentMap<Class<?>, CountCache> CACHES = new ConcurrentHashMap<Class<?>, CountCache>();
+
+  private static final long NOT_LOADED = -1L;
+
+  private final AtomicLong count = new AtomicLong();
+  private volatile long loadedOn = NOT_LOADED;
+
+  private CountCache() {
+  }
+
+  /**
+   * Brings the cache of an entity.
+   * 
+   * @since 1.6
+   * @param entityClass
+   *          Class of the entity.
+   * @return {@link CountCache} of the entity.
+   */
+  public static CountCache forEntity(Class<?> entityClass) {
+    CountCache cache = CACHES.get(entityClass);
+    if (cache == null) {
+      cache = new CountCache();
+      CountCache previous = CACHES.putIfAbsent(entityClass, cache);
+      if (previous != null) {
+        cache = previous;
+      }
+    }
+    return cache;
+  }
+
+  /**
+   * Brings the cached amount.
+   * 
+   * @since 1.6
+   * @param timeToLive
+   *          Time, in milliseconds, that a counted amount is valid.
+   * @return Cached amount or <code>null</code> if it was not counted yet or if
+   *         its time to live has expired.
+   */
+  public Long get(long timeToLive) {
+    long loaded = loadedOn;
+    if (loaded == NOT_LOADED
+        || System.currentTimeMillis() - loaded > timeToLive) {
+      return null;
+    }
+    return count.get();
+  }
+
+  /**
+   * Stores an amount that was just counted.
+   * 
+   * @since 1.6
+   * @param amount
+   *          Counted amount.
+   */
+  public void set(long amount) {
+    count.set(amount);
+    loadedOn = System.currentTimeMillis();
+  }
+
+  /**
+   * Adds a difference to the cached amount, such as <code>1</code> when an
+   * entity is persisted or <code>-1</code> when it is removed.
+   * 
+   * @since 1.6
+   * @param delta
+   *          Difference to be added.
+   */
+  public void add(long delta) {
+    if (loadedOn != NOT_LOADED && delta != 0) {
+      count.addAndGet(delta);
+    }
+  }
+
+  /**
+   * Discards the cached amount, so it will be counted again.
+   * 
+   * @since 1.6
+   */
+  public void invalidate() {
+    loadedOn = NOT_LOADED;
+  }
+
+}
@@ -0,0 +1,221 @@
+package com.eidoscode.framework.persistence.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Size bounded cache of entities by their key. There is a single instance by
+ * entity, shared by all the Data Access Object instances of that entity.<br/>
+ * The least recently used entry is the eviction candidate, but a new entry
+ * only takes its place if it is accessed more often, as estimated by a
+ * {@link FrequencySketch}. This way a scan over rarely used keys does not flush
+ * the frequently used ones. Each entry keeps the version of the entity, so an
+ * older version never replaces a newer one, and it may have a time to live.
+ * Every invalidation starts a new generation of the cache, and an entity
+ * loaded before an invalidation is not stored.
+ * 
+ * @author eantonini
+ * @since 1.6
+ * @version 1.0
+ * @param <K>
+ *          Type of the key.
+ * @param <V>
+ *          Type of the entity.
+ */
+public final class EntityCache<K, V> {
+
+  private static final ConcurrentMap<Class<?>, EntityCache<?, ?>> CACHES = new ConcurrentHashMap<Class<?>, EntityCache<?, ?>>();
+
+  private final int maximumSize;
+  private final long timeToLiveNanos;
+  private final LinkedHashMap<K, Entry<V>> entries;
+  private final FrequencySketch sketch;
+  private long hits;
+  private long misses;
+  private long evictions;
+  private long rejections;
+  private long generation;
+
+  private EntityCache(int maximumSize, long timeToLive) {
+    if (maximumSize <= 0) {
+      throw new IllegalArgumentException(
+          "The maximum size must be greater than zero.");
+    }
+    this.maximumSize = maximumSize;
+    this.timeToLiveNanos = TimeUnit.MILLISECONDS.toNanos(timeToLive);
+    this.entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true);
+    this.sketch = new FrequencySketch(maximumSize);
+  }
+
+  /**
+   * Brings the cache of an entity. The size and the time to live are used only
+   * when the cache is created.
+   * 
+   * @since 1.6
+   * @param entityClass
+   *          Class of the entity.
+   * @param maximumSize
+   *          Maximum amount of entries.
+   * @param timeToLive
+   *          Time, in milliseconds, that an entry is valid. If it is
+   *          <code>0</code> the entries do not expire.
+   * @return {@link EntityCache} of the entity.
+   */
+  @SuppressWarnings("unchecked")
+  public static <K, V> EntityCache<K, V> forEntity(Class<V> entityClass,
+      int maximumSize, long timeToLive) {
+    EntityCache<?, ?> cache = CACHES.get(entityClass);
+    if (cache == null) {
+      cache = new EntityCache<K, V>(maximumSize, timeToLive);
+      EntityCache<?, ?> previous = CACHES.putIfAbsent(entityClass, cache);
+      if (previous != null) {
+        cache = previous;
+      }
+    }
+    return (EntityCache<K, V>) cache;
+  }
+
+  /**
+   * Brings the current generation of the cache. It must be read before the
+   * entity is loaded and given back to {@link #put(Object, Object, int, long)}.
+   * 
+   * @since 1.6
+   * @return Current generation.
+   */
+  public synchronized long getGeneration() {
+    return generation;
+  }
+
+  /**
+   * Brings an entity from the cache.
+   * 
+   * @since 1.6
+   * @param key
+   *          Key of the entity.
+   * @return The cached entity or <code>null</code> if it is not cached or if it
+   *         has expired.
+   */
+  public synchronized V get(K key) {
+    sketch.increment(key);
+    Entry<V> entry = entries.get(key);
+    if (entry == null) {
+      misses++;
+      return null;
+    }
+    if (entry.isExpired()) {
+      entries.remove(key);
+      evictions++;
+      misses++;
+      return null;
+    }
+    hits++;
+    return entry.value;
+  }
+
+  /**
+   * Stores an entity on the cache. It is discarded if the cache was
+   * invalidated after the given generation. If the cache already has a newer
+   * version of the entity, it is kept. If the cache is full, the entity is
+   * stored only if its key is accessed more often than the key of the least
+   * recently used entry, which is evicted; otherwise it is counted as a
+   * rejection.
+   * 
+   * @since 1.6
+   * @param key
+   *          Key of the entity.
+   * @param value
+   *          The entity.
+   * @param version
+   *          Version of the entity.
+   * @param loadGeneration
+   *          Generation read by {@link #getGeneration()} before the entity was
+   *          loaded.
+   */
+  public synchronized void put(K key, V value, int version,
+      long loadGeneration) {
+    if (loadGeneration != generation) {
+      return;
+    }
+    Entry<V> current = entries.get(key);
+    if (current != null) {
+      if (current.version > version && !current.isExpired()) {
+        return;
+      }
+    } else if (entries.size() >= maximumSize) {
+      Iterator<Map.Entry<K, Entry<V>>> iterator = entries.entrySet()
+          .iterator();
+      Map.Entry<K, Entry<V>> victim = iterator.next();
+      if (!victim.getValue().isExpired()
+          && sketch.frequency(key) <= sketch.frequency(victim.getKey())) {
+        rejections++;
+        return;
+      }
+      iterator.remove();
+      evictions++;
+    }
+    long expiresOn = timeToLiveNanos > 0 ? System.nanoTime() + timeToLiveNanos
+        : 0;
+    entries.put(key, new Entry<V>(value, version, expiresOn));
+  }
+
+  /**
+   * Removes an entity from the cache and starts a new generation.
+   * 
+   * @since 1.6
+   * @param key
+   *          Key of the entity.
+   */
+  public synchronized void invalidate(K key) {
+    generation++;
+    entries.remove(key);
+  }
+
+  /**
+   * Removes all the entities from the cache and starts a new generation.
+   * 
+   * @since 1.6
+   */
+  public synchronized void invalidateAll() {
+    generation++;
+    entries.clear();
+  }
+
+  /**
+   * Brings the statistics of the cache.
+   * 
+   * @since 1.6
+   * @return {@link CacheStatistics} of the cache.
+   */
+  public synchronized CacheStatistics getStatistics() {
+    return new CacheStatistics(hits, misses, evictions, rejections,
+        entries.size());
+  }
+
+  /**
+   * Cached entity.
+   * 
+   * @param <V>
+   *          Type of the entity.
+   */
+  private static final class Entry<V> {
+
+    final V value;
+    final int version;
+    final long expiresOn;
+
+    Entry(V value, int version, long expiresOn) {
+      this.value = value;
+      this.version = version;
+      this.expiresOn = expiresOn;
+    }
+
+    boolean isExpired() {
+      return expiresOn != 0 && System.nanoTime() - expiresOn > 0;
+    }
+  }
+
+}
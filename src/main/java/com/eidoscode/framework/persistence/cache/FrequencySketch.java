@@ -0,0 +1,95 @@
+package com.eidoscode.framework.persistence.cache;
+
+/**
+ * Approximate frequency counter, a count-min sketch with four rows of 4-bit
+ * counters. It is used by the {@link EntityCache} to decide if a new entry is
+ * accessed more often than the entry it would evict. The counters are halved
+ * periodically, so the old accesses are forgotten.<br/>
+ * This class is not thread safe. It must be used under the lock of its owner.
+ * 
+ * @author eantonini
+ * @since 1.6
+ * @version 1.0
+ */
+final class FrequencySketch {
+
+  private static final int ROWS = 4;
+  private static final int MAXIMUM_COUNT = 15;
+  private static final int[] SEEDS = { 0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35,
+      0x27D4EB2F };
+
+  private final byte[][] table;
+  private final int mask;
+  private final int sampleSize;
+  private int additions;
+
+  /**
+   * Main constructor.
+   * 
+   * @param capacity
+   *          Maximum amount of entries of the cache.
+   */
+  FrequencySketch(int capacity) {
+    int width = Integer.highestOneBit(Math.max(16, capacity) * 2 - 1);
+    this.table = new byte[ROWS][width];
+    this.mask = width - 1;
+    this.sampleSize = Math.max(10 * capacity, 100);
+  }
+
+  /**
+   * Records an access to a key.
+   * 
+   * @param key
+   *          Accessed key.
+   */
+  void increment(Object key) {
+    int hash = spread(key.hashCode());
+    boolean added = false;
+    for (int row = 0; row < ROWS; row++) {
+      int index = index(hash, row);
+      if (table[row][index] < MAXIMUM_COUNT) {
+        table[row][index]++;
+        added = true;
+      }
+    }
+    if (added && ++additions >= sampleSize) {
+      reset();
+    }
+  }
+
+  /**
+   * Brings the estimated frequency of a key.
+   * 
+   * @param key
+   *          Desired key.
+   * @return Estimated amount of accesses, from 0 to 15.
+   */
+  int frequency(Object key) {
+    int hash = spread(key.hashCode());
+    int frequency = MAXIMUM_COUNT;
+    for (int row = 0; row < ROWS; row++) {
+      frequency = Math.min(frequency, table[row][index(hash, row)]);
+    }
+    return frequency;
+  }
+
+  private void reset() {
+    for (byte[] row : table) {
+      for (int index = 0; index < row.length; index++) {
+        row[index] = (byte) (row[index] >>> 1);
+      }
+    }
+    additions /= 2;
+  }
+
+  private int index(int hash, int row) {
+    int h = hash * SEEDS[row];
+    return (h ^ (h >>> 16)) & mask;
+  }
+
+  private static int spread(int hash) {
+    int h = hash ^ (hash >>> 16);
+    return h * 0x45D9F3B;
+  }
+
+}
@@ -0,0 +1,292 @@
+package com.eidoscode.framework.persistence.cache;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Bloom filter of the keys of an entity. It answers if a key certainly does
+ * not exist, so a lookup by this key can be skipped. There is a single
+ * instance by entity, shared by all the Data Access Object instances of that
+ * entity.<br/>
+ * The filter is built by scanning the keys of the entity and the new keys are
+ * added as they are saved. A removed key is never taken out, it only makes the
+ * filter less effective until it is rebuilt. The filter is correct only if
+ * every new key is saved through the Data Access Objects of this JVM, and only
+ * if the transactions are much shorter than the rebuild interval: the keys
+ * added since the previous rebuild are kept by the next one, covering the
+ * transactions not committed when the scan started.<br/>
+ * The keys are added under a shared lock and a rebuild starts and finishes
+ * under an exclusive one, so a key added while a rebuild starts is never lost.
+ * 
+ * @author eantonini
+ * @since 1.6
+ * @version 1.0
+ */
+public final class KeyFilter {
+
+  private static final ConcurrentMap<Class<?>, KeyFilter> FILTERS = new ConcurrentHashMap<Class<?>, KeyFilter>();
+
+  private final int bits;
+  private final int hashes;
+  private final AtomicBoolean rebuilding = new AtomicBoolean();
+  private final AtomicLong negatives = new AtomicLong();
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private volatile AtomicLongArray current;
+  private volatile AtomicLongArray recent;
+  private volatile AtomicLongArray previousRecent;
+  private volatile AtomicLongArray building;
+  private volatile boolean ready;
+  private volatile long builtOn;
+
+  private KeyFilter(int expectedKeys, double falsePositiveRate) {
+    if (expectedKeys <= 0 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+      throw new IllegalArgumentException("Invalid key filter parameters: "
+          + expectedKeys + " keys, " + falsePositiveRate
+          + " false positive rate.");
+    }
+    double ln2 = Math.log(2);
+    long optimalBits = (long) Math.ceil(-expectedKeys
+        * Math.log(falsePositiveRate) / (ln2 * ln2));
+    this.bits = (int) Math.min(Integer.MAX_VALUE - 63,
+        Math.max(64, optimalBits));
+    this.hashes = Math.max(1,
+        (int) Math.round((double) this.bits / expectedKeys * ln2));
+    this.current = newBits();
+    this.recent = newBits();
+  }
+
+  /**
+   * Brings the filter of an entity. The parameters are used only when the
+   * filter is created.
+   * 
+   * @since 1.6
+   * @param entityClass
+   *          Class of the entity.
+   * @param expectedKeys
+   *          Expected amount of keys.
+   * @param falsePositiveRate
+   *          Rate of absent keys that the filter may report as present, such
+   *          as <code>0.01</code>.
+   * @return {@link KeyFilter} of the entity.
+   */
+  public static KeyFilter forEntity(Class<?> entityClass, int expectedKeys,
+      double falsePositiveRate) {
+    KeyFilter filter = FILTERS.get(entityClass);
+    if (filter == null) {
+      filter = new KeyFilter(expectedKeys, falsePositiveRate);
+      KeyFilter previous = FILTERS.putIfAbsent(entityClass, filter);
+      if (previous != null) {
+        filter = previous;
+      }
+    }
+    return filter;
+  }
+
+  /**
+   * Informs if a key may exist. While the filter is not built, or after it was
+   * invalidated, every key may exist.
+   * 
+   * @since 1.6
+   * @param key
+   *          Desired key.
+   * @return <code>false</code> if the key certainly does not exist.
+   */
+  public boolean mightContain(Object key) {
+    if (!ready) {
+      return true;
+    }
+    AtomicLongArray array = current;
+    int hash1 = key.hashCode();
+    int hash2 = spread(hash1);
+    for (int i = 0; i < hashes; i++) {
+      int bit = index(hash1, hash2, i);
+      if ((array.get(bit >>> 6) & (1L << bit)) == 0) {
+        negatives.incrementAndGet();
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Adds a saved key to the filter.
+   * 
+   * @since 1.6
+   * @param key
+   *          Saved key.
+   */
+  public void add(Object key) {
+    int hash1 = key.hashCode();
+    int hash2 = spread(hash1);
+    lock.readLock().lock();
+    try {
+      AtomicLongArray current = this.current;
+      AtomicLongArray recent = this.recent;
+      AtomicLongArray building = this.building;
+      for (int i = 0; i < hashes; i++) {
+        int bit = index(hash1, hash2, i);
+        set(current, bit);
+        set(recent, bit);
+        if (building != null) {
+          set(building, bit);
+        }
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Makes every key to be reported as present until the filter is rebuilt,
+   * such as when a key could not be added.
+   * 
+   * @since 1.6
+   */
+  public void invalidate() {
+    ready = false;
+  }
+
+  /**
+   * Informs if the filter must be rebuilt, because it was never built, it was
+   * invalidated or it is older than the given interval. It is
+   * <code>false</code> while the filter is being rebuilt.
+   * 
+   * @since 1.6
+   * @param interval
+   *          Time, in milliseconds, between two rebuilds.
+   * @return <code>true</code> if the filter must be rebuilt.
+   */
+  public boolean needsRebuild(long interval) {
+    return !rebuilding.get()
+        && (!ready || System.currentTimeMillis() - builtOn > interval);
+  }
+
+  /**
+   * Starts a rebuild of the filter. The keys added from now on are also added
+   * to the filter being built.
+   * 
+   * @since 1.6
+   * @return <code>false</code> if another rebuild is already running.
+   */
+  public boolean startRebuild() {
+    if (!rebuilding.compareAndSet(false, true)) {
+      return false;
+    }
+    AtomicLongArray latest = newBits();
+    AtomicLongArray built = newBits();
+    lock.writeLock().lock();
+    try {
+      previousRecent = recent;
+      recent = latest;
+      building = built;
+    } finally {
+      lock.writeLock().unlock();
+    }
+    return true;
+  }
+
+  /**
+   * Adds a key found by the scan of a rebuild.
+   * 
+   * @since 1.6
+   * @param key
+   *          Existent key.
+   */
+  public void addScanned(Object key) {
+    AtomicLongArray array = building;
+    int hash1 = key.hashCode();
+    int hash2 = spread(hash1);
+    for (int i = 0; i < hashes; i++) {
+      set(array, index(hash1, hash2, i));
+    }
+  }
+
+  /**
+   * Finishes a rebuild. If it succeeded, the new filter, with the scanned keys
+   * and the keys added since the previous rebuild, replaces the current one.
+   * 
+   * @since 1.6
+   * @param success
+   *          If <code>false</code> the current filter is kept.
+   */
+  public void finishRebuild(boolean success) {
+    lock.writeLock().lock();
+    try {
+      if (success) {
+        AtomicLongArray built = building;
+        AtomicLongArray previous = previousRecent;
+        for (int i = 0; i < built.length(); i++) {
+          or(built, i, previous.get(i));
+        }
+        current = built;
+        builtOn = System.currentTimeMillis();
+        ready = true;
+      } else {
+        AtomicLongArray previous = previousRecent;
+        AtomicLongArray latest = recent;
+        for (int i = 0; i < latest.length(); i++) {
+          or(latest, i, previous.get(i));
+        }
+      }
+    } finally {
+      building = null;
+      previousRecent = null;
+      rebuilding.set(false);
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Brings the amount of lookups answered as certainly absent.
+   * 
+   * @since 1.6
+   * @return Amount of short circuited lookups.
+   */
+  public long getNegatives() {
+    return negatives.get();
+  }
+
+  /**
+   * Informs if the filter is built and answering lookups.
+   * 
+   * @since 1.6
+   * @return <code>true</code> if the filter is ready.
+   */
+  public boolean isReady() {
+    return ready;
+  }
+
+  private AtomicLongArray newBits() {
+    return new AtomicLongArray((bits + 63) >>> 6);
+  }
+
+  private int index(int hash1, int hash2, int i) {
+    int combined = hash1 + i * hash2;
+    return (combined & Integer.MAX_VALUE) % bits;
+  }
+
+  private static void set(AtomicLongArray array, int bit) {
+    or(array, bit >>> 6, 1L << bit);
+  }
+
+  private static void or(AtomicLongArray array, int index, long mask) {
+    long value;
+    do {
+      value = array.get(index);
+      if ((value | mask) == value) {
+        return;
+      }
+    } while (!array.compareAndSet(index, value, value | mask));
+  }
+
+  private static int spread(int hash) {
+    int h = hash * 0x9E3779B9;
+    return (h ^ (h >>> 15)) | 1;
+  }
+
+}
@@ -0,0 +1,182 @@
+package com.eidoscode.framework.persistence.cache;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Size bounded cache of the keys brought by the queries of an entity. There is
+ * a single instance by entity, shared by all the Data Access Object instances
+ * of that entity.<br/>
+ * Any write of the entity invalidates the whole cache by moving it to a new
+ * generation. A query result is stored only if the generation did not change
+ * while the query was running, so a result read before a write is never
+ * stored after it. The least recently used entry is evicted when the cache is
+ * full.
+ * 
+ * @author eantonini
+ * @since 1.6
+ * @version 1.0
+ * @param <K>
+ *          Type of the key of the entity.
+ */
+public final class QueryCache<K> {
+
+  private static final ConcurrentMap<Class<?>, QueryCache<?>> CACHES = new ConcurrentHashMap<Class<?>, QueryCache<?>>();
+
+  private final int maximumSize;
+  private final long timeToLiveNanos;
+  private final LinkedHashMap<Object, Entry<K>> entries;
+  private long generation;
+  private long hits;
+  private long misses;
+  private long evictions;
+
+  private QueryCache(int maximumSize, long timeToLive) {
+    if (maximumSize <= 0) {
+      throw new IllegalArgumentException(
+          "The maximum size must be greater than zero.");
+    }
+    this.maximumSize = maximumSize;
+    this.timeToLiveNanos = TimeUnit.MILLISECONDS.toNanos(timeToLive);
+    this.entries = new LinkedHashMap<Object, Entry<K>>(16, 0.75f, true);
+  }
+
+  /**
+   * Brings the cache of an entity. The size and the time to live are used only
+   * when the cache is created.
+   * 
+   * @since 1.6
+   * @param entityClass
+   *          Class of the entity.
+   * @param maximumSize
+   *          Maximum amount of cached queries.
+   * @param timeToLive
+   *          Time, in milliseconds, that an entry is valid. If it is
+   *          <code>0</code> the entries do not expire.
+   * @return {@link QueryCache} of the entity.
+   */
+  @SuppressWarnings("unchecked")
+  public static <K> QueryCache<K> forEntity(Class<?> entityClass,
+      int maximumSize, long timeToLive) {
+    QueryCache<?> cache = CACHES.get(entityClass);
+    if (cache == null) {
+      cache = new QueryCache<K>(maximumSize, timeToLive);
+      QueryCache<?> previous = CACHES.putIfAbsent(entityClass, cache);
+      if (previous != null) {
+        cache = previous;
+      }
+    }
+    return (QueryCache<K>) cache;
+  }
+
+  /**
+   * Brings the current generation of the cache. It must be read before the
+   * query runs and given back to {@link #put(Object, long, List)}.
+   * 
+   * @since 1.6
+   * @return Current generation.
+   */
+  public synchronized long getGeneration() {
+    return generation;
+  }
+
+  /**
+   * Brings the keys of a cached query.
+   * 
+   * @since 1.6
+   * @param query
+   *          Key of the query, such as a list with its parameters. It must
+   *          implement {@link Object#equals(Object)} and
+   *          {@link Object#hashCode()}.
+   * @return Unmodifiable list of keys or <code>null</code> if the query is not
+   *         cached or if it has expired.
+   */
+  public synchronized List<K> get(Object query) {
+    Entry<K> entry = entries.get(query);
+    if (entry == null) {
+      misses++;
+      return null;
+    }
+    if (entry.isExpired()) {
+      entries.remove(query);
+      evictions++;
+      misses++;
+      return null;
+    }
+    hits++;
+    return entry.keys;
+  }
+
+  /**
+   * Stores the keys brought by a query. They are discarded if the cache was
+   * invalidated after the given generation.
+   * 
+   * @since 1.6
+   * @param query
+   *          Key of the query.
+   * @param queryGeneration
+   *          Generation read by {@link #getGeneration()} before the query ran.
+   * @param keys
+   *          Keys brought by the query, in order.
+   */
+  public synchronized void put(Object query, long queryGeneration,
+      List<K> keys) {
+    if (queryGeneration != generation) {
+      return;
+    }
+    if (!entries.containsKey(query) && entries.size() >= maximumSize) {
+      entries.remove(entries.keySet().iterator().next());
+      evictions++;
+    }
+    long expiresOn = timeToLiveNanos > 0 ? System.nanoTime() + timeToLiveNanos
+        : 0;
+    entries.put(query,
+        new Entry<K>(Collections.unmodifiableList(keys), expiresOn));
+  }
+
+  /**
+   * Removes all the queries from the cache and starts a new generation.
+   * 
+   * @since 1.6
+   */
+  public synchronized void invalidateAll() {
+    generation++;
+    entries.clear();
+  }
+
+  /**
+   * Brings the statistics of the cache.
+   * 
+   * @since 1.6
+   * @return {@link CacheStatistics} of the cache.
+   */
+  public synchronized CacheStatistics getStatistics() {
+    return new CacheStatistics(hits, misses, evictions, entries.size());
+  }
+
+  /**
+   * Cached query result.
+   * 
+   * @param <K>
+   *          Type of the key of the entity.
+   */
+  private static final class Entry<K> {
+
+    final List<K> keys;
+    final long expiresOn;
+
+    Entry(List<K> keys, long expiresOn) {
+      this.keys = keys;
+      this.expiresOn = expiresOn;
+    }
+
+    boolean isExpired() {
+      return expiresOn != 0 && System.nanoTime() - expiresOn > 0;
+    }
+  }
+
+}
@@ -0,0 +1,44 @@
+package com.eidoscode.framework.persistence.dao;
+
+import java.io.Serializable;
+
+import com.eidoscode.framework.persistence.model.AuditedModel;
+
+/**
+ * Interface of a Data Access Object of an audited entity. Besides the main
+ * methods of a {@link DataAccessObject}, it brings the changes of the entity
+ * by the date of its last change.
+ * 
+ * @author eantonini
+ * @since 1.6
+ * @version 1.0
+ * @param <Key>
+ *          Key of the Bean. It must implements the {@link Serializable}
+ *          interface.
+ * @param <Bean>
+ *          The Bean that is going to be persisted. This bean must implements
+ *          the interface {@link AuditedModel}.
+ */
+public interface AuditedDataAccessObject<Key extends Serializable, Bean extends AuditedModel<Key>>
+    extends DataAccessObject<Key, Bean> {
+
+  /**
+   * Brings the changes of an audited entity made after a watermark, sorted by
+   * the date of the last change and by the key, so a consumer can read only
+   * what changed since its last read instead of reloading the whole table. The
+   * watermark of the page is stored by the consumer and handed back to read the
+   * next changes.<br/>
+   * The database should have an index on the date of the last change and the
+   * key. The entities without that date are not brought.
+   * 
+   * @since 1.6
+   * @param watermark
+   *          Watermark of the previous page, or <code>null</code> to start from
+   *          the oldest change.
+   * @param maxResult
+   *          maximum number of results to retrieve.
+   * @return {@link ChangePage} with the changed entities.
+   */
+  ChangePage<Bean> findModifiedSince(ChangeWatermark watermark, int maxResult);
+
+}
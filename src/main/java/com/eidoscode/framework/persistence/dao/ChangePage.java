@@ -0,0 +1,78 @@
+package com.eidoscode.framework.persistence.dao;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Page of the change feed of an audited entity, with the changed entities
+ * sorted by the date of their last change and by their key.
+ * 
+ * @author eantonini
+ * @since 1.6
+ * @version 1.0
+ * @param <Bean>
+ *          Type of the entities of the page.
+ */
+public class ChangePage<Bean> implements Serializable {
+
+  /**
+   * Serial version.
+   */
+  private static final long serialVersionUID = -3180569475216604127L;
+
+  private final List<Bean> results;
+  private final ChangeWatermark watermark;
+  private final boolean more;
+
+  /**
+   * Main constructor.
+   * 
+   * @since 1.6
+   * @param results
+   *          Changed entities.
+   * @param watermark
+   *          Position after the last entity of the page.
+   * @param more
+   *          If there are more changes after the page.
+   */
+  public ChangePage(List<Bean> results, ChangeWatermark watermark,
+      boolean more) {
+    this.results = results;
+    this.watermark = watermark;
+    this.more = more;
+  }
+
+  /**
+   * Brings the changed entities.
+   * 
+   * @since 1.6
+   * @return {@link List} with the entities.
+   */
+  public List<Bean> getResults() {
+    return results;
+  }
+
+  /**
+   * Brings the position after the last entity of the page. Unlike the token of
+   * a {@link KeysetPage}, it is brought even by the last page, so it can be
+   * stored to read the changes made later.
+   * 
+   * @since 1.6
+   * @return {@link ChangeWatermark} to read the next changes. If the page is
+   *         empty, it is the given watermark.
+   */
+  public ChangeWatermark getWatermark() {
+    return watermark;
+  }
+
+  /**
+   * Informs if there were more changes after this page when it was read.
+   * 
+   * @since 1.6
+   * @return <code>true</code> if the next page can be read right away.
+   */
+  public boolean hasMore() {
+    return more;
+  }
+
+}
@@ -0,0 +1,84 @@
+package com.eidoscode.framework.persistence.dao;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * Position of a consumer on the change feed of an audited entity. It holds the
+ * date of the last change read and the key of its entity, so the feed is
+ * resumed right after it, even when several entities share the same date.<br/>
+ * It can be stored by the consumer between two reads and must be handed back
+ * unchanged, except for the one created by {@link #since(Date)}.
+ * 
+ * @author eantonini
+ * @since 1.6
+ * @version 1.0
+ */
+public final class ChangeWatermark implements Serializable {
+
+  /**
+   * Serial version.
+   */
+  private static final long serialVersionUID = 7215946308135472319L;
+
+  private final Date modifiedOn;
+  private final Serializable key;
+
+  /**
+   * Main constructor.
+   * 
+   * @since 1.6
+   * @param modifiedOn
+   *          Date of the last change read.
+   * @param key
+   *          Key of the entity of the last change read, or <code>null</code>
+   *          to include all the changes made on that date.
+   */
+  public ChangeWatermark(Date modifiedOn, Serializable key) {
+    if (modifiedOn == null) {
+      throw new NullPointerException("The modifiedOn parameter is mandatory.");
+    }
+    this.modifiedOn = (Date) modifiedOn.clone();
+    this.key = key;
+  }
+
+  /**
+   * Creates a watermark that brings all the changes made on a date or after
+   * it.
+   * 
+   * @since 1.6
+   * @param modifiedOn
+   *          Date of the first change.
+   * @return {@link ChangeWatermark}.
+   */
+  public static ChangeWatermark since(Date modifiedOn) {
+    return new ChangeWatermark(modifiedOn, null);
+  }
+
+  /**
+   * Brings the date of the last change read.
+   * 
+   * @since 1.6
+   * @return Date of the last change.
+   */
+  public Date getModifiedOn() {
+    return (Date) modifiedOn.clone();
+  }
+
+  /**
+   * Brings the key of the entity of the last change read.
+   * 
+   * @since 1.6
+   * @return Key of the last entity or <code>null</code> if all the changes of
+   *         the date must be brought.
+   */
+  public Serializable getKey() {
+    return key;
+  }
+
+  @Override
+  public String toString() {
+    return "ChangeWatermark [modifiedOn=" + modifiedOn + ", key=" + key + "]";
+  }
+
+}
@@ -0,0 +1,38 @@
+package com.eidoscode.framework.persistence.dao;
+
+/**
+ * Defines how the amount of entities is brought by the
+ * {@link DataAccessObject#countAll(CountMode)} method.
+ * 
+ * @author eantonini
+ * @since 1.6
+ * @version 1.0
+ */
+public enum CountMode {
+
+  /**
+   * The amount is counted on the database on every call.
+   * 
+   * @since 1.6
+   */
+  EXACT,
+
+  /**
+   * The amount is counted on the database once and then kept up to date by the
+   * writes done through the Data Access Object. The cached amount is counted
+   * again when its time to live expires.
+   * 
+   * @since 1.6
+   */
+  CACHED,
+
+  /**
+   * The amount is estimated from the statistics of the database. If the Data
+   * Access Object does not know how to read the statistics, the cached amount
+   * is used.
+   * 
+   * @since 1.6
+   */
+  APPROXIMATE
+
+}
@@ -2,10 +2,15 @@ package com.eidoscode.framework.persistence.dao;
 
 import java.io.Serializable;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
 
 import javax.persistence.EntityManager;
+import javax.persistence.OptimisticLockException;
 
+import com.eidoscode.framework.persistence.model.AuditedModel;
 import com.eidoscode.framework.persistence.model.Model;
 
 /**
@@ -52,6 +57,115 @@ public interface DataAccessObject<Key extends Serializable, Bean extends Model<K
    */
   public <E extends Collection<Bean>> E save(E beans, boolean flush);
 
+  /**
+   * Writes an entity without loading it first. An entity with a key is updated
+   * by a single statement restricted by its key and its version, which writes
+   * all its columns and increments its version. If no row is updated and the
+   * key does not exist, the entity is persisted; if the key exists, its
+   * version has changed and an {@link OptimisticLockException} is thrown. An
+   * entity without a key is persisted.<br/>
+   * An updated entity is not attached to the {@link EntityManager}, only its
+   * version is incremented. The entity is merged by
+   * {@link #save(Model, boolean)} instead if it is already managed or if
+   * the Data Access Object does not allow the statement.
+   * 
+   * @since 1.6
+   * @param bean
+   *          desired entity.
+   * @param flush
+   *          If <code>true</code> the method {@link EntityManager#flush()} will
+   *          be called.
+   * @return entity stored.
+   */
+  Bean upsert(Bean bean, boolean flush);
+
+  /**
+   * Writes a list of entities without loading them first, as
+   * {@link #upsert(Model, boolean)} does. The keys of the entities that were
+   * not updated are checked together, on chunks of keys given by
+   * {@link com.eidoscode.framework.persistence.dao.impl.DataAccessObjectImpl#getAmountKeysPerStatement()}
+   * , before they are persisted.
+   * 
+   * @since 1.6
+   * @param beans
+   *          desired entities.
+   * @param flush
+   *          If <code>true</code> the method {@link EntityManager#flush()} will
+   *          be called.
+   * @return entities stored.
+   */
+  <E extends Collection<Bean>> E upsert(E beans, boolean flush);
+
+  /**
+   * Updates all the entities that match a condition with a single
+   * <code>UPDATE</code> statement, without loading them.<br/>
+   * The statement does not run the update callbacks nor the cascades, and the
+   * entities already managed by the {@link EntityManager} are not refreshed.
+   * 
+   * @since 1.6
+   * @param assignments
+   *          New values by attribute name. The attributes of an embedded object
+   *          are separated by dots, like <code>"address.city"</code>. The key
+   *          and the version can't be assigned.
+   * @param condition
+   *          JPQL condition of the entities to be updated, using the alias
+   *          <code>a</code> and named parameters, like
+   *          <code>"a.status = :status"</code>. If it is <code>null</code> all
+   *          the entities are updated.
+   * @param parameters
+   *          Values of the named parameters of the condition. It may be
+   *          <code>null</code> if the condition has no parameters.
+   * @param touch
+   *          If <code>true</code> the version of the entities is incremented
+   *          and, on an {@link AuditedModel}, the date of the last change is
+   *          set.
+   * @return amount of updated entities.
+   */
+  int update(Map<String, ?> assignments, String condition,
+      Map<String, ?> parameters, boolean touch);
+
+  /**
+   * Saves a collection of entities in parallel. The collection is split into
+   * partitions and each partition is saved by a worker thread with its own
+   * {@link EntityManager} and transaction.
+   * 
+   * @since 1.6
+   * @param beans
+   *          desired entities.
+   * @param partitionSize
+   *          Amount of entities of each partition.
+   * @param parallelism
+   *          Maximum amount of partitions saved at the same time.
+   * @return {@link List} with the result of each partition, so the failed ones
+   *         can be retried.
+   */
+  List<PartitionResult<Bean>> saveParallel(Collection<Bean> beans,
+      int partitionSize, int parallelism);
+
+  /**
+   * Processes all the entities of the table in parallel. The range between the
+   * lowest and the highest keys is split into partitions, and each partition
+   * is processed by a worker thread with its own {@link EntityManager}, in
+   * sorted batches with their own transactions, so the changes done by the
+   * processor on the managed entities are committed batch by batch.<br/>
+   * It needs an integral key, such as a {@link Long}.
+   * 
+   * @since 1.6
+   * @param processor
+   *          Processor of each entity. It must be thread safe.
+   * @param partitionCount
+   *          Amount of key ranges.
+   * @param parallelism
+   *          Maximum amount of ranges processed at the same time.
+   * @param progress
+   *          Progress updated as the batches are committed, or
+   *          <code>null</code>.
+   * @return {@link List} with the result of each range, so the failed ones can
+   *         be resumed.
+   */
+  List<KeyRangeResult<Key>> forEachParallel(EntityProcessor<Bean> processor,
+      int partitionCount, int parallelism, ProcessingProgress progress);
+
   /**
    * Merges the desired entity. It will merge an existent entity.
    * 
@@ -79,7 +193,9 @@ public interface DataAccessObject<Key extends Serializable, Bean extends Model<K
   public <E extends Collection<Bean>> E merge(E beans, boolean flush);
 
   /**
-   * Removes a desired entity.
+   * Removes a desired entity. A managed copy of the entity is removed, and the
+   * implementations avoid loading a detached entity before it is removed when
+   * the persistence provider allows.
    * 
    * @since 1.0
    * @param bean
@@ -103,7 +219,8 @@ public interface DataAccessObject<Key extends Serializable, Bean extends Model<K
   public void removeById(Key key, boolean flush);
 
   /**
-   * Removes all entities by an ID.
+   * Removes all entities by an ID. The keys are sorted and removed in chunks,
+   * each chunk with a single statement.
    * 
    * @since 1.3
    * @param keys
@@ -111,9 +228,9 @@ public interface DataAccessObject<Key extends Serializable, Bean extends Model<K
    * @param flush
    *          If <code>true</code> the method
    *          {@link #flushEntityManager(boolean)} will be called.
-   * @return entities stored.
+   * @return amount of entities removed by each chunk.
    */
-  public void removeById(Collection<Key> keys, boolean flush);
+  public int[] removeById(Collection<Key> keys, boolean flush);
 
   /**
    * Brings all the entities.
@@ -123,6 +240,51 @@ public interface DataAccessObject<Key extends Serializable, Bean extends Model<K
    */
   List<Bean> findAll();
 
+  /**
+   * Brings all the entities, optionally on the read-only mode.
+   * 
+   * @since 1.6
+   * @param readOnly
+   *          If <code>true</code> the entities are brought as in a
+   *          {@link ReadOnlyScope}, so they are not tracked for changes.
+   * @return {@link List} with the entities.
+   */
+  List<Bean> findAll(boolean readOnly);
+
+  /**
+   * Brings all the entities, fetching the associations of a plan.
+   * 
+   * @since 1.6
+   * @param fetchPlan
+   *          Associations loaded together with the entities.
+   * @return {@link List} with the entities.
+   */
+  List<Bean> findAll(FetchPlan fetchPlan);
+
+  /**
+   * Brings an {@link Iterator} over all the entities. The entities are fetched
+   * in chunks ordered by their key and the entities of a consumed chunk are
+   * detached from the {@link EntityManager}, so the whole table can be walked
+   * with a bounded persistence context.
+   * 
+   * @since 1.6
+   * @return {@link Iterator} over the entities.
+   */
+  Iterator<Bean> iterateAll();
+
+  /**
+   * Brings an {@link Iterator} over all the entities. The entities are fetched
+   * in chunks ordered by their key and the entities of a consumed chunk are
+   * detached from the {@link EntityManager}, so the whole table can be walked
+   * with a bounded persistence context.
+   * 
+   * @since 1.6
+   * @param fetchSize
+   *          Amount of entities fetched on each round trip.
+   * @return {@link Iterator} over the entities.
+   */
+  Iterator<Bean> iterateAll(int fetchSize);
+
   /**
    * Count all the entities.
    * 
@@ -131,6 +293,17 @@ public interface DataAccessObject<Key extends Serializable, Bean extends Model<K
    */
   Long countAll();
 
+  /**
+   * Count all the entities.
+   * 
+   * @since 1.6
+   * @param mode
+   *          Defines if the amount is counted on the database, brought from the
+   *          cache or estimated from the statistics of the database.
+   * @return the amount of entities.
+   */
+  Long countAll(CountMode mode);
+
   /**
    * Brings an entity by its key.
    * 
@@ -141,4 +314,70 @@ public interface DataAccessObject<Key extends Serializable, Bean extends Model<K
    */
   Bean findByKey(Key id);
 
+  /**
+   * Brings an entity by its key, optionally on the read-only mode.
+   * 
+   * @since 1.6
+   * @param id
+   *          Entity key.
+   * @param readOnly
+   *          If <code>true</code> the entity is brought as in a
+   *          {@link ReadOnlyScope}, so it is not tracked for changes.
+   * @return Entity.
+   */
+  Bean findByKey(Key id, boolean readOnly);
+
+  /**
+   * Brings an entity by its key, fetching the associations of a plan.
+   * 
+   * @since 1.6
+   * @param id
+   *          Entity key.
+   * @param fetchPlan
+   *          Associations loaded together with the entity.
+   * @return Entity.
+   */
+  Bean findByKey(Key id, FetchPlan fetchPlan);
+
+  /**
+   * Brings an entity by its key asynchronously. The entity is found with its
+   * own {@link EntityManager}, so it is brought detached.
+   * 
+   * @since 1.6
+   * @param id
+   *          Entity key.
+   * @return {@link Future} of the entity.
+   */
+  Future<Bean> findByKeyAsync(Key id);
+
+  /**
+   * Count all the entities asynchronously.
+   * 
+   * @since 1.6
+   * @return {@link Future} of the amount of entities.
+   */
+  Future<Long> countAllAsync();
+
+  /**
+   * Brings a reference to an entity without loading its state.
+   * 
+   * @since 1.6
+   * @param id
+   *          Entity key.
+   * @return Reference to the entity.
+   */
+  Bean getReference(Key id);
+
+  /**
+   * Brings the entities of a collection of keys. The entities are fetched in
+   * chunks, each chunk with a single statement.
+   * 
+   * @since 1.6
+   * @param ids
+   *          Entity keys.
+   * @return {@link Map} with the found entities by their key, on the same order
+   *         of the given keys. The keys that were not found are not present.
+   */
+  Map<Key, Bean> findByKeys(Collection<Key> ids);
+
 }
\ No newline at end of file
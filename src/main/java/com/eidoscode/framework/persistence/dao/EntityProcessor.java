@@ -0,0 +1,28 @@
+package com.eidoscode.framework.persistence.dao;
+
+/**
+ * Processes the entities of a table, one by one, for
+ * {@link DataAccessObject#forEachParallel(EntityProcessor, int, int, ProcessingProgress)}
+ * . It is called by many threads at the same time, so it must be thread safe.
+ * Each entity is managed by the {@link javax.persistence.EntityManager} of its
+ * partition, so its changes are written when the batch is committed.
+ * 
+ * @author eantonini
+ * @since 1.6
+ * @version 1.0
+ * @param <Bean>
+ *          The entity.
+ */
+public interface EntityProcessor<Bean> {
+
+  /**
+   * Processes an entity. An exception rolls back the batch of the entity and
+   * stops its partition.
+   * 
+   * @since 1.6
+   * @param bean
+   *          Managed entity.
+   */
+  void process(Bean bean);
+
+}
@@ -0,0 +1,118 @@
+package com.eidoscode.framework.persistence.dao;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Associations that a finder loads together with the entities, by join
+ * fetches, instead of loading them lazily one by one afterwards.<br/>
+ * Each path is the name of an association of the entity, and the associations
+ * of an associated entity are separated by dots, like
+ * <code>"orders.items"</code>. The associations on the middle of a path are
+ * fetched too.
+ * 
+ * @author eantonini
+ * @since 1.6
+ * @version 1.0
+ */
+public final class FetchPlan implements Serializable {
+
+  /**
+   * Serial version.
+   */
+  private static final long serialVersionUID = 3906420139652378172L;
+
+  /**
+   * Plan that fetches no association.
+   * 
+   * @since 1.6
+   */
+  public static final FetchPlan NONE = new FetchPlan(
+      Collections.<String> emptyList());
+
+  private final List<String> paths;
+
+  private FetchPlan(List<String> paths) {
+    this.paths = paths;
+  }
+
+  /**
+   * Creates a plan.
+   * 
+   * @since 1.6
+   * @param paths
+   *          Paths of the fetched associations.
+   * @return {@link FetchPlan}.
+   */
+  public static FetchPlan of(String... paths) {
+    if (paths == null || paths.length == 0) {
+      return NONE;
+    }
+    for (String path : paths) {
+      if (path == null || path.trim().length() == 0) {
+        throw new IllegalArgumentException("The fetch paths can't be empty.");
+      }
+    }
+    return new FetchPlan(Collections.unmodifiableList(new ArrayList<String>(
+        Arrays.asList(paths))));
+  }
+
+  /**
+   * Creates a plan that fetches the associations of this plan and some more.
+   * 
+   * @since 1.6
+   * @param morePaths
+   *          Paths of the other fetched associations.
+   * @return {@link FetchPlan}.
+   */
+  public FetchPlan and(String... morePaths) {
+    List<String> all = new ArrayList<String>(paths);
+    all.addAll(Arrays.asList(morePaths));
+    return of(all.toArray(new String[all.size()]));
+  }
+
+  /**
+   * Brings the paths of the fetched associations.
+   * 
+   * @since 1.6
+   * @return Unmodifiable {@link List} of paths.
+   */
+  public List<String> getPaths() {
+    return paths;
+  }
+
+  /**
+   * Informs if the plan fetches no association.
+   * 
+   * @since 1.6
+   * @return <code>true</code> if there is no path.
+   */
+  public boolean isEmpty() {
+    return paths.isEmpty();
+  }
+
+  @Override
+  public int hashCode() {
+    return paths.hashCode();
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof FetchPlan)) {
+      return false;
+    }
+    return paths.equals(((FetchPlan) obj).paths);
+  }
+
+  @Override
+  public String toString() {
+    return "FetchPlan " + paths;
+  }
+
+}
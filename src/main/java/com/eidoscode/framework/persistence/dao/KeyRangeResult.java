@@ -0,0 +1,128 @@
+package com.eidoscode.framework.persistence.dao;
+
+import java.io.Serializable;
+
+/**
+ * Result of a partition of a parallel processing of a table. Each partition
+ * is a range of keys, processed on batches with their own transactions, so a
+ * failed partition can be resumed after its last committed key.
+ * 
+ * @author eantonini
+ * @since 1.6
+ * @version 1.0
+ * @param <Key>
+ *          Type of the key of the entity.
+ */
+public class KeyRangeResult<Key extends Serializable> implements Serializable {
+
+  /**
+   * Serial version.
+   */
+  private static final long serialVersionUID = -4410563201942378815L;
+
+  private final int partition;
+  private final Key lowerKey;
+  private final Key upperKey;
+  private final Key lastKey;
+  private final long processed;
+  private final Throwable failure;
+
+  /**
+   * Main constructor.
+   * 
+   * @since 1.6
+   * @param partition
+   *          Index of the partition, numbered from 0.
+   * @param lowerKey
+   *          First key of the range, inclusive.
+   * @param upperKey
+   *          Last key of the range, inclusive.
+   * @param lastKey
+   *          Key of the last committed entity or <code>null</code> if none
+   *          was committed.
+   * @param processed
+   *          Amount of committed entities.
+   * @param failure
+   *          Failure of the partition or <code>null</code> if it succeeded.
+   */
+  public KeyRangeResult(int partition, Key lowerKey, Key upperKey, Key lastKey,
+      long processed, Throwable failure) {
+    this.partition = partition;
+    this.lowerKey = lowerKey;
+    this.upperKey = upperKey;
+    this.lastKey = lastKey;
+    this.processed = processed;
+    this.failure = failure;
+  }
+
+  /**
+   * @since 1.6
+   * @return Index of the partition, numbered from 0.
+   */
+  public int getPartition() {
+    return partition;
+  }
+
+  /**
+   * @since 1.6
+   * @return First key of the range, inclusive.
+   */
+  public Key getLowerKey() {
+    return lowerKey;
+  }
+
+  /**
+   * @since 1.6
+   * @return Last key of the range, inclusive.
+   */
+  public Key getUpperKey() {
+    return upperKey;
+  }
+
+  /**
+   * Brings the key of the last committed entity. A failed partition is resumed
+   * from the key after it.
+   * 
+   * @since 1.6
+   * @return Last committed key or <code>null</code> if none was committed.
+   */
+  public Key getLastKey() {
+    return lastKey;
+  }
+
+  /**
+   * @since 1.6
+   * @return Amount of committed entities.
+   */
+  public long getProcessed() {
+    return processed;
+  }
+
+  /**
+   * Brings the failure of the partition.
+   * 
+   * @since 1.6
+   * @return Failure or <code>null</code> if the partition succeeded.
+   */
+  public Throwable getFailure() {
+    return failure;
+  }
+
+  /**
+   * Informs if the partition succeeded.
+   * 
+   * @since 1.6
+   * @return <code>true</code> if all the entities of the range were processed.
+   */
+  public boolean isSuccess() {
+    return failure == null;
+  }
+
+  @Override
+  public String toString() {
+    return "KeyRangeResult [partition=" + partition + ", range=[" + lowerKey
+        + ", " + upperKey + "], lastKey=" + lastKey + ", processed="
+        + processed + ", failure=" + failure + "]";
+  }
+
+}
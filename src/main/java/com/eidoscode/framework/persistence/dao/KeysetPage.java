@@ -0,0 +1,71 @@
+package com.eidoscode.framework.persistence.dao;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Page of entities brought by a keyset (seek) pagination.
+ * 
+ * @author eantonini
+ * @since 1.6
+ * @version 1.0
+ * @param <Bean>
+ *          Type of the entities of the page.
+ */
+public class KeysetPage<Bean> implements Serializable {
+
+  /**
+   * Serial version.
+   */
+  private static final long serialVersionUID = 2875153025127932147L;
+
+  private final List<Bean> results;
+  private final KeysetToken nextToken;
+
+  /**
+   * Main constructor.
+   * 
+   * @since 1.6
+   * @param results
+   *          Entities of the page.
+   * @param nextToken
+   *          Token to bring the next page or <code>null</code> if this is the
+   *          last page.
+   */
+  public KeysetPage(List<Bean> results, KeysetToken nextToken) {
+    this.results = results;
+    this.nextToken = nextToken;
+  }
+
+  /**
+   * Brings the entities of the page.
+   * 
+   * @since 1.6
+   * @return {@link List} with the entities.
+   */
+  public List<Bean> getResults() {
+    return results;
+  }
+
+  /**
+   * Brings the token used to bring the next page.
+   * 
+   * @since 1.6
+   * @return Token of the next page or <code>null</code> if this is the last
+   *         page.
+   */
+  public KeysetToken getNextToken() {
+    return nextToken;
+  }
+
+  /**
+   * Informs if there is a page after this one.
+   * 
+   * @since 1.6
+   * @return <code>true</code> if there is a next page.
+   */
+  public boolean hasNext() {
+    return nextToken != null;
+  }
+
+}
@@ -0,0 +1,84 @@
+package com.eidoscode.framework.persistence.dao;
+
+import java.io.Serializable;
+
+/**
+ * Continuation token of a keyset (seek) pagination. It holds the position of
+ * the last entity of a page, so the next page can be resumed right after it
+ * without scanning the previous records.<br/>
+ * The token must be handed back unchanged to the method that produced it.
+ * 
+ * @author eantonini
+ * @since 1.6
+ * @version 1.0
+ */
+public final class KeysetToken implements Serializable {
+
+  /**
+   * Serial version.
+   */
+  private static final long serialVersionUID = -4539384725164623718L;
+
+  private final String sortAttribute;
+  private final Serializable sortValue;
+  private final Serializable key;
+
+  /**
+   * Main constructor.
+   * 
+   * @since 1.6
+   * @param sortAttribute
+   *          Name of the attribute used to sort the pages before the key, or
+   *          <code>null</code> if the pages are sorted only by the key.
+   * @param sortValue
+   *          Value of the sort attribute of the last entity read.
+   * @param key
+   *          Key of the last entity read.
+   */
+  public KeysetToken(String sortAttribute, Serializable sortValue,
+      Serializable key) {
+    if (key == null) {
+      throw new NullPointerException("The key parameter is mandatory.");
+    }
+    this.sortAttribute = sortAttribute;
+    this.sortValue = sortValue;
+    this.key = key;
+  }
+
+  /**
+   * Brings the name of the attribute used to sort the pages before the key.
+   * 
+   * @since 1.6
+   * @return Name of the sort attribute or <code>null</code>.
+   */
+  public String getSortAttribute() {
+    return sortAttribute;
+  }
+
+  /**
+   * Brings the value of the sort attribute of the last entity read.
+   * 
+   * @since 1.6
+   * @return Value of the sort attribute.
+   */
+  public Serializable getSortValue() {
+    return sortValue;
+  }
+
+  /**
+   * Brings the key of the last entity read.
+   * 
+   * @since 1.6
+   * @return Key of the last entity read.
+   */
+  public Serializable getKey() {
+    return key;
+  }
+
+  @Override
+  public String toString() {
+    return "KeysetToken [sortAttribute=" + sortAttribute + ", sortValue="
+        + sortValue + ", key=" + key + "]";
+  }
+
+}
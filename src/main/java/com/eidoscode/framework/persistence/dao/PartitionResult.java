@@ -0,0 +1,109 @@
+package com.eidoscode.framework.persistence.dao;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Result of a partition of a parallel operation. Each partition runs on its own
+ * transaction, so a failed partition can be retried without repeating the
+ * others.
+ * 
+ * @author eantonini
+ * @since 1.6
+ * @version 1.0
+ * @param <Bean>
+ *          Type of the entities of the partition.
+ */
+public class PartitionResult<Bean> implements Serializable {
+
+  /**
+   * Serial version.
+   */
+  private static final long serialVersionUID = 6370193640525471284L;
+
+  private final int partition;
+  private final List<Bean> beans;
+  private final int rowCount;
+  private final Throwable failure;
+
+  /**
+   * Main constructor.
+   * 
+   * @since 1.6
+   * @param partition
+   *          Index of the partition, numbered from 0.
+   * @param beans
+   *          Entities of the partition.
+   * @param rowCount
+   *          Amount of records written by the partition.
+   * @param failure
+   *          Failure of the partition or <code>null</code> if it succeeded.
+   */
+  public PartitionResult(int partition, List<Bean> beans, int rowCount,
+      Throwable failure) {
+    this.partition = partition;
+    this.beans = beans;
+    this.rowCount = rowCount;
+    this.failure = failure;
+  }
+
+  /**
+   * Brings the index of the partition, numbered from 0.
+   * 
+   * @since 1.6
+   * @return Index of the partition.
+   */
+  public int getPartition() {
+    return partition;
+  }
+
+  /**
+   * Brings the entities of the partition. If the partition failed, these are
+   * the entities to be retried.
+   * 
+   * @since 1.6
+   * @return {@link List} with the entities of the partition.
+   */
+  public List<Bean> getBeans() {
+    return beans;
+  }
+
+  /**
+   * Brings the amount of records written by the partition.
+   * 
+   * @since 1.6
+   * @return Amount of records written. It is <code>0</code> if the partition
+   *         failed.
+   */
+  public int getRowCount() {
+    return rowCount;
+  }
+
+  /**
+   * Brings the failure of the partition.
+   * 
+   * @since 1.6
+   * @return Failure or <code>null</code> if the partition succeeded.
+   */
+  public Throwable getFailure() {
+    return failure;
+  }
+
+  /**
+   * Informs if the partition succeeded.
+   * 
+   * @since 1.6
+   * @return <code>true</code> if the partition was committed.
+   */
+  public boolean isSuccess() {
+    return failure == null;
+  }
+
+  @Override
+  public String toString() {
+    return "PartitionResult [partition=" + partition + ", size="
+        + (beans == null ? 0 : beans.size()) + ", rowCount=" + rowCount
+        + ", failure=" + failure + "]";
+  }
+
+}
@@ -0,0 +1,108 @@
+package com.eidoscode.framework.persistence.dao;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress of a parallel processing of a table, updated by the partitions as
+ * their batches are committed. It may be read by another thread, like a
+ * monitor, while the processing runs.
+ * 
+ * @author eantonini
+ * @since 1.6
+ * @version 1.0
+ */
+public class ProcessingProgress {
+
+  private volatile int partitions;
+  private final AtomicInteger completedPartitions = new AtomicInteger();
+  private final AtomicInteger failedPartitions = new AtomicInteger();
+  private final AtomicLong processed = new AtomicLong();
+
+  /**
+   * Starts the processing. It is called by the Data Access Object.
+   * 
+   * @since 1.6
+   * @param partitionCount
+   *          Amount of partitions of the processing.
+   */
+  public void started(int partitionCount) {
+    this.partitions = partitionCount;
+  }
+
+  /**
+   * Counts the entities of a committed batch. It is called by the Data Access
+   * Object.
+   * 
+   * @since 1.6
+   * @param amount
+   *          Amount of entities of the batch.
+   */
+  public void committed(int amount) {
+    processed.addAndGet(amount);
+  }
+
+  /**
+   * Counts a finished partition. It is called by the Data Access Object.
+   * 
+   * @since 1.6
+   * @param success
+   *          If the partition processed all its entities.
+   */
+  public void finished(boolean success) {
+    if (success) {
+      completedPartitions.incrementAndGet();
+    } else {
+      failedPartitions.incrementAndGet();
+    }
+  }
+
+  /**
+   * @since 1.6
+   * @return Amount of partitions of the processing.
+   */
+  public int getPartitions() {
+    return partitions;
+  }
+
+  /**
+   * @since 1.6
+   * @return Amount of partitions that processed all their entities.
+   */
+  public int getCompletedPartitions() {
+    return completedPartitions.get();
+  }
+
+  /**
+   * @since 1.6
+   * @return Amount of partitions stopped by a failure.
+   */
+  public int getFailedPartitions() {
+    return failedPartitions.get();
+  }
+
+  /**
+   * @since 1.6
+   * @return Amount of entities processed and committed.
+   */
+  public long getProcessed() {
+    return processed.get();
+  }
+
+  /**
+   * @since 1.6
+   * @return <code>true</code> if all the partitions finished.
+   */
+  public boolean isDone() {
+    return partitions > 0
+        && completedPartitions.get() + failedPartitions.get() >= partitions;
+  }
+
+  @Override
+  public String toString() {
+    return "ProcessingProgress [partitions=" + partitions + ", completed="
+        + completedPartitions + ", failed=" + failedPartitions
+        + ", processed=" + processed + "]";
+  }
+
+}
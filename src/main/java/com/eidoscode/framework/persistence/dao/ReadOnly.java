@@ -0,0 +1,39 @@
+package com.eidoscode.framework.persistence.dao;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a Business Object method, or all the methods of a Business Object
+ * class, as read-only. While the method runs, the entities brought by the Data
+ * Access Objects are not tracked for changes, as if it was running inside a
+ * {@link ReadOnlyScope}.<br/>
+ * The annotation is applied by the interceptor
+ * <code>com.eidoscode.framework.persistence.bo.impl.ReadOnlyInterceptor</code>,
+ * which must be bound to the Business Object. An annotation on the method
+ * overrides the one on the class.
+ * 
+ * @author eantonini
+ * @since 1.6
+ * @version 1.0
+ */
+@Documented
+@Inherited
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ ElementType.METHOD, ElementType.TYPE })
+public @interface ReadOnly {
+
+  /**
+   * Defines if the method is read-only. A method may be annotated with
+   * <code>false</code> to leave the read-only mode of its class.
+   * 
+   * @since 1.6
+   * @return <code>true</code> if the method is read-only.
+   */
+  boolean value() default true;
+
+}
@@ -0,0 +1,74 @@
+package com.eidoscode.framework.persistence.dao;
+
+/**
+ * Read-only mode of the current thread. While it is active, the Data Access
+ * Objects ask the persistence provider to bring the entities without keeping a
+ * snapshot for dirty checking, so they are not flushed at the end of the
+ * transaction and any change done on them is ignored.<br/>
+ * The scopes may be nested and must always be left on a finally block:
+ * 
+ * <pre>
+ * boolean previous = ReadOnlyScope.enter(true);
+ * try {
+ *   ...
+ * } finally {
+ *   ReadOnlyScope.exit(previous);
+ * }
+ * </pre>
+ * 
+ * @author eantonini
+ * @since 1.6
+ * @version 1.0
+ */
+public final class ReadOnlyScope {
+
+  private static final ThreadLocal<Boolean> ACTIVE = new ThreadLocal<Boolean>();
+
+  private ReadOnlyScope() {
+  }
+
+  /**
+   * Informs if the read-only mode is active on the current thread.
+   * 
+   * @since 1.6
+   * @return <code>true</code> if it is active.
+   */
+  public static boolean isActive() {
+    return Boolean.TRUE.equals(ACTIVE.get());
+  }
+
+  /**
+   * Enters a scope on the current thread.
+   * 
+   * @since 1.6
+   * @param readOnly
+   *          Defines if the read-only mode is active inside the scope.
+   * @return The mode of the enclosing scope, to be given back to
+   *         {@link #exit(boolean)}.
+   */
+  public static boolean enter(boolean readOnly) {
+    boolean previous = isActive();
+    if (readOnly) {
+      ACTIVE.set(Boolean.TRUE);
+    } else {
+      ACTIVE.remove();
+    }
+    return previous;
+  }
+
+  /**
+   * Leaves a scope on the current thread, restoring the enclosing one.
+   * 
+   * @since 1.6
+   * @param previous
+   *          Value returned by {@link #enter(boolean)}.
+   */
+  public static void exit(boolean previous) {
+    if (previous) {
+      ACTIVE.set(Boolean.TRUE);
+    } else {
+      ACTIVE.remove();
+    }
+  }
+
+}
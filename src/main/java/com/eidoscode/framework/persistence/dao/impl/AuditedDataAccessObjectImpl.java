@@ -0,0 +1,182 @@
+package com.eidoscode.framework.persistence.dao.impl;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Root;
+
+import com.eidoscode.framework.persistence.dao.AuditedDataAccessObject;
+import com.eidoscode.framework.persistence.dao.ChangePage;
+import com.eidoscode.framework.persistence.dao.ChangeWatermark;
+import com.eidoscode.framework.persistence.metrics.Operation;
+import com.eidoscode.framework.persistence.metrics.OperationTimer;
+import com.eidoscode.framework.persistence.model.AuditedModel;
+
+/**
+ * Implementation of the Interface {@link AuditedDataAccessObject}. Besides the
+ * main methods to maintain an entity, it brings the changes of the entity by
+ * the date of its last change.
+ * 
+ * @author eantonini
+ * @since 1.6
+ * @version 1.0
+ * @param <Key>
+ *          The type of the Id of the model. If it's a relational database, it
+ *          probably will be something such as a {@link Long} or {@link Integer}
+ *          .
+ * @param <Bean>
+ *          The entity that implements the {@link AuditedModel} interface and
+ *          use the same key passed on the "Key"parameter.
+ */
+public abstract class AuditedDataAccessObjectImpl<Key extends Serializable, Bean extends AuditedModel<Key>>
+    extends DataAccessObjectImpl<Key, Bean> implements
+    AuditedDataAccessObject<Key, Bean> {
+
+  /**
+   * Default time, in milliseconds, that a change must be old before the change
+   * feed brings it. This will be used on the method
+   * {@link #getChangeFeedDelay()}.
+   */
+  public static final long DEFAULT_CHANGE_FEED_DELAY = 0L;
+
+  /**
+   * Main constructor. It collects the Key of the entity, the entity type and
+   * the name of the entity.
+   * 
+   * @since 1.6
+   */
+  public AuditedDataAccessObjectImpl() {
+    super();
+  }
+
+  /**
+   * Constructor to Data Access Objects whose Key and entity types can not be
+   * collected from the generic declaration of the class.
+   * 
+   * @since 1.6
+   * @param keyClass
+   *          Class of the key of the entity.
+   * @param entityClass
+   *          Class of the entity.
+   */
+  protected AuditedDataAccessObjectImpl(Class<Key> keyClass,
+      Class<Bean> entityClass) {
+    super(keyClass, entityClass);
+  }
+
+  /**
+   * Brings the changes of an audited entity made after a watermark, sorted by
+   * the date of the last change and by the key, so a consumer can read only
+   * what changed since its last read instead of reloading the whole table.<br/>
+   * The changes that share the date of the watermark are resumed after its key,
+   * and the page is read by a single range of
+   * {@link #getModifiedOnAttributeName()}, so the database should have an
+   * index on the date of the last change and the key, like
+   * <code>CREATE INDEX ... ON &lt;table&gt; (modified_on, id)</code>. The
+   * entities without that date are not brought.
+   * 
+   * @since 1.6
+   * @param watermark
+   *          Watermark of the previous page, or <code>null</code> to start from
+   *          the oldest change.
+   * @param maxResult
+   *          maximum number of results to retrieve.
+   * @return {@link ChangePage} with the changed entities.
+   */
+  @Override
+  public ChangePage<Bean> findModifiedSince(ChangeWatermark watermark,
+      int maxResult) {
+    if (maxResult <= 0) {
+      throw new IllegalArgumentException(
+          "The max result must be greater than zero.");
+    }
+    OperationTimer timer = startTimer(Operation.FIND_MODIFIED_SINCE,
+        watermark, maxResult);
+    try {
+      List<Bean> results = createChangeQuery(watermark, maxResult + 1)
+          .getResultList();
+      boolean more = results.size() > maxResult;
+      ChangeWatermark next = watermark;
+      if (more) {
+        results = new ArrayList<Bean>(results.subList(0, maxResult));
+      }
+      if (!results.isEmpty()) {
+        Bean last = results.get(results.size() - 1);
+        next = new ChangeWatermark(last.getModifiedOn(), last.getId());
+      }
+      return timer.success(new ChangePage<Bean>(results, next, more),
+          results.size());
+    } finally {
+      timer.stop();
+    }
+  }
+
+  /**
+   * Creates the query of a page of the change feed. It brings the entities
+   * sorted by the date of the last change and by the key that come after the
+   * watermark. The redundant lower bound on the date keeps the restriction on
+   * a single index range.
+   * 
+   * @since 1.6
+   * @param watermark
+   *          Watermark of the previous page or <code>null</code>.
+   * @param maxResult
+   *          maximum number of results to retrieve.
+   * @return {@link TypedQuery} of the page.
+   */
+  @SuppressWarnings("unchecked")
+  protected TypedQuery<Bean> createChangeQuery(ChangeWatermark watermark,
+      int maxResult) {
+    CriteriaBuilder cb = getCurrentEntityManager().getCriteriaBuilder();
+    CriteriaQuery<Bean> criteria = createCriteriaSelect();
+    defaultFilterCriteria(criteria);
+    Root<Bean> root = getRoot(criteria);
+    Expression<Date> modifiedOn = root.get(getModifiedOnAttributeName());
+    Expression<Key> id = root.get(getIdAttributeName());
+    addRestriction(criteria, cb, cb.isNotNull(modifiedOn));
+    if (watermark != null) {
+      Date lastModifiedOn = watermark.getModifiedOn();
+      Key lastKey = (Key) watermark.getKey();
+      addRestriction(criteria, cb,
+          cb.greaterThanOrEqualTo(modifiedOn, lastModifiedOn));
+      if (lastKey != null) {
+        addRestriction(criteria, cb, cb.or(
+            cb.greaterThan(modifiedOn, lastModifiedOn),
+            greaterThan(cb, id, lastKey)));
+      }
+    }
+    long delay = getChangeFeedDelay();
+    if (delay > 0) {
+      addRestriction(criteria, cb, cb.lessThanOrEqualTo(modifiedOn, new Date(
+          System.currentTimeMillis() - delay)));
+    }
+    criteria.orderBy(cb.asc(modifiedOn), cb.asc(id));
+    TypedQuery<Bean> query = getCurrentEntityManager().createQuery(criteria);
+    defaultFilterQuery(query);
+    applyReadOnly(query);
+    query.setMaxResults(maxResult);
+    return query;
+  }
+
+  /**
+   * Return the time, in milliseconds, that a change must be old before the
+   * method {@link #findModifiedSince(ChangeWatermark, int)} brings it. The
+   * date of the change is set before its transaction commits, so a change
+   * committed after a newer one was read would be left behind the watermark.
+   * A delay longer than the longest transaction avoids it.
+   * 
+   * @since 1.6
+   * @return Delay of the change feed, or <code>0</code> to bring every
+   *         committed change.
+   */
+  protected long getChangeFeedDelay() {
+    return DEFAULT_CHANGE_FEED_DELAY;
+  }
+
+}
@@ -0,0 +1,263 @@
+package com.eidoscode.framework.persistence.dao.impl;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Controls the amount of records of a batch operation, such as the amount of
+ * entities saved between two flushes. The amount is tuned at runtime from the
+ * time spent by each batch and from the heap usage, always within the
+ * configured bounds:
+ * <ul>
+ * <li>If the heap usage left by the last garbage collection of the tenured
+ * pools is above {@link #HIGH_HEAP_USAGE} the amount is halved. The garbage
+ * still on the heap is not counted, so a heap that is only waiting for a
+ * collection does not shrink the batches;</li>
+ * <li>If a batch took longer than the target time the amount is reduced in the
+ * same proportion;</li>
+ * <li>If a batch took less than half of the target time the amount grows by a
+ * quarter.</li>
+ * </ul>
+ * There is a single controller by entity and operation, shared by all the Data
+ * Access Object instances.
+ * 
+ * @author eantonini
+ * @since 1.6
+ * @version 1.0
+ */
+public final class BatchSizeController {
+
+  /**
+   * Heap usage, from 0 to 1, above which the amount of records is halved.
+   * 
+   * @since 1.6
+   */
+  public static final double HIGH_HEAP_USAGE = 0.85;
+
+  private static final Logger LOGGER = Logger
+      .getLogger(BatchSizeController.class);
+
+  private static final ConcurrentMap<String, BatchSizeController> CONTROLLERS = new ConcurrentHashMap<String, BatchSizeController>();
+
+  private static final List<MemoryPoolMXBean> TENURED_POOLS = findTenuredPools();
+
+  private final String name;
+  private final int minimum;
+  private final int maximum;
+  private final long targetNanos;
+  private final AtomicInteger batchSize;
+  private final AtomicLong batches = new AtomicLong();
+  private final AtomicLong adjustments = new AtomicLong();
+  private volatile long lastElapsedNanos;
+
+  private BatchSizeController(String name, int minimum, int maximum,
+      int initial, long targetMillis) {
+    if (minimum <= 0 || maximum < minimum) {
+      throw new IllegalArgumentException("Invalid batch bounds [" + minimum
+          + ", " + maximum + "] to " + name + ".");
+    }
+    this.name = name;
+    this.minimum = minimum;
+    this.maximum = maximum;
+    this.targetNanos = TimeUnit.MILLISECONDS.toNanos(targetMillis);
+    this.batchSize = new AtomicInteger(Math.max(minimum,
+        Math.min(maximum, initial)));
+  }
+
+  /**
+   * Brings the controller of an operation of an entity. The bounds are used
+   * only when the controller is created.
+   * 
+   * @since 1.6
+   * @param entityClass
+   *          Class of the entity.
+   * @param operation
+   *          Name of the operation.
+   * @param minimum
+   *          Minimum amount of records of a batch.
+   * @param maximum
+   *          Maximum amount of records of a batch.
+   * @param initial
+   *          Initial amount of records of a batch.
+   * @param targetMillis
+   *          Time, in milliseconds, that a batch should take.
+   * @return {@link BatchSizeController} of the operation.
+   */
+  public static BatchSizeController forOperation(Class<?> entityClass,
+      String operation, int minimum, int maximum, int initial,
+      long targetMillis) {
+    String name = entityClass.getName() + "." + operation;
+    BatchSizeController controller = CONTROLLERS.get(name);
+    if (controller == null) {
+      controller = new BatchSizeController(name, minimum, maximum, initial,
+          targetMillis);
+      BatchSizeController previous = CONTROLLERS.putIfAbsent(name, controller);
+      if (previous != null) {
+        controller = previous;
+      }
+    }
+    return controller;
+  }
+
+  /**
+   * Brings the current amount of records of a batch.
+   * 
+   * @since 1.6
+   * @return Amount of records of a batch.
+   */
+  public int getBatchSize() {
+    return batchSize.get();
+  }
+
+  /**
+   * Records the time spent by a batch and tunes the amount of records of the
+   * next batches.
+   * 
+   * @since 1.6
+   * @param records
+   *          Amount of records of the batch.
+   * @param elapsedNanos
+   *          Time, in nanoseconds, spent by the batch.
+   */
+  public void record(int records, long elapsedNanos) {
+    batches.incrementAndGet();
+    lastElapsedNanos = elapsedNanos;
+    if (records <= 0) {
+      return;
+    }
+
+    int current = batchSize.get();
+    int next = current;
+    double heapUsage = getHeapUsage();
+    if (heapUsage > HIGH_HEAP_USAGE) {
+      next = current / 2;
+    } else if (elapsedNanos > targetNanos) {
+      next = (int) (current * ((double) targetNanos / elapsedNanos));
+      next = Math.min(next, current - 1);
+    } else if (elapsedNanos < targetNanos / 2 && records >= current) {
+      next = current + Math.max(1, current / 4);
+    }
+    next = Math.max(minimum, Math.min(maximum, next));
+
+    if (next != current && batchSize.compareAndSet(current, next)) {
+      adjustments.incrementAndGet();
+      if (LOGGER.isDebugEnabled()) {
+        LOGGER.debug("Batch size of " + name + " changed from " + current
+            + " to " + next + " (batch of " + records + " records took "
+            + TimeUnit.NANOSECONDS.toMillis(elapsedNanos) + "ms, heap usage "
+            + Math.round(heapUsage * 100) + "%).");
+      }
+    }
+  }
+
+  /**
+   * Brings the heap pools that hold the long lived objects. The young pools do
+   * not support usage thresholds and are skipped, since they are emptied by
+   * each collection.
+   * 
+   * @return Tenured heap pools.
+   */
+  private static List<MemoryPoolMXBean> findTenuredPools() {
+    List<MemoryPoolMXBean> pools = new ArrayList<MemoryPoolMXBean>();
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP && pool.isUsageThresholdSupported()
+          && pool.isCollectionUsageThresholdSupported()) {
+        pools.add(pool);
+      }
+    }
+    return pools;
+  }
+
+  /**
+   * Brings the highest usage, from 0 to 1, left by the last garbage collection
+   * on the tenured heap pools. It is <code>0</code> before the first
+   * collection, or when the pools are not known.
+   * 
+   * @since 1.6
+   * @return Heap usage after the last collection.
+   */
+  public static double getHeapUsage() {
+    double heapUsage = 0;
+    for (MemoryPoolMXBean pool : TENURED_POOLS) {
+      MemoryUsage usage = pool.getCollectionUsage();
+      if (usage != null && usage.getMax() > 0) {
+        heapUsage = Math.max(heapUsage, (double) usage.getUsed()
+            / usage.getMax());
+      }
+    }
+    return heapUsage;
+  }
+
+  /**
+   * Brings the name of the controller, composed by the entity class and the
+   * operation.
+   * 
+   * @since 1.6
+   * @return Name of the controller.
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Brings the minimum amount of records of a batch.
+   * 
+   * @since 1.6
+   * @return Minimum amount of records.
+   */
+  public int getMinimum() {
+    return minimum;
+  }
+
+  /**
+   * Brings the maximum amount of records of a batch.
+   * 
+   * @since 1.6
+   * @return Maximum amount of records.
+   */
+  public int getMaximum() {
+    return maximum;
+  }
+
+  /**
+   * Brings the amount of batches recorded.
+   * 
+   * @since 1.6
+   * @return Amount of batches.
+   */
+  public long getBatches() {
+    return batches.get();
+  }
+
+  /**
+   * Brings the amount of times the batch size was changed.
+   * 
+   * @since 1.6
+   * @return Amount of adjustments.
+   */
+  public long getAdjustments() {
+    return adjustments.get();
+  }
+
+  /**
+   * Brings the time, in nanoseconds, spent by the last batch.
+   * 
+   * @since 1.6
+   * @return Time spent by the last batch.
+   */
+  public long getLastElapsedNanos() {
+    return lastElapsedNanos;
+  }
+
+}
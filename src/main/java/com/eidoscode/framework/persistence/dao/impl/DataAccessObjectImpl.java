@@ -2,20 +2,92 @@ package com.eidoscode.framework.persistence.dao.impl;
 
 import java.io.Serializable;
 import java.lang.annotation.Annotation;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.persistence.FlushModeType;
+import javax.persistence.GeneratedValue;
+import javax.persistence.OptimisticLockException;
+import javax.persistence.PersistenceException;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+import javax.persistence.PreRemove;
+import javax.persistence.PreUpdate;
 import javax.persistence.Query;
+import javax.persistence.TemporalType;
+import javax.persistence.Tuple;
 import javax.persistence.TypedQuery;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Fetch;
+import javax.persistence.criteria.FetchParent;
+import javax.persistence.criteria.JoinType;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Selection;
+import javax.persistence.metamodel.Attribute;
+import javax.persistence.metamodel.EmbeddableType;
+import javax.persistence.metamodel.EntityType;
+import javax.persistence.metamodel.ManagedType;
+import javax.persistence.metamodel.SingularAttribute;
 
+import com.eidoscode.framework.persistence.cache.CacheStatistics;
+import com.eidoscode.framework.persistence.cache.EntityCache;
+import com.eidoscode.framework.persistence.cache.KeyFilter;
+import com.eidoscode.framework.persistence.cache.QueryCache;
+import com.eidoscode.framework.persistence.dao.CountMode;
 import com.eidoscode.framework.persistence.dao.DataAccessObject;
+import com.eidoscode.framework.persistence.dao.EntityProcessor;
+import com.eidoscode.framework.persistence.dao.FetchPlan;
+import com.eidoscode.framework.persistence.dao.KeyRangeResult;
+import com.eidoscode.framework.persistence.dao.KeysetPage;
+import com.eidoscode.framework.persistence.dao.KeysetToken;
+import com.eidoscode.framework.persistence.dao.PartitionResult;
+import com.eidoscode.framework.persistence.dao.ProcessingProgress;
+import com.eidoscode.framework.persistence.dao.ReadOnlyScope;
+import com.eidoscode.framework.persistence.metrics.Operation;
+import com.eidoscode.framework.persistence.metrics.OperationTimer;
+import com.eidoscode.framework.persistence.metrics.PersistenceMetrics;
+import com.eidoscode.framework.persistence.metrics.SlowOperationLog;
+import com.eidoscode.framework.persistence.model.AuditedModel;
 import com.eidoscode.framework.persistence.model.Model;
-import com.eidoscode.generics.utils.GenericsUtils;
+import com.eidoscode.framework.persistence.model.listener.CreationDateListener;
+import com.eidoscode.framework.persistence.model.listener.ModifiedDateListener;
+import com.eidoscode.framework.persistence.util.NamedThreadFactory;
+import com.eidoscode.framework.persistence.util.QueryUtils;
 
 /**
  * Main implementation of the Interface {@link DataAccessObject}. It provides
@@ -35,9 +107,17 @@ import com.eidoscode.generics.utils.GenericsUtils;
 public abstract class DataAccessObjectImpl<Key extends Serializable, Bean extends Model<Key>>
     extends MinimalDataAccessObjectImpl implements DataAccessObject<Key, Bean> {
 
-  private final Class<Bean> entityClass;
-  private final Class<Key> keyClass;
-  private final String entityName;
+  private final EntityMetadata<Key, Bean> metadata;
+  private volatile BatchSizeController saveBatchController;
+  private volatile BatchSizeController removeBatchController;
+  private volatile EntityCache<Key, Bean> entityCache;
+  private volatile KeyFilter keyFilter;
+  private volatile QueryCache<Key> queryCache;
+  private volatile PersistenceMetrics metrics;
+  private volatile SlowOperationLog slowOperationLog;
+  private volatile ExecutorService asyncExecutor;
+  private volatile long asyncExecutorRetryOn;
+  private final ThreadLocal<EntityManager> boundEntityManager = new ThreadLocal<EntityManager>();
 
   /**
    * Default amount that will be used on the batch save. This will be used on
@@ -45,32 +125,154 @@ public abstract class DataAccessObjectImpl<Key extends Serializable, Bean extend
    */
   public static final int DEFAULT_AMOUNT_SAVE_BATCH_RECORDS = 50;
 
+  /**
+   * Default minimum amount of records of an adaptive batch. This will be used
+   * on the method {@link #getMinimumBatchRecords()}.
+   */
+  public static final int DEFAULT_MINIMUM_BATCH_RECORDS = 10;
+
+  /**
+   * Default maximum amount of records of an adaptive batch. This will be used
+   * on the method {@link #getMaximumBatchRecords()}.
+   */
+  public static final int DEFAULT_MAXIMUM_BATCH_RECORDS = 1000;
+
+  /**
+   * Default time, in milliseconds, that an adaptive batch should take. This
+   * will be used on the method {@link #getBatchTargetTime()}.
+   */
+  public static final long DEFAULT_BATCH_TARGET_TIME = 200L;
+
+  /**
+   * Default time, in milliseconds, that a cached amount of entities is valid.
+   * This will be used on the method {@link #getCountCacheTimeToLive()}.
+   */
+  public static final long DEFAULT_COUNT_CACHE_TIME_TO_LIVE = 60000L;
+
+  /**
+   * Default time, in milliseconds, that an entity is kept by the entity cache.
+   * This will be used on the method {@link #getEntityCacheTimeToLive()}.
+   */
+  public static final long DEFAULT_ENTITY_CACHE_TIME_TO_LIVE = 60000L;
+
+  /**
+   * Default time, in milliseconds, that a page is kept by the query cache.
+   * This will be used on the method {@link #getQueryCacheTimeToLive()}.
+   */
+  public static final long DEFAULT_QUERY_CACHE_TIME_TO_LIVE = 60000L;
+
+  /**
+   * JNDI name of the executor supplied by the container to run the
+   * asynchronous operations. This will be used on the method
+   * {@link #getAsyncExecutor()}.
+   */
+  public static final String DEFAULT_ASYNC_EXECUTOR_NAME = "java:comp/DefaultManagedExecutorService";
+
+  /**
+   * Default rate of absent keys that the {@link KeyFilter} may report as
+   * present. This will be used on the method
+   * {@link #getKeyFilterFalsePositiveRate()}.
+   */
+  public static final double DEFAULT_KEY_FILTER_FALSE_POSITIVE_RATE = 0.01;
+
+  /**
+   * Default time, in milliseconds, between two rebuilds of the
+   * {@link KeyFilter}. This will be used on the method
+   * {@link #getKeyFilterRebuildInterval()}.
+   */
+  public static final long DEFAULT_KEY_FILTER_REBUILD_INTERVAL = 3600000L;
+
+  /**
+   * Hint that makes Hibernate bring the entities as read-only.
+   */
+  public static final String HIBERNATE_READ_ONLY_HINT = "org.hibernate.readOnly";
+
+  /**
+   * Hint that makes EclipseLink bring the entities as read-only.
+   */
+  public static final String ECLIPSELINK_READ_ONLY_HINT = "eclipselink.read-only";
+
+  private static final Map<String, Object> READ_ONLY_HINTS;
+
+  static {
+    Map<String, Object> hints = new HashMap<String, Object>();
+    hints.put(HIBERNATE_READ_ONLY_HINT, Boolean.TRUE);
+    hints.put(ECLIPSELINK_READ_ONLY_HINT, "True");
+    READ_ONLY_HINTS = Collections.unmodifiableMap(hints);
+  }
+
+  private static final List<Class<?>> AUDIT_LISTENERS = Arrays
+      .<Class<?>> asList(CreationDateListener.class,
+          ModifiedDateListener.class);
+
+  /**
+   * Default amount of keys bound to a single statement, such as the
+   * <code>IN</code> list used by {@link #removeById(Collection, boolean)}. This
+   * will be used on the method {@link #getAmountKeysPerStatement()}.
+   */
+  public static final int DEFAULT_AMOUNT_KEYS_PER_STATEMENT = 500;
+
+  /**
+   * Default amount of entities fetched on each round trip by the
+   * {@link #iterateAll()} method. This will be used on the method
+   * {@link #getFetchSize()}.
+   */
+  public static final int DEFAULT_FETCH_SIZE = 500;
+
+  /**
+   * Default name of the attribute that holds the key of the entity. This will
+   * be used on the method {@link #getIdAttributeName()}.
+   */
+  public static final String DEFAULT_ID_ATTRIBUTE_NAME = "id";
+
+  /**
+   * Default name of the attribute that holds the version of the entity. This
+   * will be used on the method {@link #getVersionAttributeName()}.
+   */
+  public static final String DEFAULT_VERSION_ATTRIBUTE_NAME = "version";
+
+  /**
+   * Default name of the attribute that holds the creation date of an
+   * {@link AuditedModel}. This will be used on the method
+   * {@link #getCreatedOnAttributeName()}.
+   */
+  public static final String DEFAULT_CREATED_ON_ATTRIBUTE_NAME = "createdOn";
+
+  /**
+   * Default name of the attribute that holds the date of the last change of an
+   * {@link AuditedModel}. This will be used on the method
+   * {@link #getModifiedOnAttributeName()}.
+   */
+  public static final String DEFAULT_MODIFIED_ON_ATTRIBUTE_NAME = "modifiedOn";
+
   /**
    * Main constructor. It collects the Key of the entity, the entity type and
-   * the name of the entity.
+   * the name of the entity. They are collected once by class and shared by all
+   * its instances.
    * 
    * @since 1.0
    */
   public DataAccessObjectImpl() {
-    String entityName = "";
-    this.keyClass = GenericsUtils.getSuperClassGenericType(getClass(),
-        DataAccessObjectImpl.class, 0);
-    this.entityClass = GenericsUtils.getSuperClassGenericType(getClass(),
-        DataAccessObjectImpl.class, 1);
-
-    Annotation[] annotations = this.getEntityClass().getAnnotations();
-    for (Annotation annotation : annotations) {
-      if (annotation instanceof Entity) {
-        entityName = ((Entity) annotation).name();
-        break;
-      }
-    }
+    this.metadata = EntityMetadata.forClass(getClass());
+  }
 
-    if (entityName.equals("")) {
-      entityName = this.entityClass.getSimpleName();
+  /**
+   * Constructor to Data Access Objects whose Key and entity types can not be
+   * collected from the generic declaration of the class.
+   * 
+   * @since 1.6
+   * @param keyClass
+   *          Class of the key of the entity.
+   * @param entityClass
+   *          Class of the entity.
+   */
+  protected DataAccessObjectImpl(Class<Key> keyClass, Class<Bean> entityClass) {
+    if (keyClass == null || entityClass == null) {
+      throw new NullPointerException(
+          "The keyClass and entityClass parameters are mandatory.");
     }
-    this.entityName = entityName;
-
+    this.metadata = EntityMetadata.forEntity(getClass(), keyClass,
+        entityClass);
   }
 
   /**
@@ -80,7 +282,7 @@ public abstract class DataAccessObjectImpl<Key extends Serializable, Bean extend
    * @return Class of the key of the entity.
    */
   protected Class<Key> getKeyClass() {
-    return this.keyClass;
+    return metadata.getKeyClass();
   }
 
   /**
@@ -90,7 +292,7 @@ public abstract class DataAccessObjectImpl<Key extends Serializable, Bean extend
    * @return Class of the key of the entity.
    */
   protected Class<Bean> getEntityClass() {
-    return this.entityClass;
+    return metadata.getEntityClass();
   }
 
   /**
@@ -100,7 +302,170 @@ public abstract class DataAccessObjectImpl<Key extends Serializable, Bean extend
    * @return Entity name.
    */
   protected String getEntityName() {
-    return this.entityName;
+    return metadata.getEntityName();
+  }
+
+  /**
+   * Brings the name of the attribute that holds the key of the entity.
+   * 
+   * @since 1.6
+   * @return Name of the key attribute.
+   */
+  protected String getIdAttributeName() {
+    return DEFAULT_ID_ATTRIBUTE_NAME;
+  }
+
+  /**
+   * Brings the name of the attribute that holds the version of the entity.
+   * 
+   * @since 1.6
+   * @return Name of the version attribute.
+   */
+  protected String getVersionAttributeName() {
+    return DEFAULT_VERSION_ATTRIBUTE_NAME;
+  }
+
+  /**
+   * Brings the name of the attribute that holds the creation date of an
+   * {@link AuditedModel}.
+   * 
+   * @since 1.6
+   * @return Name of the creation date attribute.
+   */
+  protected String getCreatedOnAttributeName() {
+    return DEFAULT_CREATED_ON_ATTRIBUTE_NAME;
+  }
+
+  /**
+   * Brings the name of the attribute that holds the date of the last change of
+   * an {@link AuditedModel}.
+   * 
+   * @since 1.6
+   * @return Name of the modification date attribute.
+   */
+  protected String getModifiedOnAttributeName() {
+    return DEFAULT_MODIFIED_ON_ATTRIBUTE_NAME;
+  }
+
+  /**
+   * Brings the measures of the operations of the entity, shared by all its Data
+   * Access Objects and published over JMX as
+   * <code>com.eidoscode.framework.persistence:type=DataAccessObject,name=&lt;entity class&gt;</code>
+   * . They outlive the instances, since they are shared, so the application
+   * must call {@link PersistenceMetrics#unregisterAll()} when it is
+   * undeployed.
+   * 
+   * @since 1.6
+   * @return {@link PersistenceMetrics} of the entity.
+   */
+  public PersistenceMetrics getMetrics() {
+    PersistenceMetrics entityMetrics = this.metrics;
+    if (entityMetrics == null) {
+      entityMetrics = PersistenceMetrics.forEntity(
+          PersistenceMetrics.DATA_ACCESS_OBJECT, getEntityName(),
+          getEntityClass());
+      this.metrics = entityMetrics;
+    }
+    return entityMetrics;
+  }
+
+  /**
+   * Return the time, in milliseconds, above which a call is written on the
+   * {@link SlowOperationLog} of the entity, with its parameters. If it is
+   * {@link SlowOperationLog#DISABLED} the slow calls are not logged.
+   * 
+   * @since 1.6
+   * @return Slow operation threshold.
+   */
+  protected long getSlowOperationThreshold() {
+    return SlowOperationLog.DISABLED;
+  }
+
+  /**
+   * Return the maximum amount of slow calls logged on each interval given by
+   * {@link #getSlowOperationLogInterval()}. The others are only counted.
+   * 
+   * @since 1.6
+   * @return Maximum amount of entries by interval.
+   */
+  protected int getSlowOperationLogLimit() {
+    return SlowOperationLog.DEFAULT_MAXIMUM_ENTRIES;
+  }
+
+  /**
+   * Return the interval, in milliseconds, of the rate limit of the slow
+   * operation log.
+   * 
+   * @since 1.6
+   * @return Rate limit interval.
+   */
+  protected long getSlowOperationLogInterval() {
+    return SlowOperationLog.DEFAULT_INTERVAL;
+  }
+
+  /**
+   * Return how often a slow call is logged with the stack of its caller: one of
+   * each returned amount of entries. If it is <code>0</code> the stack is never
+   * logged.
+   * 
+   * @since 1.6
+   * @return Stack sampling.
+   */
+  protected int getSlowOperationStackSampling() {
+    return SlowOperationLog.DEFAULT_STACK_SAMPLING;
+  }
+
+  /**
+   * Brings the log of the slow calls of the entity, shared by all its Data
+   * Access Objects.
+   * 
+   * @since 1.6
+   * @return {@link SlowOperationLog} of the entity or <code>null</code> if it
+   *         is disabled.
+   */
+  protected SlowOperationLog getSlowOperationLog() {
+    SlowOperationLog log = this.slowOperationLog;
+    if (log == null) {
+      log = SlowOperationLog.forEntity(PersistenceMetrics.DATA_ACCESS_OBJECT,
+          getEntityName(), getEntityClass(), getSlowOperationThreshold(),
+          getSlowOperationLogLimit(), getSlowOperationLogInterval(),
+          getSlowOperationStackSampling());
+      this.slowOperationLog = log;
+    }
+    return log;
+  }
+
+  /**
+   * Starts to measure a call of an operation. The timer must be stopped on a
+   * finally block.
+   * 
+   * @since 1.6
+   * @param operation
+   *          Called {@link Operation}.
+   * @param parameters
+   *          Parameters of the call, logged if it is slow.
+   * @return {@link OperationTimer} of the call.
+   */
+  protected OperationTimer startTimer(Operation operation,
+      Object... parameters) {
+    return getMetrics().start(operation, getSlowOperationLog(), parameters);
+  }
+
+  /**
+   * Brings the statements of the built-in operations. They are built on the
+   * first use and reused on every call of any instance of the class.
+   * 
+   * @since 1.6
+   * @return {@link EntityStatements} of the entity.
+   */
+  EntityStatements getStatements() {
+    EntityStatements entityStatements = metadata.getStatements();
+    if (entityStatements == null) {
+      entityStatements = new EntityStatements(getEntityClass(),
+          getEntityName(), getIdAttributeName(), getVersionAttributeName());
+      metadata.setStatements(entityStatements);
+    }
+    return entityStatements;
   }
 
   /**
@@ -117,16 +482,25 @@ public abstract class DataAccessObjectImpl<Key extends Serializable, Bean extend
    */
   @Override
   public Bean save(Bean bean, boolean flush) {
-    if (bean.getId() == null) {
-      getLogger().debug("Adding object: " + bean);
-      getEntityManager().persist(bean);
-    } else {
-      getLogger().debug("Updating object: " + bean);
-      bean = getEntityManager().merge(bean);
-    }
+    OperationTimer timer = startTimer(Operation.SAVE, bean);
+    try {
+      if (bean.getId() == null) {
+        getLogger().debug("Adding object: " + bean);
+        getCurrentEntityManager().persist(bean);
+        metadata.getCountCache().add(1);
+        invalidateQueries();
+      } else {
+        getLogger().debug("Updating object: " + bean);
+        evict(bean.getId());
+        bean = getCurrentEntityManager().merge(bean);
+      }
+      remember(bean.getId());
 
-    flushEntityManager(flush);
-    return bean;
+      flushEntityManager(flush);
+      return timer.success(bean, 1);
+    } finally {
+      timer.stop();
+    }
   }
 
   /**
@@ -143,306 +517,3251 @@ public abstract class DataAccessObjectImpl<Key extends Serializable, Bean extend
    */
   @Override
   public <E extends Collection<Bean>> E save(E beans, boolean flush) {
-    if (beans != null) {
-      int savedBeans = 0;
-      Iterator<Bean> iterator = beans.iterator();
-      while (iterator.hasNext()) {
-        Bean bean = iterator.next();
-        save(bean, false);
-        savedBeans++;
-        if (flush && savedBeans % getAmountSaveBatchRecords() == 0) {
-          flushEntityManager(true);
-        }
+    OperationTimer timer = startTimer(Operation.SAVE, beans);
+    try {
+      if (beans != null) {
+        saveEach(beans, flush);
       }
+      return timer.success(beans, beans == null ? 0 : beans.size());
+    } finally {
+      timer.stop();
     }
-    return beans;
   }
 
   /**
-   * Merges the desired entity. It will merge an existent entity.
+   * Saves each entity of a collection, flushing a batch at a time if desired.
    * 
-   * @since 1.5
-   * @param bean
-   *          desired entity.
+   * @param beans
+   *          desired entities.
    * @param flush
-   *          If <code>true</code> the method
-   *          {@link #flushEntityManager(boolean)} will be called.
-   * @return entity stored
+   *          If <code>true</code> the batches are flushed.
+   * @return The stored entities, on the order of the collection.
    */
-  @Override
-  public Bean merge(Bean bean, boolean flush) {
-    getLogger().debug("Updating object: " + bean);
-    bean = getEntityManager().merge(bean);
-
-    flushEntityManager(flush);
-    return bean;
+  private List<Bean> saveEach(Collection<Bean> beans, boolean flush) {
+    List<Bean> saved = new ArrayList<Bean>(beans.size());
+    int pendingBeans = 0;
+    Iterator<Bean> iterator = beans.iterator();
+    while (iterator.hasNext()) {
+      Bean bean = iterator.next();
+      saved.add(save(bean, false));
+      pendingBeans++;
+      if (flush && pendingBeans >= getAmountSaveBatchRecords()) {
+        flushBatch(pendingBeans);
+        pendingBeans = 0;
+      }
+    }
+    return saved;
   }
 
   /**
-   * Merges the desired entity. It will merge an existent entity.
+   * Saves a collection of entities in parallel. The collection is split into
+   * partitions and each partition is saved by a worker thread with its own
+   * {@link EntityManager}, created by the factory brought by
+   * {@link #getParallelEntityManagerFactory()}, and its own transaction.<br/>
+   * A failed partition is rolled back without affecting the others, so it can
+   * be retried using the entities of its {@link PartitionResult}. The
+   * transactions are resource local, so the factory must not be a JTA one.
+   * The detached entities that were merged get the new version, so they can
+   * be saved again.<br/>
+   * When a single partition is saved at a time, the partitions are saved one
+   * after the other on the calling thread, without creating any thread.
    * 
-   * @since 1.5
+   * @since 1.6
    * @param beans
    *          desired entities.
-   * @param flush
-   *          If <code>true</code> the method
-   *          {@link #flushEntityManager(boolean)} will be called.
-   * @return entities stored.
+   * @param partitionSize
+   *          Amount of entities of each partition.
+   * @param parallelism
+   *          Maximum amount of partitions saved at the same time.
+   * @return {@link List} with the result of each partition, on the same order
+   *         of the partitions.
    */
   @Override
-  public <E extends Collection<Bean>> E merge(E beans, boolean flush) {
-    if (beans != null) {
-      int mergedBeans = 0;
-      Iterator<Bean> iterator = beans.iterator();
-      while (iterator.hasNext()) {
-        Bean bean = iterator.next();
-        merge(bean, false);
-        mergedBeans++;
-        if (flush && mergedBeans % getAmountSaveBatchRecords() == 0) {
-          flushEntityManager(true);
+  public List<PartitionResult<Bean>> saveParallel(Collection<Bean> beans,
+      int partitionSize, int parallelism) {
+    if (partitionSize <= 0 || parallelism <= 0) {
+      throw new IllegalArgumentException(
+          "The partition size and the parallelism must be greater than zero.");
+    }
+    OperationTimer timer = startTimer(Operation.SAVE_PARALLEL, beans,
+        partitionSize, parallelism);
+    try {
+      List<PartitionResult<Bean>> results = savePartitions(beans,
+          partitionSize, parallelism);
+      long rows = 0;
+      for (PartitionResult<Bean> result : results) {
+        rows += result.getRowCount();
+      }
+      return timer.success(results, rows);
+    } finally {
+      timer.stop();
+    }
+  }
+
+  private List<PartitionResult<Bean>> savePartitions(Collection<Bean> beans,
+      int partitionSize, int parallelism) {
+    List<PartitionResult<Bean>> results = new ArrayList<PartitionResult<Bean>>();
+    if (beans == null || beans.isEmpty()) {
+      return results;
+    }
+
+    List<List<Bean>> partitions = new ArrayList<List<Bean>>();
+    List<Bean> partition = null;
+    for (Bean bean : beans) {
+      if (partition == null || partition.size() == partitionSize) {
+        partition = new ArrayList<Bean>(partitionSize);
+        partitions.add(partition);
+      }
+      partition.add(bean);
+    }
+
+    EntityManagerFactory factory = getParallelEntityManagerFactory();
+    if (parallelism == 1 || partitions.size() == 1) {
+      for (int index = 0; index < partitions.size(); index++) {
+        results.add(new SavePartitionTask(factory, index, partitions
+            .get(index)).call());
+      }
+      return results;
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(
+        Math.min(parallelism, partitions.size()), new NamedThreadFactory(
+            getEntityName() + "-save"));
+    try {
+      List<Future<PartitionResult<Bean>>> futures = new ArrayList<Future<PartitionResult<Bean>>>();
+      for (int index = 0; index < partitions.size(); index++) {
+        futures.add(executor.submit(new SavePartitionTask(factory, index,
+            partitions.get(index))));
+      }
+      for (int index = 0; index < futures.size(); index++) {
+        try {
+          results.add(futures.get(index).get());
+        } catch (ExecutionException e) {
+          results.add(new PartitionResult<Bean>(index, partitions.get(index),
+              0, e.getCause()));
         }
       }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new PersistenceException("Interrupted while saving "
+          + getEntityName() + " partitions.", e);
+    } finally {
+      executor.shutdownNow();
     }
-    return beans;
+    return results;
   }
 
   /**
-   * Return the amount of records to be used on a batch save. <br/>
-   * It is default used on these methods {@link #save(List)},
-   * {@link #save(List, boolean)}, {@link #removeById(Collection)} and
-   * {@link #removeById(Collection, boolean)}.
+   * Processes all the entities of the table in parallel. The range between the
+   * lowest and the highest keys is split into partitions of the same width,
+   * and each partition is processed by a worker thread with its own
+   * {@link EntityManager}, created by the factory brought by
+   * {@link #getParallelEntityManagerFactory()}. The entities of a partition
+   * are loaded sorted by key, {@link #getFetchSize()} at a time, filtered by
+   * {@link #defaultFilterCriteria(CriteriaQuery)} and
+   * {@link #defaultFilterQuery(TypedQuery)}, and each batch is processed and
+   * committed on its own resource local transaction, so the factory must not
+   * be a JTA one. The ranges are split from the lowest and the highest keys of
+   * the whole table.<br/>
+   * A failure rolls back the batch and stops its partition, without affecting
+   * the others, and its {@link KeyRangeResult} tells the last committed key.
+   * Since the processor changes the entities behind the caches, they are
+   * evicted at the end.
    * 
-   * @return Amount of records to be used on the batch record.
+   * @since 1.6
+   * @param processor
+   *          Processor of each entity. It must be thread safe.
+   * @param partitionCount
+   *          Amount of key ranges.
+   * @param parallelism
+   *          Maximum amount of ranges processed at the same time.
+   * @param progress
+   *          Progress updated as the batches are committed, or
+   *          <code>null</code>.
+   * @return {@link List} with the result of each range, on the order of the
+   *         keys.
+   * @throws UnsupportedOperationException
+   *           If the key is not a {@link Long}, an {@link Integer} or a
+   *           {@link Short}.
    */
-  protected int getAmountSaveBatchRecords() {
-    return DEFAULT_AMOUNT_SAVE_BATCH_RECORDS;
+  @Override
+  public List<KeyRangeResult<Key>> forEachParallel(
+      EntityProcessor<Bean> processor, int partitionCount, int parallelism,
+      ProcessingProgress progress) {
+    if (processor == null) {
+      throw new NullPointerException("The processor parameter is mandatory.");
+    }
+    if (partitionCount <= 0 || parallelism <= 0) {
+      throw new IllegalArgumentException(
+          "The partition count and the parallelism must be greater than zero.");
+    }
+    if (!isIntegralKey()) {
+      throw new UnsupportedOperationException(
+          "The parallel processing needs an integral key, but "
+              + getEntityName() + " has a " + getKeyClass().getName() + " key.");
+    }
+    OperationTimer timer = startTimer(Operation.FOR_EACH_PARALLEL,
+        partitionCount, parallelism);
+    try {
+      ProcessingProgress tracker = progress == null ? new ProcessingProgress()
+          : progress;
+      List<KeyRangeResult<Key>> results = new ArrayList<KeyRangeResult<Key>>();
+      EntityManagerFactory factory = getParallelEntityManagerFactory();
+      Object[] range;
+      EntityManager entityManager = factory.createEntityManager();
+      try {
+        range = (Object[]) getStatements().getFindKeyRange()
+            .createQuery(entityManager).getSingleResult();
+      } finally {
+        entityManager.close();
+      }
+      if (range[0] == null) {
+        tracker.started(0);
+        return timer.success(results, 0);
+      }
+
+      long[][] bounds = splitKeyRange(((Number) range[0]).longValue(),
+          ((Number) range[1]).longValue(), partitionCount);
+      long[] lowerKeys = bounds[0];
+      long[] upperKeys = bounds[1];
+      int count = lowerKeys.length;
+      tracker.started(count);
+
+      ExecutorService executor = Executors.newFixedThreadPool(
+          Math.min(parallelism, count), new NamedThreadFactory(getEntityName()
+              + "-process"));
+      long processed = 0;
+      try {
+        List<Future<KeyRangeResult<Key>>> futures = new ArrayList<Future<KeyRangeResult<Key>>>();
+        for (int index = 0; index < count; index++) {
+          futures.add(executor.submit(new ProcessRangeTask(factory, index,
+              lowerKeys[index], upperKeys[index], processor, tracker)));
+        }
+        for (int index = 0; index < count; index++) {
+          KeyRangeResult<Key> result;
+          try {
+            result = futures.get(index).get();
+          } catch (ExecutionException e) {
+            tracker.finished(false);
+            result = new KeyRangeResult<Key>(index, toKey(lowerKeys[index]),
+                toKey(upperKeys[index]), null, 0, e.getCause());
+          }
+          processed += result.getProcessed();
+          results.add(result);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new PersistenceException("Interrupted while processing "
+            + getEntityName() + " partitions.", e);
+      } finally {
+        executor.shutdownNow();
+        evictAll();
+      }
+      return timer.success(results, processed);
+    } finally {
+      timer.stop();
+    }
+  }
+
+  private boolean isIntegralKey() {
+    Class<Key> keyClass = getKeyClass();
+    return Long.class.equals(keyClass) || Integer.class.equals(keyClass)
+        || Short.class.equals(keyClass);
+  }
+
+  private Key toKey(long value) {
+    Class<Key> keyClass = getKeyClass();
+    Object key;
+    if (Integer.class.equals(keyClass)) {
+      key = Integer.valueOf((int) value);
+    } else if (Short.class.equals(keyClass)) {
+      key = Short.valueOf((short) value);
+    } else {
+      key = Long.valueOf(value);
+    }
+    return keyClass.cast(key);
   }
 
   /**
-   * Removes a desired entity.
+   * Brings the {@link EntityManagerFactory} used to create the
+   * {@link EntityManager} of each worker thread. The main implementation brings
+   * the factory of {@link #getEntityManager()}. If it is a JTA factory,
+   * subclasses must bring a resource local one.
    * 
-   * @since 1.0
-   * @param bean
-   *          Desired entity.
-   * @param flush
-   *          If <code>true</code> the method
-   *          {@link #flushEntityManager(boolean)} will be called.
+   * @since 1.6
+   * @return {@link EntityManagerFactory} of the worker threads.
    */
-  @Override
-  public void remove(Bean bean, boolean flush) {
-    getLogger().debug("Removing object: " + bean);
-    bean = findByKey(bean.getId());
-    getEntityManager().remove(bean);
-    flushEntityManager(flush);
+  protected EntityManagerFactory getParallelEntityManagerFactory() {
+    return getCurrentEntityManager().getEntityManagerFactory();
   }
 
   /**
-   * Remove an entity by it's Id.
+   * Brings the {@link EntityManager} used by the operations running on the
+   * current thread: the one of a worker thread, while this Data Access Object
+   * runs an operation on it, or else {@link #getEntityManager()}.<br/>
+   * The asynchronous and parallel operations run on this same instance, so all
+   * its hooks are honoured by them. The hooks that run queries, such as
+   * {@link #createApproximateCountQuery()}, must create them on this
+   * {@link EntityManager}.
    * 
-   * @since 1.3
-   * @param key
-   *          The Key of the entity that want to be removed.
-   * @param flush
-   *          If <code>true</code> the method
-   *          {@link #flushEntityManager(boolean)} will be called.
+   * @since 1.6
+   * @return {@link EntityManager} of the current thread.
    */
-  @Override
-  public void removeById(Key key, boolean flush) {
-    // TODO Need to implements this on future using the JPA 2.1
-    // http://en.wikibooks.org/wiki/Java_Persistence/Criteria#CriteriaDelete_.28JPA_2.1.29
-    // cb.createCriteriaDelete();
-
-    StringBuilder sb = new StringBuilder();
-    sb.append("DELETE FROM ").append(getEntityName());
-    sb.append(" a WHERE a.id = :id");
-
-    Query query = getEntityManager().createQuery(sb.toString());
-    query.setParameter("id", key);
-
-    query.executeUpdate();
-
-    flushEntityManager(flush);
+  protected final EntityManager getCurrentEntityManager() {
+    EntityManager entityManager = boundEntityManager.get();
+    return entityManager == null ? getEntityManager() : entityManager;
   }
 
   /**
-   * Removes all entities by an ID.
+   * Binds an {@link EntityManager} to the current thread, to be brought by
+   * {@link #getCurrentEntityManager()}.
    * 
-   * @since 1.3
-   * @param keys
-   *          Desired keys to be removed.
-   * @param flush
-   *          If <code>true</code> the method
-   *          {@link #flushEntityManager(boolean)} will be called.
-   * @return entities stored.
+   * @param entityManager
+   *          {@link EntityManager} to be bound, or <code>null</code> to unbind
+   *          it.
+   * @return {@link EntityManager} previously bound, to be bound again at the
+   *         end, or <code>null</code>.
    */
-  @Override
-  public void removeById(Collection<Key> keys, boolean flush) {
-    if (keys != null) {
-      int removedBeans = 0;
-      Iterator<Key> iterator = keys.iterator();
-      while (iterator.hasNext()) {
-        Key key = iterator.next();
-        removeById(key, false);
-        removedBeans++;
-        if (flush && removedBeans % getAmountSaveBatchRecords() == 0) {
-          flushEntityManager(true);
-        }
-      }
+  private EntityManager bindEntityManager(EntityManager entityManager) {
+    EntityManager previous = boundEntityManager.get();
+    if (entityManager == null) {
+      boundEntityManager.remove();
+    } else {
+      boundEntityManager.set(entityManager);
     }
+    return previous;
   }
 
   /**
-   * If received true as a parameter, it will get the current entity manager and
-   * flush it and perform the clear of the session.
+   * Brings an entity by its key asynchronously. The entity is found by a
+   * thread of {@link #getAsyncExecutor()} with its own {@link EntityManager},
+   * that is closed at the end, so the entity is brought detached.
    * 
-   * @param flush
-   *          If true, it means that the session will be flushed and clean.
+   * @since 1.6
+   * @param id
+   *          Entity key.
+   * @return {@link Future} of the entity.
+   * @throws IllegalStateException
+   *           If there is no executor of the asynchronous operations.
    */
-  protected void flushEntityManager(boolean flush) {
-    if (flush) {
-      this.getEntityManager().flush();
-      this.getEntityManager().clear();
-    }
+  @Override
+  public Future<Bean> findByKeyAsync(final Key id) {
+    return requireAsyncExecutor().submit(new AsyncTask<Bean>() {
+      @Override
+      Bean run() {
+        return findByKey(id);
+      }
+    });
   }
 
   /**
-   * Brings all the entities.
+   * Count all the entities asynchronously, using the mode brought by
+   * {@link #getDefaultCountMode()}.
    * 
-   * @since 1.0
-   * @return {@link List} with the entities.
+   * @since 1.6
+   * @return {@link Future} of the amount of entities.
+   * @throws IllegalStateException
+   *           If there is no executor of the asynchronous operations.
    */
   @Override
-  public List<Bean> findAll() {
-    TypedQuery<Bean> q = this.getEntityManager().createQuery(
-        "from " + this.getEntityName(), this.getEntityClass());
-    return q.getResultList();
+  public Future<Long> countAllAsync() {
+    return requireAsyncExecutor().submit(new AsyncTask<Long>() {
+      @Override
+      Long run() {
+        return countAll();
+      }
+    });
   }
 
   /**
-   * Brings all the entities paged.
+   * Brings all the entities paged asynchronously. The entities are found by a
+   * thread of {@link #getAsyncExecutor()} with its own {@link EntityManager},
+   * that is closed at the end, so the entities are brought detached.
    * 
-   * @since 1.0
+   * @since 1.6
    * @param startPosition
    *          position of the first result, numbered from 0.
    * @param maxResult
    *          maximum number of results to retrieve.
-   * @return {@link List} with the found entities.
+   * @return {@link Future} of the {@link List} with the found entities.
+   * @throws IllegalStateException
+   *           If there is no executor of the asynchronous operations.
    */
-  public List<Bean> findAllPaginate(int startPosition, int maxResult) {
-    CriteriaQuery<Bean> criteria = createCriteriaSelect();
-    defaultFilterCriteria(criteria);
-    TypedQuery<Bean> query = getEntityManager().createQuery(criteria);
-    defaultFilterQuery(query);
-    query.setFirstResult(startPosition);
-    query.setMaxResults(maxResult);
-    return query.getResultList();
+  public Future<List<Bean>> findAllPaginateAsync(final int startPosition,
+      final int maxResult) {
+    return requireAsyncExecutor().submit(new AsyncTask<List<Bean>>() {
+      @Override
+      List<Bean> run() {
+        return findAllPaginate(startPosition, maxResult);
+      }
+    });
   }
 
   /**
-   * Default filter to be used on the {@link #findAll()} method.<br/>
-   * This is a hook method. THe main implementation do nothing.
+   * Brings the {@link ExecutorService} that runs the asynchronous operations
+   * and the rebuilds of the {@link KeyFilter}. The main implementation brings
+   * the managed executor of the container, found by
+   * {@link #DEFAULT_ASYNC_EXECUTOR_NAME}; out of a container there is none,
+   * and subclasses must bring an executor whose lifecycle they manage. An
+   * operation that the executor runs on the calling thread is rejected, since
+   * it would replace the {@link EntityManager} of the caller.
    * 
-   * @since 1.0
-   * @param typedQuery
-   *          {@link TypedQuery} of the entity.
+   * @since 1.6
+   * @return {@link ExecutorService} of the asynchronous operations or
+   *         <code>null</code> if there is none.
    */
-  protected void defaultFilterQuery(TypedQuery<Bean> typedQuery) {
+  protected ExecutorService getAsyncExecutor() {
+    ExecutorService executor = this.asyncExecutor;
+    if (executor == null
+        && System.currentTimeMillis() >= asyncExecutorRetryOn) {
+      try {
+        executor = (ExecutorService) new InitialContext()
+            .lookup(DEFAULT_ASYNC_EXECUTOR_NAME);
+        this.asyncExecutor = executor;
+      } catch (NamingException e) {
+        getLogger().debug(
+            "There is no executor of the asynchronous operations of "
+                + getEntityName() + ".", e);
+        asyncExecutorRetryOn = System.currentTimeMillis()
+            + TransactionCallbacks.LOOKUP_RETRY_INTERVAL;
+      }
+    }
+    return executor;
+  }
+
+  private ExecutorService requireAsyncExecutor() {
+    ExecutorService executor = getAsyncExecutor();
+    if (executor == null) {
+      throw new IllegalStateException(
+          "There is no executor of the asynchronous operations of "
+              + getEntityName() + ".");
+    }
+    return executor;
+  }
+
+  /**
+   * Merges the desired entity. It will merge an existent entity.
+   * 
+   * @since 1.5
+   * @param bean
+   *          desired entity.
+   * @param flush
+   *          If <code>true</code> the method
+   *          {@link #flushEntityManager(boolean)} will be called.
+   * @return entity stored
+   */
+  @Override
+  public Bean merge(Bean bean, boolean flush) {
+    OperationTimer timer = startTimer(Operation.MERGE, bean);
+    try {
+      getLogger().debug("Updating object: " + bean);
+      boolean adding = bean.getId() == null;
+      evict(bean.getId());
+      bean = getCurrentEntityManager().merge(bean);
+      if (adding) {
+        metadata.getCountCache().add(1);
+      }
+      remember(bean.getId());
+
+      flushEntityManager(flush);
+      return timer.success(bean, 1);
+    } finally {
+      timer.stop();
+    }
+  }
+
+  /**
+   * Merges the desired entity. It will merge an existent entity.
+   * 
+   * @since 1.5
+   * @param beans
+   *          desired entities.
+   * @param flush
+   *          If <code>true</code> the method
+   *          {@link #flushEntityManager(boolean)} will be called.
+   * @return entities stored.
+   */
+  @Override
+  public <E extends Collection<Bean>> E merge(E beans, boolean flush) {
+    OperationTimer timer = startTimer(Operation.MERGE, beans);
+    try {
+      if (beans != null) {
+        int pendingBeans = 0;
+        Iterator<Bean> iterator = beans.iterator();
+        while (iterator.hasNext()) {
+          Bean bean = iterator.next();
+          merge(bean, false);
+          pendingBeans++;
+          if (flush && pendingBeans >= getAmountSaveBatchRecords()) {
+            flushBatch(pendingBeans);
+            pendingBeans = 0;
+          }
+        }
+      }
+      return timer.success(beans, beans == null ? 0 : beans.size());
+    } finally {
+      timer.stop();
+    }
+  }
+
+  /**
+   * Writes an entity without loading it first. An entity with a key is updated
+   * by a single statement restricted by its key and its version, which writes
+   * all its columns and increments its version. If no row is updated and the
+   * key does not exist, the entity is persisted; if the key exists, its
+   * version has changed and an {@link OptimisticLockException} is thrown. An
+   * entity without a key is persisted. If the key is a {@link GeneratedValue},
+   * a missing entity is merged instead, so it is inserted with a new key that
+   * is set on the given entity.<br/>
+   * An updated entity is not attached to the {@link EntityManager}, only its
+   * version is incremented. The entity is merged by
+   * {@link #save(Model, boolean)} instead if it, or a copy of it brought by
+   * {@link #findManagedByKey(Serializable)}, is already managed or if
+   * {@link #isUpsertByStatementAllowed()} does not allow the statement.
+   * 
+   * @since 1.6
+   * @param bean
+   *          desired entity.
+   * @param flush
+   *          If <code>true</code> the method {@link EntityManager#flush()} will
+   *          be called.
+   * @return entity stored.
+   */
+  @Override
+  public Bean upsert(Bean bean, boolean flush) {
+    OperationTimer timer = startTimer(Operation.UPSERT, bean);
+    try {
+      if (!isUpsertByStatement(bean)) {
+        return timer.success(save(bean, flush), 1);
+      }
+      if (!updateByStatement(bean)) {
+        persistMissing(Collections.singletonList(bean));
+      }
+      flushEntityManager(flush);
+      return timer.success(bean, 1);
+    } finally {
+      timer.stop();
+    }
+  }
+
+  /**
+   * Writes a list of entities without loading them first, as
+   * {@link #upsert(Model, boolean)} does. The keys of the entities that were
+   * not updated are checked together, on chunks of
+   * {@link #getAmountKeysPerStatement()} keys, before they are persisted.
+   * 
+   * @since 1.6
+   * @param beans
+   *          desired entities.
+   * @param flush
+   *          If <code>true</code> the method {@link EntityManager#flush()} will
+   *          be called.
+   * @return entities stored.
+   */
+  @Override
+  public <E extends Collection<Bean>> E upsert(E beans, boolean flush) {
+    OperationTimer timer = startTimer(Operation.UPSERT, beans);
+    try {
+      if (beans != null) {
+        int pendingBeans = 0;
+        List<Bean> notUpdated = new ArrayList<Bean>();
+        for (Bean bean : beans) {
+          if (!isUpsertByStatement(bean)) {
+            save(bean, false);
+            pendingBeans++;
+          } else if (!updateByStatement(bean)) {
+            notUpdated.add(bean);
+            if (notUpdated.size() >= getAmountKeysPerStatement()) {
+              pendingBeans += persistMissing(notUpdated);
+              notUpdated.clear();
+            }
+          }
+          if (flush && pendingBeans >= getAmountSaveBatchRecords()) {
+            flushBatch(pendingBeans);
+            pendingBeans = 0;
+          }
+        }
+        pendingBeans += persistMissing(notUpdated);
+        if (flush && pendingBeans > 0) {
+          flushBatch(pendingBeans);
+        }
+      }
+      return timer.success(beans, beans == null ? 0 : beans.size());
+    } finally {
+      timer.stop();
+    }
+  }
+
+  /**
+   * Updates all the entities that match a condition with a single
+   * <code>UPDATE</code> statement, without loading them.<br/>
+   * The statement does not run the update callbacks nor the cascades, and the
+   * entities already managed by the {@link EntityManager} are not refreshed.
+   * 
+   * @since 1.6
+   * @param assignments
+   *          New values by attribute name. The attributes of an embedded object
+   *          are separated by dots, like <code>"address.city"</code>. The key
+   *          and the version can't be assigned.
+   * @param condition
+   *          JPQL condition of the entities to be updated, using the alias
+   *          <code>a</code> and named parameters, like
+   *          <code>"a.status = :status"</code>. If it is <code>null</code> all
+   *          the entities are updated.
+   * @param parameters
+   *          Values of the named parameters of the condition. It may be
+   *          <code>null</code> if the condition has no parameters.
+   * @param touch
+   *          If <code>true</code> the version of the entities is incremented
+   *          and, on an {@link AuditedModel}, the date of the last change is
+   *          set.
+   * @return amount of updated entities.
+   */
+  @Override
+  public int update(Map<String, ?> assignments, String condition,
+      Map<String, ?> parameters, boolean touch) {
+    OperationTimer timer = startTimer(Operation.UPDATE, assignments,
+        condition, parameters);
+    try {
+      if (assignments == null || assignments.isEmpty()) {
+        throw new IllegalArgumentException(
+            "At least one attribute must be assigned.");
+      }
+      EntityType<Bean> type = getCurrentEntityManager().getMetamodel().entity(
+          getEntityClass());
+      StringBuilder jpql = new StringBuilder("UPDATE ").append(getEntityName())
+          .append(" a SET ");
+      Map<String, Object> values = new HashMap<String, Object>();
+      for (Map.Entry<String, ?> assignment : assignments.entrySet()) {
+        String attribute = assignment.getKey();
+        checkAssignable(type, attribute);
+        String parameter = "bulkValue" + values.size();
+        values.put(parameter, assignment.getValue());
+        jpql.append("a.").append(attribute).append(" = :").append(parameter)
+            .append(", ");
+      }
+      Date modifiedOn = null;
+      if (touch) {
+        jpql.append("a.").append(getVersionAttributeName()).append(" = a.")
+            .append(getVersionAttributeName()).append(" + 1, ");
+        if (AuditedModel.class.isAssignableFrom(getEntityClass())) {
+          modifiedOn = new Date();
+          jpql.append("a.").append(getModifiedOnAttributeName())
+              .append(" = :bulkModifiedOn, ");
+        }
+      }
+      jpql.setLength(jpql.length() - 2);
+      if (condition != null && condition.trim().length() > 0) {
+        jpql.append(" WHERE ").append(condition);
+      }
+
+      Query query = getCurrentEntityManager().createQuery(jpql.toString());
+      for (Map.Entry<String, Object> value : values.entrySet()) {
+        query.setParameter(value.getKey(), value.getValue());
+      }
+      if (modifiedOn != null) {
+        query.setParameter("bulkModifiedOn", modifiedOn,
+            TemporalType.TIMESTAMP);
+      }
+      if (parameters != null) {
+        for (Map.Entry<String, ?> parameter : parameters.entrySet()) {
+          query.setParameter(parameter.getKey(), parameter.getValue());
+        }
+      }
+      int updated = query.executeUpdate();
+      evictAll();
+      getLogger().debug("Updated " + updated + " " + getEntityName() + ".");
+      return timer.success(updated, updated);
+    } finally {
+      timer.stop();
+    }
+  }
+
+  /**
+   * Checks that an attribute can be assigned by
+   * {@link #update(Map, String, Map, boolean)}, so no other JPQL can be given
+   * as an attribute name.
+   * 
+   * @param type
+   *          Metamodel of the entity.
+   * @param attribute
+   *          Name of the attribute, the attributes of an embedded object
+   *          separated by dots.
+   * @throws IllegalArgumentException
+   *           If it is not a singular attribute or if it is the key or the
+   *           version.
+   */
+  private void checkAssignable(ManagedType<?> type, String attribute) {
+    String[] names = attribute.split("\\.", -1);
+    ManagedType<?> current = type;
+    for (int i = 0; i < names.length; i++) {
+      Attribute<?, ?> found;
+      try {
+        found = current.getAttribute(names[i]);
+      } catch (IllegalArgumentException e) {
+        found = null;
+      }
+      if (!(found instanceof SingularAttribute)) {
+        throw new IllegalArgumentException("The attribute " + attribute
+            + " of " + getEntityName() + " can't be assigned.");
+      }
+      SingularAttribute<?, ?> singular = (SingularAttribute<?, ?>) found;
+      if (singular.isId() || singular.isVersion()) {
+        throw new IllegalArgumentException("The attribute " + attribute
+            + " of " + getEntityName() + " is the key or the version.");
+      }
+      if (i < names.length - 1) {
+        if (!(singular.getType() instanceof EmbeddableType)) {
+          throw new IllegalArgumentException("The attribute " + attribute
+              + " of " + getEntityName() + " can't be assigned.");
+        }
+        current = (ManagedType<?>) singular.getType();
+      }
+    }
+  }
+
+  /**
+   * Informs if an entity may be written by the statement of
+   * {@link #upsert(Model, boolean)}. As on {@link #remove(Model, boolean)}, a
+   * managed copy is looked for by {@link #findManagedByKey(Serializable)},
+   * since the statement would leave it stale.
+   * 
+   * @param bean
+   *          desired entity.
+   * @return <code>true</code> if it has a key, neither it nor a copy of it is
+   *         managed and the statement is allowed.
+   */
+  private boolean isUpsertByStatement(Bean bean) {
+    Key id = bean.getId();
+    return id != null && isUpsertByStatementAllowed()
+        && !getCurrentEntityManager().contains(bean)
+        && findManagedByKey(id) == null;
+  }
+
+  /**
+   * Informs if an entity can be updated by a single statement, restricted by
+   * its key and its version, by the method {@link #upsert(Model, boolean)}. A
+   * statement skips the cascades and the update callbacks, so the main
+   * implementation allows it only when the entity has a version and no
+   * collections, and when neither the entity nor its listeners have
+   * {@link PreUpdate} or {@link PostUpdate} callbacks. The listeners of
+   * {@link AuditedModel} are the exception: the statement sets the date of the
+   * last change itself, in place of the {@link ModifiedDateListener}, and the
+   * {@link CreationDateListener} only fills the creation date of an entity
+   * without a key, which the statement does not write.
+   * 
+   * @since 1.6
+   * @return <code>true</code> if the entity can be updated by a statement.
+   */
+  protected boolean isUpsertByStatementAllowed() {
+    Boolean allowed = metadata.getUpsertByStatementAllowed();
+    if (allowed == null) {
+      allowed = Boolean.TRUE;
+      EntityType<Bean> type = getCurrentEntityManager().getMetamodel().entity(
+          getEntityClass());
+      if (!type.hasVersionAttribute()
+          || hasCallbacks(AUDIT_LISTENERS, PreUpdate.class, PostUpdate.class)) {
+        allowed = Boolean.FALSE;
+      } else {
+        for (Attribute<? super Bean, ?> attribute : type.getAttributes()) {
+          if (attribute.isCollection()) {
+            allowed = Boolean.FALSE;
+            break;
+          }
+        }
+      }
+      metadata.setUpsertByStatementAllowed(allowed);
+    }
+    return allowed.booleanValue();
+  }
+
+  private UpsertStatement getUpsertStatement() {
+    UpsertStatement statement = metadata.getUpsertStatement();
+    if (statement == null) {
+      String modifiedOn = null;
+      String[] ignored = new String[0];
+      if (AuditedModel.class.isAssignableFrom(getEntityClass())) {
+        modifiedOn = getModifiedOnAttributeName();
+        ignored = new String[] { getCreatedOnAttributeName() };
+      }
+      statement = UpsertStatement.create(getCurrentEntityManager()
+          .getMetamodel().entity(getEntityClass()), getEntityName(),
+          getIdAttributeName(), getVersionAttributeName(), modifiedOn,
+          ignored);
+      metadata.setUpsertStatement(statement);
+    }
+    return statement;
+  }
+
+  /**
+   * Updates an entity by the statement of {@link #upsert(Model, boolean)}. If
+   * it is updated, its version and its date of the last change are set as
+   * they were written.
+   * 
+   * @param bean
+   *          desired entity.
+   * @return <code>true</code> if the entity was updated.
+   */
+  private boolean updateByStatement(Bean bean) {
+    UpsertStatement statement = getUpsertStatement();
+    Query query = statement.createQuery(getCurrentEntityManager(), bean);
+    query.setParameter("id", bean.getId());
+    query.setParameter("version", bean.getVersion());
+    query.setParameter("newVersion", bean.getVersion() + 1);
+    Date modifiedOn = null;
+    if (statement.isAudited()) {
+      modifiedOn = new Date();
+      query.setParameter("modifiedOn", modifiedOn, TemporalType.TIMESTAMP);
+    }
+    evict(bean.getId());
+    if (query.executeUpdate() == 0) {
+      return false;
+    }
+    bean.setVersion(bean.getVersion() + 1);
+    if (modifiedOn != null) {
+      ((AuditedModel<?>) bean).setModifiedOn(modifiedOn);
+    }
+    remember(bean.getId());
+    return true;
+  }
+
+  /**
+   * Persists the entities that were not updated by the statement of
+   * {@link #upsert(Model, boolean)}, after checking that their keys do not
+   * exist.
+   * 
+   * @param beans
+   *          Entities that were not updated.
+   * @return amount of persisted entities.
+   * @throws OptimisticLockException
+   *           If the key of an entity exists, so its version has changed.
+   */
+  private int persistMissing(List<Bean> beans) {
+    if (beans.isEmpty()) {
+      return 0;
+    }
+    List<Key> ids = new ArrayList<Key>(beans.size());
+    for (Bean bean : beans) {
+      ids.add(bean.getId());
+    }
+    TypedQuery<Key> query = getStatements().getFindExistingIds().createQuery(
+        getCurrentEntityManager(), getKeyClass());
+    query.setParameter("ids", ids);
+    List<Key> existing = query.getResultList();
+    if (!existing.isEmpty()) {
+      for (Bean bean : beans) {
+        if (existing.contains(bean.getId())) {
+          throw new OptimisticLockException("The " + getEntityName() + " "
+              + bean.getId() + " was changed by another transaction.", null,
+              bean);
+        }
+      }
+    }
+    boolean generatedId = isGeneratedId();
+    for (Bean bean : beans) {
+      getLogger().debug("Adding object: " + bean);
+      if (generatedId) {
+        // A generated key can not be given to persist.
+        Bean merged = getCurrentEntityManager().merge(bean);
+        bean.setId(merged.getId());
+        bean.setVersion(merged.getVersion());
+      } else {
+        getCurrentEntityManager().persist(bean);
+      }
+      remember(bean.getId());
+    }
+    metadata.getCountCache().add(beans.size());
+    invalidateQueries();
+    return beans.size();
+  }
+
+  /**
+   * Informs if the key of the entity is a {@link GeneratedValue}.
+   * 
+   * @return <code>true</code> if the key is generated.
+   */
+  private boolean isGeneratedId() {
+    Boolean generated = metadata.getGeneratedId();
+    if (generated == null) {
+      generated = Boolean.FALSE;
+      EntityType<Bean> type = getCurrentEntityManager().getMetamodel().entity(
+          getEntityClass());
+      for (SingularAttribute<? super Bean, ?> attribute : type
+          .getSingularAttributes()) {
+        Member member = attribute.getJavaMember();
+        if (attribute.isId() && member instanceof AnnotatedElement
+            && ((AnnotatedElement) member)
+                .isAnnotationPresent(GeneratedValue.class)) {
+          generated = Boolean.TRUE;
+          break;
+        }
+      }
+      metadata.setGeneratedId(generated);
+    }
+    return generated.booleanValue();
+  }
+
+  /**
+   * Return the amount of records to be used on a batch save. <br/>
+   * It is default used on these methods {@link #save(Collection, boolean)} and
+   * {@link #merge(Collection, boolean)}. If {@link #isAdaptiveBatchSize()} is
+   * <code>true</code> the amount is tuned at runtime by the
+   * {@link BatchSizeController} brought by {@link #getSaveBatchController()}.
+   * 
+   * @return Amount of records to be used on the batch record.
+   */
+  protected int getAmountSaveBatchRecords() {
+    if (isAdaptiveBatchSize()) {
+      return getSaveBatchController().getBatchSize();
+    }
+    return DEFAULT_AMOUNT_SAVE_BATCH_RECORDS;
+  }
+
+  /**
+   * Flushes and clears the {@link EntityManager} at the end of a batch,
+   * recording the time spent on the {@link BatchSizeController} brought by
+   * {@link #getSaveBatchController()}.
+   * 
+   * @since 1.6
+   * @param records
+   *          Amount of records of the batch.
+   */
+  protected void flushBatch(int records) {
+    long start = System.nanoTime();
+    flushEntityManager(true);
+    if (isAdaptiveBatchSize()) {
+      recordBatch(getSaveBatchController(), "save", records,
+          System.nanoTime() - start);
+    }
+  }
+
+  /**
+   * Records the time spent by a batch on its {@link BatchSizeController} and
+   * publishes the resulting batch size on the {@link PersistenceMetrics} of
+   * the entity.
+   * 
+   * @param controller
+   *          {@link BatchSizeController} of the operation.
+   * @param operation
+   *          Name of the operation.
+   * @param records
+   *          Amount of records of the batch.
+   * @param elapsedNanos
+   *          Time, in nanoseconds, spent by the batch.
+   */
+  private void recordBatch(BatchSizeController controller, String operation,
+      int records, long elapsedNanos) {
+    controller.record(records, elapsedNanos);
+    getMetrics().setBatchSize(operation, controller.getBatchSize());
+  }
+
+  /**
+   * Informs if the amount of records of the batch operations is tuned at
+   * runtime, from the time spent by each batch and from the heap usage. It is
+   * opt-in: the main implementation returns <code>false</code> and the batches
+   * use {@link #getAmountSaveBatchRecords()} and
+   * {@link #getAmountKeysPerStatement()}. The chosen batch sizes are published
+   * on the {@link PersistenceMetrics} of the entity.
+   * 
+   * @since 1.6
+   * @return <code>true</code> if the batch size is adaptive.
+   */
+  protected boolean isAdaptiveBatchSize() {
+    return false;
+  }
+
+  /**
+   * Return the minimum amount of records of an adaptive batch.
+   * 
+   * @since 1.6
+   * @return Minimum amount of records.
+   */
+  protected int getMinimumBatchRecords() {
+    return DEFAULT_MINIMUM_BATCH_RECORDS;
+  }
+
+  /**
+   * Return the maximum amount of records of an adaptive batch.
+   * 
+   * @since 1.6
+   * @return Maximum amount of records.
+   */
+  protected int getMaximumBatchRecords() {
+    return DEFAULT_MAXIMUM_BATCH_RECORDS;
+  }
+
+  /**
+   * Return the time, in milliseconds, that an adaptive batch should take.
+   * 
+   * @since 1.6
+   * @return Target time of a batch.
+   */
+  protected long getBatchTargetTime() {
+    return DEFAULT_BATCH_TARGET_TIME;
+  }
+
+  /**
+   * Brings the {@link BatchSizeController} of the save and merge batches. It is
+   * shared by all the instances of the entity.
+   * 
+   * @since 1.6
+   * @return {@link BatchSizeController} of the save batches.
+   */
+  protected BatchSizeController getSaveBatchController() {
+    BatchSizeController controller = this.saveBatchController;
+    if (controller == null) {
+      controller = BatchSizeController.forOperation(getEntityClass(), "save",
+          getMinimumBatchRecords(), getMaximumBatchRecords(),
+          DEFAULT_AMOUNT_SAVE_BATCH_RECORDS, getBatchTargetTime());
+      this.saveBatchController = controller;
+    }
+    return controller;
+  }
+
+  /**
+   * Brings the {@link BatchSizeController} of the chunks removed by
+   * {@link #removeById(Collection, boolean)}. It is shared by all the instances
+   * of the entity and it is bounded by {@link #getAmountKeysPerStatement()}.
+   * 
+   * @since 1.6
+   * @return {@link BatchSizeController} of the remove chunks.
+   */
+  protected BatchSizeController getRemoveBatchController() {
+    BatchSizeController controller = this.removeBatchController;
+    if (controller == null) {
+      int maximum = getAmountKeysPerStatement();
+      controller = BatchSizeController.forOperation(getEntityClass(),
+          "removeById", Math.min(getMinimumBatchRecords(), maximum), maximum,
+          maximum, getBatchTargetTime());
+      this.removeBatchController = controller;
+    }
+    return controller;
+  }
+
+  /**
+   * Removes a desired entity without loading it first.<br/>
+   * If the entity, or another copy of it brought by
+   * {@link #findManagedByKey(Serializable)}, is managed by the
+   * {@link EntityManager} the managed copy is removed. Otherwise, when
+   * {@link #isRemoveByStatementAllowed()} allows, it is removed by a single
+   * statement restricted by its key and its version. In any other case a
+   * reference to the entity is removed; note that the reference is loaded to
+   * compare its version, and Hibernate loads it anyway to run the cascades and
+   * callbacks, so this last case costs a query. On every case an
+   * {@link OptimisticLockException} is thrown if the stored version differs
+   * from the version of the given entity.
+   * 
+   * @since 1.0
+   * @param bean
+   *          Desired entity.
+   * @param flush
+   *          If <code>true</code> the method
+   *          {@link #flushEntityManager(boolean)} will be called.
+   */
+  @Override
+  public void remove(Bean bean, boolean flush) {
+    OperationTimer timer = startTimer(Operation.REMOVE, bean);
+    try {
+      getLogger().debug("Removing object: " + bean);
+      evict(bean.getId());
+      EntityManager entityManager = getCurrentEntityManager();
+      Bean managed = entityManager.contains(bean) ? bean
+          : findManagedByKey(bean.getId());
+      if (managed != null) {
+        checkVersion(bean, managed);
+        entityManager.remove(managed);
+        metadata.getCountCache().add(-1);
+      } else if (isRemoveByStatementAllowed()) {
+        Query query = getStatements().getRemoveByIdAndVersion().createQuery(
+            entityManager);
+        query.setParameter("id", bean.getId());
+        query.setParameter("version", bean.getVersion());
+        int removed = query.executeUpdate();
+        if (removed == 0) {
+          throw new OptimisticLockException("The " + getEntityName() + " "
+              + bean.getId() + " version " + bean.getVersion()
+              + " does not exist anymore.", null, bean);
+        }
+        metadata.getCountCache().add(-removed);
+      } else {
+        Bean reference = getReference(bean.getId());
+        checkVersion(bean, reference);
+        entityManager.remove(reference);
+        metadata.getCountCache().add(-1);
+      }
+      flushEntityManager(flush);
+      timer.success(1);
+    } finally {
+      timer.stop();
+    }
+  }
+
+  /**
+   * Throws an {@link OptimisticLockException} if the stored copy of an entity
+   * has another version.
+   * 
+   * @param bean
+   *          Entity to be written.
+   * @param stored
+   *          Managed copy of the entity.
+   */
+  private void checkVersion(Bean bean, Bean stored) {
+    if (stored.getVersion() != bean.getVersion()) {
+      throw new OptimisticLockException("The " + getEntityName() + " "
+          + bean.getId() + " version " + bean.getVersion()
+          + " is stored with the version " + stored.getVersion() + ".", null,
+          bean);
+    }
+  }
+
+  /**
+   * Informs if a detached entity can be removed by a single statement,
+   * restricted by its key and its version, by the method
+   * {@link #remove(Model, boolean)}. A statement skips the cascades and the
+   * remove callbacks, so the main implementation allows it only when the
+   * entity has a version and no associations, and when neither the entity nor
+   * its listeners have {@link PreRemove} or {@link PostRemove} callbacks.
+   * 
+   * @since 1.6
+   * @return <code>true</code> if the entity can be removed by a statement.
+   */
+  protected boolean isRemoveByStatementAllowed() {
+    Boolean allowed = metadata.getRemoveByStatementAllowed();
+    if (allowed == null) {
+      allowed = Boolean.TRUE;
+      EntityType<Bean> type = getCurrentEntityManager().getMetamodel().entity(
+          getEntityClass());
+      if (!type.hasVersionAttribute()
+          || hasCallbacks(Collections.<Class<?>> emptyList(), PreRemove.class,
+              PostRemove.class)) {
+        allowed = Boolean.FALSE;
+      } else {
+        for (Attribute<? super Bean, ?> attribute : type.getAttributes()) {
+          if (attribute.isAssociation() || attribute.isCollection()) {
+            allowed = Boolean.FALSE;
+            break;
+          }
+        }
+      }
+      metadata.setRemoveByStatementAllowed(allowed);
+    }
+    return allowed.booleanValue();
+  }
+
+  private boolean hasCallbacks(List<Class<?>> ignoredListeners,
+      Class<? extends Annotation> pre, Class<? extends Annotation> post) {
+    for (Class<?> type = getEntityClass(); type != null; type = type
+        .getSuperclass()) {
+      if (declaresCallbacks(type, pre, post)) {
+        return true;
+      }
+      EntityListeners listeners = type.getAnnotation(EntityListeners.class);
+      if (listeners != null) {
+        for (Class<?> listener : listeners.value()) {
+          if (!ignoredListeners.contains(listener)
+              && declaresCallbacks(listener, pre, post)) {
+            return true;
+          }
+        }
+      }
+    }
+    return false;
+  }
+
+  private static boolean declaresCallbacks(Class<?> type,
+      Class<? extends Annotation> pre, Class<? extends Annotation> post) {
+    for (Method method : type.getDeclaredMethods()) {
+      if (method.isAnnotationPresent(pre) || method.isAnnotationPresent(post)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Remove an entity by it's Id.
+   * 
+   * @since 1.3
+   * @param key
+   *          The Key of the entity that want to be removed.
+   * @param flush
+   *          If <code>true</code> the method
+   *          {@link #flushEntityManager(boolean)} will be called.
+   */
+  @Override
+  public void removeById(Key key, boolean flush) {
+    OperationTimer timer = startTimer(Operation.REMOVE_BY_ID, key);
+    try {
+      // TODO Need to implements this on future using the JPA 2.1
+      // http://en.wikibooks.org/wiki/Java_Persistence/Criteria#CriteriaDelete_.28JPA_2.1.29
+      // cb.createCriteriaDelete();
+
+      Query query = getStatements().getRemoveById().createQuery(
+          getCurrentEntityManager());
+      query.setParameter("id", key);
+
+      evict(key);
+      int removed = query.executeUpdate();
+      metadata.getCountCache().add(-removed);
+
+      flushEntityManager(flush);
+      timer.success(removed);
+    } finally {
+      timer.stop();
+    }
+  }
+
+  /**
+   * Removes all entities by an ID. The keys are sorted, so the rows are always
+   * locked on the same order, and removed in chunks of up to
+   * {@link #getAmountKeysPerStatement()} keys, each chunk with a single
+   * <code>DELETE</code> statement. If {@link #isAdaptiveBatchSize()} is
+   * <code>true</code> the size of the chunks is tuned at runtime by the
+   * {@link BatchSizeController} brought by {@link #getRemoveBatchController()}.
+   * 
+   * @since 1.3
+   * @param keys
+   *          Desired keys to be removed.
+   * @param flush
+   *          If <code>true</code> the method
+   *          {@link #flushEntityManager(boolean)} will be called.
+   * @return amount of entities removed by each chunk.
+   */
+  @Override
+  public int[] removeById(Collection<Key> keys, boolean flush) {
+    OperationTimer timer = startTimer(Operation.REMOVE_BY_ID, keys);
+    try {
+      if (keys == null || keys.isEmpty()) {
+        return timer.success(new int[0], 0);
+      }
+      List<Key> sortedKeys = sortKeys(keys);
+      boolean adaptive = isAdaptiveBatchSize();
+      List<Integer> removed = new ArrayList<Integer>();
+
+      EntityStatement statement = getStatements().getRemoveByIds();
+      int start = 0;
+      while (start < sortedKeys.size()) {
+        int chunkSize = adaptive ? getRemoveBatchController().getBatchSize()
+            : getAmountKeysPerStatement();
+        List<Key> chunkKeys = sortedKeys.subList(start,
+            Math.min(start + chunkSize, sortedKeys.size()));
+        for (Key key : chunkKeys) {
+          evict(key);
+        }
+        long chunkStart = System.nanoTime();
+        Query query = statement.createQuery(getCurrentEntityManager());
+        query.setParameter("ids", chunkKeys);
+        int chunkRemoved = query.executeUpdate();
+        if (adaptive) {
+          recordBatch(getRemoveBatchController(), "removeById",
+              chunkKeys.size(), System.nanoTime() - chunkStart);
+        }
+        metadata.getCountCache().add(-chunkRemoved);
+        removed.add(chunkRemoved);
+        getLogger().debug(
+            "Removed " + chunkRemoved + " of " + chunkKeys.size() + " "
+                + getEntityName() + " objects.");
+        start += chunkKeys.size();
+      }
+
+      flushEntityManager(flush);
+      int[] removedByChunk = new int[removed.size()];
+      int total = 0;
+      for (int chunk = 0; chunk < removedByChunk.length; chunk++) {
+        removedByChunk[chunk] = removed.get(chunk);
+        total += removedByChunk[chunk];
+      }
+      return timer.success(removedByChunk, total);
+    } finally {
+      timer.stop();
+    }
+  }
+
+  /**
+   * Removes the <code>null</code> and repeated keys and sorts them when they
+   * are {@link Comparable}. Otherwise the given order is kept.
+   * 
+   * @since 1.6
+   * @param keys
+   *          Keys to be sorted.
+   * @return {@link List} with the sorted keys.
+   */
+  protected List<Key> sortKeys(Collection<Key> keys) {
+    boolean comparable = true;
+    for (Key key : keys) {
+      if (key != null && !(key instanceof Comparable)) {
+        comparable = false;
+        break;
+      }
+    }
+    Collection<Key> unique;
+    if (comparable) {
+      unique = new TreeSet<Key>();
+    } else {
+      unique = new LinkedHashSet<Key>();
+    }
+    for (Key key : keys) {
+      if (key != null) {
+        unique.add(key);
+      }
+    }
+    return new ArrayList<Key>(unique);
+  }
+
+  /**
+   * Return the amount of keys bound to a single statement. <br/>
+   * It is used to split the <code>IN</code> list of the method
+   * {@link #removeById(Collection, boolean)}. Some databases limit the size of
+   * this list.
+   * 
+   * @since 1.6
+   * @return Amount of keys bound to a single statement.
+   */
+  protected int getAmountKeysPerStatement() {
+    return DEFAULT_AMOUNT_KEYS_PER_STATEMENT;
+  }
+
+  /**
+   * If received true as a parameter, it will get the current entity manager and
+   * flush it and perform the clear of the session.
+   * 
+   * @param flush
+   *          If true, it means that the session will be flushed and clean.
+   */
+  protected void flushEntityManager(boolean flush) {
+    if (flush) {
+      getCurrentEntityManager().flush();
+      getCurrentEntityManager().clear();
+    }
+  }
+
+  /**
+   * Brings all the entities.<br/>
+   * It uses the statement <code>&lt;entity name&gt;.findAll</code>. If the
+   * entity declares a named query with this name it will be used.
+   * 
+   * @since 1.0
+   * @return {@link List} with the entities.
+   */
+  @Override
+  public List<Bean> findAll() {
+    return findAll(getDefaultFetchPlan());
+  }
+
+  /**
+   * Brings all the entities, fetching the associations of a plan.
+   * 
+   * @since 1.6
+   * @param fetchPlan
+   *          Associations loaded together with the entities.
+   * @return {@link List} with the entities.
+   */
+  @Override
+  public List<Bean> findAll(FetchPlan fetchPlan) {
+    OperationTimer timer = startTimer(Operation.FIND_ALL, fetchPlan);
+    try {
+      TypedQuery<Bean> q;
+      if (fetchPlan == null || fetchPlan.isEmpty()) {
+        q = getStatements().getFindAll().createQuery(getCurrentEntityManager(),
+            this.getEntityClass());
+      } else {
+        CriteriaQuery<Bean> criteria = createCriteriaSelect();
+        applyFetchPlan(criteria, fetchPlan);
+        q = getCurrentEntityManager().createQuery(criteria);
+      }
+      applyReadOnly(q);
+      List<Bean> beans = q.getResultList();
+      return timer.success(beans, beans.size());
+    } finally {
+      timer.stop();
+    }
+  }
+
+  /**
+   * Brings all the entities, optionally on the read-only mode.
+   * 
+   * @since 1.6
+   * @param readOnly
+   *          If <code>true</code> the entities are brought as in a
+   *          {@link ReadOnlyScope}, so they are not tracked for changes.
+   * @return {@link List} with the entities.
+   */
+  @Override
+  public List<Bean> findAll(boolean readOnly) {
+    boolean previous = ReadOnlyScope.enter(readOnly);
+    try {
+      return findAll();
+    } finally {
+      ReadOnlyScope.exit(previous);
+    }
+  }
+
+  /**
+   * Brings an {@link Iterator} over all the entities. The entities are fetched
+   * in chunks of {@link #getFetchSize()} records ordered by their key and the
+   * entities of a consumed chunk are detached from the {@link EntityManager}.
+   * <br/>
+   * The filters {@link #defaultFilterCriteria(CriteriaQuery)} and
+   * {@link #defaultFilterQuery(TypedQuery)} are applied on every chunk. Any
+   * change done on an already consumed entity is discarded when it is
+   * detached, so this iterator is meant to read the entities.
+   * 
+   * @since 1.6
+   * @return {@link Iterator} over the entities.
+   */
+  @Override
+  public Iterator<Bean> iterateAll() {
+    return iterateAll(getFetchSize());
+  }
+
+  /**
+   * Brings an {@link Iterator} over all the entities. The entities are fetched
+   * in chunks ordered by their key and the entities of a consumed chunk are
+   * detached from the {@link EntityManager}. <br/>
+   * The filters {@link #defaultFilterCriteria(CriteriaQuery)} and
+   * {@link #defaultFilterQuery(TypedQuery)} are applied on every chunk. Any
+   * change done on an already consumed entity is discarded when it is
+   * detached, so this iterator is meant to read the entities.
+   * 
+   * @since 1.6
+   * @param fetchSize
+   *          Amount of entities fetched on each round trip.
+   * @return {@link Iterator} over the entities.
+   */
+  @Override
+  public Iterator<Bean> iterateAll(int fetchSize) {
+    if (fetchSize <= 0) {
+      throw new IllegalArgumentException(
+          "The fetch size must be greater than zero.");
+    }
+    return new ChunkIterator(fetchSize);
+  }
+
+  /**
+   * Return the amount of entities fetched on each round trip by the method
+   * {@link #iterateAll()}.
+   * 
+   * @since 1.6
+   * @return Amount of entities fetched on each round trip.
+   */
+  protected int getFetchSize() {
+    return DEFAULT_FETCH_SIZE;
+  }
+
+  /**
+   * Brings the entities whose key is greater than the given key, ordered by the
+   * key. It is the chunk query used by the {@link #iterateAll()} method.
+   * 
+   * @since 1.6
+   * @param lastKey
+   *          Last key already read. If <code>null</code> it will start from the
+   *          first entity.
+   * @param maxResult
+   *          maximum number of results to retrieve.
+   * @return {@link List} with the found entities.
+   */
+  protected List<Bean> findChunkAfter(Key lastKey, int maxResult) {
+    return createKeysetQuery(null, null, lastKey, maxResult).getResultList();
+  }
+
+  /**
+   * Brings all the entities paged.<br/>
+   * If {@link #getQueryCacheSize()} is greater than zero, the keys of the page
+   * are kept by the {@link QueryCache} of the entity, and the next calls with
+   * the same arguments bring the entities by their keys, through
+   * {@link #findByKey(Serializable)} if the {@link EntityCache} is enabled or
+   * through {@link #findByKeys(Collection)} otherwise. Any write done through
+   * a Data Access Object of the entity invalidates the cached pages, again
+   * after the completion of a JTA transaction. The pages read by a JTA
+   * transaction that wrote the entity, or by a resource local transaction,
+   * are not cached, since they may hold changes not committed yet.
+   * 
+   * @since 1.0
+   * @param startPosition
+   *          position of the first result, numbered from 0.
+   * @param maxResult
+   *          maximum number of results to retrieve.
+   * @return {@link List} with the found entities.
+   */
+  public List<Bean> findAllPaginate(int startPosition, int maxResult) {
+    return findAllPaginate(startPosition, maxResult, getDefaultFetchPlan());
+  }
+
+  /**
+   * Brings all the entities paged, fetching the associations of a plan. A page
+   * of the {@link QueryCache} is brought by the keys of its entities, as on
+   * {@link #findAllPaginate(int, int)}, and does not fetch the plan.<br/>
+   * If the plan fetches a collection, the persistence provider may page the
+   * results in memory, so the collections should be fetched only on small
+   * tables.
+   * 
+   * @since 1.6
+   * @param startPosition
+   *          position of the first result, numbered from 0.
+   * @param maxResult
+   *          maximum number of results to retrieve.
+   * @param fetchPlan
+   *          Associations loaded together with the entities.
+   * @return {@link List} with the found entities.
+   */
+  public List<Bean> findAllPaginate(int startPosition, int maxResult,
+      FetchPlan fetchPlan) {
+    OperationTimer timer = startTimer(Operation.FIND_ALL_PAGINATE,
+        startPosition, maxResult, fetchPlan);
+    try {
+      QueryCache<Key> cache = getQueryCache();
+      if (cache == null) {
+        List<Bean> beans = loadPaginate(startPosition, maxResult, fetchPlan);
+        return timer.success(beans, beans.size());
+      }
+      List<Object> query = Arrays.<Object> asList(getClass(),
+          getQueryCacheFilterKey(), startPosition, maxResult);
+      List<Key> keys = cache.get(query);
+      if (keys != null) {
+        List<Bean> beans = findCachedPage(keys);
+        if (beans != null) {
+          return timer.success(beans, beans.size());
+        }
+        getLogger().debug(
+            "Cached page of " + getEntityName()
+                + " references a missing entity, invalidating the cache.");
+        cache.invalidateAll();
+      }
+      long generation = cache.getGeneration();
+      List<Bean> beans = loadPaginate(startPosition, maxResult, fetchPlan);
+      if (TransactionCallbacks.getAction(cache) == null
+          && !TransactionCallbacks
+              .isResourceLocalActive(getCurrentEntityManager())) {
+        List<Key> loadedKeys = new ArrayList<Key>(beans.size());
+        for (Bean bean : beans) {
+          loadedKeys.add(bean.getId());
+        }
+        cache.put(query, generation, loadedKeys);
+      }
+      return timer.success(beans, beans.size());
+    } finally {
+      timer.stop();
+    }
+  }
+
+  /**
+   * Brings the entities of a page whose keys were cached.
+   * 
+   * @param keys
+   *          Keys of the page, in order.
+   * @return The entities, in the same order, or <code>null</code> if any of
+   *         them does not exist anymore.
+   */
+  private List<Bean> findCachedPage(List<Key> keys) {
+    List<Bean> beans = new ArrayList<Bean>(keys.size());
+    if (getEntityCache() != null) {
+      for (Key key : keys) {
+        Bean bean = findByKey(key);
+        if (bean == null) {
+          return null;
+        }
+        beans.add(bean);
+      }
+    } else {
+      Map<Key, Bean> found = findByKeys(keys);
+      for (Key key : keys) {
+        Bean bean = found.get(key);
+        if (bean == null) {
+          return null;
+        }
+        beans.add(bean);
+      }
+    }
+    return beans;
+  }
+
+  /**
+   * Loads a page of entities from the database, without going through the
+   * {@link QueryCache}.
+   * 
+   * @since 1.6
+   * @param startPosition
+   *          position of the first result, numbered from 0.
+   * @param maxResult
+   *          maximum number of results to retrieve.
+   * @param fetchPlan
+   *          Associations loaded together with the entities.
+   * @return {@link List} with the found entities.
+   */
+  protected List<Bean> loadPaginate(int startPosition, int maxResult,
+      FetchPlan fetchPlan) {
+    CriteriaQuery<Bean> criteria = createCriteriaSelect();
+    defaultFilterCriteria(criteria);
+    applyFetchPlan(criteria, fetchPlan);
+    TypedQuery<Bean> query = getCurrentEntityManager().createQuery(criteria);
+    defaultFilterQuery(query);
+    applyReadOnly(query);
+    query.setFirstResult(startPosition);
+    query.setMaxResults(maxResult);
+    return query.getResultList();
+  }
+
+  /**
+   * Brings all the entities paged, optionally on the read-only mode.
+   * 
+   * @since 1.6
+   * @param startPosition
+   *          position of the first result, numbered from 0.
+   * @param maxResult
+   *          maximum number of results to retrieve.
+   * @param readOnly
+   *          If <code>true</code> the entities are brought as in a
+   *          {@link ReadOnlyScope}, so they are not tracked for changes.
+   * @return {@link List} with the found entities.
+   */
+  public List<Bean> findAllPaginate(int startPosition, int maxResult,
+      boolean readOnly) {
+    boolean previous = ReadOnlyScope.enter(readOnly);
+    try {
+      return findAllPaginate(startPosition, maxResult);
+    } finally {
+      ReadOnlyScope.exit(previous);
+    }
+  }
+
+  /**
+   * Brings some attributes of the entities paged, without loading the
+   * entities. The values are not managed by the persistence context and the
+   * attributes that are not selected, such as large objects, are not read.
+   * 
+   * @since 1.6
+   * @param startPosition
+   *          position of the first result, numbered from 0.
+   * @param maxResult
+   *          maximum number of results to retrieve.
+   * @param attributes
+   *          Names of the selected attributes. The attributes of an embedded
+   *          or related entity are separated by dots, like
+   *          <code>"customer.name"</code>. Each name is also the alias of the
+   *          value on the {@link Tuple}.
+   * @return {@link List} of {@link Tuple} with the selected values.
+   */
+  public List<Tuple> findAllProjected(int startPosition, int maxResult,
+      String... attributes) {
+    CriteriaBuilder cb = getCurrentEntityManager().getCriteriaBuilder();
+    CriteriaQuery<Tuple> criteria = createCriteria(Tuple.class, cb);
+    Root<Bean> root = criteria.from(getEntityClass());
+    criteria.multiselect(createSelections(root, true, attributes));
+    return createProjectedQuery(criteria, cb, startPosition, maxResult)
+        .getResultList();
+  }
+
+  /**
+   * Brings some attributes of the entities paged, passing them to a
+   * constructor of the result class, without loading the entities. The
+   * results are not managed by the persistence context and the attributes
+   * that are not selected, such as large objects, are not read.
+   * 
+   * @since 1.6
+   * @param resultClass
+   *          Class with a public constructor whose parameters match the types
+   *          of the selected attributes, in the same order.
+   * @param startPosition
+   *          position of the first result, numbered from 0.
+   * @param maxResult
+   *          maximum number of results to retrieve.
+   * @param attributes
+   *          Names of the selected attributes. The attributes of an embedded
+   *          or related entity are separated by dots, like
+   *          <code>"customer.name"</code>.
+   * @return {@link List} with the built results.
+   */
+  public <E> List<E> findAllProjected(Class<E> resultClass,
+      int startPosition, int maxResult, String... attributes) {
+    CriteriaBuilder cb = getCurrentEntityManager().getCriteriaBuilder();
+    CriteriaQuery<E> criteria = createCriteria(resultClass, cb);
+    Root<Bean> root = criteria.from(getEntityClass());
+    criteria.select(cb.construct(resultClass,
+        createSelections(root, false, attributes)));
+    return createProjectedQuery(criteria, cb, startPosition, maxResult)
+        .getResultList();
+  }
+
+  /**
+   * Creates the selections of a projection.
+   * 
+   * @param root
+   *          {@link Root} of the entity.
+   * @param alias
+   *          If <code>true</code> each selection is aliased by its attribute.
+   * @param attributes
+   *          Names of the selected attributes.
+   * @return The selections, in the same order.
+   */
+  private Selection<?>[] createSelections(Root<Bean> root, boolean alias,
+      String... attributes) {
+    if (attributes == null || attributes.length == 0) {
+      throw new IllegalArgumentException(
+          "At least one attribute must be selected.");
+    }
+    Selection<?>[] selections = new Selection<?>[attributes.length];
+    for (int i = 0; i < attributes.length; i++) {
+      Path<?> path = root;
+      for (String attribute : attributes[i].split("\\.")) {
+        path = path.get(attribute);
+      }
+      selections[i] = alias ? path.alias(attributes[i]) : path;
+    }
+    return selections;
+  }
+
+  /**
+   * Applies the default filter and the paging to a projection of the entity.
+   * The filter hooks receive the projection as if it selected the entity, so
+   * they must only restrict or sort it. If the filter does not sort it, the
+   * projection is sorted by the key to keep the pages stable.
+   * 
+   * @param criteria
+   *          Projection that selects from the entity.
+   * @param cb
+   *          {@link CriteriaBuilder} of the projection.
+   * @param startPosition
+   *          position of the first result, numbered from 0.
+   * @param maxResult
+   *          maximum number of results to retrieve.
+   * @return {@link TypedQuery} of the page.
+   */
+  @SuppressWarnings("unchecked")
+  private <E> TypedQuery<E> createProjectedQuery(CriteriaQuery<E> criteria,
+      CriteriaBuilder cb, int startPosition, int maxResult) {
+    defaultFilterCriteria((CriteriaQuery<Bean>) (CriteriaQuery<?>) criteria);
+    if (criteria.getOrderList().isEmpty()) {
+      criteria.orderBy(cb.asc(getRoot(criteria).get(getIdAttributeName())));
+    }
+    TypedQuery<E> query = getCurrentEntityManager().createQuery(criteria);
+    defaultFilterQuery((TypedQuery<Bean>) (TypedQuery<?>) query);
+    query.setFirstResult(startPosition);
+    query.setMaxResults(maxResult);
+    return query;
+  }
+
+  /**
+   * Brings all the entities paged by their key. Instead of skipping the
+   * previous records, as {@link #findAllPaginate(int, int)} does, the page
+   * starts right after the position held by the token, so every page costs the
+   * same as the first one.
+   * 
+   * @since 1.6
+   * @param token
+   *          Token returned by the previous page or <code>null</code> to bring
+   *          the first page.
+   * @param maxResult
+   *          maximum number of results to retrieve.
+   * @return {@link KeysetPage} with the found entities.
+   */
+  public KeysetPage<Bean> findAllKeyset(KeysetToken token, int maxResult) {
+    return findAllKeyset(null, token, maxResult);
+  }
+
+  /**
+   * Brings all the entities paged by an attribute and by their key. Instead of
+   * skipping the previous records, as {@link #findAllPaginate(int, int)} does,
+   * the page starts right after the position held by the token, so every page
+   * costs the same as the first one.<br/>
+   * The sort attribute must not be <code>null</code> on any entity and the
+   * database should have an index on the sort attribute and the key.
+   * 
+   * @since 1.6
+   * @param sortAttribute
+   *          Name of the attribute used to sort the pages before the key. If
+   *          <code>null</code> the pages are sorted only by the key.
+   * @param token
+   *          Token returned by the previous page or <code>null</code> to bring
+   *          the first page.
+   * @param maxResult
+   *          maximum number of results to retrieve.
+   * @return {@link KeysetPage} with the found entities.
+   */
+  @SuppressWarnings("unchecked")
+  public KeysetPage<Bean> findAllKeyset(String sortAttribute,
+      KeysetToken token, int maxResult) {
+    if (maxResult <= 0) {
+      throw new IllegalArgumentException(
+          "The max result must be greater than zero.");
+    }
+    Object lastSortValue = null;
+    Key lastKey = null;
+    if (token != null) {
+      if (sortAttribute == null ? token.getSortAttribute() != null
+          : !sortAttribute.equals(token.getSortAttribute())) {
+        throw new IllegalArgumentException("The token was not created to "
+            + "sort by the attribute " + sortAttribute + ".");
+      }
+      lastSortValue = token.getSortValue();
+      lastKey = (Key) token.getKey();
+    }
+
+    List<Bean> results = createKeysetQuery(sortAttribute, lastSortValue,
+        lastKey, maxResult + 1).getResultList();
+    KeysetToken nextToken = null;
+    if (results.size() > maxResult) {
+      results = new ArrayList<Bean>(results.subList(0, maxResult));
+      Bean last = results.get(maxResult - 1);
+      Serializable sortValue = null;
+      if (sortAttribute != null) {
+        sortValue = (Serializable) getAttributeValue(last, sortAttribute);
+      }
+      nextToken = new KeysetToken(sortAttribute, sortValue, last.getId());
+    }
+    return new KeysetPage<Bean>(results, nextToken);
+  }
+
+  /**
+   * Creates the query of a keyset page. It brings the entities sorted by the
+   * sort attribute and by the key that comes after the given position.
+   * 
+   * @since 1.6
+   * @param sortAttribute
+   *          Name of the attribute used to sort before the key or
+   *          <code>null</code>.
+   * @param lastSortValue
+   *          Value of the sort attribute of the last entity read.
+   * @param lastKey
+   *          Key of the last entity read or <code>null</code> to start from the
+   *          first entity.
+   * @param maxResult
+   *          maximum number of results to retrieve.
+   * @return {@link TypedQuery} of the page.
+   */
+  protected TypedQuery<Bean> createKeysetQuery(String sortAttribute,
+      Object lastSortValue, Key lastKey, int maxResult) {
+    CriteriaBuilder cb = getCurrentEntityManager().getCriteriaBuilder();
+    CriteriaQuery<Bean> criteria = createCriteriaSelect();
+    defaultFilterCriteria(criteria);
+    Root<Bean> root = getRoot(criteria);
+    Expression<Key> id = root.get(getIdAttributeName());
+    if (sortAttribute == null) {
+      if (lastKey != null) {
+        addRestriction(criteria, cb, greaterThan(cb, id, lastKey));
+      }
+      criteria.orderBy(cb.asc(id));
+    } else {
+      Expression<?> sort = root.get(sortAttribute);
+      if (lastKey != null) {
+        addRestriction(criteria, cb, cb.or(
+            greaterThan(cb, sort, lastSortValue),
+            cb.and(cb.equal(sort, lastSortValue),
+                greaterThan(cb, id, lastKey))));
+      }
+      criteria.orderBy(cb.asc(sort), cb.asc(id));
+    }
+    TypedQuery<Bean> query = getCurrentEntityManager().createQuery(criteria);
+    defaultFilterQuery(query);
+    applyReadOnly(query);
+    query.setMaxResults(maxResult);
+    return query;
+  }
+
+  /**
+   * Reads the value of a persistent attribute of an entity, using the member
+   * mapped by the persistence provider.
+   * 
+   * @since 1.6
+   * @param bean
+   *          Entity.
+   * @param attribute
+   *          Name of the attribute.
+   * @return Value of the attribute.
+   */
+  protected Object getAttributeValue(Bean bean, String attribute) {
+    Member member = getCurrentEntityManager().getMetamodel()
+        .entity(getEntityClass()).getAttribute(attribute).getJavaMember();
+    try {
+      if (member instanceof Field) {
+        Field field = (Field) member;
+        field.setAccessible(true);
+        return field.get(bean);
+      }
+      Method method = (Method) member;
+      method.setAccessible(true);
+      return method.invoke(bean);
+    } catch (Exception e) {
+      throw new PersistenceException("Unable to read the attribute "
+          + attribute + " of " + getEntityName() + ".", e);
+    }
+  }
+
+  /**
+   * Default filter to be used on the {@link #findAll()} method.<br/>
+   * This is a hook method. THe main implementation do nothing.
+   * 
+   * @since 1.0
+   * @param typedQuery
+   *          {@link TypedQuery} of the entity.
+   */
+  protected void defaultFilterQuery(TypedQuery<Bean> typedQuery) {
+  }
+
+  /**
+   * Default filter to be used on the {@link #findAll()} method.<br/>
+   * This is a hook method. THe main implementation do nothing.
+   * 
+   * @since 1.0
+   * @param criteriaQuery
+   *          {@link CriteriaQuery} of the entity.
+   */
+  protected void defaultFilterCriteria(CriteriaQuery<Bean> criteriaQuery) {
+  }
+
+  /**
+   * Generates a {@link CriteriaQuery} to a given type.
+   * 
+   * @since 1.0
+   * @param type
+   *          Type of the desired Criteria.
+   * @return {@link CriteriaQuery} specialized to the given type.
+   */
+  protected final <E> CriteriaQuery<E> createCriteria(Class<E> type) {
+    CriteriaBuilder criteriaBuilder = getCurrentEntityManager()
+        .getCriteriaBuilder();
+    return createCriteria(type, criteriaBuilder);
+  }
+
+  /**
+   * Generates a {@link CriteriaQuery} to a given type.
+   * 
+   * @since 1.0
+   * @param type
+   *          Type of the desired Criteria.
+   * @param criteriaBuilder
+   *          {@link CriteriaBuilder} to be used to create a
+   *          {@link CriteriaQuery}.
+   * @return {@link CriteriaQuery} specialized to the given type.
+   */
+  protected final <E> CriteriaQuery<E> createCriteria(Class<E> type,
+      CriteriaBuilder criteriaBuilder) {
+    CriteriaQuery<E> criteriaQuery = criteriaBuilder.createQuery(type);
+    return criteriaQuery;
+  }
+
+  /**
+   * Create a {@link CriteriaQuery} that brings all the records of the entity.
+   * 
+   * @since 1.0
+   * @return {@link CriteriaQuery} of the entity.
+   */
+  protected CriteriaQuery<Bean> createCriteriaSelect() {
+    CriteriaQuery<Bean> criteriaQuery = createCriteria(getEntityClass());
+    Root<Bean> from = criteriaQuery.from(getEntityClass());
+    criteriaQuery.select(from);
+
+    return criteriaQuery;
+  }
+
+  /**
+   * Brings the associations loaded together with the entities by
+   * {@link #findAll()}, {@link #findAllPaginate(int, int)} and
+   * {@link #findByKey(Serializable)}. The main implementation returns
+   * {@link FetchPlan#NONE}, so the associations follow their mapping.
+   * 
+   * @since 1.6
+   * @return Default {@link FetchPlan}.
+   */
+  protected FetchPlan getDefaultFetchPlan() {
+    return FetchPlan.NONE;
+  }
+
+  /**
+   * Adds the join fetches of a plan to a {@link CriteriaQuery} of the entity.
+   * The joins are left outer joins, so the entities without the associations
+   * are brought too, and if a collection is fetched the query is made
+   * distinct.
+   * 
+   * @since 1.6
+   * @param criteriaQuery
+   *          {@link CriteriaQuery} that selects the entity.
+   * @param fetchPlan
+   *          Associations to be fetched. It may be <code>null</code>.
+   */
+  protected void applyFetchPlan(CriteriaQuery<Bean> criteriaQuery,
+      FetchPlan fetchPlan) {
+    if (fetchPlan == null || fetchPlan.isEmpty()) {
+      return;
+    }
+    Map<String, Fetch<?, ?>> fetches = new HashMap<String, Fetch<?, ?>>();
+    boolean collection = false;
+    for (String path : fetchPlan.getPaths()) {
+      FetchParent<?, ?> parent = getRoot(criteriaQuery);
+      String current = null;
+      for (String attribute : path.split("\\.")) {
+        current = current == null ? attribute : current + "." + attribute;
+        Fetch<?, ?> fetch = fetches.get(current);
+        if (fetch == null) {
+          fetch = parent.fetch(attribute, JoinType.LEFT);
+          fetches.put(current, fetch);
+          collection |= fetch.getAttribute().isCollection();
+        }
+        parent = fetch;
+      }
+    }
+    if (collection) {
+      criteriaQuery.distinct(true);
+    }
+  }
+
+  /**
+   * Brings the {@link Root} of the entity from a {@link CriteriaQuery}.
+   * 
+   * @since 1.6
+   * @param criteriaQuery
+   *          {@link CriteriaQuery} that selects from the entity.
+   * @return {@link Root} of the entity.
+   * @throws IllegalArgumentException
+   *           If the {@link CriteriaQuery} does not select from the entity.
+   */
+  @SuppressWarnings("unchecked")
+  protected final Root<Bean> getRoot(CriteriaQuery<?> criteriaQuery) {
+    for (Root<?> root : criteriaQuery.getRoots()) {
+      if (getEntityClass().equals(root.getJavaType())) {
+        return (Root<Bean>) root;
+      }
+    }
+    throw new IllegalArgumentException("The criteria does not select from "
+        + getEntityName() + ".");
+  }
+
+  /**
+   * Adds a {@link Predicate} to the restriction of a {@link CriteriaQuery},
+   * keeping any restriction already defined on it.
+   * 
+   * @since 1.6
+   * @param criteriaQuery
+   *          {@link CriteriaQuery} to be restricted.
+   * @param criteriaBuilder
+   *          {@link CriteriaBuilder} used to join the restrictions.
+   * @param predicate
+   *          {@link Predicate} to be added.
+   */
+  protected final void addRestriction(CriteriaQuery<?> criteriaQuery,
+      CriteriaBuilder criteriaBuilder, Predicate predicate) {
+    Predicate restriction = criteriaQuery.getRestriction();
+    if (restriction == null) {
+      criteriaQuery.where(predicate);
+    } else {
+      criteriaQuery.where(criteriaBuilder.and(restriction, predicate));
+    }
+  }
+
+  /**
+   * Creates a "greater than" {@link Predicate} to an attribute whose type is
+   * not known to be {@link Comparable} at compile time, such as the key.
+   * 
+   * @param cb
+   *          {@link CriteriaBuilder}.
+   * @param expression
+   *          Attribute expression.
+   * @param value
+   *          Value to be compared.
+   * @return {@link Predicate}.
+   */
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  static Predicate greaterThan(CriteriaBuilder cb, Expression<?> expression,
+      Object value) {
+    return cb.greaterThan((Expression<Comparable>) expression,
+        (Comparable) value);
+  }
+
+  /**
+   * Creates a "between" {@link Predicate}, bounds included, to an attribute
+   * whose type is not known to be {@link Comparable} at compile time, such as
+   * the key.
+   * 
+   * @param cb
+   *          {@link CriteriaBuilder}.
+   * @param expression
+   *          Attribute expression.
+   * @param lower
+   *          Lowest value.
+   * @param upper
+   *          Highest value.
+   * @return {@link Predicate}.
+   */
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  static Predicate between(CriteriaBuilder cb, Expression<?> expression,
+      Object lower, Object upper) {
+    return cb.between((Expression<Comparable>) expression, (Comparable) lower,
+        (Comparable) upper);
+  }
+
+  /**
+   * Splits a range of keys into partitions of the same width, the first ones
+   * one key wider if the width is not a multiple of the amount of partitions.
+   * There are fewer partitions than desired if the range has fewer keys.
+   * 
+   * @param lowest
+   *          Lowest key.
+   * @param highest
+   *          Highest key.
+   * @param partitionCount
+   *          Desired amount of partitions.
+   * @return The lowest keys of the partitions followed by their highest keys.
+   */
+  static long[][] splitKeyRange(long lowest, long highest, int partitionCount) {
+    // The width of the whole long range does not fit on a long.
+    BigInteger lower = BigInteger.valueOf(lowest);
+    BigInteger width = BigInteger.valueOf(highest).subtract(lower)
+        .add(BigInteger.ONE);
+    int count = width.min(BigInteger.valueOf(partitionCount)).intValue();
+    BigInteger[] division = width.divideAndRemainder(BigInteger.valueOf(count));
+    int widerPartitions = division[1].intValue();
+    long[] lowerKeys = new long[count];
+    long[] upperKeys = new long[count];
+    for (int index = 0; index < count; index++) {
+      BigInteger partitionWidth = index < widerPartitions ? division[0]
+          .add(BigInteger.ONE) : division[0];
+      lowerKeys[index] = lower.longValue();
+      lower = lower.add(partitionWidth);
+      upperKeys[index] = lower.subtract(BigInteger.ONE).longValue();
+    }
+    return new long[][] { lowerKeys, upperKeys };
+  }
+
+  /**
+   * Creates the query of a batch of a range of keys processed by
+   * {@link #forEachParallel(EntityProcessor, int, int, ProcessingProgress)},
+   * sorted by key and filtered by the default filters.
+   * 
+   * @param lower
+   *          Lowest key of the batch.
+   * @param upper
+   *          Highest key of the range.
+   * @param maxResult
+   *          Size of the batch.
+   * @return {@link TypedQuery} of the batch.
+   */
+  private TypedQuery<Bean> createKeyRangeQuery(Key lower, Key upper,
+      int maxResult) {
+    CriteriaBuilder cb = getCurrentEntityManager().getCriteriaBuilder();
+    CriteriaQuery<Bean> criteria = createCriteriaSelect();
+    defaultFilterCriteria(criteria);
+    Expression<Key> id = getRoot(criteria).get(getIdAttributeName());
+    addRestriction(criteria, cb, between(cb, id, lower, upper));
+    criteria.orderBy(cb.asc(id));
+    TypedQuery<Bean> query = getCurrentEntityManager().createQuery(criteria);
+    defaultFilterQuery(query);
+    query.setMaxResults(maxResult);
+    return query;
+  }
+
+  /**
+   * Create a {@link CriteriaQuery} that his main goal is to return the amount
+   * of records. If it is overridden, {@link #countAll(CountMode)} counts the
+   * database with it instead of the statement built once.
+   * 
+   * @since 1.0
+   * @return {@link CriteriaQuery} of the entity.
+   */
+  protected CriteriaQuery<Long> createCriteriaCount() {
+    CriteriaBuilder cb = getCurrentEntityManager().getCriteriaBuilder();
+    CriteriaQuery<Long> criteriaQuery = createCriteria(Long.class, cb);
+    criteriaQuery.select(cb.count(criteriaQuery.from(getEntityClass())));
+    return criteriaQuery;
+  }
+
+  /**
+   * Count all the entities using the mode brought by
+   * {@link #getDefaultCountMode()}.
+   * 
+   * @since 1.0
+   * @return the amount of entities.
+   */
+  @Override
+  public Long countAll() {
+    return countAll(getDefaultCountMode());
+  }
+
+  /**
+   * Count all the entities.<br/>
+   * The database is counted by the statement
+   * <code>&lt;entity name&gt;.countAll</code>. If the entity declares a named
+   * query with this name it will be used. If {@link #createCriteriaCount()} is
+   * overridden, its query is used instead, and the cached amount, shared by
+   * all the Data Access Objects of the entity, is neither read nor written.
+   * 
+   * @since 1.6
+   * @param mode
+   *          Defines if the amount is counted on the database, brought from the
+   *          cache or estimated from the statistics of the database.
+   * @return the amount of entities.
+   */
+  @Override
+  public Long countAll(CountMode mode) {
+    OperationTimer timer = startTimer(Operation.COUNT_ALL, mode);
+    try {
+      if (mode == CountMode.APPROXIMATE) {
+        Long approximate = countApproximate();
+        if (approximate != null) {
+          return timer.success(approximate, 1);
+        }
+      }
+      if (!isCountByStatement()) {
+        return timer.success(
+            getCurrentEntityManager().createQuery(createCriteriaCount())
+                .getSingleResult(), 1);
+      }
+      if (mode != CountMode.EXACT) {
+        Long cached = metadata.getCountCache().get(getCountCacheTimeToLive());
+        if (cached != null) {
+          return timer.success(cached, 1);
+        }
+      }
+      TypedQuery<Long> countQuery = getStatements().getCountAll().createQuery(
+          getCurrentEntityManager(), Long.class);
+      Long count = countQuery.getSingleResult();
+      metadata.getCountCache().set(count);
+      return timer.success(count, 1);
+    } finally {
+      timer.stop();
+    }
+  }
+
+  /**
+   * Informs if the entities are counted by the statement built once, that is,
+   * if {@link #createCriteriaCount()} is not overridden.
+   * 
+   * @return <code>true</code> if the statement is used.
+   */
+  private boolean isCountByStatement() {
+    Boolean byStatement = metadata.getCountByStatement();
+    if (byStatement == null) {
+      boolean overridden = false;
+      Class<?> type = getClass();
+      while (!overridden && type != DataAccessObjectImpl.class) {
+        try {
+          type.getDeclaredMethod("createCriteriaCount");
+          overridden = true;
+        } catch (NoSuchMethodException e) {
+          type = type.getSuperclass();
+        }
+      }
+      byStatement = Boolean.valueOf(!overridden);
+      metadata.setCountByStatement(byStatement);
+    }
+    return byStatement.booleanValue();
+  }
+
+  /**
+   * Estimates the amount of entities from the statistics of the database. It
+   * runs the query brought by {@link #createApproximateCountQuery()}.
+   * 
+   * @since 1.6
+   * @return Estimated amount or <code>null</code> if there is no query to
+   *         estimate it.
+   */
+  protected Long countApproximate() {
+    Query query = createApproximateCountQuery();
+    if (query == null) {
+      return null;
+    }
+    Number approximate = (Number) QueryUtils.findSingleResult(query);
+    return approximate == null ? null : approximate.longValue();
+  }
+
+  /**
+   * Creates a native query that reads the estimated amount of entities from the
+   * statistics of the database, such as <code>reltuples</code> of the
+   * <code>pg_class</code> table on PostgreSQL. The statistics are specific to
+   * each database, so the main implementation returns <code>null</code> and the
+   * {@link CountMode#APPROXIMATE} mode uses the cached amount.
+   * 
+   * @since 1.6
+   * @return Native {@link Query} that brings a single number or
+   *         <code>null</code>.
+   */
+  protected Query createApproximateCountQuery() {
+    return null;
+  }
+
+  /**
+   * Return the mode used by the {@link #countAll()} method.
+   * 
+   * @since 1.6
+   * @return {@link CountMode} used by default.
+   */
+  protected CountMode getDefaultCountMode() {
+    return CountMode.EXACT;
+  }
+
+  /**
+   * Return the time, in milliseconds, that the amount of entities cached by the
+   * {@link CountMode#CACHED} mode is valid. After that the amount is counted
+   * again, fixing any drift caused by rolled back transactions or by writes
+   * done outside this Data Access Object.
+   * 
+   * @since 1.6
+   * @return Time to live of the cached amount.
+   */
+  protected long getCountCacheTimeToLive() {
+    return DEFAULT_COUNT_CACHE_TIME_TO_LIVE;
+  }
+
+  /**
+   * Brings an entity by its key.<br/>
+   * If {@link #getEntityCacheSize()} is greater than zero the entity is read
+   * through the {@link EntityCache} of the entity. On a miss it is loaded by
+   * its own {@link EntityManager}, so the cached entities are detached and
+   * shared by all the callers: they must not be changed. The cached entity is
+   * invalidated by the writes done through this Data Access Object, again
+   * after the commit of a JTA transaction. Inside a transaction the cache is
+   * not used, and the entity managed by the transaction is brought.<br/>
+   * If {@link #getKeyFilterExpectedKeys()} is greater than zero, a key that the
+   * {@link KeyFilter} reports as certainly absent is not looked up.
+   * 
+   * @since 1.0
+   * @param id
+   *          Entity key.
+   * @return Entity.
+   */
+  @Override
+  public Bean findByKey(Key id) {
+    return findByKey(id, getDefaultFetchPlan());
+  }
+
+  /**
+   * Brings an entity by its key, fetching the associations of a plan. The
+   * {@link EntityCache} is used only with the plan brought by
+   * {@link #getDefaultFetchPlan()}, the one its entities are loaded with, and
+   * out of a transaction.
+   * 
+   * @since 1.6
+   * @param id
+   *          Entity key.
+   * @param fetchPlan
+   *          Associations loaded together with the entity.
+   * @return Entity.
+   */
+  @Override
+  public Bean findByKey(Key id, FetchPlan fetchPlan) {
+    OperationTimer timer = startTimer(Operation.FIND_BY_KEY, id, fetchPlan);
+    try {
+      if (id != null && !mayExist(id)) {
+        return timer.<Bean> success(null, 0);
+      }
+      EntityCache<Key, Bean> cache = getEntityCache();
+      if (cache == null || !getDefaultFetchPlan().equals(fetchPlan)
+          || TransactionCallbacks.isActive(getCurrentEntityManager())) {
+        Bean bean = loadByKey(id, fetchPlan);
+        return timer.success(bean, bean == null ? 0 : 1);
+      }
+      Bean bean = findManagedByKey(id);
+      if (bean == null) {
+        bean = cache.get(id);
+      }
+      if (bean == null) {
+        long generation = cache.getGeneration();
+        EntityManager entityManager = getParallelEntityManagerFactory()
+            .createEntityManager();
+        EntityManager previous = bindEntityManager(entityManager);
+        try {
+          bean = loadByKey(id, fetchPlan);
+        } finally {
+          bindEntityManager(previous);
+          entityManager.close();
+        }
+        if (bean != null) {
+          cache.put(id, bean, bean.getVersion(), generation);
+        }
+      }
+      return timer.success(bean, bean == null ? 0 : 1);
+    } finally {
+      timer.stop();
+    }
+  }
+
+  /**
+   * Loads an entity by its key from the {@link EntityManager}, without going
+   * through the {@link EntityCache}.
+   * 
+   * @since 1.6
+   * @param id
+   *          Entity key.
+   * @param fetchPlan
+   *          Associations loaded together with the entity.
+   * @return Entity.
+   */
+  protected Bean loadByKey(Key id, FetchPlan fetchPlan) {
+    if (fetchPlan != null && !fetchPlan.isEmpty()) {
+      CriteriaBuilder cb = getCurrentEntityManager().getCriteriaBuilder();
+      CriteriaQuery<Bean> criteria = createCriteriaSelect();
+      applyFetchPlan(criteria, fetchPlan);
+      addRestriction(criteria, cb,
+          cb.equal(getRoot(criteria).get(getIdAttributeName()), id));
+      TypedQuery<Bean> query = getCurrentEntityManager().createQuery(criteria);
+      applyReadOnly(query);
+      List<Bean> found = query.getResultList();
+      return found.isEmpty() ? null : found.get(0);
+    }
+    Bean bean;
+    if (isReadOnly()) {
+      bean = getCurrentEntityManager().find(this.getEntityClass(), id,
+          READ_ONLY_HINTS);
+    } else {
+      bean = getCurrentEntityManager().find(this.getEntityClass(), id);
+    }
+    return bean;
+  }
+
+  /**
+   * Brings an entity by its key, optionally on the read-only mode.
+   * 
+   * @since 1.6
+   * @param id
+   *          Entity key.
+   * @param readOnly
+   *          If <code>true</code> the entity is brought as in a
+   *          {@link ReadOnlyScope}, so it is not tracked for changes.
+   * @return Entity.
+   */
+  @Override
+  public Bean findByKey(Key id, boolean readOnly) {
+    boolean previous = ReadOnlyScope.enter(readOnly);
+    try {
+      return findByKey(id);
+    } finally {
+      ReadOnlyScope.exit(previous);
+    }
+  }
+
+  /**
+   * Informs if the entities must be brought on the read-only mode. The main
+   * implementation returns <code>true</code> inside a {@link ReadOnlyScope}.
+   * It may be overridden to make every query of the Data Access Object
+   * read-only, such as the ones of reference data.
+   * 
+   * @since 1.6
+   * @return <code>true</code> if the entities are brought as read-only.
+   */
+  protected boolean isReadOnly() {
+    return ReadOnlyScope.isActive();
+  }
+
+  /**
+   * Informs if the read-only queries skip the flush of the persistence context
+   * before they run. It is opt-in: the main implementation returns
+   * <code>false</code>, since a read-only query that skips the flush does not
+   * see the changes still pending on the same transaction. It may be
+   * overridden when the read-only queries never run after a change.
+   * 
+   * @since 1.6
+   * @return <code>true</code> if the read-only queries skip the flush.
+   */
+  protected boolean isReadOnlyFlushSkipped() {
+    return false;
+  }
+
+  /**
+   * Prepares a query to the read-only mode, if {@link #isReadOnly()}. The
+   * provider hints {@link #HIBERNATE_READ_ONLY_HINT} and
+   * {@link #ECLIPSELINK_READ_ONLY_HINT} make the entities be brought without a
+   * snapshot for dirty checking, so the transaction has nothing to flush for
+   * them. If {@link #isReadOnlyFlushSkipped()}, the query does not flush the
+   * persistence context before it runs, either.
+   * 
+   * @since 1.6
+   * @param query
+   *          Query that brings entities.
+   */
+  protected void applyReadOnly(Query query) {
+    if (isReadOnly()) {
+      if (isReadOnlyFlushSkipped()) {
+        query.setFlushMode(FlushModeType.COMMIT);
+      }
+      for (Map.Entry<String, Object> hint : READ_ONLY_HINTS.entrySet()) {
+        query.setHint(hint.getKey(), hint.getValue());
+      }
+    }
   }
 
   /**
-   * Default filter to be used on the {@link #findAll()} method.<br/>
-   * This is a hook method. THe main implementation do nothing.
+   * Return the maximum amount of entities kept by the {@link EntityCache} used
+   * by {@link #findByKey(Serializable)}. The main implementation returns
+   * <code>0</code>, which disables the cache. It should be enabled only to
+   * reference data, read much more often than it is written.
    * 
-   * @since 1.0
-   * @param criteriaQuery
-   *          {@link CriteriaQuery} of the entity.
+   * @since 1.6
+   * @return Maximum amount of cached entities.
    */
-  protected void defaultFilterCriteria(CriteriaQuery<Bean> criteriaQuery) {
+  protected int getEntityCacheSize() {
+    return 0;
   }
 
   /**
-   * Generates a {@link CriteriaQuery} to a given type.
+   * Return the time, in milliseconds, that an entity is kept by the
+   * {@link EntityCache}. It bounds how long a change done outside this Data
+   * Access Object, or committed by a resource local transaction after a
+   * concurrent read, can be hidden by the cache. If it is <code>0</code> the
+   * entities do not expire.
    * 
-   * @since 1.0
-   * @param type
-   *          Type of the desired Criteria.
-   * @return {@link CriteriaQuery} specialized to the given type.
+   * @since 1.6
+   * @return Time to live of a cached entity.
    */
-  protected final <E> CriteriaQuery<E> createCriteria(Class<E> type) {
-    CriteriaBuilder criteriaBuilder = getEntityManager().getCriteriaBuilder();
-    return createCriteria(type, criteriaBuilder);
+  protected long getEntityCacheTimeToLive() {
+    return DEFAULT_ENTITY_CACHE_TIME_TO_LIVE;
   }
 
   /**
-   * Generates a {@link CriteriaQuery} to a given type.
+   * Brings the {@link EntityCache} of the entity. It is shared by all the
+   * instances of the entity.
    * 
-   * @since 1.0
-   * @param type
-   *          Type of the desired Criteria.
-   * @param criteriaBuilder
-   *          {@link CriteriaBuilder} to be used to create a
-   *          {@link CriteriaQuery}.
-   * @return {@link CriteriaQuery} specialized to the given type.
+   * @since 1.6
+   * @return {@link EntityCache} or <code>null</code> if it is disabled.
    */
-  protected final <E> CriteriaQuery<E> createCriteria(Class<E> type,
-      CriteriaBuilder criteriaBuilder) {
-    CriteriaQuery<E> criteriaQuery = criteriaBuilder.createQuery(type);
-    return criteriaQuery;
+  protected EntityCache<Key, Bean> getEntityCache() {
+    EntityCache<Key, Bean> cache = this.entityCache;
+    if (cache == null) {
+      int size = getEntityCacheSize();
+      if (size <= 0) {
+        return null;
+      }
+      cache = EntityCache.forEntity(getEntityClass(), size,
+          getEntityCacheTimeToLive());
+      this.entityCache = cache;
+    }
+    return cache;
   }
 
   /**
-   * Create a {@link CriteriaQuery} that brings all the records of the entity.
+   * Brings the statistics of the {@link EntityCache} of the entity.
    * 
-   * @since 1.0
-   * @return {@link CriteriaQuery} of the entity.
+   * @since 1.6
+   * @return {@link CacheStatistics} or <code>null</code> if the cache is
+   *         disabled.
    */
-  protected CriteriaQuery<Bean> createCriteriaSelect() {
-    CriteriaQuery<Bean> criteriaQuery = createCriteria(getEntityClass());
-    Root<Bean> from = criteriaQuery.from(getEntityClass());
-    criteriaQuery.select(from);
+  public CacheStatistics getEntityCacheStatistics() {
+    EntityCache<Key, Bean> cache = getEntityCache();
+    return cache == null ? null : cache.getStatistics();
+  }
 
-    return criteriaQuery;
+  /**
+   * Return the maximum amount of pages kept by the {@link QueryCache} used by
+   * {@link #findAllPaginate(int, int)}. The main implementation returns
+   * <code>0</code>, which disables the cache.
+   * 
+   * @since 1.6
+   * @return Maximum amount of cached pages.
+   */
+  protected int getQueryCacheSize() {
+    return 0;
   }
 
   /**
-   * Create a {@link CriteriaQuery} that his main goal is to return the amount
-   * of records.
+   * Return the time, in milliseconds, that a page is kept by the
+   * {@link QueryCache}. It bounds how long a change done outside the Data
+   * Access Objects of the entity, or committed by a resource local transaction
+   * after a concurrent read, can be hidden by the cache. If it is
+   * <code>0</code> the pages do not expire.
    * 
-   * @since 1.0
-   * @return {@link CriteriaQuery} of the entity.
+   * @since 1.6
+   * @return Time to live of a cached page.
    */
-  protected CriteriaQuery<Long> createCriteriaCount() {
-    CriteriaBuilder cb = getEntityManager().getCriteriaBuilder();
-    CriteriaQuery<Long> criteriaQuery = createCriteria(Long.class, cb);
-    criteriaQuery.select(cb.count(criteriaQuery.from(getEntityClass())));
-    return criteriaQuery;
+  protected long getQueryCacheTimeToLive() {
+    return DEFAULT_QUERY_CACHE_TIME_TO_LIVE;
   }
 
   /**
-   * Count all the entities.
+   * Return the key of the filter applied by {@link #defaultFilterCriteria}
+   * and {@link #defaultFilterQuery}, used by the {@link QueryCache} to tell
+   * apart the pages of different filters. The pages are already kept apart by
+   * the class of the Data Access Object, so the main implementation returns
+   * <code>null</code>. It must be overridden when the filter depends on the
+   * state of the instance, such as the current user or tenant.
    * 
-   * @since 1.0
-   * @return the amount of entities.
+   * @since 1.6
+   * @return Key of the filter. It must implement
+   *         {@link Object#equals(Object)} and {@link Object#hashCode()}.
    */
-  @Override
-  public Long countAll() {
-    CriteriaQuery<Long> cqL = createCriteriaCount();
-    TypedQuery<Long> countQuery = getEntityManager().createQuery(cqL);
-    return countQuery.getSingleResult();
+  protected Object getQueryCacheFilterKey() {
+    return null;
   }
 
   /**
-   * Brings an entity by its key.
+   * Brings the {@link QueryCache} of the entity. It is shared by all the
+   * instances of the entity.
    * 
-   * @since 1.0
+   * @since 1.6
+   * @return {@link QueryCache} or <code>null</code> if it is disabled.
+   */
+  protected QueryCache<Key> getQueryCache() {
+    QueryCache<Key> cache = this.queryCache;
+    if (cache == null) {
+      int size = getQueryCacheSize();
+      if (size <= 0) {
+        return null;
+      }
+      cache = QueryCache.forEntity(getEntityClass(), size,
+          getQueryCacheTimeToLive());
+      this.queryCache = cache;
+    }
+    return cache;
+  }
+
+  /**
+   * Brings the statistics of the {@link QueryCache} of the entity.
+   * 
+   * @since 1.6
+   * @return {@link CacheStatistics} or <code>null</code> if the cache is
+   *         disabled.
+   */
+  public CacheStatistics getQueryCacheStatistics() {
+    QueryCache<Key> cache = getQueryCache();
+    return cache == null ? null : cache.getStatistics();
+  }
+
+  /**
+   * Discards all the pages of the {@link QueryCache}, if it is enabled. Inside
+   * a JTA transaction they are discarded again after its completion, since a
+   * concurrent read may cache the pages committed before.
+   * 
+   * @since 1.6
+   */
+  protected void invalidateQueries() {
+    final QueryCache<Key> cache = getQueryCache();
+    if (cache != null) {
+      cache.invalidateAll();
+      if (TransactionCallbacks.getAction(cache) == null) {
+        TransactionCallbacks.afterCompletion(cache, new Runnable() {
+          @Override
+          public void run() {
+            cache.invalidateAll();
+          }
+        });
+      }
+    }
+  }
+
+  /**
+   * Informs if an entity may exist, using the {@link KeyFilter} of the entity.
+   * If the filter is older than {@link #getKeyFilterRebuildInterval()}, or it
+   * was never built, it is rebuilt on the background by a thread of
+   * {@link #getAsyncExecutor()}. Meanwhile every key may exist. The rebuild
+   * never runs on the calling thread: without an executor, or when the
+   * executor rejects it or would run it on the caller, it is skipped.
+   * 
+   * @since 1.6
    * @param id
    *          Entity key.
-   * @return Entity.
+   * @return <code>false</code> if the entity certainly does not exist.
+   */
+  protected boolean mayExist(Key id) {
+    final KeyFilter filter = getKeyFilter();
+    if (filter == null) {
+      return true;
+    }
+    if (filter.needsRebuild(getKeyFilterRebuildInterval())
+        && filter.startRebuild()) {
+      ExecutorService executor = getAsyncExecutor();
+      if (executor == null) {
+        filter.finishRebuild(false);
+        return filter.mightContain(id);
+      }
+      final Thread caller = Thread.currentThread();
+      try {
+        executor.execute(new Runnable() {
+          @Override
+          public void run() {
+            if (Thread.currentThread() == caller) {
+              filter.finishRebuild(false);
+              getLogger().warn(
+                  "Rejected the rebuild of the " + getEntityName()
+                      + " key filter on the calling thread.");
+            } else {
+              rebuildKeyFilter(filter);
+            }
+          }
+        });
+      } catch (RuntimeException e) {
+        filter.finishRebuild(false);
+        getLogger().warn(
+            "Unable to schedule the rebuild of the " + getEntityName()
+                + " key filter.", e);
+      }
+    }
+    return filter.mightContain(id);
+  }
+
+  /**
+   * Rebuilds a {@link KeyFilter} by scanning all the keys of the entity, in
+   * chunks of {@link #getFetchSize()} keys, with its own {@link EntityManager}.
+   * 
+   * @since 1.6
+   * @param filter
+   *          {@link KeyFilter} whose rebuild was started.
+   */
+  protected void rebuildKeyFilter(KeyFilter filter) {
+    boolean success = false;
+    EntityManager entityManager = getParallelEntityManagerFactory()
+        .createEntityManager();
+    try {
+      EntityStatements entityStatements = getStatements();
+      int fetchSize = getFetchSize();
+      int scanned = 0;
+      List<Key> keys;
+      Key lastKey = null;
+      do {
+        TypedQuery<Key> query;
+        if (lastKey == null) {
+          query = entityStatements.getFindIds().createQuery(entityManager,
+              getKeyClass());
+        } else {
+          query = entityStatements.getFindIdsAfter().createQuery(
+              entityManager, getKeyClass());
+          query.setParameter("id", lastKey);
+        }
+        query.setMaxResults(fetchSize);
+        keys = query.getResultList();
+        for (Key key : keys) {
+          filter.addScanned(key);
+        }
+        scanned += keys.size();
+        if (!keys.isEmpty()) {
+          lastKey = keys.get(keys.size() - 1);
+        }
+      } while (keys.size() == fetchSize);
+      success = true;
+      getLogger().debug(
+          "Rebuilt the " + getEntityName() + " key filter with " + scanned
+              + " keys.");
+    } catch (RuntimeException e) {
+      getLogger().warn(
+          "Unable to rebuild the " + getEntityName() + " key filter.", e);
+    } finally {
+      filter.finishRebuild(success);
+      entityManager.close();
+    }
+  }
+
+  /**
+   * Adds a saved key to the {@link KeyFilter}, if it is enabled. If the key
+   * was not generated yet, the filter is invalidated until it is rebuilt.
+   * 
+   * @since 1.6
+   * @param id
+   *          Saved key.
+   */
+  protected void remember(Key id) {
+    KeyFilter filter = getKeyFilter();
+    if (filter != null) {
+      if (id == null) {
+        filter.invalidate();
+      } else {
+        filter.add(id);
+      }
+    }
+  }
+
+  /**
+   * Return the expected amount of keys of the {@link KeyFilter} used by
+   * {@link #findByKey(Serializable)} to skip the lookups of keys that certainly
+   * do not exist. The main implementation returns <code>0</code>, which
+   * disables the filter. It should be enabled only when every new entity is
+   * saved through the Data Access Objects of this JVM.
+   * 
+   * @since 1.6
+   * @return Expected amount of keys.
+   */
+  protected int getKeyFilterExpectedKeys() {
+    return 0;
+  }
+
+  /**
+   * Return the rate of absent keys that the {@link KeyFilter} may report as
+   * present.
+   * 
+   * @since 1.6
+   * @return False positive rate, greater than 0 and lower than 1.
+   */
+  protected double getKeyFilterFalsePositiveRate() {
+    return DEFAULT_KEY_FILTER_FALSE_POSITIVE_RATE;
+  }
+
+  /**
+   * Return the time, in milliseconds, between two rebuilds of the
+   * {@link KeyFilter}. The rebuild drops the removed keys and must be much
+   * longer than any transaction that saves this entity.
+   * 
+   * @since 1.6
+   * @return Rebuild interval.
+   */
+  protected long getKeyFilterRebuildInterval() {
+    return DEFAULT_KEY_FILTER_REBUILD_INTERVAL;
+  }
+
+  /**
+   * Brings the {@link KeyFilter} of the entity. It is shared by all the
+   * instances of the entity.
+   * 
+   * @since 1.6
+   * @return {@link KeyFilter} or <code>null</code> if it is disabled.
+   */
+  protected KeyFilter getKeyFilter() {
+    KeyFilter filter = this.keyFilter;
+    if (filter == null) {
+      int expectedKeys = getKeyFilterExpectedKeys();
+      if (expectedKeys <= 0) {
+        return null;
+      }
+      filter = KeyFilter.forEntity(getEntityClass(), expectedKeys,
+          getKeyFilterFalsePositiveRate());
+      this.keyFilter = filter;
+    }
+    return filter;
+  }
+
+  /**
+   * Removes an entity from the {@link EntityCache} and discards the pages of
+   * the {@link QueryCache}, if they are enabled. Inside a JTA transaction the
+   * entity is removed again after its completion, since a concurrent read may
+   * cache the state that was committed before.
+   * 
+   * @since 1.6
+   * @param id
+   *          Entity key.
+   */
+  protected void evict(Key id) {
+    invalidateQueries();
+    if (id != null) {
+      EntityCache<Key, Bean> cache = getEntityCache();
+      if (cache != null) {
+        cache.invalidate(id);
+        CacheEviction<Key> eviction = getCacheEviction(cache);
+        if (eviction != null) {
+          eviction.add(id);
+        }
+      }
+    }
+  }
+
+  /**
+   * Removes all the entities from the {@link EntityCache} and discards the
+   * pages of the {@link QueryCache}, if they are enabled. It is used after the
+   * statements that change entities that are not known one by one.
+   * 
+   * @since 1.6
+   */
+  protected void evictAll() {
+    invalidateQueries();
+    EntityCache<Key, Bean> cache = getEntityCache();
+    if (cache != null) {
+      cache.invalidateAll();
+      CacheEviction<Key> eviction = getCacheEviction(cache);
+      if (eviction != null) {
+        eviction.addAll();
+      }
+    }
+  }
+
+  /**
+   * Brings the eviction run after the completion of the JTA transaction of
+   * the calling thread, registering it on the first use.
+   * 
+   * @param cache
+   *          {@link EntityCache} of the entity.
+   * @return {@link CacheEviction} of the transaction or <code>null</code> if
+   *         there is no JTA transaction.
+   */
+  @SuppressWarnings("unchecked")
+  private CacheEviction<Key> getCacheEviction(EntityCache<Key, Bean> cache) {
+    CacheEviction<Key> eviction = (CacheEviction<Key>) TransactionCallbacks
+        .getAction(cache);
+    if (eviction == null) {
+      eviction = new CacheEviction<Key>(cache);
+      if (!TransactionCallbacks.afterCompletion(cache, eviction)) {
+        return null;
+      }
+    }
+    return eviction;
+  }
+
+  /**
+   * Brings a reference to an entity without loading its state. If the entity
+   * is already managed, the managed instance is brought.
+   * 
+   * @since 1.6
+   * @param id
+   *          Entity key.
+   * @return Reference to the entity.
    */
   @Override
-  public Bean findByKey(Key id) {
-    Bean bean = this.getEntityManager().find(this.getEntityClass(), id);
-    return bean;
+  public Bean getReference(Key id) {
+    return getCurrentEntityManager().getReference(getEntityClass(), id);
+  }
+
+  /**
+   * Brings the entities of a collection of keys. The entities already managed
+   * are brought by {@link #findManagedByKey(Serializable)} and the others are
+   * fetched in chunks of {@link #getAmountKeysPerStatement()} keys, each chunk
+   * with a single statement.
+   * 
+   * @since 1.6
+   * @param ids
+   *          Entity keys.
+   * @return {@link Map} with the found entities by their key, on the same order
+   *         of the given keys. The keys that were not found are not present.
+   */
+  @Override
+  public Map<Key, Bean> findByKeys(Collection<Key> ids) {
+    OperationTimer timer = startTimer(Operation.FIND_BY_KEYS, ids);
+    try {
+      Map<Key, Bean> found = new HashMap<Key, Bean>();
+      if (ids == null || ids.isEmpty()) {
+        return timer.success(found, 0);
+      }
+      List<Key> missing = new ArrayList<Key>();
+      for (Key id : sortKeys(ids)) {
+        Bean bean = findManagedByKey(id);
+        if (bean == null) {
+          missing.add(id);
+        } else {
+          found.put(id, bean);
+        }
+      }
+
+      if (!missing.isEmpty()) {
+        EntityStatement statement = getStatements().getFindByIds();
+        int chunkSize = getAmountKeysPerStatement();
+        for (int start = 0; start < missing.size(); start += chunkSize) {
+          TypedQuery<Bean> query = statement.createQuery(
+              getCurrentEntityManager(), getEntityClass());
+          applyReadOnly(query);
+          query.setParameter("ids", missing.subList(start,
+              Math.min(start + chunkSize, missing.size())));
+          for (Bean bean : query.getResultList()) {
+            found.put(bean.getId(), bean);
+          }
+        }
+      }
+
+      Map<Key, Bean> ordered = new LinkedHashMap<Key, Bean>();
+      for (Key id : ids) {
+        Bean bean = found.get(id);
+        if (bean != null) {
+          ordered.put(id, bean);
+        }
+      }
+      return timer.success(ordered, ordered.size());
+    } finally {
+      timer.stop();
+    }
+  }
+
+  /**
+   * Brings an entity that is already managed by the {@link EntityManager}
+   * without going to the database and without initializing any proxy.<br/>
+   * JPA does not offer a portable way to look into the persistence context, so
+   * the main implementation looks only into the persistence context of
+   * Hibernate and returns <code>null</code> on the other providers, where every
+   * key is fetched by {@link #findByKeys(Collection)} and a managed copy is
+   * not seen by {@link #remove(Model, boolean)} and
+   * {@link #upsert(Model, boolean)}. Subclasses can override it using the API
+   * of the persistence provider.
+   * 
+   * @since 1.6
+   * @param id
+   *          Entity key.
+   * @return The managed entity or <code>null</code>.
+   */
+  protected Bean findManagedByKey(Key id) {
+    return getEntityClass().cast(
+        PersistenceContexts.findManaged(getCurrentEntityManager(),
+            getEntityClass(), id));
+  }
+
+  /**
+   * {@link Iterator} that fetches the entities in chunks ordered by the key and
+   * detaches the entities of a chunk when the next one is fetched.
+   * 
+   * @since 1.6
+   */
+  private class ChunkIterator implements Iterator<Bean> {
+
+    private final int fetchSize;
+    private List<Bean> chunk = Collections.emptyList();
+    private int position;
+    private Key lastKey;
+    private boolean exhausted;
+
+    ChunkIterator(int fetchSize) {
+      this.fetchSize = fetchSize;
+    }
+
+    @Override
+    public boolean hasNext() {
+      if (position < chunk.size()) {
+        return true;
+      }
+      if (!exhausted) {
+        fetch();
+      }
+      return position < chunk.size();
+    }
+
+    @Override
+    public Bean next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      return chunk.get(position++);
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException(
+          "The entities can not be removed through this iterator.");
+    }
+
+    private void fetch() {
+      EntityManager entityManager = getCurrentEntityManager();
+      for (Bean bean : chunk) {
+        if (entityManager.contains(bean)) {
+          entityManager.detach(bean);
+        }
+      }
+      chunk = findChunkAfter(lastKey, fetchSize);
+      position = 0;
+      if (chunk.size() < fetchSize) {
+        exhausted = true;
+      }
+      if (!chunk.isEmpty()) {
+        lastKey = chunk.get(chunk.size() - 1).getId();
+      }
+    }
+  }
+
+  /**
+   * Entities to be removed from the {@link EntityCache} after the completion
+   * of a transaction.
+   * 
+   * @since 1.6
+   * @param <K>
+   *          Type of the key.
+   */
+  private static final class CacheEviction<K> implements Runnable {
+
+    private final EntityCache<K, ?> cache;
+    private final Set<K> keys = new HashSet<K>();
+    private boolean all;
+
+    CacheEviction(EntityCache<K, ?> cache) {
+      this.cache = cache;
+    }
+
+    synchronized void add(K key) {
+      if (!all) {
+        keys.add(key);
+      }
+    }
+
+    synchronized void addAll() {
+      all = true;
+      keys.clear();
+    }
+
+    @Override
+    public synchronized void run() {
+      if (all) {
+        cache.invalidateAll();
+      } else {
+        for (K key : keys) {
+          cache.invalidate(key);
+        }
+      }
+    }
+  }
+
+  /**
+   * Saves a partition on its own {@link EntityManager} and transaction.
+   * 
+   * @since 1.6
+   */
+  private class SavePartitionTask implements Callable<PartitionResult<Bean>> {
+
+    private final EntityManagerFactory factory;
+    private final int partition;
+    private final List<Bean> beans;
+
+    SavePartitionTask(EntityManagerFactory factory, int partition,
+        List<Bean> beans) {
+      this.factory = factory;
+      this.partition = partition;
+      this.beans = beans;
+    }
+
+    @Override
+    public PartitionResult<Bean> call() {
+      EntityManager entityManager = factory.createEntityManager();
+      EntityManager previous = bindEntityManager(entityManager);
+      EntityTransaction transaction = null;
+      try {
+        transaction = entityManager.getTransaction();
+        transaction.begin();
+        List<Bean> saved;
+        OperationTimer timer = startTimer(Operation.SAVE, beans);
+        try {
+          saved = timer.success(saveEach(beans, true), beans.size());
+        } finally {
+          timer.stop();
+        }
+        transaction.commit();
+        for (int index = 0; index < beans.size(); index++) {
+          Bean bean = beans.get(index);
+          Bean merged = saved.get(index);
+          // A concurrent read may have cached the state before the commit.
+          evict(merged.getId());
+          if (merged != bean) {
+            // The commit incremented the version of the merged instance.
+            bean.setVersion(merged.getVersion());
+          }
+        }
+        return new PartitionResult<Bean>(partition, beans, beans.size(), null);
+      } catch (RuntimeException e) {
+        getLogger().warn(
+            "Partition " + partition + " of " + getEntityName() + " with "
+                + beans.size() + " objects failed.", e);
+        rollback(transaction);
+        return new PartitionResult<Bean>(partition, beans, 0, e);
+      } finally {
+        bindEntityManager(previous);
+        entityManager.close();
+      }
+    }
+  }
+
+  /**
+   * Processes a range of keys on its own {@link EntityManager}, one batch by
+   * transaction.
+   * 
+   * @since 1.6
+   */
+  private class ProcessRangeTask implements Callable<KeyRangeResult<Key>> {
+
+    private final EntityManagerFactory factory;
+    private final int partition;
+    private final long lowerKey;
+    private final long upperKey;
+    private final EntityProcessor<Bean> processor;
+    private final ProcessingProgress progress;
+
+    ProcessRangeTask(EntityManagerFactory factory, int partition,
+        long lowerKey, long upperKey, EntityProcessor<Bean> processor,
+        ProcessingProgress progress) {
+      this.factory = factory;
+      this.partition = partition;
+      this.lowerKey = lowerKey;
+      this.upperKey = upperKey;
+      this.processor = processor;
+      this.progress = progress;
+    }
+
+    @Override
+    public KeyRangeResult<Key> call() {
+      EntityManager entityManager = factory.createEntityManager();
+      EntityManager previous = bindEntityManager(entityManager);
+      EntityTransaction transaction = null;
+      int batchSize = getFetchSize();
+      long processed = 0;
+      Key lastKey = null;
+      try {
+        long next = lowerKey;
+        boolean more = true;
+        while (more) {
+          transaction = entityManager.getTransaction();
+          transaction.begin();
+          List<Bean> beans = createKeyRangeQuery(toKey(next), toKey(upperKey),
+              batchSize).getResultList();
+          for (Bean bean : beans) {
+            processor.process(bean);
+          }
+          transaction.commit();
+          entityManager.clear();
+          more = false;
+          if (!beans.isEmpty()) {
+            lastKey = beans.get(beans.size() - 1).getId();
+            processed += beans.size();
+            progress.committed(beans.size());
+            long last = ((Number) lastKey).longValue();
+            // Compared before the increment, which overflows on the highest
+            // key.
+            more = beans.size() == batchSize && last < upperKey;
+            next = last + 1;
+          }
+        }
+        progress.finished(true);
+        getLogger().debug(
+            "Partition " + partition + " of " + getEntityName()
+                + " processed " + processed + " objects. " + progress);
+        return new KeyRangeResult<Key>(partition, toKey(lowerKey),
+            toKey(upperKey), lastKey, processed, null);
+      } catch (RuntimeException e) {
+        getLogger().warn(
+            "Partition " + partition + " of " + getEntityName()
+                + " failed after " + processed + " objects.", e);
+        rollback(transaction);
+        progress.finished(false);
+        return new KeyRangeResult<Key>(partition, toKey(lowerKey),
+            toKey(upperKey), lastKey, processed, e);
+      } finally {
+        bindEntityManager(previous);
+        entityManager.close();
+      }
+    }
+  }
+
+  /**
+   * Rolls back a resource local transaction if it is still active, logging any
+   * failure instead of hiding the original one.
+   * 
+   * @since 1.6
+   * @param transaction
+   *          Transaction to be rolled back. It may be <code>null</code>.
+   */
+  void rollback(EntityTransaction transaction) {
+    try {
+      if (transaction != null && transaction.isActive()) {
+        transaction.rollback();
+      }
+    } catch (RuntimeException e) {
+      getLogger().warn("Unable to rollback the transaction.", e);
+    }
+  }
+
+  /**
+   * Asynchronous operation. It runs on this Data Access Object with its own
+   * {@link EntityManager}, bound to the worker thread and closed at the end, on
+   * the read-only mode of the thread that created it.
+   * 
+   * @since 1.6
+   * @param <T>
+   *          Type of the result.
+   */
+  private abstract class AsyncTask<T> implements Callable<T> {
+
+    private final boolean readOnly = ReadOnlyScope.isActive();
+    private final Thread caller = Thread.currentThread();
+
+    @Override
+    public T call() {
+      if (Thread.currentThread() == caller) {
+        throw new RejectedExecutionException("The asynchronous operation of "
+            + getEntityName() + " would run on the calling thread.");
+      }
+      boolean previous = ReadOnlyScope.enter(readOnly);
+      EntityManager entityManager = getParallelEntityManagerFactory()
+          .createEntityManager();
+      EntityManager previousEntityManager = bindEntityManager(entityManager);
+      try {
+        return run();
+      } finally {
+        bindEntityManager(previousEntityManager);
+        entityManager.close();
+        ReadOnlyScope.exit(previous);
+      }
+    }
+
+    abstract T run();
   }
 
 }
@@ -0,0 +1,173 @@
+package com.eidoscode.framework.persistence.dao.impl;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.eidoscode.framework.persistence.cache.CountCache;
+import com.eidoscode.framework.persistence.model.Model;
+import com.eidoscode.framework.persistence.util.QueryUtils;
+import com.eidoscode.generics.utils.GenericsUtils;
+
+/**
+ * Metadata of the entity of a Data Access Object class: the classes of the key
+ * and of the entity, the name of the entity and the statements of the built-in
+ * operations. There is a single instance by Data Access Object class, shared
+ * by all its instances, so creating a new instance, such as a pooled stateless
+ * bean, does not resolve the generic declaration of the class again.<br/>
+ * The statements are built on the first use, from the hooks of the first
+ * instance that needs them. The hooks that name the attributes of the entity,
+ * like {@link DataAccessObjectImpl#getIdAttributeName()}, must give the same
+ * value on every instance of a class.
+ * 
+ * @author eantonini
+ * @since 1.6
+ * @version 1.0
+ * @param <Key>
+ *          The type of the Id of the model.
+ * @param <Bean>
+ *          The entity.
+ */
+final class EntityMetadata<Key extends Serializable, Bean extends Model<Key>> {
+
+  private static final ConcurrentMap<Object, EntityMetadata<?, ?>> METADATA = new ConcurrentHashMap<Object, EntityMetadata<?, ?>>();
+
+  private final Class<Key> keyClass;
+  private final Class<Bean> entityClass;
+  private final String entityName;
+  private final CountCache countCache;
+  private volatile EntityStatements statements;
+  private volatile UpsertStatement upsertStatement;
+  private volatile Boolean removeByStatementAllowed;
+  private volatile Boolean upsertByStatementAllowed;
+  private volatile Boolean generatedId;
+  private volatile Boolean countByStatement;
+
+  private EntityMetadata(Class<Key> keyClass, Class<Bean> entityClass) {
+    this.keyClass = keyClass;
+    this.entityClass = entityClass;
+    this.entityName = QueryUtils.getEntityName(entityClass);
+    this.countCache = CountCache.forEntity(entityClass);
+  }
+
+  /**
+   * Brings the metadata of a Data Access Object class, collecting the key and
+   * the entity from its generic declaration.
+   * 
+   * @param dataAccessObjectClass
+   *          Class of the Data Access Object.
+   * @return {@link EntityMetadata} of the class.
+   */
+  @SuppressWarnings("unchecked")
+  static <Key extends Serializable, Bean extends Model<Key>> EntityMetadata<Key, Bean> forClass(
+      Class<?> dataAccessObjectClass) {
+    EntityMetadata<?, ?> metadata = METADATA.get(dataAccessObjectClass);
+    if (metadata == null) {
+      Class<Key> keyClass = GenericsUtils.getSuperClassGenericType(
+          dataAccessObjectClass, DataAccessObjectImpl.class, 0);
+      Class<Bean> entityClass = GenericsUtils.getSuperClassGenericType(
+          dataAccessObjectClass, DataAccessObjectImpl.class, 1);
+      metadata = register(dataAccessObjectClass,
+          new EntityMetadata<Key, Bean>(keyClass, entityClass));
+    }
+    return (EntityMetadata<Key, Bean>) metadata;
+  }
+
+  /**
+   * Brings the metadata of a Data Access Object class whose key and entity are
+   * given.
+   * 
+   * @param dataAccessObjectClass
+   *          Class of the Data Access Object.
+   * @param keyClass
+   *          Class of the key of the entity.
+   * @param entityClass
+   *          Class of the entity.
+   * @return {@link EntityMetadata} of the class and entity.
+   */
+  @SuppressWarnings("unchecked")
+  static <Key extends Serializable, Bean extends Model<Key>> EntityMetadata<Key, Bean> forEntity(
+      Class<?> dataAccessObjectClass, Class<Key> keyClass,
+      Class<Bean> entityClass) {
+    Object registryKey = Arrays.asList(dataAccessObjectClass, keyClass,
+        entityClass);
+    EntityMetadata<?, ?> metadata = METADATA.get(registryKey);
+    if (metadata == null) {
+      metadata = register(registryKey, new EntityMetadata<Key, Bean>(keyClass,
+          entityClass));
+    }
+    return (EntityMetadata<Key, Bean>) metadata;
+  }
+
+  private static EntityMetadata<?, ?> register(Object registryKey,
+      EntityMetadata<?, ?> metadata) {
+    EntityMetadata<?, ?> previous = METADATA.putIfAbsent(registryKey, metadata);
+    return previous == null ? metadata : previous;
+  }
+
+  Class<Key> getKeyClass() {
+    return keyClass;
+  }
+
+  Class<Bean> getEntityClass() {
+    return entityClass;
+  }
+
+  String getEntityName() {
+    return entityName;
+  }
+
+  CountCache getCountCache() {
+    return countCache;
+  }
+
+  EntityStatements getStatements() {
+    return statements;
+  }
+
+  void setStatements(EntityStatements statements) {
+    this.statements = statements;
+  }
+
+  UpsertStatement getUpsertStatement() {
+    return upsertStatement;
+  }
+
+  void setUpsertStatement(UpsertStatement upsertStatement) {
+    this.upsertStatement = upsertStatement;
+  }
+
+  Boolean getRemoveByStatementAllowed() {
+    return removeByStatementAllowed;
+  }
+
+  void setRemoveByStatementAllowed(Boolean removeByStatementAllowed) {
+    this.removeByStatementAllowed = removeByStatementAllowed;
+  }
+
+  Boolean getUpsertByStatementAllowed() {
+    return upsertByStatementAllowed;
+  }
+
+  void setUpsertByStatementAllowed(Boolean upsertByStatementAllowed) {
+    this.upsertByStatementAllowed = upsertByStatementAllowed;
+  }
+
+  Boolean getGeneratedId() {
+    return generatedId;
+  }
+
+  void setGeneratedId(Boolean generatedId) {
+    this.generatedId = generatedId;
+  }
+
+  Boolean getCountByStatement() {
+    return countByStatement;
+  }
+
+  void setCountByStatement(Boolean countByStatement) {
+    this.countByStatement = countByStatement;
+  }
+
+}
@@ -0,0 +1,133 @@
+package com.eidoscode.framework.persistence.dao.impl;
+
+import javax.persistence.EntityManager;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.persistence.Query;
+import javax.persistence.TypedQuery;
+
+/**
+ * Statement used by the built-in operations of the
+ * {@link DataAccessObjectImpl}. It is built once by Data Access Object and
+ * reused on every call.<br/>
+ * If the entity declares a {@link NamedQuery} with the name of the statement,
+ * such as <code>Person.findAll</code>, the named query, compiled by the
+ * persistence provider on the deploy, is used. Otherwise the JPQL is created
+ * always with the same text, so the query plan cached by the provider is
+ * reused.
+ * 
+ * @author eantonini
+ * @since 1.6
+ * @version 1.0
+ */
+final class EntityStatement {
+
+  private final String name;
+  private final String jpql;
+  private final boolean named;
+
+  private EntityStatement(String name, String jpql, boolean named) {
+    this.name = name;
+    this.jpql = jpql;
+    this.named = named;
+  }
+
+  /**
+   * Creates a statement of an entity.
+   * 
+   * @param entityClass
+   *          Class of the entity.
+   * @param name
+   *          Name of the statement. If the entity declares a
+   *          {@link NamedQuery} with this name it will be used.
+   * @param jpql
+   *          JPQL used when there is no {@link NamedQuery} with this name.
+   * @return {@link EntityStatement}.
+   */
+  static EntityStatement create(Class<?> entityClass, String name, String jpql) {
+    return new EntityStatement(name, jpql, isDeclared(entityClass, name));
+  }
+
+  private static boolean isDeclared(Class<?> entityClass, String name) {
+    for (Class<?> type = entityClass; type != null; type = type
+        .getSuperclass()) {
+      NamedQuery namedQuery = type.getAnnotation(NamedQuery.class);
+      if (namedQuery != null && name.equals(namedQuery.name())) {
+        return true;
+      }
+      NamedQueries namedQueries = type.getAnnotation(NamedQueries.class);
+      if (namedQueries != null) {
+        for (NamedQuery query : namedQueries.value()) {
+          if (name.equals(query.name())) {
+            return true;
+          }
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Creates a {@link Query} of this statement.
+   * 
+   * @param entityManager
+   *          {@link EntityManager} that will run the query.
+   * @return {@link Query}.
+   */
+  Query createQuery(EntityManager entityManager) {
+    if (named) {
+      return entityManager.createNamedQuery(name);
+    }
+    return entityManager.createQuery(jpql);
+  }
+
+  /**
+   * Creates a {@link TypedQuery} of this statement.
+   * 
+   * @param entityManager
+   *          {@link EntityManager} that will run the query.
+   * @param resultClass
+   *          Type of the result.
+   * @return {@link TypedQuery}.
+   */
+  <T> TypedQuery<T> createQuery(EntityManager entityManager,
+      Class<T> resultClass) {
+    if (named) {
+      return entityManager.createNamedQuery(name, resultClass);
+    }
+    return entityManager.createQuery(jpql, resultClass);
+  }
+
+  /**
+   * Brings the name of the statement.
+   * 
+   * @return Name of the statement.
+   */
+  String getName() {
+    return name;
+  }
+
+  /**
+   * Brings the JPQL of the statement.
+   * 
+   * @return JPQL of the statement.
+   */
+  String getJpql() {
+    return jpql;
+  }
+
+  /**
+   * Informs if the statement is a {@link NamedQuery} declared by the entity.
+   * 
+   * @return <code>true</code> if it is a named query.
+   */
+  boolean isNamed() {
+    return named;
+  }
+
+  @Override
+  public String toString() {
+    return name + (named ? " (named)" : "") + ": " + jpql;
+  }
+
+}
@@ -0,0 +1,163 @@
+package com.eidoscode.framework.persistence.dao.impl;
+
+/**
+ * Statements of the built-in operations of the {@link DataAccessObjectImpl}
+ * to a given entity.
+ * 
+ * @author eantonini
+ * @since 1.6
+ * @version 1.0
+ */
+final class EntityStatements {
+
+  /**
+   * Suffix of the name of the statement that brings all the entities.
+   */
+  static final String FIND_ALL = "findAll";
+
+  /**
+   * Suffix of the name of the statement that brings the entities of a list of
+   * keys.
+   */
+  static final String FIND_BY_IDS = "findByIds";
+
+  /**
+   * Suffix of the name of the statement that brings which keys of a list
+   * exist.
+   */
+  static final String FIND_EXISTING_IDS = "findExistingIds";
+
+  /**
+   * Suffix of the name of the statement that brings the first keys, sorted.
+   */
+  static final String FIND_IDS = "findIds";
+
+  /**
+   * Suffix of the name of the statement that brings the keys, sorted, after a
+   * given key.
+   */
+  static final String FIND_IDS_AFTER = "findIdsAfter";
+
+  /**
+   * Suffix of the name of the statement that brings the lowest and the highest
+   * keys.
+   */
+  static final String FIND_KEY_RANGE = "findKeyRange";
+
+  /**
+   * Suffix of the name of the statement that counts all the entities.
+   */
+  static final String COUNT_ALL = "countAll";
+
+  /**
+   * Suffix of the name of the statement that removes an entity by its key.
+   */
+  static final String REMOVE_BY_ID = "removeById";
+
+  /**
+   * Suffix of the name of the statement that removes an entity by its key and
+   * its version.
+   */
+  static final String REMOVE_BY_ID_AND_VERSION = "removeByIdAndVersion";
+
+  /**
+   * Suffix of the name of the statement that removes the entities of a list of
+   * keys.
+   */
+  static final String REMOVE_BY_IDS = "removeByIds";
+
+  private final EntityStatement findAll;
+  private final EntityStatement findByIds;
+  private final EntityStatement findExistingIds;
+  private final EntityStatement findIds;
+  private final EntityStatement findIdsAfter;
+  private final EntityStatement findKeyRange;
+  private final EntityStatement countAll;
+  private final EntityStatement removeById;
+  private final EntityStatement removeByIdAndVersion;
+  private final EntityStatement removeByIds;
+
+  /**
+   * Builds the statements of an entity.
+   * 
+   * @param entityClass
+   *          Class of the entity.
+   * @param entityName
+   *          Name of the entity.
+   * @param idAttribute
+   *          Name of the attribute that holds the key.
+   * @param versionAttribute
+   *          Name of the attribute that holds the version.
+   */
+  EntityStatements(Class<?> entityClass, String entityName,
+      String idAttribute, String versionAttribute) {
+    String from = " FROM " + entityName + " a";
+    String whereId = " WHERE a." + idAttribute;
+    this.findAll = EntityStatement.create(entityClass, entityName + "."
+        + FIND_ALL, "SELECT a" + from);
+    this.findByIds = EntityStatement.create(entityClass, entityName + "."
+        + FIND_BY_IDS, "SELECT a" + from + whereId + " IN :ids");
+    this.findExistingIds = EntityStatement.create(entityClass, entityName
+        + "." + FIND_EXISTING_IDS, "SELECT a." + idAttribute + from + whereId
+        + " IN :ids");
+    String orderById = " ORDER BY a." + idAttribute;
+    this.findIds = EntityStatement.create(entityClass, entityName + "."
+        + FIND_IDS, "SELECT a." + idAttribute + from + orderById);
+    this.findIdsAfter = EntityStatement.create(entityClass, entityName + "."
+        + FIND_IDS_AFTER, "SELECT a." + idAttribute + from + whereId
+        + " > :id" + orderById);
+    this.findKeyRange = EntityStatement.create(entityClass, entityName + "."
+        + FIND_KEY_RANGE, "SELECT MIN(a." + idAttribute + "), MAX(a."
+        + idAttribute + ")" + from);
+    this.countAll = EntityStatement.create(entityClass, entityName + "."
+        + COUNT_ALL, "SELECT COUNT(a)" + from);
+    this.removeById = EntityStatement.create(entityClass, entityName + "."
+        + REMOVE_BY_ID, "DELETE" + from + whereId + " = :id");
+    this.removeByIdAndVersion = EntityStatement.create(entityClass, entityName
+        + "." + REMOVE_BY_ID_AND_VERSION, "DELETE" + from + whereId
+        + " = :id AND a." + versionAttribute + " = :version");
+    this.removeByIds = EntityStatement.create(entityClass, entityName + "."
+        + REMOVE_BY_IDS, "DELETE" + from + whereId + " IN :ids");
+  }
+
+  EntityStatement getFindAll() {
+    return findAll;
+  }
+
+  EntityStatement getFindByIds() {
+    return findByIds;
+  }
+
+  EntityStatement getFindExistingIds() {
+    return findExistingIds;
+  }
+
+  EntityStatement getFindIds() {
+    return findIds;
+  }
+
+  EntityStatement getFindIdsAfter() {
+    return findIdsAfter;
+  }
+
+  EntityStatement getFindKeyRange() {
+    return findKeyRange;
+  }
+
+  EntityStatement getCountAll() {
+    return countAll;
+  }
+
+  EntityStatement getRemoveById() {
+    return removeById;
+  }
+
+  EntityStatement getRemoveByIdAndVersion() {
+    return removeByIdAndVersion;
+  }
+
+  EntityStatement getRemoveByIds() {
+    return removeByIds;
+  }
+
+}
@@ -4,6 +4,8 @@ import javax.persistence.EntityManager;
 
 import org.apache.log4j.Logger;
 
+import com.eidoscode.framework.persistence.util.Loggers;
+
 /**
  * Minimal implementation of the Data Access Object.
  * 
@@ -22,7 +24,7 @@ public abstract class MinimalDataAccessObjectImpl {
    * @since 1.0
    */
   public MinimalDataAccessObjectImpl() {
-    logger = Logger.getLogger(getClass());
+    logger = Loggers.getLogger(getClass());
   }
 
   /**
@@ -0,0 +1,92 @@
+package com.eidoscode.framework.persistence.dao.impl;
+
+import java.io.Serializable;
+
+import javax.persistence.EntityManager;
+
+import org.apache.log4j.Logger;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.PersistenceContext;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.engine.spi.Status;
+import org.hibernate.persister.entity.EntityPersister;
+
+/**
+ * Looks into the persistence context of an {@link EntityManager} without going
+ * to the database and without initializing any proxy. JPA has no portable way
+ * to do it, so only the persistence context of Hibernate is looked into; on
+ * the other providers nothing is found.
+ * 
+ * @author eantonini
+ * @since 1.6
+ * @version 1.0
+ */
+final class PersistenceContexts {
+
+  private static final Logger LOGGER = Logger
+      .getLogger(PersistenceContexts.class);
+
+  private static volatile boolean hibernateAvailable = true;
+
+  private PersistenceContexts() {
+  }
+
+  /**
+   * Brings the entity of a key that is managed by an {@link EntityManager}.
+   * An uninitialized proxy and a removed entity are not brought.
+   * 
+   * @param entityManager
+   *          {@link EntityManager} to be looked into.
+   * @param entityClass
+   *          Class of the entity.
+   * @param id
+   *          Entity key.
+   * @return The managed entity or <code>null</code>.
+   */
+  static Object findManaged(EntityManager entityManager, Class<?> entityClass,
+      Serializable id) {
+    if (!hibernateAvailable) {
+      return null;
+    }
+    try {
+      return Hibernate.findManaged(entityManager.getDelegate(), entityClass,
+          id);
+    } catch (LinkageError e) {
+      LOGGER.debug("There is no Hibernate to look into the persistence "
+          + "context.", e);
+      hibernateAvailable = false;
+      return null;
+    }
+  }
+
+  /**
+   * Looks into the persistence context of Hibernate, kept apart so its API is
+   * only loaded when it is used.
+   */
+  private static final class Hibernate {
+
+    private Hibernate() {
+    }
+
+    static Object findManaged(Object delegate, Class<?> entityClass,
+        Serializable id) {
+      if (!(delegate instanceof SessionImplementor)) {
+        return null;
+      }
+      SessionImplementor session = (SessionImplementor) delegate;
+      EntityPersister persister = session.getFactory().getEntityPersister(
+          entityClass.getName());
+      PersistenceContext context = session.getPersistenceContext();
+      Object entity = context.getEntity(session.generateEntityKey(id,
+          persister));
+      if (entity == null) {
+        return null;
+      }
+      EntityEntry entry = context.getEntry(entity);
+      Status status = entry == null ? null : entry.getStatus();
+      return status == Status.MANAGED || status == Status.READ_ONLY ? entity
+          : null;
+    }
+  }
+
+}
@@ -0,0 +1,167 @@
+package com.eidoscode.framework.persistence.dao.impl;
+
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+import javax.naming.NoInitialContextException;
+import javax.persistence.EntityManager;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Finds the transaction of the calling thread and runs actions after its
+ * completion. The JTA transactions are found through the
+ * {@link TransactionSynchronizationRegistry} of the container. The resource
+ * local transactions are only found through the {@link EntityManager} of the
+ * caller, and no action can be registered on them.
+ * 
+ * @author eantonini
+ * @since 1.6
+ * @version 1.0
+ */
+final class TransactionCallbacks {
+
+  /**
+   * JNDI name of the {@link TransactionSynchronizationRegistry}.
+   */
+  static final String REGISTRY_NAME = "java:comp/TransactionSynchronizationRegistry";
+
+  /**
+   * Time, in milliseconds, to wait before looking up the registry again after
+   * a failed look up.
+   */
+  static final long LOOKUP_RETRY_INTERVAL = 60000L;
+
+  private static final Logger LOGGER = Logger
+      .getLogger(TransactionCallbacks.class);
+
+  private static volatile boolean jtaAvailable = true;
+
+  private TransactionCallbacks() {
+  }
+
+  /**
+   * Informs if the calling thread runs in a transaction, either a JTA one or a
+   * resource local one of the given {@link EntityManager}.
+   * 
+   * @param entityManager
+   *          {@link EntityManager} of the caller.
+   * @return <code>true</code> if there is an active transaction.
+   */
+  static boolean isActive(EntityManager entityManager) {
+    return getTransactionKey() != null || isResourceLocalActive(entityManager);
+  }
+
+  /**
+   * Informs if the given {@link EntityManager} runs a resource local
+   * transaction, on which no action can be registered.
+   * 
+   * @param entityManager
+   *          {@link EntityManager} of the caller.
+   * @return <code>true</code> if there is an active resource local
+   *         transaction.
+   */
+  static boolean isResourceLocalActive(EntityManager entityManager) {
+    try {
+      return entityManager.getTransaction().isActive();
+    } catch (IllegalStateException e) {
+      // JTA EntityManager.
+      return false;
+    }
+  }
+
+  /**
+   * Brings the action bound to the JTA transaction of the calling thread by
+   * {@link #afterCompletion(Object, Runnable)}.
+   * 
+   * @param key
+   *          Key of the action.
+   * @return The bound action or <code>null</code>.
+   */
+  static Runnable getAction(Object key) {
+    if (getTransactionKey() == null) {
+      return null;
+    }
+    return (Runnable) Jta.registry().getResource(key);
+  }
+
+  /**
+   * Runs an action after the completion of the JTA transaction of the calling
+   * thread, either committed or rolled back, and binds it to the transaction
+   * to be brought by {@link #getAction(Object)}.
+   * 
+   * @param key
+   *          Key of the action.
+   * @param action
+   *          Action to be run.
+   * @return <code>false</code> if the calling thread has no JTA transaction, so
+   *         the action will not run.
+   */
+  static boolean afterCompletion(Object key, final Runnable action) {
+    if (getTransactionKey() == null) {
+      return false;
+    }
+    TransactionSynchronizationRegistry registry = Jta.registry();
+    registry.putResource(key, action);
+    registry.registerInterposedSynchronization(new Synchronization() {
+      @Override
+      public void beforeCompletion() {
+      }
+
+      @Override
+      public void afterCompletion(int status) {
+        action.run();
+      }
+    });
+    return true;
+  }
+
+  private static Object getTransactionKey() {
+    if (!jtaAvailable) {
+      return null;
+    }
+    try {
+      TransactionSynchronizationRegistry registry = Jta.registry();
+      return registry == null ? null : registry.getTransactionKey();
+    } catch (LinkageError e) {
+      LOGGER.debug("There is no JTA API to find the transactions.", e);
+      jtaAvailable = false;
+      return null;
+    }
+  }
+
+  /**
+   * Looks up the {@link TransactionSynchronizationRegistry}, kept apart so the
+   * JTA API is only loaded when it is used.
+   */
+  private static final class Jta {
+
+    private static volatile TransactionSynchronizationRegistry registry;
+    private static volatile long retryOn;
+
+    private Jta() {
+    }
+
+    static TransactionSynchronizationRegistry registry() {
+      TransactionSynchronizationRegistry found = registry;
+      if (found == null && jtaAvailable
+          && System.currentTimeMillis() >= retryOn) {
+        try {
+          found = (TransactionSynchronizationRegistry) new InitialContext()
+              .lookup(REGISTRY_NAME);
+          registry = found;
+        } catch (NoInitialContextException e) {
+          LOGGER.debug("There is no JNDI to find the JTA transactions.", e);
+          jtaAvailable = false;
+        } catch (NamingException e) {
+          // Threads out of the container may not see java:comp.
+          LOGGER.debug("Unable to find the JTA transactions.", e);
+          retryOn = System.currentTimeMillis() + LOOKUP_RETRY_INTERVAL;
+        }
+      }
+      return found;
+    }
+  }
+
+}
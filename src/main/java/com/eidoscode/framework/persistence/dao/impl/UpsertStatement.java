@@ -0,0 +1,198 @@
+package com.eidoscode.framework.persistence.dao.impl;
+
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.persistence.Column;
+import javax.persistence.EntityManager;
+import javax.persistence.JoinColumn;
+import javax.persistence.PersistenceException;
+import javax.persistence.Query;
+import javax.persistence.metamodel.Attribute.PersistentAttributeType;
+import javax.persistence.metamodel.EmbeddableType;
+import javax.persistence.metamodel.ManagedType;
+import javax.persistence.metamodel.SingularAttribute;
+
+/**
+ * Statement that updates all the columns of an entity, restricted by its key
+ * and its version, without loading it first. It is built from the metamodel of
+ * the entity: every singular attribute is updated, the attributes of the
+ * embedded objects included, except the key, the version and the columns that
+ * are not updatable. The version is replaced by <code>:newVersion</code>.<br/>
+ * If the entity declares a <code>NamedQuery</code> with the name
+ * <code>&lt;Entity&gt;.upsert</code> it is used instead, and it must have the
+ * same parameters. Each attribute is bound to a parameter with its path, the
+ * dots replaced by underscores, like <code>:address_street</code>.
+ * 
+ * @author eantonini
+ * @since 1.6
+ * @version 1.0
+ */
+final class UpsertStatement {
+
+  /**
+   * Suffix of the name of the statement.
+   */
+  static final String UPSERT = "upsert";
+
+  private final EntityStatement statement;
+  private final List<String> parameters;
+  private final List<Member[]> members;
+  private final String modifiedOnAttribute;
+
+  private UpsertStatement(EntityStatement statement, List<String> parameters,
+      List<Member[]> members, String modifiedOnAttribute) {
+    this.statement = statement;
+    this.parameters = parameters;
+    this.members = members;
+    this.modifiedOnAttribute = modifiedOnAttribute;
+  }
+
+  /**
+   * Creates the statement of an entity.
+   * 
+   * @param type
+   *          Metamodel of the entity.
+   * @param entityName
+   *          Name of the entity.
+   * @param idAttribute
+   *          Name of the attribute that holds the key.
+   * @param versionAttribute
+   *          Name of the attribute that holds the version.
+   * @param modifiedOnAttribute
+   *          Name of the attribute that holds the date of the last change, or
+   *          <code>null</code> if the entity is not audited. It is bound to
+   *          <code>:modifiedOn</code>.
+   * @param ignoredAttributes
+   *          Attributes that are never updated, such as the creation date.
+   * @return {@link UpsertStatement}.
+   */
+  static UpsertStatement create(ManagedType<?> type, String entityName,
+      String idAttribute, String versionAttribute, String modifiedOnAttribute,
+      String... ignoredAttributes) {
+    List<String> ignored = new ArrayList<String>(
+        Arrays.asList(ignoredAttributes));
+    ignored.add(idAttribute);
+    ignored.add(versionAttribute);
+    if (modifiedOnAttribute != null) {
+      ignored.add(modifiedOnAttribute);
+    }
+    List<String> paths = new ArrayList<String>();
+    List<Member[]> members = new ArrayList<Member[]>();
+    collect(type, "", new Member[0], ignored, paths, members);
+
+    StringBuilder jpql = new StringBuilder("UPDATE ").append(entityName)
+        .append(" a SET");
+    List<String> parameters = new ArrayList<String>(paths.size());
+    for (String path : paths) {
+      String parameter = path.replace('.', '_');
+      parameters.add(parameter);
+      jpql.append(" a.").append(path).append(" = :").append(parameter)
+          .append(',');
+    }
+    if (modifiedOnAttribute != null) {
+      jpql.append(" a.").append(modifiedOnAttribute).append(" = :modifiedOn,");
+    }
+    jpql.append(" a.").append(versionAttribute).append(" = :newVersion")
+        .append(" WHERE a.").append(idAttribute).append(" = :id AND a.")
+        .append(versionAttribute).append(" = :version");
+    EntityStatement statement = EntityStatement.create(type.getJavaType(),
+        entityName + "." + UPSERT, jpql.toString());
+    return new UpsertStatement(statement, parameters, members,
+        modifiedOnAttribute);
+  }
+
+  private static void collect(ManagedType<?> type, String prefix,
+      Member[] parent, List<String> ignored, List<String> paths,
+      List<Member[]> members) {
+    for (SingularAttribute<?, ?> attribute : type.getSingularAttributes()) {
+      if (attribute.isId() || attribute.isVersion()
+          || (prefix.length() == 0 && ignored.contains(attribute.getName()))
+          || !isUpdatable(attribute.getJavaMember())) {
+        continue;
+      }
+      Member[] chain = Arrays.copyOf(parent, parent.length + 1);
+      chain[parent.length] = attribute.getJavaMember();
+      String path = prefix + attribute.getName();
+      if (PersistentAttributeType.EMBEDDED == attribute
+          .getPersistentAttributeType()) {
+        collect((EmbeddableType<?>) attribute.getType(), path + ".", chain,
+            ignored, paths, members);
+      } else {
+        paths.add(path);
+        members.add(chain);
+      }
+    }
+  }
+
+  private static boolean isUpdatable(Member member) {
+    if (!(member instanceof AnnotatedElement)) {
+      return true;
+    }
+    AnnotatedElement element = (AnnotatedElement) member;
+    Column column = element.getAnnotation(Column.class);
+    if (column != null && !column.updatable()) {
+      return false;
+    }
+    JoinColumn joinColumn = element.getAnnotation(JoinColumn.class);
+    return joinColumn == null || joinColumn.updatable();
+  }
+
+  /**
+   * Informs if the statement also updates the date of the last change.
+   * 
+   * @return <code>true</code> if <code>:modifiedOn</code> must be bound.
+   */
+  boolean isAudited() {
+    return modifiedOnAttribute != null;
+  }
+
+  /**
+   * Creates the query and binds the attributes of an entity to it. The
+   * parameters <code>:id</code>, <code>:version</code>,
+   * <code>:newVersion</code> and <code>:modifiedOn</code> are not bound.
+   * 
+   * @param entityManager
+   *          {@link EntityManager} that will run the query.
+   * @param bean
+   *          Entity whose attributes are written.
+   * @return {@link Query} of the statement.
+   */
+  Query createQuery(EntityManager entityManager, Object bean) {
+    Query query = statement.createQuery(entityManager);
+    for (int i = 0; i < parameters.size(); i++) {
+      query.setParameter(parameters.get(i), read(bean, members.get(i)));
+    }
+    return query;
+  }
+
+  private Object read(Object bean, Member[] chain) {
+    Object value = bean;
+    for (Member member : chain) {
+      if (value == null) {
+        return null;
+      }
+      try {
+        if (member instanceof Field) {
+          Field field = (Field) member;
+          field.setAccessible(true);
+          value = field.get(value);
+        } else {
+          Method method = (Method) member;
+          method.setAccessible(true);
+          value = method.invoke(value);
+        }
+      } catch (Exception e) {
+        throw new PersistenceException("Unable to read the attribute "
+            + member.getName() + " of " + value.getClass().getName() + ".", e);
+      }
+    }
+    return value;
+  }
+
+}
@@ -0,0 +1,119 @@
+package com.eidoscode.framework.persistence.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock free histogram of latencies, in nanoseconds. The values are counted on
+ * logarithmic buckets: each power of two is split into
+ * {@value #SUB_BUCKETS} buckets, so a percentile is brought with an error of at
+ * most 12.5%, using a fixed amount of memory whatever the amount of recorded
+ * values.
+ * 
+ * @author eantonini
+ * @since 1.6
+ * @version 1.0
+ */
+public final class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 3;
+
+  /**
+   * Amount of buckets of each power of two.
+   */
+  public static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+  private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final AtomicLong max = new AtomicLong();
+
+  /**
+   * Records a latency.
+   * 
+   * @since 1.6
+   * @param nanos
+   *          Latency, in nanoseconds. A negative value is recorded as zero.
+   */
+  public void record(long nanos) {
+    long value = Math.max(nanos, 0L);
+    counts.incrementAndGet(indexOf(value));
+    long current = max.get();
+    while (value > current && !max.compareAndSet(current, value)) {
+      current = max.get();
+    }
+  }
+
+  /**
+   * Brings a percentile of the recorded latencies.
+   * 
+   * @since 1.6
+   * @param percentile
+   *          Percentile, from <code>0</code> to <code>1</code>, like
+   *          <code>0.99</code>.
+   * @return The highest latency of the bucket of the percentile, in
+   *         nanoseconds, or <code>0</code> if there is no recorded latency.
+   */
+  public long getPercentile(double percentile) {
+    long[] snapshot = new long[BUCKETS];
+    long total = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      snapshot[i] = counts.get(i);
+      total += snapshot[i];
+    }
+    if (total == 0) {
+      return 0L;
+    }
+    long target = Math.max(1L, (long) Math.ceil(percentile * total));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += snapshot[i];
+      if (seen >= target) {
+        return Math.min(highestOf(i), max.get());
+      }
+    }
+    return max.get();
+  }
+
+  /**
+   * Brings the highest recorded latency.
+   * 
+   * @since 1.6
+   * @return Highest latency, in nanoseconds.
+   */
+  public long getMax() {
+    return max.get();
+  }
+
+  /**
+   * Discards all the recorded latencies.
+   * 
+   * @since 1.6
+   */
+  public void reset() {
+    for (int i = 0; i < BUCKETS; i++) {
+      counts.set(i, 0L);
+    }
+    max.set(0L);
+  }
+
+  static int indexOf(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int shift = exponent - SUB_BUCKET_BITS;
+    int mantissa = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+    return (shift + 1) * SUB_BUCKETS + mantissa;
+  }
+
+  static long highestOf(int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+    int shift = index / SUB_BUCKETS - 1;
+    long lowest = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+    return lowest + (1L << shift) - 1;
+  }
+
+}
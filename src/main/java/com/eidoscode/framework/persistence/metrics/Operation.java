@@ -0,0 +1,111 @@
+package com.eidoscode.framework.persistence.metrics;
+
+/**
+ * Operations of the Data Access Objects and Business Objects whose latency is
+ * measured by the {@link PersistenceMetrics}.
+ * 
+ * @author eantonini
+ * @since 1.6
+ * @version 1.0
+ */
+public enum Operation {
+
+  /**
+   * Persists or merges one or more entities.
+   * 
+   * @since 1.6
+   */
+  SAVE,
+
+  /**
+   * Merges one or more entities.
+   * 
+   * @since 1.6
+   */
+  MERGE,
+
+  /**
+   * Writes one or more entities without loading them.
+   * 
+   * @since 1.6
+   */
+  UPSERT,
+
+  /**
+   * Updates the entities that match a condition.
+   * 
+   * @since 1.6
+   */
+  UPDATE,
+
+  /**
+   * Removes an entity.
+   * 
+   * @since 1.6
+   */
+  REMOVE,
+
+  /**
+   * Removes one or more entities by their keys.
+   * 
+   * @since 1.6
+   */
+  REMOVE_BY_ID,
+
+  /**
+   * Brings all the entities.
+   * 
+   * @since 1.6
+   */
+  FIND_ALL,
+
+  /**
+   * Brings a page of the entities.
+   * 
+   * @since 1.6
+   */
+  FIND_ALL_PAGINATE,
+
+  /**
+   * Counts the entities.
+   * 
+   * @since 1.6
+   */
+  COUNT_ALL,
+
+  /**
+   * Brings an entity by its key.
+   * 
+   * @since 1.6
+   */
+  FIND_BY_KEY,
+
+  /**
+   * Brings the entities of a list of keys.
+   * 
+   * @since 1.6
+   */
+  FIND_BY_KEYS,
+
+  /**
+   * Processes all the entities in parallel.
+   * 
+   * @since 1.6
+   */
+  FOR_EACH_PARALLEL,
+
+  /**
+   * Brings the changes made after a watermark.
+   * 
+   * @since 1.6
+   */
+  FIND_MODIFIED_SINCE,
+
+  /**
+   * Saves a collection of entities in parallel.
+   * 
+   * @since 1.6
+   */
+  SAVE_PARALLEL
+
+}
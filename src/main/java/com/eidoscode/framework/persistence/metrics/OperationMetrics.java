@@ -0,0 +1,97 @@
+package com.eidoscode.framework.persistence.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures of an {@link Operation} of an entity: the amount of calls, of
+ * failed calls and of rows, and the {@link LatencyHistogram} of the calls.
+ * 
+ * @author eantonini
+ * @since 1.6
+ * @version 1.0
+ */
+public final class OperationMetrics {
+
+  private final Operation operation;
+  private final LatencyHistogram latencies = new LatencyHistogram();
+  private final AtomicLong calls = new AtomicLong();
+  private final AtomicLong errors = new AtomicLong();
+  private final AtomicLong rows = new AtomicLong();
+
+  OperationMetrics(Operation operation) {
+    this.operation = operation;
+  }
+
+  /**
+   * Records a call.
+   * 
+   * @since 1.6
+   * @param elapsedNanos
+   *          Time spent by the call, in nanoseconds.
+   * @param affectedRows
+   *          Amount of rows read or written by the call.
+   * @param failed
+   *          <code>true</code> if the call has thrown an exception.
+   */
+  public void record(long elapsedNanos, long affectedRows, boolean failed) {
+    latencies.record(elapsedNanos);
+    calls.incrementAndGet();
+    if (failed) {
+      errors.incrementAndGet();
+    }
+    if (affectedRows > 0) {
+      rows.addAndGet(affectedRows);
+    }
+  }
+
+  /**
+   * Brings the measured operation.
+   * 
+   * @since 1.6
+   * @return {@link Operation}.
+   */
+  public Operation getOperation() {
+    return operation;
+  }
+
+  /**
+   * Brings the latencies of the calls.
+   * 
+   * @since 1.6
+   * @return {@link LatencyHistogram}.
+   */
+  public LatencyHistogram getLatencies() {
+    return latencies;
+  }
+
+  /**
+   * Brings a snapshot of the measures.
+   * 
+   * @since 1.6
+   * @return {@link OperationStatistics}.
+   */
+  public OperationStatistics getStatistics() {
+    return new OperationStatistics(operation.name(), calls.get(), errors.get(),
+        rows.get(), toMillis(latencies.getPercentile(0.5)),
+        toMillis(latencies.getPercentile(0.99)),
+        toMillis(latencies.getPercentile(0.999)),
+        toMillis(latencies.getMax()));
+  }
+
+  /**
+   * Discards all the measures.
+   * 
+   * @since 1.6
+   */
+  public void reset() {
+    latencies.reset();
+    calls.set(0L);
+    errors.set(0L);
+    rows.set(0L);
+  }
+
+  private static double toMillis(long nanos) {
+    return nanos / 1000000.0;
+  }
+
+}
@@ -0,0 +1,136 @@
+package com.eidoscode.framework.persistence.metrics;
+
+import java.beans.ConstructorProperties;
+import java.io.Serializable;
+
+/**
+ * Snapshot of the measures of an {@link Operation}, as published by the
+ * {@link PersistenceMetricsMXBean}. The latencies are in milliseconds.
+ * 
+ * @author eantonini
+ * @since 1.6
+ * @version 1.0
+ */
+public class OperationStatistics implements Serializable {
+
+  /**
+   * Serial version.
+   */
+  private static final long serialVersionUID = -2470918413287742310L;
+
+  private final String operation;
+  private final long calls;
+  private final long errors;
+  private final long rows;
+  private final double p50;
+  private final double p99;
+  private final double p999;
+  private final double max;
+
+  /**
+   * Main constructor.
+   * 
+   * @since 1.6
+   * @param operation
+   *          Name of the {@link Operation}.
+   * @param calls
+   *          Amount of calls.
+   * @param errors
+   *          Amount of calls that have thrown an exception.
+   * @param rows
+   *          Amount of rows read or written.
+   * @param p50
+   *          Median latency.
+   * @param p99
+   *          99th percentile of the latency.
+   * @param p999
+   *          99.9th percentile of the latency.
+   * @param max
+   *          Highest latency.
+   */
+  @ConstructorProperties({ "operation", "calls", "errors", "rows", "p50",
+      "p99", "p999", "max" })
+  public OperationStatistics(String operation, long calls, long errors,
+      long rows, double p50, double p99, double p999, double max) {
+    this.operation = operation;
+    this.calls = calls;
+    this.errors = errors;
+    this.rows = rows;
+    this.p50 = p50;
+    this.p99 = p99;
+    this.p999 = p999;
+    this.max = max;
+  }
+
+  /**
+   * @since 1.6
+   * @return Name of the {@link Operation}.
+   */
+  public String getOperation() {
+    return operation;
+  }
+
+  /**
+   * @since 1.6
+   * @return Amount of calls.
+   */
+  public long getCalls() {
+    return calls;
+  }
+
+  /**
+   * @since 1.6
+   * @return Amount of calls that have thrown an exception.
+   */
+  public long getErrors() {
+    return errors;
+  }
+
+  /**
+   * @since 1.6
+   * @return Amount of rows read or written.
+   */
+  public long getRows() {
+    return rows;
+  }
+
+  /**
+   * @since 1.6
+   * @return Median latency, in milliseconds.
+   */
+  public double getP50() {
+    return p50;
+  }
+
+  /**
+   * @since 1.6
+   * @return 99th percentile of the latency, in milliseconds.
+   */
+  public double getP99() {
+    return p99;
+  }
+
+  /**
+   * @since 1.6
+   * @return 99.9th percentile of the latency, in milliseconds.
+   */
+  public double getP999() {
+    return p999;
+  }
+
+  /**
+   * @since 1.6
+   * @return Highest latency, in milliseconds.
+   */
+  public double getMax() {
+    return max;
+  }
+
+  @Override
+  public String toString() {
+    return "OperationStatistics [operation=" + operation + ", calls=" + calls
+        + ", errors=" + errors + ", rows=" + rows + ", p50=" + p50 + ", p99="
+        + p99 + ", p999=" + p999 + ", max=" + max + "]";
+  }
+
+}
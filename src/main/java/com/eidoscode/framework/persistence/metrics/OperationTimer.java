@@ -0,0 +1,94 @@
+package com.eidoscode.framework.persistence.metrics;
+
+/**
+ * Measures a single call of an {@link Operation}. It is created by
+ * {@link PersistenceMetrics#start(Operation)} and must be stopped on a finally
+ * block. A call is recorded as failed unless one of the <code>success</code>
+ * methods is called before it is stopped:
+ * 
+ * <pre>
+ * OperationTimer timer = metrics.start(Operation.FIND_ALL);
+ * try {
+ *   List&lt;Bean&gt; beans = query.getResultList();
+ *   return timer.success(beans, beans.size());
+ * } finally {
+ *   timer.stop();
+ * }
+ * </pre>
+ * 
+ * @author eantonini
+ * @since 1.6
+ * @version 1.0
+ */
+public final class OperationTimer {
+
+  /**
+   * Timer of a call made while another call is measured. It records nothing.
+   */
+  static final OperationTimer NESTED = new OperationTimer(null, null, null,
+      null);
+
+  private final PersistenceMetrics owner;
+  private final OperationMetrics metrics;
+  private final SlowOperationLog slowLog;
+  private final Object[] parameters;
+  private final long start;
+  private long rows;
+  private boolean succeeded;
+
+  OperationTimer(PersistenceMetrics owner, OperationMetrics metrics,
+      SlowOperationLog slowLog, Object[] parameters) {
+    this.owner = owner;
+    this.metrics = metrics;
+    this.slowLog = slowLog;
+    this.parameters = parameters;
+    this.start = metrics == null ? 0L : System.nanoTime();
+  }
+
+  /**
+   * Marks the call as successful.
+   * 
+   * @since 1.6
+   * @param affectedRows
+   *          Amount of rows read or written by the call.
+   */
+  public void success(long affectedRows) {
+    if (metrics != null) {
+      this.rows = affectedRows;
+      this.succeeded = true;
+    }
+  }
+
+  /**
+   * Marks the call as successful.
+   * 
+   * @since 1.6
+   * @param result
+   *          Result of the call.
+   * @param affectedRows
+   *          Amount of rows read or written by the call.
+   * @return The given result.
+   */
+  public <T> T success(T result, long affectedRows) {
+    success(affectedRows);
+    return result;
+  }
+
+  /**
+   * Stops the timer and records the call. If the call was slow it is also
+   * written on the {@link SlowOperationLog}.
+   * 
+   * @since 1.6
+   */
+  public void stop() {
+    if (metrics != null) {
+      long elapsed = System.nanoTime() - start;
+      metrics.record(elapsed, rows, !succeeded);
+      owner.stopped(this);
+      if (slowLog != null && slowLog.isSlow(elapsed)) {
+        slowLog.log(metrics.getOperation(), elapsed, !succeeded, parameters);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,286 @@
+package com.eidoscode.framework.persistence.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Measures of the operations of an entity on a layer, such as the Data Access
+ * Objects. There is a single instance by layer and entity, shared by all the
+ * instances of the layer, and it is published on the platform MBean server as
+ * a {@link PersistenceMetricsMXBean}. The platform MBean server outlives the
+ * application, so the measures must be unpublished by {@link #unregisterAll()}
+ * when the application is undeployed, otherwise they keep its classes.<br/>
+ * Each call is measured by an {@link OperationTimer}. The calls made while
+ * another call of the same instance runs on the same thread, such as the
+ * entities saved one by one by a collection save, are not measured again.
+ * 
+ * @author eantonini
+ * @since 1.6
+ * @version 1.0
+ */
+public final class PersistenceMetrics implements PersistenceMetricsMXBean {
+
+  /**
+   * Domain of the published MBeans.
+   */
+  public static final String DOMAIN = "com.eidoscode.framework.persistence";
+
+  /**
+   * Layer of the Data Access Objects.
+   */
+  public static final String DATA_ACCESS_OBJECT = "DataAccessObject";
+
+  /**
+   * Layer of the Business Objects.
+   */
+  public static final String BUSINESS_OBJECT = "BusinessObject";
+
+  private static final Logger LOGGER = Logger
+      .getLogger(PersistenceMetrics.class);
+
+  private static final ConcurrentMap<String, PersistenceMetrics> METRICS = new ConcurrentHashMap<String, PersistenceMetrics>();
+
+  private final String layer;
+  private final String entityName;
+  private final String className;
+  private final Map<Operation, OperationMetrics> operations;
+  private final ThreadLocal<OperationTimer> running = new ThreadLocal<OperationTimer>();
+  private final ConcurrentMap<String, Integer> batchSizes = new ConcurrentHashMap<String, Integer>();
+
+  private PersistenceMetrics(String layer, String entityName,
+      String className) {
+    this.layer = layer;
+    this.entityName = entityName;
+    this.className = className;
+    this.operations = new EnumMap<Operation, OperationMetrics>(Operation.class);
+    for (Operation operation : Operation.values()) {
+      operations.put(operation, new OperationMetrics(operation));
+    }
+  }
+
+  /**
+   * Brings the measures of an entity on a layer. They are published on the
+   * platform MBean server when they are created, named by the fully qualified
+   * name of the class, so entities with the same name on different packages
+   * are measured apart.
+   * 
+   * @since 1.6
+   * @param layer
+   *          Name of the layer, like {@link #DATA_ACCESS_OBJECT}.
+   * @param entityName
+   *          Name of the entity.
+   * @param entityClass
+   *          Class of the entity.
+   * @return {@link PersistenceMetrics} of the entity.
+   */
+  public static PersistenceMetrics forEntity(String layer, String entityName,
+      Class<?> entityClass) {
+    String key = layer + ":" + entityClass.getName();
+    PersistenceMetrics metrics = METRICS.get(key);
+    if (metrics == null) {
+      metrics = new PersistenceMetrics(layer, entityName,
+          entityClass.getName());
+      PersistenceMetrics previous = METRICS.putIfAbsent(key, metrics);
+      if (previous != null) {
+        metrics = previous;
+      } else {
+        metrics.register();
+      }
+    }
+    return metrics;
+  }
+
+  /**
+   * Unpublishes the measures of an entity on a layer and forgets them. The
+   * next call to {@link #forEntity(String, String, Class)} starts new
+   * measures.
+   * 
+   * @since 1.6
+   * @param layer
+   *          Name of the layer, like {@link #DATA_ACCESS_OBJECT}.
+   * @param entityClass
+   *          Class of the entity.
+   */
+  public static void unregister(String layer, Class<?> entityClass) {
+    PersistenceMetrics metrics = METRICS.remove(layer + ":"
+        + entityClass.getName());
+    if (metrics != null) {
+      metrics.unregister();
+    }
+  }
+
+  /**
+   * Unpublishes the measures of all the entities and forgets them. It must be
+   * called when the application is undeployed, like on the
+   * <code>PreDestroy</code> of a startup singleton or on the
+   * <code>contextDestroyed</code> of a servlet context listener, after the
+   * Business Objects and the Data Access Objects are no longer called.
+   * 
+   * @since 1.6
+   */
+  public static void unregisterAll() {
+    for (String key : new ArrayList<String>(METRICS.keySet())) {
+      PersistenceMetrics metrics = METRICS.remove(key);
+      if (metrics != null) {
+        metrics.unregister();
+      }
+    }
+  }
+
+  private void register() {
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = getObjectName();
+      if (server.isRegistered(name)) {
+        server.unregisterMBean(name);
+      }
+      server.registerMBean(this, name);
+    } catch (JMException e) {
+      LOGGER.warn("Unable to publish the metrics of " + layer + " "
+          + entityName + ".", e);
+    } catch (SecurityException e) {
+      LOGGER.warn("Unable to publish the metrics of " + layer + " "
+          + entityName + ".", e);
+    }
+  }
+
+  private void unregister() {
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = getObjectName();
+      if (server.isRegistered(name)) {
+        server.unregisterMBean(name);
+      }
+    } catch (JMException e) {
+      LOGGER.warn("Unable to unpublish the metrics of " + layer + " "
+          + entityName + ".", e);
+    } catch (SecurityException e) {
+      LOGGER.warn("Unable to unpublish the metrics of " + layer + " "
+          + entityName + ".", e);
+    }
+  }
+
+  private ObjectName getObjectName() throws JMException {
+    return new ObjectName(DOMAIN + ":type=" + layer + ",name=" + className);
+  }
+
+  /**
+   * Starts to measure a call. The returned timer must be stopped on a finally
+   * block.
+   * 
+   * @since 1.6
+   * @param operation
+   *          Called {@link Operation}.
+   * @return {@link OperationTimer} of the call.
+   */
+  public OperationTimer start(Operation operation) {
+    return start(operation, null);
+  }
+
+  /**
+   * Starts to measure a call that is written on a {@link SlowOperationLog} if
+   * it is slow. The returned timer must be stopped on a finally block.
+   * 
+   * @since 1.6
+   * @param operation
+   *          Called {@link Operation}.
+   * @param slowLog
+   *          {@link SlowOperationLog} of the entity, or <code>null</code> if
+   *          the slow calls are not logged.
+   * @param parameters
+   *          Parameters of the call, logged if it is slow.
+   * @return {@link OperationTimer} of the call.
+   */
+  public OperationTimer start(Operation operation, SlowOperationLog slowLog,
+      Object... parameters) {
+    if (running.get() != null) {
+      return OperationTimer.NESTED;
+    }
+    OperationTimer timer = new OperationTimer(this, operations.get(operation),
+        slowLog, parameters);
+    running.set(timer);
+    return timer;
+  }
+
+  void stopped(OperationTimer timer) {
+    running.remove();
+  }
+
+  /**
+   * Brings the measures of an operation.
+   * 
+   * @since 1.6
+   * @param operation
+   *          Desired {@link Operation}.
+   * @return {@link OperationMetrics} of the operation.
+   */
+  public OperationMetrics get(Operation operation) {
+    return operations.get(operation);
+  }
+
+  @Override
+  public String getLayer() {
+    return layer;
+  }
+
+  @Override
+  public String getEntityName() {
+    return entityName;
+  }
+
+  @Override
+  public String getClassName() {
+    return className;
+  }
+
+  @Override
+  public List<OperationStatistics> getOperations() {
+    List<OperationStatistics> statistics = new ArrayList<OperationStatistics>();
+    for (OperationMetrics metrics : operations.values()) {
+      OperationStatistics snapshot = metrics.getStatistics();
+      if (snapshot.getCalls() > 0) {
+        statistics.add(snapshot);
+      }
+    }
+    return statistics;
+  }
+
+  /**
+   * Publishes the amount of records currently used by the batches of an
+   * operation.
+   * 
+   * @since 1.6
+   * @param operation
+   *          Name of the operation.
+   * @param batchSize
+   *          Amount of records of a batch.
+   */
+  public void setBatchSize(String operation, int batchSize) {
+    batchSizes.put(operation, Integer.valueOf(batchSize));
+  }
+
+  @Override
+  public Map<String, Integer> getBatchSizes() {
+    return new TreeMap<String, Integer>(batchSizes);
+  }
+
+  @Override
+  public void reset() {
+    for (OperationMetrics metrics : operations.values()) {
+      metrics.reset();
+    }
+  }
+
+}
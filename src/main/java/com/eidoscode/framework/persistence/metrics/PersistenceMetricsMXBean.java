@@ -0,0 +1,55 @@
+package com.eidoscode.framework.persistence.metrics;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Management interface of the {@link PersistenceMetrics} of an entity, on a
+ * layer. It is registered on the platform MBean server with the name
+ * <code>com.eidoscode.framework.persistence:type=&lt;layer&gt;,name=&lt;entity&gt;</code>.
+ * 
+ * @author eantonini
+ * @since 1.6
+ * @version 1.0
+ */
+public interface PersistenceMetricsMXBean {
+
+  /**
+   * @since 1.6
+   * @return Name of the layer, like <code>DataAccessObject</code>.
+   */
+  String getLayer();
+
+  /**
+   * @since 1.6
+   * @return Name of the entity.
+   */
+  String getEntityName();
+
+  /**
+   * @since 1.6
+   * @return Fully qualified name of the class of the entity.
+   */
+  String getClassName();
+
+  /**
+   * @since 1.6
+   * @return Measures of the operations already called.
+   */
+  List<OperationStatistics> getOperations();
+
+  /**
+   * @since 1.6
+   * @return Amount of records currently used by the adaptive batches, by
+   *         operation. The batch sizes are not discarded by {@link #reset()}.
+   */
+  Map<String, Integer> getBatchSizes();
+
+  /**
+   * Discards all the measures.
+   * 
+   * @since 1.6
+   */
+  void reset();
+
+}
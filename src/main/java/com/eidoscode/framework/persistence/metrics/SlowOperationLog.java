@@ -0,0 +1,288 @@
+package com.eidoscode.framework.persistence.metrics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+
+import com.eidoscode.framework.persistence.model.Model;
+
+/**
+ * Logs the calls of the operations of an entity on a layer that take longer
+ * than a threshold, with their parameters and elapsed time. There is a single
+ * instance by layer and entity, shared by all the instances of the layer.<br/>
+ * The log is rate limited: at most a given amount of entries is written on
+ * each interval, and the amount of the discarded ones is told on the first
+ * entry of the next interval, so a stall of the database does not flood the
+ * log. Only a sample of the entries carries the stack of the caller, since
+ * building it is expensive.<br/>
+ * The entries are written as warnings on the category of this class.
+ * 
+ * @author eantonini
+ * @since 1.6
+ * @version 1.0
+ */
+public final class SlowOperationLog {
+
+  /**
+   * Threshold that disables the log.
+   */
+  public static final long DISABLED = 0L;
+
+  /**
+   * Default maximum amount of entries written on each interval.
+   */
+  public static final int DEFAULT_MAXIMUM_ENTRIES = 10;
+
+  /**
+   * Default interval, in milliseconds, of the rate limit.
+   */
+  public static final long DEFAULT_INTERVAL = 60000L;
+
+  /**
+   * Default stack sampling: one of each 10 entries carries the stack of the
+   * caller.
+   */
+  public static final int DEFAULT_STACK_SAMPLING = 10;
+
+  /**
+   * Maximum length of a logged parameter.
+   */
+  private static final int MAXIMUM_PARAMETER_LENGTH = 200;
+
+  /**
+   * Maximum amount of logged items of a collection parameter.
+   */
+  private static final int MAXIMUM_PARAMETER_ITEMS = 10;
+
+  private static final Logger LOGGER = Logger.getLogger(SlowOperationLog.class);
+
+  private static final ConcurrentMap<String, SlowOperationLog> LOGS = new ConcurrentHashMap<String, SlowOperationLog>();
+
+  private final String layer;
+  private final String entityName;
+  private final long thresholdNanos;
+  private final int maximumEntries;
+  private final long intervalNanos;
+  private final int stackSampling;
+  private long intervalStart;
+  private int written;
+  private long discarded;
+  private long sampled;
+
+  private SlowOperationLog(String layer, String entityName, long threshold,
+      int maximumEntries, long interval, int stackSampling) {
+    if (threshold <= 0) {
+      throw new IllegalArgumentException(
+          "The threshold must be greater than zero.");
+    }
+    this.layer = layer;
+    this.entityName = entityName;
+    this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(threshold);
+    this.maximumEntries = maximumEntries;
+    this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(interval);
+    this.stackSampling = stackSampling;
+    this.intervalStart = System.nanoTime();
+  }
+
+  /**
+   * Brings the log of an entity on a layer. The settings are used only when
+   * the log is created.
+   * 
+   * @since 1.6
+   * @param layer
+   *          Name of the layer, like {@link PersistenceMetrics#DATA_ACCESS_OBJECT}
+   *          .
+   * @param entityName
+   *          Name of the entity.
+   * @param entityClass
+   *          Class of the entity, whose fully qualified name identifies the
+   *          log.
+   * @param threshold
+   *          Time, in milliseconds, above which a call is logged. If it is
+   *          {@link #DISABLED} there is no log.
+   * @param maximumEntries
+   *          Maximum amount of entries written on each interval.
+   * @param interval
+   *          Interval, in milliseconds, of the rate limit.
+   * @param stackSampling
+   *          One of each <code>stackSampling</code> entries carries the stack
+   *          of the caller. If it is <code>0</code> no entry does.
+   * @return {@link SlowOperationLog} of the entity or <code>null</code> if the
+   *         log is disabled.
+   */
+  public static SlowOperationLog forEntity(String layer, String entityName,
+      Class<?> entityClass, long threshold, int maximumEntries, long interval,
+      int stackSampling) {
+    if (threshold <= DISABLED) {
+      return null;
+    }
+    String key = layer + ":" + entityClass.getName();
+    SlowOperationLog log = LOGS.get(key);
+    if (log == null) {
+      log = new SlowOperationLog(layer, entityName, threshold, maximumEntries,
+          interval, stackSampling);
+      SlowOperationLog previous = LOGS.putIfAbsent(key, log);
+      if (previous != null) {
+        log = previous;
+      }
+    }
+    return log;
+  }
+
+  /**
+   * Informs if a call took longer than the threshold.
+   * 
+   * @since 1.6
+   * @param elapsedNanos
+   *          Elapsed time of the call, in nanoseconds.
+   * @return <code>true</code> if the call must be logged.
+   */
+  public boolean isSlow(long elapsedNanos) {
+    return elapsedNanos > thresholdNanos;
+  }
+
+  /**
+   * Logs a slow call, unless the rate limit was reached. It must be called on
+   * the thread of the call, so the stack of the caller can be sampled.
+   * 
+   * @since 1.6
+   * @param operation
+   *          Called {@link Operation}.
+   * @param elapsedNanos
+   *          Elapsed time of the call, in nanoseconds.
+   * @param failed
+   *          If the call failed.
+   * @param parameters
+   *          Parameters of the call.
+   */
+  public void log(Operation operation, long elapsedNanos, boolean failed,
+      Object[] parameters) {
+    long previouslyDiscarded;
+    boolean withStack;
+    synchronized (this) {
+      long now = System.nanoTime();
+      if (now - intervalStart >= intervalNanos) {
+        intervalStart = now;
+        written = 0;
+      }
+      if (written >= maximumEntries) {
+        discarded++;
+        return;
+      }
+      written++;
+      previouslyDiscarded = discarded;
+      discarded = 0;
+      withStack = stackSampling > 0 && sampled++ % stackSampling == 0;
+    }
+    StringBuilder message = new StringBuilder("Slow ").append(layer)
+        .append(' ').append(entityName).append('.').append(operation)
+        .append(failed ? " (failed)" : "").append(" took ")
+        .append(TimeUnit.NANOSECONDS.toMillis(elapsedNanos))
+        .append(" ms, parameters ");
+    appendParameters(message, parameters);
+    if (previouslyDiscarded > 0) {
+      message.append(" (").append(previouslyDiscarded)
+          .append(" slow calls were not logged)");
+    }
+    message.append('.');
+    if (withStack) {
+      LOGGER.warn(message, callerStack());
+    } else {
+      LOGGER.warn(message);
+    }
+  }
+
+  private static void appendParameters(StringBuilder message,
+      Object[] parameters) {
+    message.append('[');
+    if (parameters != null) {
+      for (int i = 0; i < parameters.length; i++) {
+        if (i > 0) {
+          message.append(", ");
+        }
+        message.append(describe(parameters[i]));
+      }
+    }
+    message.append(']');
+  }
+
+  private static String describe(Object parameter) {
+    String description;
+    try {
+      if (parameter instanceof Collection<?>) {
+        description = describe((Collection<?>) parameter);
+      } else if (parameter instanceof Map<?, ?>) {
+        description = describe(((Map<?, ?>) parameter).entrySet());
+      } else {
+        description = String.valueOf(parameter);
+      }
+    } catch (RuntimeException e) {
+      // The log runs on finally blocks, it must not hide the failure.
+      description = identify(parameter);
+    }
+    if (description.length() > MAXIMUM_PARAMETER_LENGTH) {
+      description = description.substring(0, MAXIMUM_PARAMETER_LENGTH) + "...";
+    }
+    return description;
+  }
+
+  private static String describe(Collection<?> items) {
+    StringBuilder description = new StringBuilder("[");
+    Iterator<?> iterator = items.iterator();
+    for (int i = 0; i < MAXIMUM_PARAMETER_ITEMS && iterator.hasNext(); i++) {
+      if (i > 0) {
+        description.append(", ");
+      }
+      Object item = iterator.next();
+      try {
+        description.append(String.valueOf(item));
+      } catch (RuntimeException e) {
+        description.append(identify(item));
+      }
+    }
+    if (iterator.hasNext()) {
+      description.append(", ... ").append(items.size()).append(" items");
+    }
+    return description.append(']').toString();
+  }
+
+  /**
+   * Identifies a parameter whose description failed, like an entity whose
+   * lazy state can no longer be loaded, by its class and its key.
+   */
+  private static String identify(Object parameter) {
+    String description = parameter.getClass().getName();
+    if (parameter instanceof Model<?>) {
+      try {
+        description += "#" + ((Model<?>) parameter).getId();
+      } catch (RuntimeException e) {
+        LOGGER.trace("Unable to bring the key of " + description + ".", e);
+      }
+    }
+    return description;
+  }
+
+  /**
+   * Builds the stack of the caller, without the frames of this package.
+   */
+  private static Throwable callerStack() {
+    Throwable stack = new Throwable("Caller stack");
+    String metricsPackage = SlowOperationLog.class.getPackage().getName() + ".";
+    List<StackTraceElement> frames = new ArrayList<StackTraceElement>();
+    for (StackTraceElement frame : stack.getStackTrace()) {
+      if (!frame.getClassName().startsWith(metricsPackage)) {
+        frames.add(frame);
+      }
+    }
+    stack.setStackTrace(frames.toArray(new StackTraceElement[frames.size()]));
+    return stack;
+  }
+
+}
@@ -0,0 +1,44 @@
+package com.eidoscode.framework.persistence.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Shared {@link Logger} of each class. Looking a logger up on log4j takes a
+ * lock on its repository, which is too much for objects created often, like
+ * the pooled stateless beans, so each class looks it up only once.
+ * 
+ * @author eantonini
+ * @since 1.6
+ * @version 1.0
+ */
+public final class Loggers {
+
+  private static final ConcurrentMap<Class<?>, Logger> LOGGERS = new ConcurrentHashMap<Class<?>, Logger>();
+
+  private Loggers() {
+  }
+
+  /**
+   * Brings the {@link Logger} of a class.
+   * 
+   * @since 1.6
+   * @param type
+   *          Class whose logger is desired.
+   * @return {@link Logger} of the class.
+   */
+  public static Logger getLogger(Class<?> type) {
+    Logger logger = LOGGERS.get(type);
+    if (logger == null) {
+      logger = Logger.getLogger(type);
+      Logger previous = LOGGERS.putIfAbsent(type, logger);
+      if (previous != null) {
+        logger = previous;
+      }
+    }
+    return logger;
+  }
+
+}
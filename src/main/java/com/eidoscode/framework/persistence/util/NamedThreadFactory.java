@@ -0,0 +1,39 @@
+package com.eidoscode.framework.persistence.util;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link ThreadFactory} that creates daemon threads named with a prefix and a
+ * sequence, such as <code>Person-save-1</code>, so the threads of the
+ * persistence layer are easily found on a thread dump.
+ * 
+ * @author eantonini
+ * @since 1.6
+ * @version 1.0
+ */
+public class NamedThreadFactory implements ThreadFactory {
+
+  private final String prefix;
+  private final AtomicInteger sequence = new AtomicInteger();
+
+  /**
+   * Main constructor.
+   * 
+   * @since 1.6
+   * @param prefix
+   *          Prefix of the name of the threads.
+   */
+  public NamedThreadFactory(String prefix) {
+    this.prefix = prefix;
+  }
+
+  @Override
+  public Thread newThread(Runnable runnable) {
+    Thread thread = new Thread(runnable, prefix + "-"
+        + sequence.incrementAndGet());
+    thread.setDaemon(true);
+    return thread;
+  }
+
+}
@@ -1,5 +1,6 @@
 package com.eidoscode.framework.persistence.util;
 
+import javax.persistence.Entity;
 import javax.persistence.NoResultException;
 import javax.persistence.NonUniqueResultException;
 import javax.persistence.Query;
@@ -54,4 +55,23 @@ public class QueryUtils {
       return null;
     }
   }
+
+  /**
+   * Brings the name of an entity to be used on the JPQL statements: the name
+   * given by the {@link Entity} annotation or, if it has none, the simple name
+   * of the class.
+   * 
+   * @since 1.6
+   * @param entityClass
+   *          Class of the entity.
+   * @return Entity name.
+   */
+  public static String getEntityName(Class<?> entityClass) {
+    Entity entity = entityClass.getAnnotation(Entity.class);
+    if (entity != null && entity.name().length() > 0) {
+      return entity.name();
+    }
+    return entityClass.getSimpleName();
+  }
+
 }
@@ -0,0 +1,263 @@
+package com.eidoscode.framework.persistence.bo.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.ObjectName;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.eidoscode.framework.persistence.dao.DataAccessObject;
+import com.eidoscode.framework.persistence.dao.PartitionResult;
+import com.eidoscode.framework.persistence.metrics.PersistenceMetrics;
+import com.eidoscode.framework.persistence.model.Model;
+
+/**
+ * Tests the visibility and the discards of the saves of a
+ * {@link WriteBehindBuffer} while it is flushed.
+ * 
+ * @author eantonini
+ * @since 1.6
+ * @version 1.0
+ */
+public class WriteBehindBufferTest {
+
+  private static final long NEVER = TimeUnit.HOURS.toMillis(1);
+
+  private final List<Long> written = Collections
+      .synchronizedList(new ArrayList<Long>());
+  private final CountDownLatch writing = new CountDownLatch(1);
+  private final CountDownLatch release = new CountDownLatch(1);
+  private final List<WriteBehindBuffer<Long, Counter>> acquired = new ArrayList<WriteBehindBuffer<Long, Counter>>();
+  private Thread flusher;
+
+  @After
+  public void tearDown() throws InterruptedException {
+    release.countDown();
+    if (flusher != null) {
+      flusher.join();
+    }
+    for (WriteBehindBuffer<Long, Counter> buffer : acquired) {
+      buffer.release();
+    }
+  }
+
+  @Test
+  public void putKeepsACopyOfTheEntity() {
+    WriteBehindBuffer<Long, Counter> buffer = create(CopyOwner.class, 10);
+    Counter counter = new Counter(1L, 1);
+    buffer.put(counter);
+    counter.setValue(2);
+    assertEquals(1, buffer.get(1L).getValue());
+    buffer.get(1L).setValue(3);
+    assertEquals(1, buffer.get(1L).getValue());
+  }
+
+  @Test
+  public void entitiesBeingFlushedAreStillFound() throws Exception {
+    WriteBehindBuffer<Long, Counter> buffer = create(VisibleOwner.class, 10);
+    buffer.put(new Counter(1L, 1));
+    startFlush(buffer);
+    assertNotNull(buffer.get(1L));
+    release.countDown();
+    flusher.join();
+    assertNull(buffer.get(1L));
+    assertEquals(Collections.singletonList(1L), written);
+  }
+
+  @Test
+  public void discardWaitsForTheBatchBeingWritten() throws Exception {
+    final WriteBehindBuffer<Long, Counter> buffer = create(WaitingOwner.class,
+        10);
+    buffer.put(new Counter(1L, 1));
+    startFlush(buffer);
+    Thread discarder = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        buffer.discard(1L);
+      }
+    });
+    discarder.start();
+    discarder.join(200);
+    assertTrue(discarder.isAlive());
+    release.countDown();
+    discarder.join();
+    assertFalse(discarder.isAlive());
+    assertNull(buffer.get(1L));
+  }
+
+  @Test
+  public void discardedSaveOfALaterBatchIsNotWritten() throws Exception {
+    WriteBehindBuffer<Long, Counter> buffer = create(DiscardedOwner.class, 1);
+    buffer.put(new Counter(1L, 1));
+    buffer.put(new Counter(2L, 1));
+    startFlush(buffer);
+    buffer.discard(2L);
+    release.countDown();
+    flusher.join();
+    assertEquals(Collections.singletonList(1L), written);
+  }
+
+  @Test
+  public void fullBufferWithoutSchedulerIsFlushedByTheCaller() {
+    release.countDown();
+    WriteBehindBuffer<Long, Counter> buffer = WriteBehindBuffer.acquire(
+        FullOwner.class, FullOwner.class.getSimpleName(),
+        createDataAccessObject(), null, 2, NEVER, 10);
+    acquired.add(buffer);
+    buffer.put(new Counter(1L, 1));
+    assertTrue(written.isEmpty());
+    buffer.put(new Counter(2L, 1));
+    assertEquals(2, written.size());
+    assertNull(buffer.get(1L));
+  }
+
+  @Test
+  public void lastReleaseFlushesAndUnpublishesTheBuffer() throws Exception {
+    release.countDown();
+    ObjectName name = new ObjectName(PersistenceMetrics.DOMAIN
+        + ":type=WriteBehindBuffer,name=" + ReleasedOwner.class.getName());
+    WriteBehindBuffer<Long, Counter> first = WriteBehindBuffer.acquire(
+        ReleasedOwner.class, ReleasedOwner.class.getSimpleName(),
+        createDataAccessObject(), null, 100, NEVER, 10);
+    WriteBehindBuffer<Long, Counter> second = WriteBehindBuffer.acquire(
+        ReleasedOwner.class, ReleasedOwner.class.getSimpleName(),
+        createDataAccessObject(), null, 100, NEVER, 10);
+    assertTrue(first == second);
+    assertTrue(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+    first.put(new Counter(1L, 1));
+    first.release();
+    assertEquals(Collections.singletonList(1L), written);
+    assertTrue(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+    second.release();
+    assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+    WriteBehindBuffer<Long, Counter> third = WriteBehindBuffer.acquire(
+        ReleasedOwner.class, ReleasedOwner.class.getSimpleName(),
+        createDataAccessObject(), null, 100, NEVER, 10);
+    acquired.add(third);
+    assertFalse(first == third);
+  }
+
+  private void startFlush(final WriteBehindBuffer<Long, Counter> buffer)
+      throws InterruptedException {
+    flusher = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        buffer.flush();
+      }
+    });
+    flusher.start();
+    assertTrue(writing.await(5, TimeUnit.SECONDS));
+  }
+
+  private WriteBehindBuffer<Long, Counter> create(Class<?> owner, int batchSize) {
+    WriteBehindBuffer<Long, Counter> buffer = WriteBehindBuffer.acquire(
+        owner, owner.getSimpleName(), createDataAccessObject(), null, 100,
+        NEVER, batchSize);
+    acquired.add(buffer);
+    return buffer;
+  }
+
+  @SuppressWarnings("unchecked")
+  private DataAccessObject<Long, Counter> createDataAccessObject() {
+    return (DataAccessObject<Long, Counter>) Proxy.newProxyInstance(getClass()
+        .getClassLoader(), new Class<?>[] { DataAccessObject.class },
+        new InvocationHandler() {
+          @Override
+          public Object invoke(Object proxy, Method method, Object[] args)
+              throws InterruptedException {
+            if (!"saveParallel".equals(method.getName())) {
+              throw new UnsupportedOperationException(method.getName());
+            }
+            List<Counter> beans = new ArrayList<Counter>(
+                (Collection<Counter>) args[0]);
+            writing.countDown();
+            release.await();
+            for (Counter bean : beans) {
+              written.add(bean.getId());
+            }
+            return Collections.singletonList(new PartitionResult<Counter>(0,
+                beans, beans.size(), null));
+          }
+        });
+  }
+
+  private static final class CopyOwner {
+  }
+
+  private static final class VisibleOwner {
+  }
+
+  private static final class WaitingOwner {
+  }
+
+  private static final class DiscardedOwner {
+  }
+
+  private static final class FullOwner {
+  }
+
+  private static final class ReleasedOwner {
+  }
+
+  /**
+   * Entity written behind by the tests.
+   */
+  public static final class Counter implements Model<Long> {
+
+    private static final long serialVersionUID = 1L;
+
+    private Long id;
+    private int version;
+    private int value;
+
+    public Counter(Long id, int value) {
+      this.id = id;
+      this.value = value;
+    }
+
+    @Override
+    public Long getId() {
+      return id;
+    }
+
+    @Override
+    public void setId(Long id) {
+      this.id = id;
+    }
+
+    @Override
+    public int getVersion() {
+      return version;
+    }
+
+    @Override
+    public void setVersion(int version) {
+      this.version = version;
+    }
+
+    public int getValue() {
+      return value;
+    }
+
+    public void setValue(int value) {
+      this.value = value;
+    }
+  }
+
+}
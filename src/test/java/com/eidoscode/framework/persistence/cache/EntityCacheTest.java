@@ -0,0 +1,71 @@
+package com.eidoscode.framework.persistence.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+/**
+ * Tests of the {@link EntityCache}.
+ * 
+ * @author eantonini
+ * @since 1.6
+ * @version 1.0
+ */
+public class EntityCacheTest {
+
+  @Test
+  public void entityLoadedBeforeAnInvalidationIsNotStored() {
+    EntityCache<Long, Generation> cache = EntityCache.forEntity(
+        Generation.class, 10, 0);
+    long generation = cache.getGeneration();
+    cache.invalidate(Long.valueOf(1));
+    cache.put(Long.valueOf(1), new Generation(), 1, generation);
+
+    assertNull(cache.get(Long.valueOf(1)));
+  }
+
+  @Test
+  public void rejectedEntityIsNotCountedAsEviction() {
+    EntityCache<Long, Rejection> cache = EntityCache.forEntity(
+        Rejection.class, 1, 0);
+    Long frequent = Long.valueOf(1);
+    cache.put(frequent, new Rejection(), 1, cache.getGeneration());
+    for (int i = 0; i < 5; i++) {
+      cache.get(frequent);
+    }
+    cache.put(Long.valueOf(2), new Rejection(), 1, cache.getGeneration());
+
+    CacheStatistics statistics = cache.getStatistics();
+    assertEquals(1, statistics.getRejections());
+    assertEquals(0, statistics.getEvictions());
+    assertEquals(1, statistics.getSize());
+  }
+
+  @Test
+  public void admittedEntityEvictsTheLeastRecentlyUsed() {
+    EntityCache<Long, Eviction> cache = EntityCache.forEntity(Eviction.class,
+        1, 0);
+    Long frequent = Long.valueOf(2);
+    cache.put(Long.valueOf(1), new Eviction(), 1, cache.getGeneration());
+    for (int i = 0; i < 5; i++) {
+      cache.get(frequent);
+    }
+    cache.put(frequent, new Eviction(), 1, cache.getGeneration());
+
+    CacheStatistics statistics = cache.getStatistics();
+    assertEquals(0, statistics.getRejections());
+    assertEquals(1, statistics.getEvictions());
+    assertNull(cache.get(Long.valueOf(1)));
+  }
+
+  private static final class Generation {
+  }
+
+  private static final class Rejection {
+  }
+
+  private static final class Eviction {
+  }
+
+}
@@ -0,0 +1,192 @@
+package com.eidoscode.framework.persistence.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+/**
+ * Tests of the {@link KeyFilter}. A key that was added, or found by the scan
+ * of a rebuild, must never be reported as absent.
+ * 
+ * @author eantonini
+ * @since 1.6
+ * @version 1.0
+ */
+public class KeyFilterTest {
+
+  private static final int EXPECTED_KEYS = 100000;
+  private static final double FALSE_POSITIVE_RATE = 0.01;
+
+  @Test
+  public void everyKeyMayExistUntilTheFilterIsBuilt() {
+    KeyFilter filter = newFilter(NotBuilt.class);
+
+    assertFalse(filter.isReady());
+    assertTrue(filter.mightContain(Long.valueOf(1)));
+  }
+
+  @Test
+  public void scannedKeysArePresent() {
+    KeyFilter filter = newFilter(Scanned.class);
+    assertTrue(filter.startRebuild());
+    for (long key = 0; key < 1000; key++) {
+      filter.addScanned(Long.valueOf(key));
+    }
+    filter.finishRebuild(true);
+
+    assertTrue(filter.isReady());
+    for (long key = 0; key < 1000; key++) {
+      assertTrue(filter.mightContain(Long.valueOf(key)));
+    }
+  }
+
+  @Test
+  public void keysAddedBeforeAndDuringARebuildAreKeptWithoutScan() {
+    KeyFilter filter = newFilter(AddedDuringRebuild.class);
+    Long before = Long.valueOf(1);
+    Long during = Long.valueOf(2);
+    filter.add(before);
+    assertTrue(filter.startRebuild());
+    filter.add(during);
+    filter.finishRebuild(true);
+
+    assertTrue(filter.mightContain(before));
+    assertTrue(filter.mightContain(during));
+  }
+
+  @Test
+  public void keysAddedAfterARebuildArePresent() {
+    KeyFilter filter = newFilter(AddedAfterRebuild.class);
+    assertTrue(filter.startRebuild());
+    filter.finishRebuild(true);
+    Long key = Long.valueOf(3);
+    filter.add(key);
+
+    assertTrue(filter.mightContain(key));
+  }
+
+  @Test
+  public void failedRebuildKeepsTheAddedKeysForTheNextOne() {
+    KeyFilter filter = newFilter(FailedRebuild.class);
+    assertTrue(filter.startRebuild());
+    filter.finishRebuild(true);
+    Long before = Long.valueOf(4);
+    Long during = Long.valueOf(5);
+    filter.add(before);
+    assertTrue(filter.startRebuild());
+    filter.add(during);
+    filter.finishRebuild(false);
+
+    assertTrue(filter.mightContain(before));
+    assertTrue(filter.mightContain(during));
+
+    assertTrue(filter.startRebuild());
+    filter.finishRebuild(true);
+
+    assertTrue(filter.mightContain(before));
+    assertTrue(filter.mightContain(during));
+  }
+
+  @Test
+  public void onlyOneRebuildRunsAtATime() {
+    KeyFilter filter = newFilter(SingleRebuild.class);
+    assertTrue(filter.startRebuild());
+    assertFalse(filter.startRebuild());
+    assertFalse(filter.needsRebuild(0));
+    filter.finishRebuild(true);
+    assertTrue(filter.startRebuild());
+    filter.finishRebuild(true);
+  }
+
+  @Test
+  public void concurrentRebuildsNeverLoseAnAddedKey() throws Exception {
+    final KeyFilter filter = newFilter(Concurrent.class);
+    final Queue<Long> existent = new ConcurrentLinkedQueue<Long>();
+    final AtomicBoolean adding = new AtomicBoolean(true);
+    final AtomicLong falseNegatives = new AtomicLong();
+    final AtomicLong rebuilds = new AtomicLong();
+    int threads = 4;
+    final int keysByThread = 20000;
+    final CountDownLatch finished = new CountDownLatch(threads);
+
+    Thread rebuilder = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        while (adding.get()) {
+          if (filter.startRebuild()) {
+            for (Long key : existent) {
+              filter.addScanned(key);
+            }
+            filter.finishRebuild(true);
+            rebuilds.incrementAndGet();
+          }
+        }
+      }
+    });
+    rebuilder.start();
+    for (int thread = 0; thread < threads; thread++) {
+      final long first = (long) thread * keysByThread;
+      new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            for (long key = first; key < first + keysByThread; key++) {
+              Long saved = Long.valueOf(key);
+              // The key exists before it is added, as a persisted entity.
+              existent.add(saved);
+              filter.add(saved);
+              if (!filter.mightContain(saved)) {
+                falseNegatives.incrementAndGet();
+              }
+            }
+          } finally {
+            finished.countDown();
+          }
+        }
+      }).start();
+    }
+    finished.await();
+    adding.set(false);
+    rebuilder.join();
+
+    assertEquals(0, falseNegatives.get());
+    assertTrue(rebuilds.get() > 0);
+    for (Long key : existent) {
+      assertTrue("False negative of " + key, filter.mightContain(key));
+    }
+  }
+
+  private static KeyFilter newFilter(Class<?> entityClass) {
+    return KeyFilter.forEntity(entityClass, EXPECTED_KEYS, FALSE_POSITIVE_RATE);
+  }
+
+  private static final class NotBuilt {
+  }
+
+  private static final class Scanned {
+  }
+
+  private static final class AddedDuringRebuild {
+  }
+
+  private static final class AddedAfterRebuild {
+  }
+
+  private static final class FailedRebuild {
+  }
+
+  private static final class SingleRebuild {
+  }
+
+  private static final class Concurrent {
+  }
+
+}
@@ -0,0 +1,131 @@
+package com.eidoscode.framework.persistence.dao.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.eidoscode.framework.persistence.dao.ChangePage;
+import com.eidoscode.framework.persistence.dao.ChangeWatermark;
+
+/**
+ * Tests the change feed of {@link AuditedDataAccessObjectImpl}, on the
+ * embedded database of the <code>test</code> persistence unit.
+ * 
+ * @author eantonini
+ * @since 1.6
+ * @version 1.0
+ */
+public class AuditedDataAccessObjectImplTest {
+
+  private static final Date FIRST = new Date(1000000L);
+  private static final Date SECOND = new Date(2000000L);
+  private static final Date THIRD = new Date(3000000L);
+
+  private static EntityManagerFactory factory;
+  private EntityManager entityManager;
+  private AuditedDataAccessObjectImpl<Long, AuditedSample> dao;
+
+  @BeforeClass
+  public static void createFactory() {
+    factory = Persistence.createEntityManagerFactory("test");
+    EntityManager entityManager = factory.createEntityManager();
+    entityManager.getTransaction().begin();
+    for (long id = 1; id <= 8; id++) {
+      entityManager.persist(new AuditedSample(Long.valueOf(id), "sample"));
+    }
+    entityManager.flush();
+    // The listener sets the date on persist, so the dates are set apart.
+    setModifiedOn(entityManager, FIRST, 1L, 2L);
+    setModifiedOn(entityManager, SECOND, 3L, 4L, 5L, 6L);
+    setModifiedOn(entityManager, THIRD, 7L);
+    setModifiedOn(entityManager, null, 8L);
+    entityManager.getTransaction().commit();
+    entityManager.close();
+  }
+
+  private static void setModifiedOn(EntityManager entityManager, Date date,
+      Long... ids) {
+    entityManager
+        .createQuery(
+            "UPDATE AuditedSample s SET s.modifiedOn = :modifiedOn "
+                + "WHERE s.id IN :ids").setParameter("modifiedOn", date)
+        .setParameter("ids", Arrays.asList(ids)).executeUpdate();
+  }
+
+  @AfterClass
+  public static void closeFactory() {
+    factory.close();
+  }
+
+  @Before
+  public void setUp() {
+    entityManager = factory.createEntityManager();
+    dao = new AuditedDataAccessObjectImpl<Long, AuditedSample>(Long.class,
+        AuditedSample.class) {
+      @Override
+      public EntityManager getEntityManager() {
+        return entityManager;
+      }
+    };
+  }
+
+  @After
+  public void tearDown() {
+    entityManager.close();
+  }
+
+  @Test
+  public void changesSharingADateAreResumedAcrossPages() {
+    ChangePage<AuditedSample> page = dao.findModifiedSince(null, 3);
+    assertEquals(Arrays.asList(1L, 2L, 3L), ids(page));
+    assertTrue(page.hasMore());
+
+    page = dao.findModifiedSince(page.getWatermark(), 3);
+    assertEquals(Arrays.asList(4L, 5L, 6L), ids(page));
+    assertTrue(page.hasMore());
+
+    page = dao.findModifiedSince(page.getWatermark(), 3);
+    assertEquals(Arrays.asList(7L), ids(page));
+    assertFalse(page.hasMore());
+
+    ChangeWatermark last = page.getWatermark();
+    page = dao.findModifiedSince(last, 3);
+    assertTrue(page.getResults().isEmpty());
+    assertEquals(last.getModifiedOn(), page.getWatermark().getModifiedOn());
+    assertEquals(last.getKey(), page.getWatermark().getKey());
+  }
+
+  @Test
+  public void watermarkOfADateBringsAllItsChanges() {
+    ChangePage<AuditedSample> page = dao.findModifiedSince(
+        ChangeWatermark.since(SECOND), 2);
+    assertEquals(Arrays.asList(3L, 4L), ids(page));
+    page = dao.findModifiedSince(page.getWatermark(), 10);
+    assertEquals(Arrays.asList(5L, 6L, 7L), ids(page));
+    assertFalse(page.hasMore());
+  }
+
+  private static List<Long> ids(ChangePage<AuditedSample> page) {
+    List<Long> ids = new ArrayList<Long>();
+    for (AuditedSample sample : page.getResults()) {
+      ids.add(sample.getId());
+    }
+    return ids;
+  }
+
+}
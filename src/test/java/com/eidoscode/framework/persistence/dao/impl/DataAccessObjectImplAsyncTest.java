@@ -0,0 +1,284 @@
+package com.eidoscode.framework.persistence.dao.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.Entity;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Query;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.eidoscode.framework.persistence.dao.CountMode;
+import com.eidoscode.framework.persistence.model.Model;
+
+/**
+ * Tests that the asynchronous operations of {@link DataAccessObjectImpl} honour
+ * the hooks overridden by its subclasses.
+ * 
+ * @author eantonini
+ * @since 1.6
+ * @version 1.0
+ */
+public class DataAccessObjectImplAsyncTest {
+
+  private final List<EntityManager> created = Collections
+      .synchronizedList(new ArrayList<EntityManager>());
+  private final List<EntityManager> closed = Collections
+      .synchronizedList(new ArrayList<EntityManager>());
+  private ExecutorService executor;
+  private SampleDataAccessObject dataAccessObject;
+
+  @Before
+  public void setUp() {
+    executor = Executors.newSingleThreadExecutor();
+    dataAccessObject = new SampleDataAccessObject(createFactory(), executor);
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void countAllAsyncUsesTheOverriddenHooks() throws Exception {
+    assertEquals(Long.valueOf(42), dataAccessObject.countAllAsync().get());
+    assertEquals(1, created.size());
+    assertEquals(created, closed);
+  }
+
+  @Test
+  public void asyncEntityManagerIsNotLeftBound() throws Exception {
+    dataAccessObject.countAllAsync().get();
+    assertFalse(dataAccessObject.boundOnCaller());
+  }
+
+  @Test
+  public void withoutExecutorTheOperationIsNotRun() {
+    SampleDataAccessObject withoutExecutor = new SampleDataAccessObject(
+        createFactory(), null);
+    try {
+      withoutExecutor.countAllAsync();
+      fail("The operation ran without an executor.");
+    } catch (IllegalStateException e) {
+      assertTrue(created.isEmpty());
+    }
+  }
+
+  @Test
+  public void operationRunOnTheCallerIsRejected() throws Exception {
+    SampleDataAccessObject callerRuns = new SampleDataAccessObject(
+        createFactory(), new CallerRunsExecutor());
+    try {
+      callerRuns.countAllAsync().get();
+      fail("The operation ran on the calling thread.");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof RejectedExecutionException);
+    }
+    assertTrue(created.isEmpty());
+  }
+
+  @Test
+  public void keyFilterIsNotRebuiltOnTheCaller() {
+    SampleDataAccessObject callerRuns = new SampleDataAccessObject(
+        createFactory(), new CallerRunsExecutor());
+    assertTrue(callerRuns.mayExist(Long.valueOf(1)));
+    assertTrue(created.isEmpty());
+  }
+
+  private EntityManagerFactory createFactory() {
+    return proxy(EntityManagerFactory.class, new InvocationHandler() {
+      @Override
+      public Object invoke(Object proxy, Method method, Object[] args) {
+        if ("createEntityManager".equals(method.getName())) {
+          EntityManager entityManager = createEntityManager();
+          created.add(entityManager);
+          return entityManager;
+        }
+        throw new UnsupportedOperationException(method.getName());
+      }
+    });
+  }
+
+  private EntityManager createEntityManager() {
+    final Query countQuery = proxy(Query.class, new InvocationHandler() {
+      @Override
+      public Object invoke(Object proxy, Method method, Object[] args) {
+        if ("getSingleResult".equals(method.getName())) {
+          return Long.valueOf(42);
+        }
+        throw new UnsupportedOperationException(method.getName());
+      }
+    });
+    return proxy(EntityManager.class, new InvocationHandler() {
+      @Override
+      public Object invoke(Object proxy, Method method, Object[] args) {
+        if ("createNativeQuery".equals(method.getName())) {
+          return countQuery;
+        } else if ("close".equals(method.getName())) {
+          closed.add((EntityManager) proxy);
+          return null;
+        } else if ("equals".equals(method.getName())) {
+          return Boolean.valueOf(proxy == args[0]);
+        } else if ("hashCode".equals(method.getName())) {
+          return Integer.valueOf(System.identityHashCode(proxy));
+        }
+        throw new UnsupportedOperationException(method.getName());
+      }
+    });
+  }
+
+  private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+    return type.cast(Proxy.newProxyInstance(
+        DataAccessObjectImplAsyncTest.class.getClassLoader(),
+        new Class<?>[] { type }, handler));
+  }
+
+  /**
+   * Entity of the tests.
+   */
+  @Entity
+  public static class Sample implements Model<Long> {
+
+    private static final long serialVersionUID = 1L;
+
+    private Long id;
+    private int version;
+
+    @Override
+    public Long getId() {
+      return id;
+    }
+
+    @Override
+    public void setId(Long id) {
+      this.id = id;
+    }
+
+    @Override
+    public int getVersion() {
+      return version;
+    }
+
+    @Override
+    public void setVersion(int version) {
+      this.version = version;
+    }
+  }
+
+  /**
+   * Executor that runs every operation on the calling thread, like a full
+   * executor with the caller runs policy.
+   */
+  private static final class CallerRunsExecutor extends
+      AbstractExecutorService {
+
+    @Override
+    public void execute(Runnable command) {
+      command.run();
+    }
+
+    @Override
+    public void shutdown() {
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+      return Collections.emptyList();
+    }
+
+    @Override
+    public boolean isShutdown() {
+      return false;
+    }
+
+    @Override
+    public boolean isTerminated() {
+      return false;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) {
+      return false;
+    }
+  }
+
+  /**
+   * Data Access Object whose count is estimated by an overridden hook. The
+   * {@link EntityManager} of the caller must not be used by the worker
+   * threads.
+   */
+  private static final class SampleDataAccessObject extends
+      DataAccessObjectImpl<Long, Sample> {
+
+    private final EntityManagerFactory factory;
+    private final ExecutorService executor;
+
+    SampleDataAccessObject(EntityManagerFactory factory,
+        ExecutorService executor) {
+      super(Long.class, Sample.class);
+      this.factory = factory;
+      this.executor = executor;
+    }
+
+    @Override
+    public EntityManager getEntityManager() {
+      throw new IllegalStateException(
+          "The EntityManager of the caller was used by a worker thread.");
+    }
+
+    @Override
+    protected EntityManagerFactory getParallelEntityManagerFactory() {
+      return factory;
+    }
+
+    @Override
+    protected ExecutorService getAsyncExecutor() {
+      return executor;
+    }
+
+    @Override
+    protected int getKeyFilterExpectedKeys() {
+      return 100;
+    }
+
+    @Override
+    protected CountMode getDefaultCountMode() {
+      return CountMode.APPROXIMATE;
+    }
+
+    @Override
+    protected Query createApproximateCountQuery() {
+      return getCurrentEntityManager().createNativeQuery(
+          "SELECT reltuples FROM pg_class WHERE relname = 'sample'");
+    }
+
+    boolean boundOnCaller() {
+      try {
+        getCurrentEntityManager();
+        return true;
+      } catch (IllegalStateException e) {
+        return false;
+      }
+    }
+  }
+
+}
@@ -0,0 +1,96 @@
+package com.eidoscode.framework.persistence.dao.impl;
+
+import static org.junit.Assert.assertEquals;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Root;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.eidoscode.framework.persistence.dao.CountMode;
+
+/**
+ * Tests that {@link DataAccessObjectImpl#countAll(CountMode)} honours an
+ * overridden {@link DataAccessObjectImpl#createCriteriaCount()}, on the
+ * embedded database of the <code>test</code> persistence unit.
+ * 
+ * @author eantonini
+ * @since 1.6
+ * @version 1.0
+ */
+public class DataAccessObjectImplCountTest {
+
+  private static EntityManagerFactory factory;
+  private EntityManager entityManager;
+
+  @BeforeClass
+  public static void createFactory() {
+    factory = Persistence.createEntityManagerFactory("test");
+    EntityManager entityManager = factory.createEntityManager();
+    entityManager.getTransaction().begin();
+    for (long id = 1; id <= 5; id++) {
+      entityManager.persist(new AuditedSample(Long.valueOf(id),
+          id % 2 == 0 ? "even" : "odd"));
+    }
+    entityManager.getTransaction().commit();
+    entityManager.close();
+  }
+
+  @AfterClass
+  public static void closeFactory() {
+    factory.close();
+  }
+
+  @Before
+  public void setUp() {
+    entityManager = factory.createEntityManager();
+  }
+
+  @After
+  public void tearDown() {
+    entityManager.close();
+  }
+
+  @Test
+  public void builtStatementCountsAllTheEntities() {
+    SampleDAO<Long, AuditedSample> dao = new SampleDAO<Long, AuditedSample>(
+        Long.class, AuditedSample.class, entityManager);
+    assertEquals(Long.valueOf(5), dao.countAll());
+  }
+
+  @Test
+  public void overriddenCriteriaCountIsUsed() {
+    EvenDAO dao = new EvenDAO(entityManager);
+    assertEquals(Long.valueOf(2), dao.countAll());
+    assertEquals(Long.valueOf(2), dao.countAll(CountMode.CACHED));
+  }
+
+  /**
+   * Data Access Object that counts only the even entities.
+   */
+  private static final class EvenDAO extends SampleDAO<Long, AuditedSample> {
+
+    EvenDAO(EntityManager entityManager) {
+      super(Long.class, AuditedSample.class, entityManager);
+    }
+
+    @Override
+    protected CriteriaQuery<Long> createCriteriaCount() {
+      CriteriaBuilder cb = getEntityManager().getCriteriaBuilder();
+      CriteriaQuery<Long> criteria = cb.createQuery(Long.class);
+      Root<AuditedSample> root = criteria.from(AuditedSample.class);
+      criteria.select(cb.count(root)).where(
+          cb.equal(root.get("name"), "even"));
+      return criteria;
+    }
+  }
+
+}
@@ -0,0 +1,51 @@
+package com.eidoscode.framework.persistence.dao.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Tests the split of the key range processed in parallel by
+ * {@link DataAccessObjectImpl}.
+ * 
+ * @author eantonini
+ * @since 1.6
+ * @version 1.0
+ */
+public class DataAccessObjectImplKeyRangeTest {
+
+  @Test
+  public void firstPartitionsTakeTheRemainder() {
+    long[][] bounds = DataAccessObjectImpl.splitKeyRange(1, 10, 3);
+    assertArrayEquals(new long[] { 1, 5, 8 }, bounds[0]);
+    assertArrayEquals(new long[] { 4, 7, 10 }, bounds[1]);
+  }
+
+  @Test
+  public void narrowRangeHasOnePartitionByKey() {
+    long[][] bounds = DataAccessObjectImpl.splitKeyRange(7, 8, 4);
+    assertArrayEquals(new long[] { 7, 8 }, bounds[0]);
+    assertArrayEquals(new long[] { 7, 8 }, bounds[1]);
+  }
+
+  @Test
+  public void wholeLongRangeDoesNotOverflow() {
+    long[][] bounds = DataAccessObjectImpl.splitKeyRange(Long.MIN_VALUE,
+        Long.MAX_VALUE, 4);
+    assertArrayEquals(new long[] { Long.MIN_VALUE, -(1L << 62), 0,
+        1L << 62 }, bounds[0]);
+    assertArrayEquals(new long[] { -(1L << 62) - 1, -1, (1L << 62) - 1,
+        Long.MAX_VALUE }, bounds[1]);
+  }
+
+  @Test
+  public void singleKeyAtTheEdgeOfTheLongRange() {
+    long[][] bounds = DataAccessObjectImpl.splitKeyRange(Long.MAX_VALUE,
+        Long.MAX_VALUE, 8);
+    assertEquals(1, bounds[0].length);
+    assertEquals(Long.MAX_VALUE, bounds[0][0]);
+    assertEquals(Long.MAX_VALUE, bounds[1][0]);
+  }
+
+}
@@ -0,0 +1,159 @@
+package com.eidoscode.framework.persistence.dao.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.eidoscode.framework.persistence.dao.KeysetPage;
+import com.eidoscode.framework.persistence.dao.KeysetToken;
+
+/**
+ * Tests the keyset pages of {@link DataAccessObjectImpl}, on the embedded
+ * database of the <code>test</code> persistence unit.
+ * 
+ * @author eantonini
+ * @since 1.6
+ * @version 1.0
+ */
+public class DataAccessObjectImplKeysetTest {
+
+  private static final String[] NAMES = { "b", "a", "b", "a", "c", "b", "a" };
+
+  private static EntityManagerFactory factory;
+  private EntityManager entityManager;
+
+  @BeforeClass
+  public static void createFactory() {
+    factory = Persistence.createEntityManagerFactory("test");
+    EntityManager entityManager = factory.createEntityManager();
+    entityManager.getTransaction().begin();
+    for (int i = 0; i < NAMES.length; i++) {
+      entityManager.persist(new AuditedSample(Long.valueOf(i + 1), NAMES[i]));
+    }
+    entityManager.getTransaction().commit();
+    entityManager.close();
+  }
+
+  @AfterClass
+  public static void closeFactory() {
+    factory.close();
+  }
+
+  @Before
+  public void setUp() {
+    entityManager = factory.createEntityManager();
+  }
+
+  @After
+  public void tearDown() {
+    entityManager.close();
+  }
+
+  @Test
+  public void pagesAreResumedAfterTheKeyOfTheToken() {
+    SampleDAO<Long, AuditedSample> dao = new SampleDAO<Long, AuditedSample>(
+        Long.class, AuditedSample.class, entityManager);
+    KeysetPage<AuditedSample> page = dao.findAllKeyset(null, 3);
+    assertEquals(Arrays.asList(1L, 2L, 3L), ids(page));
+    assertTrue(page.hasNext());
+    assertEquals(Long.valueOf(3), page.getNextToken().getKey());
+
+    page = dao.findAllKeyset(page.getNextToken(), 3);
+    assertEquals(Arrays.asList(4L, 5L, 6L), ids(page));
+
+    page = dao.findAllKeyset(page.getNextToken(), 3);
+    assertEquals(Arrays.asList(7L), ids(page));
+    assertFalse(page.hasNext());
+    assertNull(page.getNextToken());
+  }
+
+  @Test
+  public void pagesAreSortedByTheAttributeAndTheKey() {
+    SampleDAO<Long, AuditedSample> dao = new SampleDAO<Long, AuditedSample>(
+        Long.class, AuditedSample.class, entityManager);
+    KeysetPage<AuditedSample> page = dao.findAllKeyset("name", null, 2);
+    assertEquals(Arrays.asList(2L, 4L), ids(page));
+    assertEquals("a", page.getNextToken().getSortValue());
+
+    // The values shared by several entities are resumed after the key.
+    page = dao.findAllKeyset("name", page.getNextToken(), 2);
+    assertEquals(Arrays.asList(7L, 1L), ids(page));
+    page = dao.findAllKeyset("name", page.getNextToken(), 2);
+    assertEquals(Arrays.asList(3L, 6L), ids(page));
+    page = dao.findAllKeyset("name", page.getNextToken(), 2);
+    assertEquals(Arrays.asList(5L), ids(page));
+    assertFalse(page.hasNext());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void tokenOfAnotherAttributeIsRejected() {
+    SampleDAO<Long, AuditedSample> dao = new SampleDAO<Long, AuditedSample>(
+        Long.class, AuditedSample.class, entityManager);
+    dao.findAllKeyset("name", new KeysetToken(null, null, Long.valueOf(1)), 2);
+  }
+
+  @Test
+  public void defaultFiltersAreApplied() {
+    FilteredDAO dao = new FilteredDAO(entityManager, "b");
+    KeysetPage<AuditedSample> page = dao.findAllKeyset("name", null, 2);
+    assertEquals(Arrays.asList(2L, 4L), ids(page));
+    page = dao.findAllKeyset("name", page.getNextToken(), 2);
+    assertEquals(Arrays.asList(7L, 5L), ids(page));
+    assertFalse(page.hasNext());
+  }
+
+  private static List<Long> ids(KeysetPage<AuditedSample> page) {
+    List<Long> ids = new ArrayList<Long>();
+    for (AuditedSample sample : page.getResults()) {
+      ids.add(sample.getId());
+    }
+    return ids;
+  }
+
+  /**
+   * Data Access Object that leaves out the entities of a name, restricted by
+   * the criteria hook and bound by the query hook.
+   */
+  private static final class FilteredDAO extends
+      SampleDAO<Long, AuditedSample> {
+
+    private final String excludedName;
+
+    FilteredDAO(EntityManager entityManager, String excludedName) {
+      super(Long.class, AuditedSample.class, entityManager);
+      this.excludedName = excludedName;
+    }
+
+    @Override
+    protected void defaultFilterCriteria(
+        CriteriaQuery<AuditedSample> criteriaQuery) {
+      CriteriaBuilder cb = getEntityManager().getCriteriaBuilder();
+      addRestriction(criteriaQuery, cb, cb.notEqual(getRoot(criteriaQuery)
+          .get("name"), cb.parameter(String.class, "excludedName")));
+    }
+
+    @Override
+    protected void defaultFilterQuery(TypedQuery<AuditedSample> typedQuery) {
+      typedQuery.setParameter("excludedName", excludedName);
+    }
+  }
+
+}
@@ -0,0 +1,82 @@
+package com.eidoscode.framework.persistence.dao.impl;
+
+import static org.junit.Assert.assertEquals;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.eidoscode.framework.persistence.dao.ReadOnlyScope;
+
+/**
+ * Tests that the read-only queries of {@link DataAccessObjectImpl} see the
+ * changes pending on their transaction, on the embedded database of the
+ * <code>test</code> persistence unit.
+ * 
+ * @author eantonini
+ * @since 1.6
+ * @version 1.0
+ */
+public class DataAccessObjectImplReadOnlyTest {
+
+  private static EntityManagerFactory factory;
+  private EntityManager entityManager;
+
+  @BeforeClass
+  public static void createFactory() {
+    factory = Persistence.createEntityManagerFactory("test");
+  }
+
+  @AfterClass
+  public static void closeFactory() {
+    factory.close();
+  }
+
+  @Before
+  public void setUp() {
+    entityManager = factory.createEntityManager();
+    entityManager.getTransaction().begin();
+    entityManager.persist(new AuditedSample(Long.valueOf(1), "pending"));
+  }
+
+  @After
+  public void tearDown() {
+    entityManager.getTransaction().rollback();
+    entityManager.close();
+  }
+
+  @Test
+  public void readOnlyQuerySeesThePendingChanges() {
+    SampleDAO<Long, AuditedSample> dao = new SampleDAO<Long, AuditedSample>(
+        Long.class, AuditedSample.class, entityManager);
+    assertEquals(1, findAllReadOnly(dao));
+  }
+
+  @Test
+  public void optedInReadOnlyQuerySkipsTheFlush() {
+    SampleDAO<Long, AuditedSample> dao = new SampleDAO<Long, AuditedSample>(
+        Long.class, AuditedSample.class, entityManager) {
+      @Override
+      protected boolean isReadOnlyFlushSkipped() {
+        return true;
+      }
+    };
+    assertEquals(0, findAllReadOnly(dao));
+  }
+
+  private int findAllReadOnly(SampleDAO<Long, AuditedSample> dao) {
+    boolean previous = ReadOnlyScope.enter(true);
+    try {
+      return dao.findAll().size();
+    } finally {
+      ReadOnlyScope.exit(previous);
+    }
+  }
+
+}
@@ -0,0 +1,160 @@
+package com.eidoscode.framework.persistence.dao.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.OptimisticLockException;
+import javax.persistence.Persistence;
+
+import org.hibernate.ejb.HibernateEntityManagerFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests the remove of {@link DataAccessObjectImpl} without loading the
+ * entity, on the embedded database of the <code>test</code> persistence unit.
+ * 
+ * @author eantonini
+ * @since 1.6
+ * @version 1.0
+ */
+public class DataAccessObjectImplRemoveTest {
+
+  private static EntityManagerFactory factory;
+  private EntityManager entityManager;
+
+  @BeforeClass
+  public static void createFactory() {
+    factory = Persistence.createEntityManagerFactory("test");
+  }
+
+  @AfterClass
+  public static void closeFactory() {
+    factory.close();
+  }
+
+  @Before
+  public void setUp() {
+    entityManager = factory.createEntityManager();
+  }
+
+  @After
+  public void tearDown() {
+    if (entityManager.getTransaction().isActive()) {
+      entityManager.getTransaction().rollback();
+    }
+    entityManager.close();
+  }
+
+  @Test
+  public void detachedEntityIsRemovedByStatementWithoutSelect() {
+    Long id = store(101);
+    Statistics statistics = statistics();
+    statistics.clear();
+    entityManager.getTransaction().begin();
+    dao().remove(new AuditedSample(id, "removed"), true);
+    entityManager.getTransaction().commit();
+
+    assertEquals(1, statistics.getPrepareStatementCount());
+    assertEquals(0, statistics.getEntityLoadCount());
+    assertNull(entityManager.find(AuditedSample.class, id));
+  }
+
+  @Test
+  public void staleDetachedEntityIsNotRemovedByStatement() {
+    Long id = store(102);
+    AuditedSample stale = new AuditedSample(id, "stale");
+    stale.setVersion(5);
+    entityManager.getTransaction().begin();
+    try {
+      dao().remove(stale, true);
+      fail("The stale entity was removed.");
+    } catch (OptimisticLockException e) {
+      entityManager.getTransaction().rollback();
+    }
+    assertNotNull(entityManager.find(AuditedSample.class, id));
+  }
+
+  @Test
+  public void managedCopyIsRemovedWithoutStatement() {
+    Long id = store(103);
+    entityManager.getTransaction().begin();
+    AuditedSample managed = entityManager.find(AuditedSample.class, id);
+    Statistics statistics = statistics();
+    statistics.clear();
+    dao().remove(new AuditedSample(id, "detached"), false);
+
+    assertEquals(0, statistics.getPrepareStatementCount());
+    assertFalse(entityManager.contains(managed));
+    entityManager.getTransaction().commit();
+    entityManager.clear();
+    assertNull(entityManager.find(AuditedSample.class, id));
+  }
+
+  @Test
+  public void staleManagedCopyIsNotRemoved() {
+    Long id = store(104);
+    entityManager.getTransaction().begin();
+    entityManager.find(AuditedSample.class, id);
+    AuditedSample stale = new AuditedSample(id, "stale");
+    stale.setVersion(3);
+    try {
+      dao().remove(stale, false);
+      fail("The stale entity was removed.");
+    } catch (OptimisticLockException e) {
+      entityManager.getTransaction().rollback();
+    }
+  }
+
+  @Test
+  public void staleReferenceIsNotRemoved() {
+    Long id = store(105);
+    AuditedSample stale = new AuditedSample(id, "stale");
+    stale.setVersion(2);
+    SampleDAO<Long, AuditedSample> dao = new SampleDAO<Long, AuditedSample>(
+        Long.class, AuditedSample.class, entityManager) {
+      @Override
+      protected boolean isRemoveByStatementAllowed() {
+        return false;
+      }
+    };
+    entityManager.getTransaction().begin();
+    try {
+      dao.remove(stale, true);
+      fail("The stale entity was removed.");
+    } catch (OptimisticLockException e) {
+      entityManager.getTransaction().rollback();
+    }
+    entityManager.clear();
+    assertNotNull(entityManager.find(AuditedSample.class, id));
+  }
+
+  private Long store(long key) {
+    Long id = Long.valueOf(key);
+    entityManager.getTransaction().begin();
+    entityManager.persist(new AuditedSample(id, "stored"));
+    entityManager.getTransaction().commit();
+    entityManager.clear();
+    return id;
+  }
+
+  private static Statistics statistics() {
+    return ((HibernateEntityManagerFactory) factory).getSessionFactory()
+        .getStatistics();
+  }
+
+  private SampleDAO<Long, AuditedSample> dao() {
+    return new SampleDAO<Long, AuditedSample>(Long.class, AuditedSample.class,
+        entityManager);
+  }
+
+}
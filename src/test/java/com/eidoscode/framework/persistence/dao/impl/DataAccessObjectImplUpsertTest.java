@@ -0,0 +1,149 @@
+package com.eidoscode.framework.persistence.dao.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Date;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests the upsert of {@link DataAccessObjectImpl} with audited entities, on
+ * the embedded database of the <code>test</code> persistence unit.
+ * 
+ * @author eantonini
+ * @since 1.6
+ * @version 1.0
+ */
+public class DataAccessObjectImplUpsertTest {
+
+  private static EntityManagerFactory factory;
+  private EntityManager entityManager;
+
+  @BeforeClass
+  public static void createFactory() {
+    factory = Persistence.createEntityManagerFactory("test");
+  }
+
+  @AfterClass
+  public static void closeFactory() {
+    factory.close();
+  }
+
+  @Before
+  public void setUp() {
+    entityManager = factory.createEntityManager();
+  }
+
+  @After
+  public void tearDown() {
+    if (entityManager.getTransaction().isActive()) {
+      entityManager.getTransaction().rollback();
+    }
+    entityManager.close();
+  }
+
+  @Test
+  public void auditedEntityIsUpsertedByStatement() {
+    assertTrue(auditedDAO().isUpsertByStatementAllowed());
+    assertTrue(generatedDAO().isUpsertByStatementAllowed());
+  }
+
+  @Test
+  public void auditedEntityIsUpdatedByStatement() {
+    Long id = Long.valueOf(1);
+    Date createdOn = new Date(0);
+    AuditedSample sample = new AuditedSample(id, "created");
+    sample.setCreatedOn(createdOn);
+    entityManager.getTransaction().begin();
+    entityManager.persist(sample);
+    entityManager.getTransaction().commit();
+    entityManager.clear();
+
+    AuditedSample changed = new AuditedSample(id, "changed");
+    entityManager.getTransaction().begin();
+    auditedDAO().upsert(changed, true);
+    entityManager.getTransaction().commit();
+
+    assertEquals(1, changed.getVersion());
+    assertNotNull(changed.getModifiedOn());
+    assertFalse(entityManager.contains(changed));
+    AuditedSample found = entityManager.find(AuditedSample.class, id);
+    assertEquals("changed", found.getName());
+    assertEquals(1, found.getVersion());
+    // The statement does not write the creation date.
+    assertEquals(createdOn.getTime(), found.getCreatedOn().getTime());
+    assertNotNull(found.getModifiedOn());
+  }
+
+  @Test
+  public void missingAuditedEntityIsPersisted() {
+    Long id = Long.valueOf(2);
+    entityManager.getTransaction().begin();
+    auditedDAO().upsert(new AuditedSample(id, "missing"), true);
+    entityManager.getTransaction().commit();
+    entityManager.clear();
+
+    AuditedSample found = entityManager.find(AuditedSample.class, id);
+    assertEquals("missing", found.getName());
+    assertEquals(0, found.getVersion());
+  }
+
+  @Test
+  public void missingEntityWithGeneratedKeyIsInserted() {
+    Long missingId = Long.valueOf(1000);
+    GeneratedSample sample = new GeneratedSample(missingId, "generated");
+    entityManager.getTransaction().begin();
+    generatedDAO().upsert(sample, true);
+    entityManager.getTransaction().commit();
+    entityManager.clear();
+
+    assertNotNull(sample.getId());
+    assertFalse(missingId.equals(sample.getId()));
+    GeneratedSample found = entityManager.find(GeneratedSample.class,
+        sample.getId());
+    assertEquals("generated", found.getName());
+  }
+
+  @Test
+  public void entityWithAManagedCopyIsMerged() {
+    Long id = Long.valueOf(3);
+    entityManager.getTransaction().begin();
+    entityManager.persist(new AuditedSample(id, "created"));
+    entityManager.getTransaction().commit();
+    entityManager.clear();
+
+    entityManager.getTransaction().begin();
+    AuditedSample managed = entityManager.find(AuditedSample.class, id);
+    auditedDAO().upsert(new AuditedSample(id, "upserted"), false);
+    assertEquals("upserted", managed.getName());
+    managed.setName("changed");
+    entityManager.getTransaction().commit();
+    entityManager.clear();
+
+    AuditedSample found = entityManager.find(AuditedSample.class, id);
+    assertEquals("changed", found.getName());
+    assertEquals(1, found.getVersion());
+  }
+
+  private SampleDAO<Long, AuditedSample> auditedDAO() {
+    return new SampleDAO<Long, AuditedSample>(Long.class, AuditedSample.class,
+        entityManager);
+  }
+
+  private SampleDAO<Long, GeneratedSample> generatedDAO() {
+    return new SampleDAO<Long, GeneratedSample>(Long.class,
+        GeneratedSample.class, entityManager);
+  }
+
+}
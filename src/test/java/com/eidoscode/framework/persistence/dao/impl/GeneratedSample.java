@@ -0,0 +1,67 @@
+package com.eidoscode.framework.persistence.dao.impl;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.Version;
+
+import com.eidoscode.framework.persistence.model.impl.AuditedModelImpl;
+
+/**
+ * Audited entity of the tests, with a generated key.
+ * 
+ * @author eantonini
+ * @since 1.6
+ * @version 1.0
+ */
+@Entity
+public class GeneratedSample extends AuditedModelImpl<Long> {
+
+  private static final long serialVersionUID = 1L;
+
+  @Id
+  @GeneratedValue
+  private Long id;
+
+  @Version
+  private int version;
+
+  private String name;
+
+  public GeneratedSample() {
+  }
+
+  public GeneratedSample(Long id, String name) {
+    this.id = id;
+    this.name = name;
+  }
+
+  @Override
+  public Long getId() {
+    return id;
+  }
+
+  @Override
+  public void setId(Long id) {
+    this.id = id;
+  }
+
+  @Override
+  public int getVersion() {
+    return version;
+  }
+
+  @Override
+  public void setVersion(int version) {
+    this.version = version;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public void setName(String name) {
+    this.name = name;
+  }
+
+}
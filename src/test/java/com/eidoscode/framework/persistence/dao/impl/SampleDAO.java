@@ -0,0 +1,36 @@
+package com.eidoscode.framework.persistence.dao.impl;
+
+import java.io.Serializable;
+
+import javax.persistence.EntityManager;
+
+import com.eidoscode.framework.persistence.model.Model;
+
+/**
+ * Data Access Object of the tests, bound to a given {@link EntityManager}.
+ * 
+ * @author eantonini
+ * @since 1.6
+ * @version 1.0
+ * @param <Key>
+ *          The type of the Id of the model.
+ * @param <Bean>
+ *          The entity.
+ */
+public class SampleDAO<Key extends Serializable, Bean extends Model<Key>>
+    extends DataAccessObjectImpl<Key, Bean> {
+
+  private final EntityManager entityManager;
+
+  public SampleDAO(Class<Key> keyClass, Class<Bean> entityClass,
+      EntityManager entityManager) {
+    super(keyClass, entityClass);
+    this.entityManager = entityManager;
+  }
+
+  @Override
+  public EntityManager getEntityManager() {
+    return entityManager;
+  }
+
+}
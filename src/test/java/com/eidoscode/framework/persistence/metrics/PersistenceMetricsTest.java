@@ -0,0 +1,73 @@
+package com.eidoscode.framework.persistence.metrics;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests the publication of the {@link PersistenceMetrics} on the platform
+ * MBean server.
+ * 
+ * @author eantonini
+ * @since 1.6
+ * @version 1.0
+ */
+public class PersistenceMetricsTest {
+
+  private static final String DAO = PersistenceMetrics.DATA_ACCESS_OBJECT;
+  private static final String BO = PersistenceMetrics.BUSINESS_OBJECT;
+
+  private final MBeanServer server = ManagementFactory
+      .getPlatformMBeanServer();
+
+  @After
+  public void tearDown() {
+    PersistenceMetrics.unregisterAll();
+  }
+
+  @Test
+  public void unregisterAllUnpublishesTheMeasures() throws Exception {
+    PersistenceMetrics first = PersistenceMetrics.forEntity(DAO, "Sample",
+        Sample.class);
+    PersistenceMetrics.forEntity(BO, "Sample", Sample.class);
+    assertSame(first,
+        PersistenceMetrics.forEntity(DAO, "Sample", Sample.class));
+    assertTrue(server.isRegistered(name(DAO)));
+    assertTrue(server.isRegistered(name(BO)));
+
+    PersistenceMetrics.unregisterAll();
+    assertFalse(server.isRegistered(name(DAO)));
+    assertFalse(server.isRegistered(name(BO)));
+
+    assertNotSame(first,
+        PersistenceMetrics.forEntity(DAO, "Sample", Sample.class));
+    assertTrue(server.isRegistered(name(DAO)));
+  }
+
+  @Test
+  public void unregisterUnpublishesOnlyTheLayer() throws Exception {
+    PersistenceMetrics.forEntity(DAO, "Sample", Sample.class);
+    PersistenceMetrics.forEntity(BO, "Sample", Sample.class);
+    PersistenceMetrics.unregister(BO, Sample.class);
+    assertTrue(server.isRegistered(name(DAO)));
+    assertFalse(server.isRegistered(name(BO)));
+  }
+
+  private ObjectName name(String layer) throws Exception {
+    return new ObjectName(PersistenceMetrics.DOMAIN + ":type=" + layer
+        + ",name=" + Sample.class.getName());
+  }
+
+  private static final class Sample {
+  }
+
+}
@@ -0,0 +1,117 @@
+package com.eidoscode.framework.persistence.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.Logger;
+import org.apache.log4j.spi.LoggingEvent;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.eidoscode.framework.persistence.model.Model;
+
+/**
+ * Tests the description of the parameters written by the
+ * {@link SlowOperationLog}.
+ * 
+ * @author eantonini
+ * @since 1.6
+ * @version 1.0
+ */
+public class SlowOperationLogTest {
+
+  private final List<String> messages = new ArrayList<String>();
+  private final AppenderSkeleton appender = new AppenderSkeleton() {
+    @Override
+    protected void append(LoggingEvent event) {
+      messages.add(event.getRenderedMessage());
+    }
+
+    @Override
+    public boolean requiresLayout() {
+      return false;
+    }
+
+    @Override
+    public void close() {
+    }
+  };
+  private SlowOperationLog log;
+
+  @Before
+  public void setUp() {
+    Logger.getLogger(SlowOperationLog.class).addAppender(appender);
+    log = SlowOperationLog.forEntity(PersistenceMetrics.DATA_ACCESS_OBJECT,
+        "Detached", Detached.class, 1, 100, 60000, 0);
+  }
+
+  @After
+  public void tearDown() {
+    Logger.getLogger(SlowOperationLog.class).removeAppender(appender);
+  }
+
+  @Test
+  public void entityThatFailsToDescribeItselfIsIdentifiedByItsKey() {
+    log.log(Operation.SAVE, 0, true, new Object[] { new Detached(7L) });
+    assertEquals(1, messages.size());
+    assertTrue(messages.get(0), messages.get(0).contains(
+        Detached.class.getName() + "#7"));
+  }
+
+  @Test
+  public void itemsThatFailToDescribeThemselvesAreIdentified() {
+    log.log(Operation.SAVE, 0, true, new Object[] { Arrays.asList(
+        new Detached(1L), new Detached(2L)) });
+    assertEquals(1, messages.size());
+    assertTrue(messages.get(0), messages.get(0).contains(
+        "[" + Detached.class.getName() + "#1, " + Detached.class.getName()
+            + "#2]"));
+  }
+
+  /**
+   * Entity whose state can no longer be loaded, like a detached entity with a
+   * lazy association.
+   */
+  private static final class Detached implements Model<Long> {
+
+    private static final long serialVersionUID = 1L;
+
+    private Long id;
+
+    Detached(Long id) {
+      this.id = id;
+    }
+
+    @Override
+    public Long getId() {
+      return id;
+    }
+
+    @Override
+    public void setId(Long id) {
+      this.id = id;
+    }
+
+    @Override
+    public int getVersion() {
+      return 0;
+    }
+
+    @Override
+    public void setVersion(int version) {
+    }
+
+    @Override
+    public String toString() {
+      throw new IllegalStateException(
+          "could not initialize proxy - no Session");
+    }
+  }
+
+}